@@ -0,0 +1,107 @@
+/* Benchmark.java -- Statistics and formatting shared by the benchmarks.
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath examples.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA. */
+
+package gnu.classpath.examples;
+
+/**
+ * Helpers shared by the benchmarks of the examples: the mean of the
+ * scores of the measurement iterations with its 99.9% confidence
+ * interval, and the formatting of the results as a table.
+ */
+public final class Benchmark
+{
+  /* Student's t quantiles for a 99.9% confidence interval, indexed
+   * by the degrees of freedom; the last one is used beyond that.
+   */
+  private static final double[] T_999 =
+  {
+    0, 636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781,
+    4.587, 4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883,
+    3.850, 3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659,
+    3.646
+  };
+
+  private Benchmark()
+  {
+  }
+
+  /**
+   * Returns the mean of the scores.
+   */
+  public static double mean(double[] scores)
+  {
+    double mean = 0;
+    for (int i = 0; i < scores.length; i++)
+      mean += scores[i];
+    return mean / scores.length;
+  }
+
+  /**
+   * Returns the half width of the 99.9% confidence interval of the
+   * mean of the scores, or NaN if there are fewer than two.
+   */
+  public static double error(double[] scores)
+  {
+    if (scores.length < 2)
+      return Double.NaN;
+    double mean = mean(scores);
+    double var = 0;
+    for (int i = 0; i < scores.length; i++)
+      var += (scores[i] - mean) * (scores[i] - mean);
+    var /= scores.length - 1;
+    int df = Math.min(scores.length - 1, T_999.length - 1);
+    return T_999[df] * Math.sqrt(var / scores.length);
+  }
+
+  /**
+   * Returns the mean of the scores and its error, formatted to the
+   * given width and 8 characters respectively.
+   */
+  public static String score(double[] scores, int width)
+  {
+    return pad(format(mean(scores)), width) + " +-"
+      + pad(format(error(scores)), 8);
+  }
+
+  /**
+   * Formats d with two decimals.
+   */
+  public static String format(double d)
+  {
+    if (Double.isNaN(d))
+      return "NaN";
+    long l = Math.round(Math.abs(d) * 100);
+    String s = String.valueOf(l % 100);
+    return (d < 0 && l != 0 ? "-" : "") + l / 100 + "."
+      + (s.length() == 1 ? "0" + s : s);
+  }
+
+  /**
+   * Pads s with blanks to the given width: on the left for positive
+   * width, on the right for negative width.
+   */
+  public static String pad(String s, int width)
+  {
+    StringBuffer sb = new StringBuffer();
+    for (int i = Math.abs(width) - s.length(); i > 0; i--)
+      sb.append(' ');
+    return width < 0 ? s + sb : sb + s;
+  }
+}
@@ -0,0 +1,154 @@
+/* HashBenchmark.java -- Throughput of message digests.
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath examples.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA. */
+
+package gnu.classpath.examples.crypto;
+
+import gnu.classpath.examples.Benchmark;
+import gnu.java.security.hash.HashFactory;
+import gnu.java.security.hash.IMessageDigest;
+import gnu.java.security.hash.MultiBufferHash;
+
+import java.util.TreeSet;
+
+/**
+ * Measures the throughput of every message digest known to
+ * <code>HashFactory</code> for messages of 64 bytes, 1 KB and 1 MB,
+ * hashing each message either with <code>digest()</code>, which
+ * allocates the result, with <code>digest(byte[], int)</code>, which
+ * stores it in a reused array, or in batches of messages through a
+ * <code>MultiBufferHash</code>.
+ *
+ * Each iteration hashes a fixed number of bytes per benchmark; warmup
+ * iterations are discarded and the mean throughput is reported with
+ * its 99.9% confidence interval.  Options:
+ * <pre>
+ *   -wi &lt;n&gt;     warmup iterations (default 3)
+ *   -i &lt;n&gt;      measurement iterations (default 10)
+ *   -bytes &lt;n&gt;  bytes hashed per iteration (default 16777216)
+ *   -lanes &lt;n&gt;  lanes of the batch benchmark (default 4)
+ *   -hash &lt;s&gt;   only run the benchmarks of the named digest
+ * </pre>
+ */
+public class HashBenchmark
+{
+  private static int warmupIterations = 3;
+  private static int iterations = 10;
+  private static int bytes = 16 * 1024 * 1024;
+  private static int lanes = 4;
+  private static String only;
+
+  private static final int[] SIZES = { 64, 1024, 1024 * 1024 };
+
+  private static final String[] METHODS = { "digest", "into", "batch" };
+
+  public static void main(String[] args) throws Exception
+  {
+    for (int i = 0; i < args.length; i++)
+      {
+        if (args[i].equals("-wi"))
+          warmupIterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-i"))
+          iterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-bytes"))
+          bytes = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-lanes"))
+          lanes = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-hash"))
+          only = args[++i];
+        else
+          {
+            System.err.println("usage: HashBenchmark [-wi n] [-i n] "
+                               + "[-bytes n] [-lanes n] [-hash name]");
+            System.exit(1);
+          }
+      }
+
+    System.out.println("Benchmark                    Score      Error  Units");
+    for (String hash : new TreeSet<String>(HashFactory.getNames()))
+      {
+        if (only != null && ! only.equalsIgnoreCase(hash))
+          continue;
+        for (int s = 0; s < SIZES.length; s++)
+          for (int m = 0; m < METHODS.length; m++)
+            {
+              IMessageDigest md = HashFactory.getInstance(hash);
+              // enough messages of SIZES[s] bytes to make up the iteration
+              byte[][] msgs = new byte[Math.max(1, bytes / SIZES[s])][];
+              for (int i = 0; i < msgs.length; i++)
+                {
+                  msgs[i] = new byte[SIZES[s]];
+                  msgs[i][0] = (byte) i;
+                }
+              for (int i = 0; i < warmupIterations; i++)
+                run(md, msgs, m);
+              double[] scores = new double[iterations];
+              for (int i = 0; i < iterations; i++)
+                scores[i] = run(md, msgs, m);
+
+              String name = hash + "." + sizeName(SIZES[s]) + "."
+                + METHODS[m];
+              System.out.println(Benchmark.pad(name, -22)
+                                 + Benchmark.score(scores, 11) + "   MB/s");
+            }
+      }
+  }
+
+  /**
+   * Runs one iteration of a benchmark and returns the throughput in
+   * megabytes per second.
+   */
+  private static double run(IMessageDigest md, byte[][] msgs, int method)
+  {
+    byte[] out = new byte[msgs.length * md.hashSize()];
+    long start = System.nanoTime();
+    switch (method)
+      {
+      case 0:
+        for (int i = 0; i < msgs.length; i++)
+          {
+            md.update(msgs[i], 0, msgs[i].length);
+            byte[] result = md.digest();
+            out[i] = result[0];
+          }
+        break;
+      case 1:
+        for (int i = 0; i < msgs.length; i++)
+          {
+            md.update(msgs[i], 0, msgs[i].length);
+            md.digest(out, i * md.hashSize());
+          }
+        break;
+      default:
+        new MultiBufferHash(md, lanes).digest(msgs, out, 0);
+      }
+    long time = System.nanoTime() - start;
+    return (double) msgs.length * msgs[0].length / time * 1e9
+      / (1024 * 1024);
+  }
+
+  private static String sizeName(int size)
+  {
+    if (size >= 1024 * 1024)
+      return size / (1024 * 1024) + "M";
+    if (size >= 1024)
+      return size / 1024 + "K";
+    return String.valueOf(size);
+  }
+}
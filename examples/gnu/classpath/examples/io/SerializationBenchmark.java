@@ -0,0 +1,184 @@
+/* SerializationBenchmark.java -- Throughput benchmark for serialization.
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath examples.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA. */
+
+package gnu.classpath.examples.io;
+
+import gnu.classpath.examples.Benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Measures how fast <code>ObjectOutputStream</code> and
+ * <code>ObjectInputStream</code> write and read small object graphs,
+ * the way a remote call or a replicated session does: every operation
+ * uses a new stream for one message that holds a number of records
+ * with primitive and object fields.
+ *
+ * Each iteration runs the operations for about a second; warmup
+ * iterations are discarded and the mean throughput is reported with
+ * its 99.9% confidence interval.  Options:
+ * <pre>
+ *   -wi &lt;n&gt;      warmup iterations (default 3)
+ *   -i &lt;n&gt;       measurement iterations (default 10)
+ *   -records &lt;n&gt; records in a message (default 100)
+ * </pre>
+ * Run with <code>-Dgnu.java.io.fieldAccessorThreshold=0</code> to
+ * measure serialization without generated field accessors.
+ */
+public class SerializationBenchmark
+{
+  private static int warmupIterations = 3;
+  private static int iterations = 10;
+  private static int records = 100;
+
+  /** Keeps the results alive, so the work cannot be optimized away. */
+  private static volatile int sink;
+
+  static class Record implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    int id;
+    long timestamp;
+    double amount;
+    boolean active;
+    short flags;
+    String name;
+    String category;
+    int[] values;
+
+    Record(int id)
+    {
+      this.id = id;
+      timestamp = 1000000000000L + id;
+      amount = id * 1.5;
+      active = (id & 1) == 0;
+      flags = (short) id;
+      name = "record" + id;
+      category = "category" + (id % 10);
+      values = new int[] { id, id + 1, id + 2 };
+    }
+  }
+
+  static class Message implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    long sequence;
+    String sender;
+    Record[] records;
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    for (int i = 0; i < args.length; i++)
+      {
+        if (args[i].equals("-wi"))
+          warmupIterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-i"))
+          iterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-records"))
+          records = Integer.parseInt(args[++i]);
+        else
+          {
+            System.err.println("usage: SerializationBenchmark [-wi n] [-i n] "
+                               + "[-records n]");
+            System.exit(1);
+          }
+      }
+
+    Message message = new Message();
+    message.sequence = 42;
+    message.sender = "benchmark";
+    message.records = new Record[records];
+    for (int i = 0; i < records; i++)
+      message.records[i] = new Record(i);
+    byte[] bytes = write(message);
+
+    System.out.println("Benchmark   Records      Score      Error  Units");
+    report("write", measure(message, null));
+    report("read", measure(null, bytes));
+  }
+
+  /**
+   * Runs the iterations of one benchmark: writing message if it is
+   * not null, reading bytes otherwise.  Returns the scores in
+   * operations per millisecond.
+   */
+  private static double[] measure(Message message, byte[] bytes)
+    throws IOException, ClassNotFoundException
+  {
+    double[] scores = new double[iterations];
+    for (int i = -warmupIterations; i < iterations; i++)
+      {
+        long start = System.nanoTime();
+        long end = start + 1000000000L;
+        int ops = 0;
+        long now;
+        do
+          {
+            for (int j = 0; j < 10; j++)
+              {
+                if (message != null)
+                  sink += write(message).length;
+                else
+                  sink += ((Message) read(bytes)).records.length;
+              }
+            ops += 10;
+            now = System.nanoTime();
+          }
+        while (now < end);
+        if (i >= 0)
+          scores[i] = ops * 1e6 / (now - start);
+      }
+    return scores;
+  }
+
+  private static byte[] write(Message message) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(message);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static Object read(byte[] bytes)
+    throws IOException, ClassNotFoundException
+  {
+    ObjectInputStream in
+      = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    Object o = in.readObject();
+    in.close();
+    return o;
+  }
+
+  private static void report(String name, double[] scores)
+  {
+    System.out.println(Benchmark.pad(name, -10)
+                       + Benchmark.pad(String.valueOf(records), 8)
+                       + Benchmark.score(scores, 11) + "  ops/ms");
+  }
+}
@@ -0,0 +1,156 @@
+/* InternBenchmark.java -- Throughput benchmark for String.intern().
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath examples.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA. */
+
+package gnu.classpath.examples.lang;
+
+import gnu.classpath.examples.Benchmark;
+
+/**
+ * Measures the throughput of <code>String.intern()</code> when several
+ * threads intern at once.  Each thread interns copies of strings from
+ * a shared pool, which were interned before, so most calls find the
+ * string in the table.  A given share of the calls intern a string
+ * that was never seen before and is dropped right after, so the table
+ * also has to add entries and get rid of collected ones.
+ *
+ * Each iteration runs all threads for a fixed number of calls; warmup
+ * iterations are discarded and the mean throughput is reported with
+ * its 99.9% confidence interval.  Options:
+ * <pre>
+ *   -wi &lt;n&gt;      warmup iterations (default 3)
+ *   -i &lt;n&gt;       measurement iterations (default 10)
+ *   -t &lt;n&gt;       number of threads (default 4)
+ *   -ops &lt;n&gt;     calls per thread and iteration (default 1000000)
+ *   -strings &lt;n&gt; number of strings in the pool (default 10000)
+ *   -new &lt;n&gt;     percentage of calls with a new string (default 10)
+ * </pre>
+ */
+public class InternBenchmark
+{
+  private static int warmupIterations = 3;
+  private static int iterations = 10;
+  private static int threads = 4;
+  private static int ops = 1000000;
+  private static int strings = 10000;
+  private static int newPercent = 10;
+
+  /** The pool; every thread interns copies of these. */
+  private static String[] pool;
+
+  /** Keeps the results alive, so the calls cannot be optimized away. */
+  private static volatile int sink;
+
+  public static void main(String[] args) throws Exception
+  {
+    for (int i = 0; i < args.length; i++)
+      {
+        if (args[i].equals("-wi"))
+          warmupIterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-i"))
+          iterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-t"))
+          threads = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-ops"))
+          ops = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-strings"))
+          strings = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-new"))
+          newPercent = Integer.parseInt(args[++i]);
+        else
+          {
+            System.err.println("usage: InternBenchmark [-wi n] [-i n] [-t n] "
+                               + "[-ops n] [-strings n] [-new n]");
+            System.exit(1);
+          }
+      }
+
+    pool = new String[strings];
+    for (int i = 0; i < strings; i++)
+      pool[i] = ("intern.bench.s" + i).intern();
+
+    for (int i = 0; i < warmupIterations; i++)
+      run(i);
+    double[] scores = new double[iterations];
+    for (int i = 0; i < iterations; i++)
+      scores[i] = run(warmupIterations + i);
+
+    System.out.println("Benchmark    Threads  Strings  New"
+                       + "      Score      Error  Units");
+    System.out.println(Benchmark.pad("intern", -12)
+                       + Benchmark.pad(String.valueOf(threads), 8)
+                       + Benchmark.pad(String.valueOf(strings), 9)
+                       + Benchmark.pad(newPercent + "%", 5)
+                       + Benchmark.score(scores, 11) + "  ops/us");
+  }
+
+  /**
+   * Runs one iteration with all threads and returns the throughput in
+   * calls per microsecond.
+   */
+  private static double run(final int iteration) throws InterruptedException
+  {
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++)
+      {
+        final int id = t;
+        workers[t] = new Thread()
+          {
+            public void run()
+            {
+              work(iteration, id);
+            }
+          };
+      }
+    long start = System.nanoTime();
+    for (int t = 0; t < threads; t++)
+      workers[t].start();
+    for (int t = 0; t < threads; t++)
+      workers[t].join();
+    long time = System.nanoTime() - start;
+    return (double) ops * threads * 1000 / time;
+  }
+
+  private static void work(int iteration, int id)
+  {
+    // Make the copies up front, so that the loop only measures intern().
+    int n = Math.min(ops, 4096);
+    String[] copies = new String[n];
+    boolean[] fresh = new boolean[n];
+    int seed = id * 0x9e3779b9 + 1;
+    for (int i = 0; i < n; i++)
+      {
+        seed = seed * 1103515245 + 12345;
+        int r = (seed >>> 1) % 100;
+        fresh[i] = r < newPercent;
+        if (! fresh[i])
+          copies[i] = new String(pool[(seed >>> 8) % strings]);
+      }
+
+    String prefix = "intern.bench.t" + id + "." + iteration + ".";
+    int hash = 0;
+    for (int i = 0; i < ops; i++)
+      {
+        int j = i % n;
+        String s = fresh[j] ? prefix + i : copies[j];
+        hash += System.identityHashCode(s.intern());
+      }
+    sink += hash;
+  }
+}
@@ -0,0 +1,173 @@
+/* ReflectionBenchmark.java -- Cost of reflective method invocation.
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath examples.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA. */
+
+package gnu.classpath.examples.lang;
+
+import gnu.classpath.examples.Benchmark;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Compares the cost of <code>Method.invoke()</code> and
+ * <code>Constructor.newInstance()</code> through the VM with the cost
+ * through generated accessors.  Method and Constructor generate an
+ * accessor once a member has been invoked often enough, but never for
+ * a private member; so the benchmark calls a private method and
+ * constructor, made accessible, for the VM path, and public twins of
+ * them for the generated path.  A direct call gives the baseline.
+ *
+ * Each iteration makes a fixed number of calls per benchmark; warmup
+ * iterations are discarded and the mean time per call is reported with
+ * its 99.9% confidence interval.  Options:
+ * <pre>
+ *   -wi &lt;n&gt;    warmup iterations (default 3)
+ *   -i &lt;n&gt;     measurement iterations (default 10)
+ *   -ops &lt;n&gt;   calls per benchmark and iteration (default 1000000)
+ * </pre>
+ *
+ * Run with <code>-Dgnu.java.lang.reflect.inflationThreshold=0</code>
+ * to see the public members go through the VM as well.
+ */
+public class ReflectionBenchmark
+{
+  private static int warmupIterations = 3;
+  private static int iterations = 10;
+  private static int ops = 1000000;
+
+  private static final String[] NAMES =
+  {
+    "direct", "invoke.vm", "invoke.generated", "newInstance.vm",
+    "newInstance.generated"
+  };
+
+  /** The class whose members are invoked. */
+  public static class Target
+  {
+    int value;
+
+    public Target()
+    {
+    }
+
+    private Target(int value)
+    {
+      this.value = value;
+    }
+
+    public int add(int a, int b)
+    {
+      return a + b + value;
+    }
+
+    private int addPrivate(int a, int b)
+    {
+      return a + b + value;
+    }
+  }
+
+  private static Target target = new Target();
+  private static Method publicMethod;
+  private static Method privateMethod;
+  private static Constructor publicConstructor;
+  private static Constructor privateConstructor;
+
+  /** Keeps the results alive, so the calls cannot be optimized away. */
+  private static volatile int sink;
+
+  public static void main(String[] args) throws Exception
+  {
+    for (int i = 0; i < args.length; i++)
+      {
+        if (args[i].equals("-wi"))
+          warmupIterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-i"))
+          iterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-ops"))
+          ops = Integer.parseInt(args[++i]);
+        else
+          {
+            System.err.println("usage: ReflectionBenchmark [-wi n] [-i n] "
+                               + "[-ops n]");
+            System.exit(1);
+          }
+      }
+
+    publicMethod = Target.class.getMethod("add", int.class, int.class);
+    privateMethod = Target.class.getDeclaredMethod("addPrivate", int.class,
+                                                   int.class);
+    privateMethod.setAccessible(true);
+    publicConstructor = Target.class.getConstructor();
+    privateConstructor = Target.class.getDeclaredConstructor(int.class);
+    privateConstructor.setAccessible(true);
+
+    System.out.println("Benchmark                    Score      Error  Units");
+    for (int b = 0; b < NAMES.length; b++)
+      {
+        for (int i = 0; i < warmupIterations; i++)
+          run(b);
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++)
+          scores[i] = run(b);
+
+        System.out.println(Benchmark.pad(NAMES[b], -22)
+                           + Benchmark.score(scores, 11) + "  ns/op");
+      }
+  }
+
+  /**
+   * Runs one iteration of a benchmark and returns the time per call in
+   * nanoseconds.
+   */
+  private static double run(int benchmark) throws Exception
+  {
+    Object[] args = { Integer.valueOf(1), Integer.valueOf(2) };
+    Object[] noArgs = new Object[0];
+    Object[] oneArg = { Integer.valueOf(3) };
+    int sum = 0;
+    long start = System.nanoTime();
+    switch (benchmark)
+      {
+      case 0:
+        for (int i = 0; i < ops; i++)
+          sum += target.add(i, 2);
+        break;
+      case 1:
+        for (int i = 0; i < ops; i++)
+          sum += ((Integer) privateMethod.invoke(target, args)).intValue();
+        break;
+      case 2:
+        for (int i = 0; i < ops; i++)
+          sum += ((Integer) publicMethod.invoke(target, args)).intValue();
+        break;
+      case 3:
+        for (int i = 0; i < ops; i++)
+          sum += ((Target) privateConstructor.newInstance(oneArg)).value;
+        break;
+      case 4:
+        for (int i = 0; i < ops; i++)
+          sum += ((Target) publicConstructor.newInstance(noArgs)).value;
+        break;
+      }
+    long time = System.nanoTime() - start;
+    sink += sum;
+    return (double) time / ops;
+  }
+}
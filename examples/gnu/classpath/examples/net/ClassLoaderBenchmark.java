@@ -0,0 +1,247 @@
+/* ClassLoaderBenchmark.java -- Startup benchmark for URLClassLoader.
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath examples.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA. */
+
+package gnu.classpath.examples.net;
+
+import gnu.classpath.examples.Benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Measures how long a fresh <code>URLClassLoader</code> takes to load
+ * a number of classes spread over many jar files, the way an
+ * application starts up with a long class path.  Every class lives in
+ * a package of its own jar, and the classes are loaded starting with
+ * the last jar, so a loader that probes the jars one after another
+ * does the most work.  Each startup also looks up a number of classes
+ * and resources that do not exist.
+ *
+ * Each iteration is one startup; warmup iterations are discarded and
+ * the mean time is reported with its 99.9% confidence interval.
+ * Options:
+ * <pre>
+ *   -wi &lt;n&gt;      warmup iterations (default 3)
+ *   -i &lt;n&gt;       measurement iterations (default 10)
+ *   -jars &lt;m&gt;    number of jar files (default 300)
+ *   -classes &lt;n&gt; number of classes (default 3000)
+ *   -missing &lt;n&gt; number of lookups that fail (default 1000)
+ *   -index        put a META-INF/INDEX.LIST into the first jar, which
+ *                 names the others in its Class-Path
+ * </pre>
+ * To measure the class data cache, run with the system property
+ * <code>gnu.java.net.loader.classDataCache</code> set to a scratch
+ * directory; the warmup iterations fill it.
+ */
+public class ClassLoaderBenchmark
+{
+  private static int warmupIterations = 3;
+  private static int iterations = 10;
+  private static int jars = 300;
+  private static int classes = 3000;
+  private static int missing = 1000;
+  private static boolean index;
+
+  public static void main(String[] args) throws Exception
+  {
+    for (int i = 0; i < args.length; i++)
+      {
+        if (args[i].equals("-wi"))
+          warmupIterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-i"))
+          iterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-jars"))
+          jars = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-classes"))
+          classes = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-missing"))
+          missing = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-index"))
+          index = true;
+        else
+          {
+            System.err.println("usage: ClassLoaderBenchmark [-wi n] [-i n] "
+                               + "[-jars m] [-classes n] [-missing n] "
+                               + "[-index]");
+            System.exit(1);
+          }
+      }
+
+    File dir = File.createTempFile("clbench", "");
+    dir.delete();
+    dir.mkdir();
+    try
+      {
+        URL[] urls = writeJars(dir);
+        String[] names = new String[classes];
+        for (int i = 0; i < classes; i++)
+          {
+            // Last jar first.
+            int jar = jars - 1 - i % jars;
+            names[i] = className(jar, i / jars);
+          }
+
+        for (int i = 0; i < warmupIterations; i++)
+          startup(urls, names);
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++)
+          scores[i] = startup(urls, names);
+
+        System.out.println("Benchmark            Jars  Classes  Index"
+                           + "      Score      Error  Units");
+        System.out.println(Benchmark.pad("startup", -20)
+                           + Benchmark.pad(String.valueOf(jars), 5)
+                           + Benchmark.pad(String.valueOf(classes), 9)
+                           + Benchmark.pad(String.valueOf(index), 7)
+                           + Benchmark.score(scores, 11) + "  ms/op");
+      }
+    finally
+      {
+        File[] files = dir.listFiles();
+        for (int i = 0; i < files.length; i++)
+          files[i].delete();
+        dir.delete();
+      }
+  }
+
+  private static String className(int jar, int n)
+  {
+    return "bench.jar" + jar + ".C" + n;
+  }
+
+  /**
+   * Writes the jar files and returns the URLs to give the class
+   * loader.
+   */
+  private static URL[] writeJars(File dir) throws IOException
+  {
+    File[] files = new File[jars];
+    for (int jar = 0; jar < jars; jar++)
+      files[jar] = new File(dir, "lib" + jar + ".jar");
+
+    for (int jar = 0; jar < jars; jar++)
+      {
+        Manifest manifest = new Manifest();
+        Attributes main = manifest.getMainAttributes();
+        main.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (index && jar == 0)
+          {
+            StringBuffer cp = new StringBuffer();
+            for (int i = 1; i < jars; i++)
+              cp.append(files[i].getName()).append(' ');
+            main.put(Attributes.Name.CLASS_PATH, cp.toString().trim());
+          }
+        JarOutputStream out
+          = new JarOutputStream(new FileOutputStream(files[jar]), manifest);
+        if (index && jar == 0)
+          {
+            StringBuffer list = new StringBuffer("JarIndex-Version: 1.0\n\n");
+            for (int i = 0; i < jars; i++)
+              list.append(files[i].getName()).append('\n')
+                .append("bench/jar").append(i).append("\n\n");
+            out.putNextEntry(new JarEntry("META-INF/INDEX.LIST"));
+            out.write(list.toString().getBytes("UTF-8"));
+          }
+        for (int n = 0; jar + n * jars < classes; n++)
+          {
+            String name = className(jar, n).replace('.', '/');
+            out.putNextEntry(new JarEntry(name + ".class"));
+            out.write(classFile(name));
+          }
+        out.close();
+      }
+
+    if (index)
+      return new URL[] { files[0].toURL() };
+    URL[] urls = new URL[jars];
+    for (int jar = 0; jar < jars; jar++)
+      urls[jar] = files[jar].toURL();
+    return urls;
+  }
+
+  /**
+   * Returns the smallest valid class file: a public class without
+   * members that extends java.lang.Object.
+   */
+  private static byte[] classFile(String internalName) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0);                  // minor version
+    out.writeShort(49);                 // major version
+    out.writeShort(5);                  // constant pool count
+    out.writeByte(7);                   // #1 Class #2
+    out.writeShort(2);
+    out.writeByte(1);                   // #2 Utf8
+    out.writeUTF(internalName);
+    out.writeByte(7);                   // #3 Class #4
+    out.writeShort(4);
+    out.writeByte(1);                   // #4 Utf8
+    out.writeUTF("java/lang/Object");
+    out.writeShort(0x21);               // ACC_PUBLIC | ACC_SUPER
+    out.writeShort(1);                  // this class
+    out.writeShort(3);                  // super class
+    out.writeShort(0);                  // interfaces
+    out.writeShort(0);                  // fields
+    out.writeShort(0);                  // methods
+    out.writeShort(0);                  // attributes
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Creates a class loader, loads all classes with it and makes the
+   * failing lookups.  Returns the time taken in milliseconds.
+   */
+  private static double startup(URL[] urls, String[] names)
+    throws ClassNotFoundException
+  {
+    long start = System.nanoTime();
+    URLClassLoader loader = new URLClassLoader(urls, null);
+    for (int i = 0; i < names.length; i++)
+      if (loader.loadClass(names[i]) == null)
+        throw new ClassNotFoundException(names[i]);
+    for (int i = 0; i < missing; i++)
+      {
+        String name = "bench.missing" + (i % 50) + ".M" + i;
+        try
+          {
+            loader.loadClass(name);
+            throw new IllegalStateException("found " + name);
+          }
+        catch (ClassNotFoundException expected)
+          {
+          }
+        if (loader.getResource("bench/jar" + (i % jars) + "/r" + i) != null)
+          throw new IllegalStateException("found resource r" + i);
+      }
+    return (System.nanoTime() - start) / 1e6;
+  }
+}
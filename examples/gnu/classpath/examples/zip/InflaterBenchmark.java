@@ -0,0 +1,237 @@
+/* InflaterBenchmark.java -- Throughput benchmark for the Inflater.
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath examples.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA. */
+
+package gnu.classpath.examples.zip;
+
+import gnu.classpath.examples.Benchmark;
+
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A micro benchmark for the decompressor, run in the style of JMH:
+ * for every input it runs a number of timed warmup iterations, which
+ * are discarded, followed by measurement iterations, and reports the
+ * mean throughput in MB of inflated output per second together with
+ * the 99.9% confidence interval.
+ *
+ * To compare two implementations run it once with each of them.
+ * Options:
+ * <pre>
+ *   -wi &lt;n&gt;    warmup iterations (default 5)
+ *   -i &lt;n&gt;     measurement iterations (default 10)
+ *   -r &lt;ms&gt;    length of one iteration in milliseconds (default 1000)
+ *   -s &lt;bytes&gt; size of the uncompressed inputs (default 4MB)
+ * </pre>
+ */
+public class InflaterBenchmark
+{
+  private static int warmupIterations = 5;
+  private static int iterations = 10;
+  private static long iterationTime = 1000;
+  private static int size = 4 << 20;
+
+  public static void main(String[] args) throws DataFormatException
+  {
+    for (int i = 0; i < args.length; i++)
+      {
+        if (args[i].equals("-wi"))
+          warmupIterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-i"))
+          iterations = Integer.parseInt(args[++i]);
+        else if (args[i].equals("-r"))
+          iterationTime = Long.parseLong(args[++i]);
+        else if (args[i].equals("-s"))
+          size = Integer.parseInt(args[++i]);
+        else
+          {
+            System.err.println("usage: InflaterBenchmark [-wi n] [-i n] "
+                               + "[-r ms] [-s bytes]");
+            System.exit(1);
+          }
+      }
+
+    System.out.println("Benchmark              Level   Ratio     "
+                       + "Score      Error  Units");
+    String[] names = { "text", "logs", "binary", "random", "zeros" };
+    for (int i = 0; i < names.length; i++)
+      {
+        byte[] data = generate(names[i]);
+        run(names[i], data, Deflater.BEST_SPEED);
+        run(names[i], data, Deflater.DEFAULT_COMPRESSION);
+        run(names[i], data, Deflater.BEST_COMPRESSION);
+      }
+  }
+
+  /**
+   * Generates size bytes of test input of the given kind.
+   */
+  private static byte[] generate(String kind)
+  {
+    Random random = new Random(42);
+    byte[] data = new byte[size];
+    if (kind.equals("text"))
+      {
+        /* Words drawn from a small vocabulary with a skewed
+         * distribution, which gives short matches and many literals.
+         */
+        String[] words = new String[512];
+        for (int i = 0; i < words.length; i++)
+          {
+            StringBuffer word = new StringBuffer();
+            int len = 2 + random.nextInt(8);
+            for (int j = 0; j < len; j++)
+              word.append((char) ('a' + random.nextInt(26)));
+            words[i] = word.toString();
+          }
+        int pos = 0;
+        while (pos < size)
+          {
+            int n = random.nextInt(words.length);
+            pos = append(data, pos, words[n * n / words.length]);
+            pos = append(data, pos, random.nextInt(12) == 0 ? ".\n" : " ");
+          }
+      }
+    else if (kind.equals("logs"))
+      {
+        /* Long repeated prefixes, i.e. long matches. */
+        int pos = 0;
+        while (pos < size)
+          pos = append(data, pos, "2026-10-18 12:" + (10 + random.nextInt(50))
+                       + ":" + (10 + random.nextInt(50))
+                       + " INFO  [gnu.classpath.examples.zip] request "
+                       + random.nextInt(100000) + " served in "
+                       + random.nextInt(1000) + " ms\n");
+      }
+    else if (kind.equals("binary"))
+      {
+        /* Copies of earlier data at all distances, sprinkled with
+         * random bytes.
+         */
+        for (int i = 0; i < size; )
+          {
+            if (i < 1024 || random.nextInt(8) == 0)
+              data[i++] = (byte) random.nextInt(256);
+            else
+              {
+                int dist = 1 + random.nextInt(Math.min(i, 32768));
+                int len = 3 + random.nextInt(64);
+                for (int j = 0; j < len && i < size; j++, i++)
+                  data[i] = data[i - dist];
+              }
+          }
+      }
+    else if (kind.equals("random"))
+      random.nextBytes(data);
+    return data;
+  }
+
+  private static int append(byte[] data, int pos, String s)
+  {
+    for (int i = 0; i < s.length() && pos < data.length; i++)
+      data[pos++] = (byte) s.charAt(i);
+    return pos;
+  }
+
+  /**
+   * Compresses data with the given level and measures how fast it is
+   * inflated again.
+   */
+  private static void run(String name, byte[] data, int level)
+    throws DataFormatException
+  {
+    Deflater deflater = new Deflater(level);
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] compressed = new byte[data.length + data.length / 100 + 1024];
+    int clen = 0;
+    while (!deflater.finished())
+      clen += deflater.deflate(compressed, clen, compressed.length - clen);
+    deflater.end();
+
+    Inflater inflater = new Inflater();
+    byte[] output = new byte[64 * 1024];
+
+    /* Check the round trip once, so that we don't measure garbage. */
+    if (inflate(inflater, compressed, clen, output, data) != data.length)
+      throw new DataFormatException(name + ": round trip failed");
+
+    for (int i = 0; i < warmupIterations; i++)
+      iteration(inflater, compressed, clen, output);
+    double[] scores = new double[iterations];
+    for (int i = 0; i < iterations; i++)
+      scores[i] = iteration(inflater, compressed, clen, output);
+
+    String ratio = Benchmark.format(100.0 * clen / data.length) + "%";
+    System.out.println(Benchmark.pad(name, -20)
+                       + Benchmark.pad(String.valueOf(level), 8)
+                       + Benchmark.pad(ratio, 8)
+                       + Benchmark.score(scores, 10) + "  MB/s");
+  }
+
+  /**
+   * Inflates the input repeatedly for iterationTime milliseconds and
+   * returns the throughput in MB/s.
+   */
+  private static double iteration(Inflater inflater, byte[] compressed,
+                                  int clen, byte[] output)
+    throws DataFormatException
+  {
+    long bytes = 0;
+    long start = System.nanoTime();
+    long end = start + iterationTime * 1000000L;
+    long now;
+    do
+      {
+        bytes += inflate(inflater, compressed, clen, output, null);
+        now = System.nanoTime();
+      }
+    while (now < end);
+    return bytes / ((now - start) / 1e9) / (1 << 20);
+  }
+
+  /**
+   * Inflates the input once and returns the length of the output.  If
+   * expected is not null the output is compared to it.
+   */
+  private static int inflate(Inflater inflater, byte[] compressed, int clen,
+                             byte[] output, byte[] expected)
+    throws DataFormatException
+  {
+    inflater.reset();
+    inflater.setInput(compressed, 0, clen);
+    int total = 0;
+    while (!inflater.finished())
+      {
+        int n = inflater.inflate(output);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new DataFormatException("truncated input");
+        if (expected != null)
+          for (int i = 0; i < n; i++)
+            if (total + i >= expected.length
+                || output[i] != expected[total + i])
+              return -1;
+        total += n;
+      }
+    return total;
+  }
+}
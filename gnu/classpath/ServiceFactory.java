@@ -48,15 +48,21 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.net.URLClassLoader;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.ServiceConfigurationError;
+import java.util.WeakHashMap;
 
 /**
  * A factory for plug-ins that conform to a service provider
@@ -150,6 +156,15 @@ import java.util.ServiceConfigurationError;
  * com.acme.DeepThinker
  * </pre>
  *
+ * <p><b>Caching</b>
+ *
+ * <p>When a class loader and all of its ancestors are {@link
+ * URLClassLoader}s, the configuration files of a service are read
+ * through it only once.  The provider class names they list are kept
+ * in an index, which is dropped when the URLs of any of these loaders
+ * change.  The providers themselves are still loaded and instantiated
+ * one at a time, as the returned iterators advance.
+ *
  * <p><b>Thread Safety</b>
  *
  * <p>It is safe to use <code>ServiceFactory</code> from multiple
@@ -171,6 +186,13 @@ import java.util.ServiceConfigurationError;
 public final class ServiceFactory
 {
 
+  /**
+   * The indexes of the configuration files read through each class
+   * loader, by service name.
+   */
+  private static final Map<ClassLoader,Map<String,ProviderIndex>> indexes
+    = new WeakHashMap<ClassLoader,Map<String,ProviderIndex>>();
+
   /**
    * Declared private in order to prevent constructing instances of
    * this utility class.
@@ -266,6 +288,8 @@ public final class ServiceFactory
   {
     String resourceName;
     Enumeration<URL> urls;
+    URL[][] loaderURLs;
+    ProviderIndex index;
 
     if (spi == null)
       throw new IllegalArgumentException();
@@ -273,6 +297,15 @@ public final class ServiceFactory
     if (loader == null)
       loader = ClassLoader.getSystemClassLoader();
 
+    loaderURLs = getURLs(loader);
+    if (loaderURLs != null)
+      {
+        index = getIndex(loader, spi.getName(), loaderURLs);
+        if (index != null)
+          return new ServiceIterator<P>(spi, index, loader, error,
+                                        AccessController.getContext());
+      }
+
     resourceName = "META-INF/services/" + spi.getName();
     try
       {
@@ -295,7 +328,14 @@ public final class ServiceFactory
           }
       }
 
-    return new ServiceIterator<P>(spi, urls, loader, error,
+    if (loaderURLs == null)
+      return new ServiceIterator<P>(spi, urls, loader, error,
+                                    AccessController.getContext());
+
+    index = readIndex(urls, error, loaderURLs);
+    if (index.complete)
+      putIndex(loader, spi.getName(), index);
+    return new ServiceIterator<P>(spi, index, loader, error,
                                   AccessController.getContext());
   }
 
@@ -324,6 +364,276 @@ public final class ServiceFactory
   }
 
 
+  /**
+   * Forgets the configuration files of a service that were read
+   * through a class loader, so that the next lookup reads them again.
+   *
+   * @param spi the service provider interface.
+   *
+   * @param loader the class loader, or <code>null</code> for the
+   * system class loader.
+   */
+  public static void clearCache(Class<?> spi, ClassLoader loader)
+  {
+    if (loader == null)
+      loader = ClassLoader.getSystemClassLoader();
+    synchronized (indexes)
+      {
+        Map<String,ProviderIndex> byName = indexes.get(loader);
+        if (byName != null)
+          byName.remove(spi.getName());
+      }
+  }
+
+
+  /**
+   * Returns the URLs of a class loader and of each of its ancestors,
+   * or <code>null</code> if one of them is not a {@link URLClassLoader}
+   * and the resources it finds thus may change at any time.
+   */
+  private static URL[][] getURLs(ClassLoader loader)
+  {
+    ArrayList<URL[]> urls = new ArrayList<URL[]>();
+    for (ClassLoader l = loader; l != null; l = l.getParent())
+      {
+        if (! (l instanceof URLClassLoader))
+          return null;
+        urls.add(((URLClassLoader) l).getURLs());
+      }
+    return urls.toArray(new URL[urls.size()][]);
+  }
+
+
+  /**
+   * Returns the index of the configuration files of a service that
+   * were read through a class loader, or <code>null</code> if they have
+   * not been read yet or the URLs of the loaders have changed since.
+   */
+  private static ProviderIndex getIndex(ClassLoader loader, String spiName,
+                                        URL[][] loaderURLs)
+  {
+    synchronized (indexes)
+      {
+        Map<String,ProviderIndex> byName = indexes.get(loader);
+        if (byName == null)
+          return null;
+        ProviderIndex index = byName.get(spiName);
+        if (index != null && ! index.isCurrent(loaderURLs))
+          {
+            byName.remove(spiName);
+            index = null;
+          }
+        return index;
+      }
+  }
+
+
+  /**
+   * Records the index of the configuration files of a service that
+   * were read through a class loader.
+   */
+  private static void putIndex(ClassLoader loader, String spiName,
+                               ProviderIndex index)
+  {
+    synchronized (indexes)
+      {
+        Map<String,ProviderIndex> byName = indexes.get(loader);
+        if (byName == null)
+          {
+            byName = new HashMap<String,ProviderIndex>();
+            indexes.put(loader, byName);
+          }
+        byName.put(spiName, index);
+      }
+  }
+
+
+  /**
+   * Reads configuration files into an index.
+   *
+   * @param urls the configuration files.
+   *
+   * @param error true if a {@link ServiceConfigurationError} should
+   * be thrown when a file cannot be read, rather than it merely being
+   * logged.
+   *
+   * @param loaderURLs the URLs of the loader through which the files
+   * were found, and of each of its ancestors.
+   */
+  private static ProviderIndex readIndex(Enumeration<URL> urls,
+                                         boolean error, URL[][] loaderURLs)
+  {
+    ArrayList<URL> files = new ArrayList<URL>();
+    ArrayList<String> names = new ArrayList<String>();
+    HashSet<String> seen = new HashSet<String>();
+    int[] sources = new int[16];
+    boolean complete = true;
+
+    while (urls.hasMoreElements())
+      {
+        URL url = urls.nextElement();
+        BufferedReader reader;
+        try
+          {
+            reader = new BufferedReader(new InputStreamReader(
+              url.openStream(), "UTF-8"));
+            log(SERVICE_LOADING_VERBOSE, null, "opened {0}", url);
+          }
+        catch (Exception ex)
+          {
+            log(SERVICE_LOADING_WARNING, ex, "cannot open {0}", url);
+            if (error)
+              throw new ServiceConfigurationError("Cannot open " + url, ex);
+            complete = false;
+            continue;
+          }
+
+        int file = files.size();
+        files.add(url);
+        try
+          {
+            String line;
+            while ((line = reader.readLine()) != null)
+              {
+                line = getProviderName(line);
+                if (line == null || ! seen.add(line))
+                  continue;
+                int n = names.size();
+                if (n == sources.length)
+                  {
+                    int[] newSources = new int[n * 2];
+                    System.arraycopy(sources, 0, newSources, 0, n);
+                    sources = newSources;
+                  }
+                sources[n] = file;
+                names.add(line);
+              }
+          }
+        catch (IOException readProblem)
+          {
+            log(SERVICE_LOADING_WARNING, readProblem,
+                "IOException upon reading {0}", url);
+            if (error)
+              throw new ServiceConfigurationError("Error reading " + url,
+                                                  readProblem);
+            complete = false;
+          }
+        finally
+          {
+            try
+              {
+                reader.close();
+                log(SERVICE_LOADING_VERBOSE, null, "closed {0}", url);
+              }
+            catch (IOException ex)
+              {
+                log(SERVICE_LOADING_WARNING, ex, "cannot close {0}", url);
+              }
+          }
+      }
+
+    int[] indexSources = new int[names.size()];
+    System.arraycopy(sources, 0, indexSources, 0, indexSources.length);
+    return new ProviderIndex(loaderURLs,
+                             files.toArray(new URL[files.size()]),
+                             names.toArray(new String[names.size()]),
+                             indexSources, complete);
+  }
+
+
+  /**
+   * Extracts the provider class name from a line of a configuration
+   * file.
+   *
+   * @return the name, or <code>null</code> if the line is empty or
+   * holds just a comment.
+   */
+  static String getProviderName(String line)
+  {
+    // Trim comments from end of line.
+    int hashIndex = line.indexOf('#');
+    if (hashIndex != -1)
+      line = line.substring(0, hashIndex);
+
+    // Skip whitespace at the beginning and end of each line.
+    line = line.trim();
+
+    // Skip empty lines.
+    if (line.length() == 0)
+      return null;
+    return line;
+  }
+
+
+  /**
+   * The provider class names listed in the configuration files of a
+   * service, as found through a class loader.
+   */
+  private static final class ProviderIndex
+  {
+    /**
+     * The URLs of the loader and of each of its ancestors when the
+     * files were read.
+     */
+    private final URL[][] loaderURLs;
+
+    /**
+     * The configuration files.
+     */
+    final URL[] files;
+
+    /**
+     * The provider class names in the order they are listed, without
+     * duplicates.
+     */
+    final String[] names;
+
+    /**
+     * For each name, the index in <code>files</code> of the file that
+     * lists it.
+     */
+    final int[] sources;
+
+    /**
+     * False if some of the files could not be read.
+     */
+    final boolean complete;
+
+    ProviderIndex(URL[][] loaderURLs, URL[] files, String[] names,
+                  int[] sources, boolean complete)
+    {
+      this.loaderURLs = loaderURLs;
+      this.files = files;
+      this.names = names;
+      this.sources = sources;
+      this.complete = complete;
+    }
+
+    /**
+     * Returns true if the loaders still have the URLs they had when
+     * the files were read.  A URLClassLoader hands out the URL objects
+     * it was given, so they are compared by identity; this also avoids
+     * the host name lookups of URL.equals().
+     */
+    boolean isCurrent(URL[][] loaderURLs)
+    {
+      if (loaderURLs.length != this.loaderURLs.length)
+        return false;
+      for (int i = 0; i < loaderURLs.length; i++)
+        {
+          URL[] a = loaderURLs[i];
+          URL[] b = this.loaderURLs[i];
+          if (a.length != b.length)
+            return false;
+          for (int j = 0; j < a.length; j++)
+            if (a[j] != b[j])
+              return false;
+        }
+      return true;
+    }
+  }
+
+
   /**
    * An iterator over service providers that are listed in service
    * provider configuration files, which get passed as an Enumeration
@@ -345,11 +655,33 @@ public final class ServiceFactory
     /**
      * An Enumeration<URL> over the URLs that contain a resource
      * <code>META-INF/services/&lt;org.foo.SomeService&gt;</code>,
-     * as returned by {@link ClassLoader#getResources(String)}.
+     * as returned by {@link ClassLoader#getResources(String)}, or
+     * <code>null</code> when iterating over an index.
      */
     private final Enumeration<URL> urls;
 
 
+    /**
+     * The index of the configuration files, or <code>null</code> when
+     * reading them as the iterator advances.
+     */
+    private final ProviderIndex index;
+
+
+    /**
+     * The position in <code>index</code> of the next provider class
+     * name.
+     */
+    private int position;
+
+
+    /**
+     * The provider class names read so far from the configuration
+     * files, so that duplicates can be skipped.
+     */
+    private HashSet<String> seen;
+
+
     /**
      * The class loader used for loading service providers.
      */
@@ -422,6 +754,40 @@ public final class ServiceFactory
     {
       this.spi = spi;
       this.urls = urls;
+      this.index = null;
+      this.seen = new HashSet<String>();
+      this.loader = loader;
+      this.securityContext = securityContext;
+      this.error = error;
+      this.nextProvider = loadNextServiceProvider();
+    }
+
+
+    /**
+     * Constructs an Iterator that loads and initializes the services
+     * listed in an index on demand.
+     *
+     * @param spi the service provider interface which the services
+     * must implement.
+     *
+     * @param index the index of the configuration files.
+     *
+     * @param loader the ClassLoader that gets used for loading
+     * service providers.
+     *
+     * @param error true if a {@link ServiceConfigurationError}
+     *              should be thrown when an error occurs, rather
+     *              than it merely being logged.
+     *
+     * @param securityContext the security context to use when loading
+     * and initializing service providers.
+     */
+    ServiceIterator(Class<P> spi, ProviderIndex index, ClassLoader loader,
+                    boolean error, AccessControlContext securityContext)
+    {
+      this.spi = spi;
+      this.urls = null;
+      this.index = index;
       this.loader = loader;
       this.securityContext = securityContext;
       this.error = error;
@@ -462,6 +828,9 @@ public final class ServiceFactory
     {
       String line;
 
+      if (index != null)
+        return loadNextIndexedServiceProvider();
+
       if (reader == null)
         advanceReader();
 
@@ -496,61 +865,99 @@ public final class ServiceFactory
               continue;
             }
 
-	  // Trim comments from end of life.
-	  int hashIndex = line.indexOf('#');
-	  if (hashIndex != -1)
-	    line = line.substring(0, hashIndex);
-
-          // Skip whitespace at the beginning and end of each line.
-          line = line.trim();
-
-          // Skip empty lines.
-          if (line.length() == 0)
-            continue;
-
-          // Skip comment lines.
-          if (line.charAt(0) == '#')
+          line = getProviderName(line);
+          if (line == null || ! seen.add(line))
             continue;
 
           try
             {
-              log(SERVICE_LOADING_VERBOSE, null,
-                  "Loading service provider \"{0}\", specified"
-                  + " by \"META-INF/services/{1}\" in {2}.",
-                  line, spi.getName(), currentURL);
-
-              /* Load the class in the security context that was
-               * active when calling lookupProviders.
-               */
-              return AccessController.doPrivileged(
-                new ServiceProviderLoadingAction<P>(spi, line, loader),
-                securityContext);
+              return loadServiceProvider(line);
             }
           catch (Exception ex)
             {
-              String msg = "Cannot load service provider class \"{0}\","
-                + " specified by \"META-INF/services/{1}\" in {2}";
-              if (ex instanceof PrivilegedActionException
-                  && ex.getCause() instanceof ClassCastException)
-                msg = "Service provider class \"{0}\" is not an instance"
-                  + " of \"{1}\". Specified"
-                  + " by \"META-INF/services/{1}\" in {2}.";
-
-              log(SERVICE_LOADING_WARNING, ex,
-		  msg, line, spi.getName(), currentURL);
-              if (error)
-                throw new ServiceConfigurationError("Cannot load service "+
-                                                    "provider class " +
-                                                    line + " specified by "+
-                                                    "\"META-INF/services/"+
-                                                    spi.getName() + "\" in "+
-                                                    currentURL, ex);
+              failedToLoad(line, ex);
               continue;
             }
         }
     }
 
 
+    /**
+     * Loads the next service provider listed in the index.
+     */
+    private P loadNextIndexedServiceProvider()
+    {
+      while (position < index.names.length)
+        {
+          String name = index.names[position];
+          currentURL = index.files[index.sources[position]];
+          position++;
+          try
+            {
+              return loadServiceProvider(name);
+            }
+          catch (Exception ex)
+            {
+              failedToLoad(name, ex);
+            }
+        }
+      currentURL = null;
+      return null;
+    }
+
+
+    /**
+     * Loads and instantiates a service provider.
+     *
+     * @param name the name of the provider class.
+     */
+    private P loadServiceProvider(String name)
+      throws PrivilegedActionException
+    {
+      log(SERVICE_LOADING_VERBOSE, null,
+          "Loading service provider \"{0}\", specified"
+          + " by \"META-INF/services/{1}\" in {2}.",
+          name, spi.getName(), currentURL);
+
+      /* Load the class in the security context that was
+       * active when calling lookupProviders.
+       */
+      return AccessController.doPrivileged(
+        new ServiceProviderLoadingAction<P>(spi, name, loader),
+        securityContext);
+    }
+
+
+    /**
+     * Reports that a service provider could not be loaded, and throws
+     * a {@link ServiceConfigurationError} if errors are not just to be
+     * logged.
+     *
+     * @param name the name of the provider class.
+     * @param ex the exception that occurred.
+     */
+    private void failedToLoad(String name, Exception ex)
+    {
+      String msg = "Cannot load service provider class \"{0}\","
+        + " specified by \"META-INF/services/{1}\" in {2}";
+      if (ex instanceof PrivilegedActionException
+          && ex.getCause() instanceof ClassCastException)
+        msg = "Service provider class \"{0}\" is not an instance"
+          + " of \"{1}\". Specified"
+          + " by \"META-INF/services/{1}\" in {2}.";
+
+      log(SERVICE_LOADING_WARNING, ex,
+          msg, name, spi.getName(), currentURL);
+      if (error)
+        throw new ServiceConfigurationError("Cannot load service "+
+                                            "provider class " +
+                                            name + " specified by "+
+                                            "\"META-INF/services/"+
+                                            spi.getName() + "\" in "+
+                                            currentURL, ex);
+    }
+
+
     private void advanceReader()
     {
       do
@@ -49,6 +49,7 @@ import gnu.classpath.jdwp.id.ObjectId;
 import gnu.classpath.jdwp.id.ReferenceTypeId;
 import gnu.classpath.jdwp.util.JdwpString;
 import gnu.classpath.jdwp.util.Signature;
+import gnu.java.lang.reflect.ReflectionAccess;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -436,6 +437,7 @@ public class VirtualMachineCommandSet
       }
 
     VMVirtualMachine.redefineClasses (types, bytecodes);
+    ReflectionAccess.classesRedefined ();
   }
 
   private void executeSetDefaultStratum(ByteBuffer bb, DataOutputStream os)
@@ -0,0 +1,101 @@
+/* FieldAccessor.java -- Generated access to the fields of a class
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.io;
+
+/**
+ * Reads and writes the serializable fields of the objects of one
+ * class without reflection.  Serialization generates a subclass of
+ * this class in the package of a class once it has read or written
+ * enough objects of it; see <code>java.io.FieldAccessorFactory</code>.
+ * The fields of each type are numbered from zero, and each method
+ * selects the field by its number.
+ *
+ * This class is public only so that classes in other packages can
+ * extend it; the accessors themselves are not public.
+ */
+public abstract class FieldAccessor
+{
+  protected FieldAccessor()
+  {
+  }
+
+  public abstract boolean getBoolean(Object obj, int field);
+
+  public abstract byte getByte(Object obj, int field);
+
+  public abstract char getChar(Object obj, int field);
+
+  public abstract short getShort(Object obj, int field);
+
+  public abstract int getInt(Object obj, int field);
+
+  public abstract long getLong(Object obj, int field);
+
+  public abstract float getFloat(Object obj, int field);
+
+  public abstract double getDouble(Object obj, int field);
+
+  public abstract Object getObject(Object obj, int field);
+
+  public abstract void setBoolean(Object obj, int field, boolean value);
+
+  public abstract void setByte(Object obj, int field, byte value);
+
+  public abstract void setChar(Object obj, int field, char value);
+
+  public abstract void setShort(Object obj, int field, short value);
+
+  public abstract void setInt(Object obj, int field, int value);
+
+  public abstract void setLong(Object obj, int field, long value);
+
+  public abstract void setFloat(Object obj, int field, float value);
+
+  public abstract void setDouble(Object obj, int field, double value);
+
+  public abstract void setObject(Object obj, int field, Object value);
+
+  /**
+   * Returns the error a generated method throws for a field number it
+   * does not know.
+   */
+  protected static InternalError noSuchField(int field)
+  {
+    return new InternalError("no such field: " + field);
+  }
+}
@@ -47,46 +47,29 @@ package gnu.java.io;
  * not to create hashtable buckets and Integer instances for each
  * mapping.
  *
+ * The map is an open-addressed table with linear probing, whose size
+ * is a power of two.  When it fills up, the entries are not rehashed
+ * all at once, which would stall for a long time in a map with
+ * millions of entries.  Instead each later put() moves a few slots of
+ * the old table into the new one, and lookups look at both tables
+ * until the old one is empty.
+ *
  * @author Fridtjof Siebert (siebert@aicas.com)
  */
 public class ObjectIdentityMap2Int
 {
 
-
   /**
-   * Prime numbers used as size of array. We need the size to be a
-   * prime number since the delta used for conflict resulution must
-   * not have any common divisors with the length.
+   * The initial size of the table; a power of two.
    */
-  private static final int[] PRIMES = {
-    0x1f,
-    0x3d,
-    0x7f,
-    0xfb,
-    0x1fd,
-    0x3fd,
-    0x7f7,
-    0xffd,
-    0x1fff,
-    0x3ffd,
-    0x7fed,
-    0xfff1,
-    0x1ffff,
-    0x3fffb,
-    0x7ffff,
-    0xffffd,
-    0x1ffff7,
-    0x3ffffd,
-    0x7ffff1,
-    0xfffffd,
-    0x1ffffd9,
-    0x3fffffb,
-    0x7ffffd9,
-    0xfffffc7,
-    0x1ffffffd,
-    0x3fffffdd,
-    0x7fffffff};
+  private static final int INITIAL_CAPACITY = 64;
 
+  /**
+   * The number of slots of the old table that each put() moves.  The
+   * table grows when it is half full, so this must be at least 2 for
+   * the old table to be empty before the new one is half full.
+   */
+  private static final int MOVE_STEP = 8;
 
   /**
    * Object to be used instead of "null"
@@ -95,45 +78,38 @@ public class ObjectIdentityMap2Int
 
 
   /**
-   * The objects in this map:
-   *
-   * invariant
-   *   objectTable.size == PRIMES[cap]
+   * The objects in this map; null marks an empty slot.
    */
   private Object[] objectTable;
 
 
   /**
    * The corresponding integer ids.
-   *
-   * invariant
-   *   intTable.size == PRIMES[cap]
    */
   private int[] intTable;
 
 
   /**
-   * The number of entries in this map.
-   *
-   * invariant
-   *   size < limit
+   * 32 minus the log2 of the table size; shifts a hash code to a slot.
    */
-  private int size = 0;
+  private int shift;
 
 
   /**
-   * The index in primes of the size of the tables.
+   * The number of entries in objectTable.
    */
-  private int cap = 0;
+  private int size;
 
 
   /**
-   * The limit for size at which the table size is increased.
-   *
-   * invariant
-   *   limit = PRIMES[cap] / 4 * 3;
+   * The table being moved into objectTable, or null.  Slots below
+   * moved have been moved already; their entries are left in place,
+   * so that the probe sequences of the others stay intact.
    */
-  private int limit = 0;
+  private Object[] oldObjectTable;
+  private int[] oldIntTable;
+  private int oldShift;
+  private int moved;
 
 
   /**
@@ -141,35 +117,26 @@ public class ObjectIdentityMap2Int
    */
   public ObjectIdentityMap2Int()
   {
-    alloc(0);
+    alloc(INITIAL_CAPACITY);
   }
 
 
   /**
    * Helper function to alloc the object and int array for the given
-   * capacity.  Set limit, reset size to 0.
-   *
-   * No elements will be stored in the newly allocated arrays.
+   * capacity.  Resets size to 0.
    *
-   * @param c the capacity: this is an index in PRIMES, PRIMES[c]
-   * gives the size of the arrays.
+   * @param len the size of the arrays, a power of two.
    *
-   * @throws InternalError if c >= PRIMES.length (in this case, a
-   * normal Hashtable would throw an OutOfMemoryError or a
-   * NegativeArraySizeException since the array size exceeds the range
-   * of positive integers).
+   * @throws InternalError if the table cannot grow any more.
    */
-  private void alloc(int c)
+  private void alloc(int len)
   {
-    if (c >= PRIMES.length)
+    if (len <= 0)
       throw new InternalError("Hash table size overflow");
 
-    cap = c;
-    int len = PRIMES[c];
     objectTable = new Object[len];
-    intTable    = new int[len];
-    limit = len / 4 * 3;
-
+    intTable = new int[len];
+    shift = 32 - Integer.numberOfTrailingZeros(len);
     size = 0;
   }
 
@@ -187,7 +154,7 @@ public class ObjectIdentityMap2Int
    * @throws IllegalArgumentException if i<0
    *
    * @throws InternalError if hash tables has grown to more then
-   * 0x7fffffff entries (ie., size >= 0x7fffffff*3/4).
+   * 0x40000000 entries.
    */
   public void put(Object o, int i)
   {
@@ -195,68 +162,100 @@ public class ObjectIdentityMap2Int
       throw new IllegalArgumentException("int argument must be postive: "+i);
 
     o = (o == null) ? NIL : o;
-    int s = slot(o);
-    Object[] ot = objectTable;
-    intTable[s] = i;
-    if (objectTable[s] == null)
+    int s = slot(objectTable, shift, o);
+    if (objectTable[s] != null)
+      {
+        intTable[s] = i;
+        return;
+      }
+    if (oldObjectTable != null)
       {
-        objectTable[s] = o;
-        size++;
-        if (size >= limit)
+        int t = slot(oldObjectTable, oldShift, o);
+        if (oldObjectTable[t] != null && t >= moved)
           {
-            rehash();
+            oldIntTable[t] = i;
+            return;
           }
+        move();
+        // Moving may have taken the slot.
+        if (objectTable[s] != null)
+          s = slot(objectTable, shift, o);
       }
+    objectTable[s] = o;
+    intTable[s] = i;
+    size++;
+    if (size >= objectTable.length >>> 1)
+      grow();
   }
 
 
   /**
    * Helper function to find the index of a free or existing slot for
-   * object o
+   * object o in the given table.
    *
    * ensure
-   *   ((objectTable[result] != null) IMPLIES (objectTable[result] == o));
+   *   ((table[result] != null) IMPLIES (table[result] == o));
    *
    * @param o an object, must not be null.
    *
    * @return an index of o
    */
-  private int slot(Object o)
+  private static int slot(Object[] table, int shift, Object o)
   {
-    Object[] ot = objectTable;
-    int hc     = System.identityHashCode(o);
-    int len    = ot.length;
-    int result = hc % len;
-    result = result < 0 ? -result : result;
-    int delta  = 16 - (hc & 15);
-    Object existing = ot[result];
+    int mask = table.length - 1;
+    int result = (System.identityHashCode(o) * 0x9e3779b9) >>> shift;
+    Object existing = table[result];
     while ((existing != null) && (existing != o))
       {
-        result += delta;
-        if (result >= len)
-          result -= len;
-        existing = ot[result];
+        result = (result + 1) & mask;
+        existing = table[result];
       }
     return result;
   }
 
 
   /**
-   * Helper function for put() to increaes the capacity of this table
-   * to the next size (approx. double the size).  Keep the mapping and
-   * the size unchanged.
-   *
-   * ensure
-   *   (cap == \old cap+1);
+   * Starts moving the entries into a table of twice the size.  Any
+   * earlier move is finished first.
    */
-  private void rehash()
+  private void grow()
   {
-    Object[] ot = objectTable;
-    int   [] it = intTable;
-    alloc(cap + 1);
+    while (oldObjectTable != null)
+      move();
+    oldObjectTable = objectTable;
+    oldIntTable = intTable;
+    oldShift = shift;
+    moved = 0;
+    alloc(objectTable.length << 1);
+  }
 
-    for (int i = 0; i < ot.length; i++)
-      put(ot[i], it[i]);
+
+  /**
+   * Moves the entries of the next MOVE_STEP slots of the old table,
+   * and drops the old table once all have been moved.
+   */
+  private void move()
+  {
+    Object[] ot = oldObjectTable;
+    int end = Math.min(moved + MOVE_STEP, ot.length);
+    for (int i = moved; i < end; i++)
+      {
+        Object o = ot[i];
+        if (o != null)
+          {
+            // o cannot be in the new table yet.
+            int s = slot(objectTable, shift, o);
+            objectTable[s] = o;
+            intTable[s] = oldIntTable[i];
+            size++;
+          }
+      }
+    moved = end;
+    if (end == ot.length)
+      {
+        oldObjectTable = null;
+        oldIntTable = null;
+      }
   }
 
 
@@ -271,8 +270,16 @@ public class ObjectIdentityMap2Int
   public int get(Object o)
   {
     o = (o == null) ? NIL : o;
-    int s = slot(o);
-    return objectTable[s] == null ? -1 : intTable[s];
+    int s = slot(objectTable, shift, o);
+    if (objectTable[s] != null)
+      return intTable[s];
+    if (oldObjectTable != null)
+      {
+        s = slot(oldObjectTable, oldShift, o);
+        if (oldObjectTable[s] != null && s >= moved)
+          return oldIntTable[s];
+      }
+    return -1;
   }
 
   /**
@@ -287,6 +294,8 @@ public class ObjectIdentityMap2Int
     size = 0;
     for (int i = 0; i < ot.length; i++)
       ot[i] = null;
+    oldObjectTable = null;
+    oldIntTable = null;
   }
 
 }
@@ -39,6 +39,8 @@ exception statement from your version. */
 
 package gnu.java.lang;
 
+import gnu.java.lang.reflect.ReflectionAccess;
+
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.ClassDefinition;
@@ -155,6 +157,7 @@ public final class InstrumentationImpl implements Instrumentation
       throw new UnsupportedOperationException();
 
     VMInstrumentationImpl.redefineClasses(this, definitions);
+    ReflectionAccess.classesRedefined();
   }
 
 
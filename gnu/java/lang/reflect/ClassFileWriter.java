@@ -0,0 +1,542 @@
+/* ClassFileWriter.java -- Builds simple class files
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.lang.reflect;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Builds the class file of a class that is generated at run time,
+ * such as the field accessors of serialization.  The class file has
+ * version 49.0, so its methods need no stack map frames; the code of
+ * each method is written opcode by opcode by its generator, which also
+ * gives its stack and local variable sizes.
+ */
+public final class ClassFileWriter
+{
+  public static final int ACC_PUBLIC = 0x0001;
+  public static final int ACC_PRIVATE = 0x0002;
+  public static final int ACC_STATIC = 0x0008;
+  public static final int ACC_FINAL = 0x0010;
+  public static final int ACC_SUPER = 0x0020;
+  public static final int ACC_SYNTHETIC = 0x1000;
+
+  public static final int ACONST_NULL = 1;
+  public static final int ICONST_0 = 3;
+  public static final int BIPUSH = 16;
+  public static final int SIPUSH = 17;
+  public static final int LDC = 18;
+  public static final int ILOAD = 21;
+  public static final int LLOAD = 22;
+  public static final int FLOAD = 23;
+  public static final int DLOAD = 24;
+  public static final int ALOAD = 25;
+  public static final int AALOAD = 50;
+  public static final int ISTORE = 54;
+  public static final int ASTORE = 58;
+  public static final int POP = 87;
+  public static final int DUP = 89;
+  public static final int GOTO = 167;
+  public static final int TABLESWITCH = 170;
+  public static final int IRETURN = 172;
+  public static final int LRETURN = 173;
+  public static final int FRETURN = 174;
+  public static final int DRETURN = 175;
+  public static final int ARETURN = 176;
+  public static final int RETURN = 177;
+  public static final int GETSTATIC = 178;
+  public static final int PUTSTATIC = 179;
+  public static final int GETFIELD = 180;
+  public static final int PUTFIELD = 181;
+  public static final int INVOKEVIRTUAL = 182;
+  public static final int INVOKESPECIAL = 183;
+  public static final int INVOKESTATIC = 184;
+  public static final int INVOKEINTERFACE = 185;
+  public static final int NEW = 187;
+  public static final int ATHROW = 191;
+  public static final int CHECKCAST = 192;
+  public static final int IFNULL = 198;
+  public static final int IFNONNULL = 199;
+
+  private final int access;
+  private final int thisClass;
+  private final int superClass;
+  private final int[] interfaces;
+
+  /** The constant pool entries, without the count. */
+  private final Bytes pool = new Bytes();
+  private int poolCount = 1;
+  private final HashMap<String,Integer> poolEntries
+    = new HashMap<String,Integer>();
+
+  private final ArrayList<Code> methods = new ArrayList<Code>();
+
+  /**
+   * Starts a class file.
+   *
+   * @param access the access flags of the class
+   * @param name the name of the class, in internal form
+   * @param superName the name of the superclass, in internal form
+   * @param interfaceNames the names of the interfaces, in internal form,
+   *        or null if there are none
+   */
+  public ClassFileWriter(int access, String name, String superName,
+                         String[] interfaceNames)
+  {
+    this.access = access;
+    thisClass = classInfo(name);
+    superClass = classInfo(superName);
+    int n = interfaceNames == null ? 0 : interfaceNames.length;
+    interfaces = new int[n];
+    for (int i = 0; i < n; i++)
+      interfaces[i] = classInfo(interfaceNames[i]);
+  }
+
+  /**
+   * Returns the constant pool index of a CONSTANT_Utf8 entry.
+   */
+  public int utf8Info(String str)
+  {
+    Integer index = poolEntries.get("U" + str);
+    if (index != null)
+      return index.intValue();
+    byte[] bytes;
+    try
+      {
+        // Java's modified UTF-8 differs only for '\0' and supplementary
+        // characters, which do not occur in names and descriptors.
+        bytes = str.getBytes("UTF-8");
+      }
+    catch (UnsupportedEncodingException e)
+      {
+        throw (InternalError) new InternalError().initCause(e);
+      }
+    return addEntry("U" + str, 1, bytes, 0, 0);
+  }
+
+  /**
+   * Returns the constant pool index of a CONSTANT_Class entry.
+   *
+   * @param name the class name in internal form, or an array descriptor
+   */
+  public int classInfo(String name)
+  {
+    return addEntry("C" + name, 7, null, utf8Info(name), -1);
+  }
+
+  /**
+   * Returns the constant pool index of a CONSTANT_String entry.
+   */
+  public int stringInfo(String str)
+  {
+    return addEntry("S" + str, 8, null, utf8Info(str), -1);
+  }
+
+  /**
+   * Returns the constant pool index of a CONSTANT_Fieldref entry.
+   */
+  public int fieldRef(String owner, String name, String descriptor)
+  {
+    return refInfo(9, owner, name, descriptor);
+  }
+
+  /**
+   * Returns the constant pool index of a CONSTANT_Methodref entry.
+   */
+  public int methodRef(String owner, String name, String descriptor)
+  {
+    return refInfo(10, owner, name, descriptor);
+  }
+
+  /**
+   * Returns the constant pool index of a
+   * CONSTANT_InterfaceMethodref entry.
+   */
+  public int interfaceMethodRef(String owner, String name, String descriptor)
+  {
+    return refInfo(11, owner, name, descriptor);
+  }
+
+  private int refInfo(int tag, String owner, String name, String descriptor)
+  {
+    int cindex = classInfo(owner);
+    int ntindex = addEntry("N" + name + ' ' + descriptor, 12, null,
+                           utf8Info(name), utf8Info(descriptor));
+    return addEntry("R" + tag + owner + ' ' + name + ' ' + descriptor,
+                    tag, null, cindex, ntindex);
+  }
+
+  /**
+   * Adds an entry to the constant pool unless it is there already.  A
+   * Utf8 entry has its bytes, the other entries one or two indices of
+   * other entries, the second of which is -1 if not used.
+   */
+  private int addEntry(String key, int tag, byte[] bytes, int a, int b)
+  {
+    Integer index = poolEntries.get(key);
+    if (index != null)
+      return index.intValue();
+    if (poolCount >= 65535)
+      throw new IllegalArgumentException("exceeds VM limitations");
+    pool.putU1(tag);
+    if (bytes != null)
+      {
+        pool.putU2(bytes.length);
+        pool.put(bytes, 0, bytes.length);
+      }
+    else
+      {
+        pool.putU2(a);
+        if (b >= 0)
+          pool.putU2(b);
+      }
+    poolEntries.put(key, Integer.valueOf(poolCount));
+    return poolCount++;
+  }
+
+  /**
+   * Adds a method and returns the buffer for its code.
+   *
+   * @param access the access flags of the method
+   * @param name the name of the method
+   * @param descriptor the descriptor of the method
+   * @param maxStack the largest operand stack the code uses
+   * @param maxLocals the number of local variable slots, including the
+   *        arguments
+   */
+  public Code addMethod(int access, String name, String descriptor,
+                        int maxStack, int maxLocals)
+  {
+    Code code = new Code(access, utf8Info(name), utf8Info(descriptor),
+                         maxStack, maxLocals);
+    methods.add(code);
+    return code;
+  }
+
+  /**
+   * Returns the finished class file.
+   */
+  public byte[] toByteArray()
+  {
+    int codeAttribute = utf8Info("Code");
+    Bytes out = new Bytes();
+    out.putU4(0xcafebabe);
+    out.putU2(0);                       // minor version
+    out.putU2(49);                      // major version
+    out.putU2(poolCount);
+    out.put(pool.bytes, 0, pool.length);
+    out.putU2(access);
+    out.putU2(thisClass);
+    out.putU2(superClass);
+    out.putU2(interfaces.length);
+    for (int i = 0; i < interfaces.length; i++)
+      out.putU2(interfaces[i]);
+    out.putU2(0);                       // fields
+    out.putU2(methods.size());
+    for (int i = 0; i < methods.size(); i++)
+      {
+        Code m = methods.get(i);
+        out.putU2(m.access);
+        out.putU2(m.name);
+        out.putU2(m.descriptor);
+        out.putU2(1);                   // attributes
+        out.putU2(codeAttribute);
+        out.putU4(12 + m.length + m.handlers.length);
+        out.putU2(m.maxStack);
+        out.putU2(m.maxLocals);
+        out.putU4(m.length);
+        out.put(m.bytes, 0, m.length);
+        out.putU2(m.handlers.length / 8);
+        out.put(m.handlers.bytes, 0, m.handlers.length);
+        out.putU2(0);                   // attributes
+      }
+    out.putU2(0);                       // attributes
+    byte[] result = new byte[out.length];
+    System.arraycopy(out.bytes, 0, result, 0, out.length);
+    return result;
+  }
+
+  /**
+   * A growable byte array written in class file byte order.
+   */
+  private static class Bytes
+  {
+    byte[] bytes = new byte[256];
+    int length;
+
+    private void ensure(int n)
+    {
+      if (length + n > bytes.length)
+        {
+          byte[] b = new byte[Math.max(bytes.length * 2, length + n)];
+          System.arraycopy(bytes, 0, b, 0, length);
+          bytes = b;
+        }
+    }
+
+    void put(byte[] b, int off, int len)
+    {
+      ensure(len);
+      System.arraycopy(b, off, bytes, length, len);
+      length += len;
+    }
+
+    void putU1(int i)
+    {
+      ensure(1);
+      bytes[length++] = (byte) i;
+    }
+
+    void putU2(int i)
+    {
+      ensure(2);
+      bytes[length++] = (byte) (i >> 8);
+      bytes[length++] = (byte) i;
+    }
+
+    void putU4(int i)
+    {
+      ensure(4);
+      bytes[length++] = (byte) (i >> 24);
+      bytes[length++] = (byte) (i >> 16);
+      bytes[length++] = (byte) (i >> 8);
+      bytes[length++] = (byte) i;
+    }
+  }
+
+  /**
+   * The code of one method.  Branch offsets are relative to the
+   * opcode of the branch, as in the class file; use
+   * {@link #position()} to find them.
+   */
+  public static final class Code extends Bytes
+  {
+    final int access;
+    final int name;
+    final int descriptor;
+    final int maxStack;
+    final int maxLocals;
+
+    /** The exception table. */
+    final Bytes handlers = new Bytes();
+
+    Code(int access, int name, int descriptor, int maxStack, int maxLocals)
+    {
+      this.access = access;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.maxStack = maxStack;
+      this.maxLocals = maxLocals;
+    }
+
+    /**
+     * Returns the offset of the next opcode.
+     */
+    public int position()
+    {
+      return length;
+    }
+
+    /**
+     * Adds an opcode without operands.
+     */
+    public void op(int opcode)
+    {
+      putU1(opcode);
+    }
+
+    /**
+     * Adds an opcode with a one byte operand, such as BIPUSH.
+     */
+    public void op1(int opcode, int operand)
+    {
+      putU1(opcode);
+      putU1(operand);
+    }
+
+    /**
+     * Adds an opcode with a two byte operand, such as GETFIELD or a
+     * branch.
+     */
+    public void op2(int opcode, int operand)
+    {
+      putU1(opcode);
+      putU2(operand);
+    }
+
+    /**
+     * Adds an INVOKEINTERFACE of the given constant pool entry.
+     *
+     * @param argSlots the number of argument slots, not counting the
+     *        receiver
+     */
+    public void invokeInterface(int index, int argSlots)
+    {
+      putU1(INVOKEINTERFACE);
+      putU2(index);
+      putU1(argSlots + 1);
+      putU1(0);
+    }
+
+    /**
+     * Adds the shortest instruction that pushes an int constant.
+     */
+    public void iconst(int i)
+    {
+      if (i >= -1 && i <= 5)
+        op(ICONST_0 + i);
+      else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE)
+        op1(BIPUSH, i);
+      else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE)
+        op2(SIPUSH, i);
+      else
+        throw new IllegalArgumentException("constant " + i);
+    }
+
+    /**
+     * Adds the instruction that loads a local variable of the given
+     * type.  For a reference type, pass <code>Object.class</code> or
+     * any other class.
+     */
+    public void load(Class<?> type, int slot)
+    {
+      int opcode;
+      if (type == long.class)
+        opcode = LLOAD;
+      else if (type == float.class)
+        opcode = FLOAD;
+      else if (type == double.class)
+        opcode = DLOAD;
+      else if (type.isPrimitive())
+        opcode = ILOAD;
+      else
+        opcode = ALOAD;
+      if (slot < 4)
+        op(26 + (opcode - ILOAD) * 4 + slot);
+      else
+        op1(opcode, slot);
+    }
+
+    /**
+     * Adds the instruction that returns a value of the given type from
+     * the method.
+     */
+    public void returnValue(Class<?> type)
+    {
+      if (type == void.class)
+        op(RETURN);
+      else if (type == long.class)
+        op(LRETURN);
+      else if (type == float.class)
+        op(FRETURN);
+      else if (type == double.class)
+        op(DRETURN);
+      else if (type.isPrimitive())
+        op(IRETURN);
+      else
+        op(ARETURN);
+    }
+
+    /**
+     * Adds a TABLESWITCH over the keys <code>0</code> to
+     * <code>count - 1</code>, and returns the position of its first
+     * offset, the default one, so that the offsets can be filled in
+     * with {@link #patchSwitch}.
+     */
+    public int tableSwitch(int count)
+    {
+      putU1(TABLESWITCH);
+      while ((length & 3) != 0)
+        putU1(0);
+      int offsets = length;
+      putU4(0);                         // default
+      putU4(0);                         // low
+      putU4(count - 1);                 // high
+      for (int i = 0; i < count; i++)
+        putU4(0);
+      return offsets;
+    }
+
+    /**
+     * Sets the offset of one case of a TABLESWITCH, or of its default
+     * case if <code>key</code> is -1, to branch to the current position.
+     *
+     * @param offsets the value returned by {@link #tableSwitch}
+     * @param switchPosition the position of the TABLESWITCH opcode
+     */
+    public void patchSwitch(int offsets, int switchPosition, int key)
+    {
+      int at = key < 0 ? offsets : offsets + 12 + 4 * key;
+      int offset = length - switchPosition;
+      bytes[at] = (byte) (offset >> 24);
+      bytes[at + 1] = (byte) (offset >> 16);
+      bytes[at + 2] = (byte) (offset >> 8);
+      bytes[at + 3] = (byte) offset;
+    }
+
+    /**
+     * Adds an entry to the exception table.  Entries are searched in
+     * the order they were added.
+     *
+     * @param start the position of the first instruction covered
+     * @param end the position after the last instruction covered
+     * @param handler the position of the handler
+     * @param catchType the constant pool index of the class caught, or
+     *        0 to catch everything
+     */
+    public void addHandler(int start, int end, int handler, int catchType)
+    {
+      handlers.putU2(start);
+      handlers.putU2(end);
+      handlers.putU2(handler);
+      handlers.putU2(catchType);
+    }
+
+    /**
+     * Sets the two byte offset of a branch at the given position to
+     * branch to the current position.
+     */
+    public void patchBranch(int branchPosition)
+    {
+      int offset = length - branchPosition;
+      bytes[branchPosition + 1] = (byte) (offset >> 8);
+      bytes[branchPosition + 2] = (byte) offset;
+    }
+  }
+}
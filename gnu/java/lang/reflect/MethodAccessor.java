@@ -0,0 +1,202 @@
+/* MethodAccessor.java -- Generated invoker of one method or constructor
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.lang.reflect;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Calls one method or constructor without going through the VM's
+ * reflection support.  <code>java.lang.reflect.Method</code> and
+ * <code>Constructor</code> generate a subclass of this class, in the
+ * package of the declaring class, once they have been invoked often
+ * enough; see <code>java.lang.reflect.MethodAccessorFactory</code>.
+ *
+ * The generated code checks and unwraps the arguments, then calls the
+ * member directly.  It relies on the static methods of this class for
+ * everything but the call itself.
+ *
+ * This class is public only so that classes in other packages can
+ * extend it; the accessors themselves are not public.
+ */
+public abstract class MethodAccessor
+{
+  protected MethodAccessor()
+  {
+  }
+
+  /**
+   * Invokes the method, or for a constructor creates a new instance.
+   * Access checks are the caller's business.
+   *
+   * @param obj the receiver; ignored for static methods and constructors
+   * @param args the arguments, or null if there are none
+   * @return the result, wrapped if primitive; null for a void method; the
+   *         new object for a constructor
+   * @throws IllegalArgumentException if the receiver or an argument has
+   *         the wrong type, or the number of arguments is wrong
+   * @throws NullPointerException if the method is not static and
+   *         <code>obj</code> is null
+   * @throws InvocationTargetException if the member throws
+   */
+  public abstract Object invoke(Object obj, Object[] args)
+    throws InvocationTargetException;
+
+  /**
+   * Checks the number of arguments.
+   */
+  protected static void checkArguments(Object[] args, int count)
+  {
+    if ((args == null ? 0 : args.length) != count)
+      throw new IllegalArgumentException("wrong number of arguments");
+  }
+
+  /**
+   * Checks that there is a receiver.
+   */
+  protected static void checkReceiver(Object obj)
+  {
+    if (obj == null)
+      throw new NullPointerException();
+  }
+
+  /**
+   * Returns the exception to throw when a CHECKCAST of the receiver or
+   * of an argument failed.
+   */
+  protected static IllegalArgumentException
+    argumentMismatch(ClassCastException e)
+  {
+    IllegalArgumentException iae
+      = new IllegalArgumentException("argument type mismatch");
+    iae.initCause(e);
+    return iae;
+  }
+
+  /**
+   * Returns the exception to throw when the member threw
+   * <code>t</code>.
+   */
+  protected static InvocationTargetException targetException(Throwable t)
+  {
+    return new InvocationTargetException(t);
+  }
+
+  protected static boolean unboxBoolean(Object o)
+  {
+    if (o instanceof Boolean)
+      return ((Boolean) o).booleanValue();
+    throw mismatch(o, "boolean");
+  }
+
+  protected static byte unboxByte(Object o)
+  {
+    if (o instanceof Byte)
+      return ((Byte) o).byteValue();
+    throw mismatch(o, "byte");
+  }
+
+  protected static char unboxChar(Object o)
+  {
+    if (o instanceof Character)
+      return ((Character) o).charValue();
+    throw mismatch(o, "char");
+  }
+
+  protected static short unboxShort(Object o)
+  {
+    if (o instanceof Short)
+      return ((Short) o).shortValue();
+    if (o instanceof Byte)
+      return ((Byte) o).byteValue();
+    throw mismatch(o, "short");
+  }
+
+  protected static int unboxInt(Object o)
+  {
+    if (o instanceof Integer)
+      return ((Integer) o).intValue();
+    if (o instanceof Character)
+      return ((Character) o).charValue();
+    if (o instanceof Short || o instanceof Byte)
+      return ((Number) o).intValue();
+    throw mismatch(o, "int");
+  }
+
+  protected static long unboxLong(Object o)
+  {
+    if (o instanceof Long)
+      return ((Long) o).longValue();
+    if (o instanceof Character)
+      return ((Character) o).charValue();
+    if (o instanceof Integer || o instanceof Short || o instanceof Byte)
+      return ((Number) o).longValue();
+    throw mismatch(o, "long");
+  }
+
+  protected static float unboxFloat(Object o)
+  {
+    if (o instanceof Float)
+      return ((Float) o).floatValue();
+    if (o instanceof Character)
+      return ((Character) o).charValue();
+    if (o instanceof Long || o instanceof Integer || o instanceof Short
+        || o instanceof Byte)
+      return ((Number) o).floatValue();
+    throw mismatch(o, "float");
+  }
+
+  protected static double unboxDouble(Object o)
+  {
+    if (o instanceof Double)
+      return ((Double) o).doubleValue();
+    if (o instanceof Character)
+      return ((Character) o).charValue();
+    if (o instanceof Float || o instanceof Long || o instanceof Integer
+        || o instanceof Short || o instanceof Byte)
+      return ((Number) o).doubleValue();
+    throw mismatch(o, "double");
+  }
+
+  private static IllegalArgumentException mismatch(Object o, String type)
+  {
+    if (o == null)
+      return new IllegalArgumentException("null for " + type + " argument");
+    return new IllegalArgumentException(o.getClass().getName()
+                                        + " for " + type + " argument");
+  }
+}
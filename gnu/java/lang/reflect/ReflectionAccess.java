@@ -0,0 +1,143 @@
+/* ReflectionAccess.java -- access to reflection internals for java.lang
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.lang.reflect;
+
+import gnu.classpath.VMStackWalker;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Gives <code>java.lang.Class</code> access to the package private
+ * parts of <code>java.lang.reflect</code> it needs to keep reflection
+ * data cached.  The single instance is installed by
+ * <code>AccessibleObject</code> when it is initialized.
+ *
+ * <p>This class also counts class redefinitions, so that cached
+ * reflection data can be discarded when the members of a class may have
+ * changed.  Code which redefines classes must call
+ * {@link #classesRedefined()} once the redefinition is complete.</p>
+ */
+public abstract class ReflectionAccess
+{
+  /** The installed instance. */
+  private static volatile ReflectionAccess instance;
+
+  /** The number of completed class redefinitions. */
+  private static volatile int redefinitions;
+
+  protected ReflectionAccess()
+  {
+  }
+
+  /**
+   * Install the instance.  This may only be done once, by a class of
+   * the bootstrap class loader.
+   *
+   * @param access the instance
+   * @throws SecurityException if the caller is not a bootstrap class
+   * @throws IllegalStateException if an instance is already installed
+   */
+  public static synchronized void setInstance(ReflectionAccess access)
+  {
+    if (VMStackWalker.getCallingClassLoader() != null)
+      throw new SecurityException("ReflectionAccess is reserved for "
+                                  + "bootstrap classes");
+    if (instance != null)
+      throw new IllegalStateException("ReflectionAccess already set");
+    instance = access;
+  }
+
+  /**
+   * Return the instance installed by <code>AccessibleObject</code>.
+   */
+  public static ReflectionAccess getInstance()
+  {
+    ReflectionAccess access = instance;
+    if (access == null)
+      {
+        try
+          {
+            // Initializing AccessibleObject installs the instance.
+            Class.forName("java.lang.reflect.AccessibleObject", true, null);
+          }
+        catch (ClassNotFoundException e)
+          {
+            throw (InternalError) new InternalError().initCause(e);
+          }
+        access = instance;
+      }
+    return access;
+  }
+
+  /**
+   * Note that one or more classes have been redefined.
+   */
+  public static synchronized void classesRedefined()
+  {
+    redefinitions++;
+  }
+
+  /**
+   * Return the number of class redefinitions so far.  Reflection data
+   * gathered while this value stays the same remains valid.
+   */
+  public static int getRedefinitions()
+  {
+    return redefinitions;
+  }
+
+  /**
+   * Return a new, inaccessible <code>Method</code> for the same method
+   * as <code>m</code>.
+   */
+  public abstract Method copy(Method m);
+
+  /**
+   * Return a new, inaccessible <code>Field</code> for the same field
+   * as <code>f</code>.
+   */
+  public abstract Field copy(Field f);
+
+  /**
+   * Return a new, inaccessible <code>Constructor</code> for the same
+   * constructor as <code>c</code>.
+   */
+  public abstract <T> Constructor<T> copy(Constructor<T> c);
+}
@@ -49,6 +49,28 @@ package gnu.java.math;
 
 public class MPN
 {
+  /** Operands with fewer words than this are multiplied using the
+   * classical quadratic algorithm. */
+  private static final int KARATSUBA_MUL_THRESHOLD = 48;
+
+  /** Operands with at least this many words are multiplied using
+   * Toom-Cook 3-way splitting. */
+  private static final int TOOM3_MUL_THRESHOLD = 160;
+
+  /** Like KARATSUBA_MUL_THRESHOLD, but for squaring. */
+  private static final int KARATSUBA_SQR_THRESHOLD = 64;
+
+  /** Like TOOM3_MUL_THRESHOLD, but for squaring. */
+  private static final int TOOM3_SQR_THRESHOLD = 200;
+
+  /** Divisors with fewer words than this are handled by the classical
+   * division algorithm. */
+  private static final int BZ_DIV_THRESHOLD = 80;
+
+  /** Burnikel-Ziegler division is only used if the quotient has at least
+   * this many words. */
+  private static final int BZ_DIV_OFFSET = 40;
+
   /** Add x[0:size-1] and y, and write the size least
    * significant words of the result to dest.
    * Return carry, either 0 or 1.
@@ -139,11 +161,38 @@ public class MPN
    * This function requires that xlen >= ylen.
    * The destination must be distinct from either input operands.
    * All operands are unsigned.
+   * Large operands are multiplied using Karatsuba or Toom-Cook 3-way
+   * splitting, depending on the size of the shorter operand.
    * This function is basically the same gmp's mpn_mul. */
 
   public static void mul (int[] dest,
                           int[] x, int xlen,
                           int[] y, int ylen)
+  {
+    if (xlen < ylen)
+      {
+        int[] t = x;  x = y;  y = t;
+        int tlen = xlen;  xlen = ylen;  ylen = tlen;
+      }
+    if (ylen < KARATSUBA_MUL_THRESHOLD)
+      mul_basecase (dest, x, xlen, y, ylen);
+    else if (ylen <= (xlen + 1) >> 1)
+      mul_unbalanced (dest, x, xlen, y, ylen);
+    else if (ylen >= TOOM3_MUL_THRESHOLD && ylen > 2 * ((xlen + 2) / 3))
+      mul_toom3 (dest, x, xlen, y, ylen);
+    else
+      mul_karatsuba (dest, x, xlen, y, ylen);
+  }
+
+  /**
+   * Multiply x[0:xlen-1] and y[0:ylen-1] using the classical quadratic
+   * algorithm, and write the result to dest[0:xlen+ylen-1].
+   * The same restrictions as for mul apply.
+   * This function is basically the same gmp's mpn_mul_basecase. */
+
+  public static void mul_basecase (int[] dest,
+                                   int[] x, int xlen,
+                                   int[] y, int ylen)
   {
     dest[xlen] = MPN.mul_1 (dest, x, xlen, y[0]);
 
@@ -311,6 +360,18 @@ public class MPN
    */
 
   public static void divide (int[] zds, int nx, int[] y, int ny)
+  {
+    if (ny < BZ_DIV_THRESHOLD || nx - ny < BZ_DIV_OFFSET)
+      divide_basecase (zds, nx, y, ny);
+    else
+      divide_bz (zds, nx, y, ny);
+  }
+
+  /** Divide zds[0:nx] by y[0:ny-1] using the classical algorithm.
+   * The same conventions and assumptions as for divide apply.
+   */
+
+  public static void divide_basecase (int[] zds, int nx, int[] y, int ny)
   {
     // This is basically Knuth's formulation of the classical algorithm,
     // but translated from in scm_divbigbig in Jaffar's SCM implementation.
@@ -362,6 +423,550 @@ public class MPN
       } while (--j >= ny);
   }
 
+  /** Multiply x[0:xlen-1] and y[0:ylen-1], where y is much shorter than x,
+   * by multiplying y with successive ylen-word pieces of x.
+   * The result is written to dest[0:xlen+ylen-1].
+   */
+  private static void mul_unbalanced (int[] dest,
+                                      int[] x, int xlen,
+                                      int[] y, int ylen)
+  {
+    mul (dest, x, ylen, y, ylen);
+    for (int i = ylen + ylen;  i < xlen + ylen;  i++)
+      dest[i] = 0;
+    int[] piece = new int[ylen];
+    int[] prod = new int[ylen + ylen];
+    for (int off = ylen;  off < xlen;  off += ylen)
+      {
+        int plen = Math.min (ylen, xlen - off);
+        System.arraycopy (x, off, piece, 0, plen);
+        mul (prod, piece, plen, y, ylen);
+        add_at (dest, off, xlen + ylen, prod, plen + ylen);
+      }
+  }
+
+  /** Multiply x[0:xlen-1] and y[0:ylen-1] using Karatsuba's method,
+   * and write the result to dest[0:xlen+ylen-1].
+   * Assumes: xlen >= ylen > (xlen+1)/2.
+   */
+  private static void mul_karatsuba (int[] dest,
+                                     int[] x, int xlen,
+                                     int[] y, int ylen)
+  {
+    // x = x1*B^h + x0, y = y1*B^h + y0, where B = 2^32.  Then
+    // x*y = z2*B^2h + (z1-z2-z0)*B^h + z0, where z2 = x1*y1,
+    // z0 = x0*y0 and z1 = (x1+x0)*(y1+y0).
+    int h = (xlen + 1) >> 1;
+    int x1len = xlen - h;
+    int y1len = ylen - h;
+    int[] x0 = copy (x, 0, h);
+    int[] x1 = copy (x, h, x1len);
+    int[] y0 = copy (y, 0, h);
+    int[] y1 = copy (y, h, y1len);
+
+    int[] z0 = new int[h + h];
+    mul (z0, x0, h, y0, h);
+    int[] z2 = new int[x1len + y1len];
+    mul (z2, x1, x1len, y1, y1len);
+
+    int[] xs = new int[h + 1];
+    xs[h] = add (xs, x0, h, x1, x1len);
+    int[] ys = new int[h + 1];
+    ys[h] = add (ys, y0, h, y1, y1len);
+    int[] z1 = new int[h + h + 2];
+    mul (z1, xs, h + 1, ys, h + 1);
+    sub (z1, h + h + 2, z0, h + h);
+    sub (z1, h + h + 2, z2, x1len + y1len);
+
+    System.arraycopy (z0, 0, dest, 0, h + h);
+    System.arraycopy (z2, 0, dest, h + h, x1len + y1len);
+    add_at (dest, h, xlen + ylen, z1, h + h + 2);
+  }
+
+  /** Multiply x[0:xlen-1] and y[0:ylen-1] using Toom-Cook 3-way
+   * splitting, and write the result to dest[0:xlen+ylen-1].
+   * Assumes: xlen >= ylen > 2*k, where k = ceil(xlen/3).
+   */
+  private static void mul_toom3 (int[] dest,
+                                 int[] x, int xlen,
+                                 int[] y, int ylen)
+  {
+    int k = (xlen + 2) / 3;
+    int[] a0 = new int[k];
+    int[] a2 = new int[k];
+    int[] a1 = new int[k + 1];
+    int[] am1 = new int[k + 1];
+    int[] at2 = new int[k + 1];
+    boolean aneg = toom3_eval (x, xlen, k, a0, a2, a1, am1, at2);
+    int[] b0 = new int[k];
+    int[] b2 = new int[k];
+    int[] b1 = new int[k + 1];
+    int[] bm1 = new int[k + 1];
+    int[] bt2 = new int[k + 1];
+    boolean bneg = toom3_eval (y, ylen, k, b0, b2, b1, bm1, bt2);
+
+    int[] v0 = new int[k + k];
+    mul (v0, a0, k, b0, k);
+    int[] v1 = new int[k + k + 2];
+    mul (v1, a1, k + 1, b1, k + 1);
+    int[] vm1 = new int[k + k + 2];
+    mul (vm1, am1, k + 1, bm1, k + 1);
+    int[] v2 = new int[k + k + 2];
+    mul (v2, at2, k + 1, bt2, k + 1);
+    int x2len = xlen - k - k;
+    int y2len = ylen - k - k;
+    int[] vinf = new int[x2len + y2len];
+    mul (vinf, a2, x2len, b2, y2len);
+
+    toom3_interpolate (dest, xlen + ylen, k, v0, v1, vm1, aneg != bneg,
+                       v2, vinf, x2len + y2len);
+  }
+
+  /** Split x[0:xlen-1] into the three k-word pieces x0, x1 and x2
+   * (most significant), and evaluate x2*t^2 + x1*t + x0 at the
+   * points t = 0, t = infinity, t = 1, t = -1 and t = 2.
+   * The values at 0 and infinity are written to p0 and pinf, those at
+   * 1 and 2 to p1 and p2, and the absolute value of the one at -1
+   * to pm1; all these have k+1 words (p0 and pinf k words).
+   * @return true if the value at -1 is negative
+   */
+  private static boolean toom3_eval (int[] x, int xlen, int k,
+                                     int[] p0, int[] pinf,
+                                     int[] p1, int[] pm1, int[] p2)
+  {
+    int x2len = xlen - k - k;
+    System.arraycopy (x, 0, p0, 0, k);
+    System.arraycopy (x, k + k, pinf, 0, x2len);
+    int[] x1 = new int[k + 1];
+    System.arraycopy (x, k, x1, 0, k);
+
+    // p = x0 + x2
+    int[] p = new int[k + 1];
+    p[k] = add (p, p0, k, pinf, x2len);
+    // p1 = p + x1
+    add_n (p1, p, x1, k + 1);
+    // pm1 = |p - x1|
+    boolean negative = cmp (p, x1, k + 1) < 0;
+    if (negative)
+      sub_n (pm1, x1, p, k + 1);
+    else
+      sub_n (pm1, p, x1, k + 1);
+    // p2 = 2*(p1 + x2) - x0
+    add (p2, p1, k + 1, pinf, x2len);
+    add_n (p2, p2, p2, k + 1);
+    sub (p2, k + 1, p0, k);
+    return negative;
+  }
+
+  /** Recombine the five products of a Toom-Cook 3-way multiplication
+   * and write the len-word result to dest.  The products are evaluated
+   * at the points of toom3_eval; v0 has 2k words, vinf vinflen words,
+   * and the others 2k+2 words.  The product at -1 is the absolute value,
+   * with its sign given by vm1neg.
+   */
+  private static void toom3_interpolate (int[] dest, int len, int k,
+                                         int[] v0, int[] v1,
+                                         int[] vm1, boolean vm1neg,
+                                         int[] v2, int[] vinf, int vinflen)
+  {
+    // The intermediate values may be negative, so they are kept
+    // in two's complement, with room for the sign bit.
+    int n = k + k + 3;
+    int[] sv0 = copy (v0, 0, k + k, n);
+    int[] sv1 = copy (v1, 0, k + k + 2, n);
+    int[] svm1 = copy (vm1, 0, k + k + 2, n);
+    if (vm1neg)
+      negate_n (svm1, n);
+    int[] svinf = copy (vinf, 0, vinflen, n);
+
+    int[] t2 = copy (v2, 0, k + k + 2, n);
+    sub_n (t2, t2, svm1, n);
+    divexact_by3 (t2, t2, n);
+    int[] tm1 = new int[n];
+    sub_n (tm1, sv1, svm1, n);
+    sar_1 (tm1, n);
+    int[] t1 = new int[n];
+    sub_n (t1, sv1, sv0, n);
+    sub_n (t2, t2, t1, n);
+    sar_1 (t2, n);
+    sub_n (t1, t1, tm1, n);
+    sub_n (t1, t1, svinf, n);
+    add_n (svinf, svinf, svinf, n);
+    sub_n (t2, t2, svinf, n);
+    sub_n (tm1, tm1, t2, n);
+
+    // All three remaining coefficients are now non-negative.
+    System.arraycopy (v0, 0, dest, 0, k + k);
+    for (int i = k + k;  i < 4 * k;  i++)
+      dest[i] = 0;
+    System.arraycopy (vinf, 0, dest, 4 * k, vinflen);
+    add_at (dest, k, len, tm1, n);
+    add_at (dest, k + k, len, t1, n);
+    add_at (dest, 3 * k, len, t2, n);
+  }
+
+  /** Square x[0:len-1] and write the result to dest[0:2*len-1].
+   * The destination must be distinct from x.
+   * All operands are unsigned.
+   * This function is basically the same as gmp's mpn_sqr.
+   */
+  public static void sqr (int[] dest, int[] x, int len)
+  {
+    if (len < KARATSUBA_SQR_THRESHOLD)
+      sqr_basecase (dest, x, len);
+    else if (len < TOOM3_SQR_THRESHOLD)
+      sqr_karatsuba (dest, x, len);
+    else
+      sqr_toom3 (dest, x, len);
+  }
+
+  /** Square x[0:len-1] using the classical algorithm, computing each
+   * cross product only once.  The result is written to dest[0:2*len-1].
+   */
+  public static void sqr_basecase (int[] dest, int[] x, int len)
+  {
+    for (int i = 0;  i < len + len;  i++)
+      dest[i] = 0;
+    for (int i = 0;  i < len - 1;  i++)
+      {
+        long xword = (long) x[i] & 0xffffffffL;
+        long carry = 0;
+        for (int j = i + 1;  j < len;  j++)
+          {
+            carry += ((long) x[j] & 0xffffffffL) * xword
+              + ((long) dest[i+j] & 0xffffffffL);
+            dest[i+j] = (int) carry;
+            carry >>>= 32;
+          }
+        dest[i+len] = (int) carry;
+      }
+    // Double the cross products, and add the squares of the words.
+    if (len > 1)
+      lshift (dest, 0, dest, len + len, 1);
+    long carry = 0;
+    for (int i = 0;  i < len;  i++)
+      {
+        long xword = (long) x[i] & 0xffffffffL;
+        long sq = xword * xword;
+        carry += (sq & 0xffffffffL) + ((long) dest[i+i] & 0xffffffffL);
+        dest[i+i] = (int) carry;
+        carry >>>= 32;
+        carry += (sq >>> 32) + ((long) dest[i+i+1] & 0xffffffffL);
+        dest[i+i+1] = (int) carry;
+        carry >>>= 32;
+      }
+  }
+
+  /** Square x[0:len-1] using Karatsuba's method,
+   * and write the result to dest[0:2*len-1].
+   */
+  private static void sqr_karatsuba (int[] dest, int[] x, int len)
+  {
+    int h = (len + 1) >> 1;
+    int x1len = len - h;
+    int[] x0 = copy (x, 0, h);
+    int[] x1 = copy (x, h, x1len);
+
+    int[] z0 = new int[h + h];
+    sqr (z0, x0, h);
+    int[] z2 = new int[x1len + x1len];
+    sqr (z2, x1, x1len);
+
+    int[] xs = new int[h + 1];
+    xs[h] = add (xs, x0, h, x1, x1len);
+    int[] z1 = new int[h + h + 2];
+    sqr (z1, xs, h + 1);
+    sub (z1, h + h + 2, z0, h + h);
+    sub (z1, h + h + 2, z2, x1len + x1len);
+
+    System.arraycopy (z0, 0, dest, 0, h + h);
+    System.arraycopy (z2, 0, dest, h + h, x1len + x1len);
+    add_at (dest, h, len + len, z1, h + h + 2);
+  }
+
+  /** Square x[0:len-1] using Toom-Cook 3-way splitting,
+   * and write the result to dest[0:2*len-1].
+   */
+  private static void sqr_toom3 (int[] dest, int[] x, int len)
+  {
+    int k = (len + 2) / 3;
+    int[] a0 = new int[k];
+    int[] a2 = new int[k];
+    int[] a1 = new int[k + 1];
+    int[] am1 = new int[k + 1];
+    int[] at2 = new int[k + 1];
+    toom3_eval (x, len, k, a0, a2, a1, am1, at2);
+
+    int[] v0 = new int[k + k];
+    sqr (v0, a0, k);
+    int[] v1 = new int[k + k + 2];
+    sqr (v1, a1, k + 1);
+    int[] vm1 = new int[k + k + 2];
+    sqr (vm1, am1, k + 1);
+    int[] v2 = new int[k + k + 2];
+    sqr (v2, at2, k + 1);
+    int x2len = len - k - k;
+    int[] vinf = new int[x2len + x2len];
+    sqr (vinf, a2, x2len);
+
+    toom3_interpolate (dest, len + len, k, v0, v1, vm1, false,
+                       v2, vinf, x2len + x2len);
+  }
+
+  /** Divide zds[0:nx] by y[0:ny-1] using the recursive algorithm of
+   * Burnikel and Ziegler ("Fast Recursive Division", MPI-I-98-1-022).
+   * The same conventions and assumptions as for divide apply.
+   */
+  private static void divide_bz (int[] zds, int nx, int[] y, int ny)
+  {
+    // Pad the divisor with low zero words to a length n = j*2^m, such
+    // that the recursion bottoms out at the classical algorithm with a
+    // divisor of about BZ_DIV_THRESHOLD/2 to BZ_DIV_THRESHOLD words.
+    int m = 1 << (32 - count_leading_zeros (ny / BZ_DIV_THRESHOLD));
+    int n = ((ny + m - 1) / m) * m;
+    int sigma = n - ny;
+    int[] b = new int[n];
+    System.arraycopy (y, 0, b, sigma, ny);
+
+    int alen = nx + 1;
+    while (alen > 0 && zds[alen - 1] == 0)
+      alen--;
+    alen += sigma;
+    // The most significant block has less than n significant words,
+    // so it is less than the (normalized) divisor.
+    int t = Math.max (2, alen / n + 1);
+    int[] a = new int[t * n];
+    System.arraycopy (zds, 0, a, sigma, alen - sigma);
+
+    int[] q = new int[(t - 1) * n];
+    int[] z = new int[n + n];
+    int[] qi = new int[n];
+    int[] r = new int[n];
+    System.arraycopy (a, (t - 2) * n, z, 0, n + n);
+    for (int i = t - 2;  ; i--)
+      {
+        divide_2n1n (qi, r, z, b, n);
+        System.arraycopy (qi, 0, q, i * n, n);
+        if (i == 0)
+          break;
+        System.arraycopy (a, (i - 1) * n, z, 0, n);
+        System.arraycopy (r, 0, z, n, n);
+      }
+
+    System.arraycopy (r, sigma, zds, 0, ny);
+    int qlen = Math.min (q.length, nx + 1 - ny);
+    System.arraycopy (q, 0, zds, ny, qlen);
+    for (int i = ny + qlen;  i <= nx;  i++)
+      zds[i] = 0;
+  }
+
+  /** Divide a[0:2n-1] by b[0:n-1], writing the quotient to q[0:n-1]
+   * and the remainder to r[0:n-1].
+   * Assumes: (int)b[n-1] < 0 and a < b*2^(32*n).
+   */
+  private static void divide_2n1n (int[] q, int[] r, int[] a, int[] b, int n)
+  {
+    if ((n & 1) != 0 || n < BZ_DIV_THRESHOLD)
+      {
+        int[] zds = new int[n + n + 1];
+        System.arraycopy (a, 0, zds, 0, n + n);
+        divide_basecase (zds, n + n, b, n);
+        System.arraycopy (zds, n, q, 0, n);
+        System.arraycopy (zds, 0, r, 0, n);
+        return;
+      }
+
+    int h = n >> 1;
+    int[] a3 = new int[3 * h];
+    int[] q1 = new int[h];
+    int[] r1 = new int[n];
+    System.arraycopy (a, h, a3, 0, 3 * h);
+    divide_3n2n (q1, r1, a3, b, h);
+
+    System.arraycopy (a, 0, a3, 0, h);
+    System.arraycopy (r1, 0, a3, h, n);
+    divide_3n2n (q, r, a3, b, h);
+    System.arraycopy (q1, 0, q, h, h);
+  }
+
+  /** Divide a[0:3h-1] by b[0:2h-1], writing the quotient to q[0:h-1]
+   * and the remainder to r[0:2h-1].
+   * Assumes: (int)b[2h-1] < 0 and a < b*2^(32*h).
+   */
+  private static void divide_3n2n (int[] q, int[] r, int[] a, int[] b, int h)
+  {
+    int[] b1 = copy (b, h, h);
+    // rhat holds r1*2^(32*h) + a3 and later the remainder; the extra
+    // word absorbs the carries of the correction steps.
+    int[] rhat = new int[h + h + 2];
+    if (cmp (a, h + h, b1, 0, h) < 0)
+      {
+        int[] r1 = new int[h];
+        divide_2n1n (q, r1, copy (a, h, h + h), b1, h);
+        System.arraycopy (r1, 0, rhat, h, h);
+      }
+    else
+      {
+        // The quotient estimate is 2^(32*h)-1, and the remainder is
+        // a1*2^(32*h) + a2 - (2^(32*h)-1)*b1 = a2 + b1, as a1 == b1.
+        for (int i = 0;  i < h;  i++)
+          q[i] = -1;
+        System.arraycopy (a, h, rhat, h, h);
+        rhat[h + h] = add_n (rhat, h, rhat, h, b1, h);
+      }
+    System.arraycopy (a, 0, rhat, 0, h);
+
+    int[] d = new int[h + h + 2];
+    mul (d, q, h, b, h);
+    // Corrected at most twice, as b is normalized.
+    while (cmp (rhat, d, h + h + 2) < 0)
+      {
+        add (rhat, rhat, h + h + 2, b, h + h);
+        sub_1 (q, h);
+      }
+    sub_n (rhat, rhat, d, h + h + 2);
+    System.arraycopy (rhat, 0, r, 0, h + h);
+  }
+
+  /** Compare x[xoff:xoff+len-1] and y[yoff:yoff+len-1] as unsigned. */
+  private static int cmp (int[] x, int xoff, int[] y, int yoff, int len)
+  {
+    while (--len >= 0)
+      {
+        int x_word = x[xoff + len];
+        int y_word = y[yoff + len];
+        if (x_word != y_word)
+          return (x_word ^ 0x80000000) > (y_word ^0x80000000) ? 1 : -1;
+      }
+    return 0;
+  }
+
+  /** Add x[xoff:xoff+len-1] and y[0:len-1] and write the result to
+   * dest[doff:doff+len-1].  Return the carry, either 0 or 1. */
+  private static int add_n (int[] dest, int doff,
+                            int[] x, int xoff, int[] y, int len)
+  {
+    long carry = 0;
+    for (int i = 0;  i < len;  i++)
+      {
+        carry += ((long) x[xoff + i] & 0xffffffffL)
+          + ((long) y[i] & 0xffffffffL);
+        dest[doff + i] = (int) carry;
+        carry >>>= 32;
+      }
+    return (int) carry;
+  }
+
+  /** Add x[0:xlen-1] and y[0:ylen-1], and write the xlen least
+   * significant words of the result to dest.
+   * Assumes: xlen >= ylen.  OK if dest==x.
+   * @return the carry, either 0 or 1
+   */
+  private static int add (int[] dest, int[] x, int xlen, int[] y, int ylen)
+  {
+    long carry = add_n (dest, x, y, ylen);
+    for (int i = ylen;  i < xlen;  i++)
+      {
+        carry += (long) x[i] & 0xffffffffL;
+        dest[i] = (int) carry;
+        carry >>>= 32;
+      }
+    return (int) carry;
+  }
+
+  /** Subtract y[0:ylen-1] from x[0:xlen-1] in place.
+   * Assumes: xlen >= ylen.
+   * @return the borrow, either 0 or 1
+   */
+  private static int sub (int[] x, int xlen, int[] y, int ylen)
+  {
+    int borrow = sub_n (x, x, y, ylen);
+    for (int i = ylen;  borrow != 0 && i < xlen;  i++)
+      borrow = x[i]-- == 0 ? 1 : 0;
+    return borrow;
+  }
+
+  /** Subtract one from x[0:len-1] in place. */
+  private static void sub_1 (int[] x, int len)
+  {
+    for (int i = 0;  i < len && x[i]-- == 0;  i++)
+      ;
+  }
+
+  /** Add x[0:len-1] into dest[offset:limit-1], propagating the carry.
+   * Leading zero words of x beyond limit are ignored. */
+  private static void add_at (int[] dest, int offset, int limit,
+                              int[] x, int len)
+  {
+    while (len > 0 && x[len - 1] == 0)
+      len--;
+    long carry = 0;
+    int i = 0;
+    for (;  i < len;  i++)
+      {
+        carry += ((long) dest[offset + i] & 0xffffffffL)
+          + ((long) x[i] & 0xffffffffL);
+        dest[offset + i] = (int) carry;
+        carry >>>= 32;
+      }
+    for (i += offset;  carry != 0 && i < limit;  i++)
+      carry = ++dest[i] == 0 ? 1 : 0;
+  }
+
+  /** Negate the two's complement number x[0:len-1] in place. */
+  private static void negate_n (int[] x, int len)
+  {
+    long carry = 1;
+    for (int i = 0;  i < len;  i++)
+      {
+        carry += (long) ~x[i] & 0xffffffffL;
+        x[i] = (int) carry;
+        carry >>>= 32;
+      }
+  }
+
+  /** Arithmetically shift the two's complement number x[0:len-1]
+   * one bit to the right in place. */
+  private static void sar_1 (int[] x, int len)
+  {
+    for (int i = 0;  i < len - 1;  i++)
+      x[i] = (x[i] >>> 1) | (x[i+1] << 31);
+    x[len - 1] >>= 1;
+  }
+
+  /** Divide the two's complement number x[0:len-1] by 3, and write the
+   * result to dest[0:len-1].  Assumes the division is exact.
+   * OK if dest==x.
+   * This function is basically the same as gmp's mpn_divexact_by3.
+   */
+  private static void divexact_by3 (int[] dest, int[] x, int len)
+  {
+    long c = 0;
+    for (int i = 0;  i < len;  i++)
+      {
+        long s = ((long) x[i] & 0xffffffffL) - c;
+        c = s < 0 ? 1 : 0;
+        // 0xaaaaaaab is the multiplicative inverse of 3 modulo 2^32.
+        int q = (int) s * 0xaaaaaaab;
+        dest[i] = q;
+        c += (((long) q & 0xffffffffL) * 3) >>> 32;
+      }
+  }
+
+  /** Return a copy of x[off:off+len-1]. */
+  private static int[] copy (int[] x, int off, int len)
+  {
+    return copy (x, off, len, len);
+  }
+
+  /** Return x[off:off+len-1], zero-extended to size words. */
+  private static int[] copy (int[] x, int off, int len, int size)
+  {
+    int[] result = new int[size];
+    System.arraycopy (x, off, result, 0, len);
+    return result;
+  }
+
   /** Number of digits in the conversion base that always fits in a word.
    * For example, for base 10 this is 9, since 10**9 is the
    * largest number that fits into a words (assuming 32-bit words).
@@ -39,6 +39,8 @@ exception statement from your version. */
 package gnu.java.net;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.HashSet;
@@ -87,10 +89,43 @@ public class IndexListParser
     {
     // Parse INDEX.LIST if it exists
     if (jarfile.getEntry(JAR_INDEX_FILE) != null)
+      parse(new URL(baseJarURL, JAR_INDEX_FILE).openStream(), baseURL);
+    else
       {
-        BufferedReader br = new BufferedReader(new InputStreamReader(new URL(baseJarURL,
-                                                                             JAR_INDEX_FILE).openStream()));
+        // INDEX.LIST does not exist
+        clearAll();
+      }
+    }
+    catch (Exception ex)
+    {
+      clearAll();
+    }
+  }
+
+  /**
+   * Parses an INDEX.LIST file from the given stream, which is closed
+   * afterwards.
+   *
+   * @param in - the contents of the INDEX.LIST file
+   * @param baseURL - the base url for the headers
+   */
+  public IndexListParser(InputStream in, URL baseURL)
+  {
+    try
+    {
+      parse(in, baseURL);
+    }
+    catch (Exception ex)
+    {
+      clearAll();
+    }
+  }
 
+  private void parse(InputStream in, URL baseURL) throws IOException
+  {
+    BufferedReader br = new BufferedReader(new InputStreamReader(in));
+    try
+      {
         // Must start with version info
         String line = br.readLine();
         if (!line.startsWith(JAR_INDEX_VERSION_KEY))
@@ -124,19 +159,11 @@ public class IndexListParser
             if (line == null)
               break;
           }
-
-        br.close();
       }
-    else
+    finally
       {
-        // INDEX.LIST does not exist
-        clearAll();
+        br.close();
       }
-    }
-    catch (Exception ex)
-    {
-      clearAll();
-    }
   }
 
   /**
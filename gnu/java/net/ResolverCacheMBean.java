@@ -0,0 +1,89 @@
+/* ResolverCacheMBean.java -- Management interface of the DNS cache
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.net;
+
+/**
+ * Management interface of the cache of name service resolutions used
+ * by {@link java.net.InetAddress}.  The cache is registered with the
+ * platform MBean server under the name
+ * <code>gnu.java.net:type=ResolverCache</code>.
+ */
+public interface ResolverCacheMBean
+{
+
+  /**
+   * Returns the number of lookups answered by a successful resolution
+   * in the cache.
+   */
+  long getHitCount();
+
+  /**
+   * Returns the number of lookups answered by a failed resolution in
+   * the cache.
+   */
+  long getNegativeHitCount();
+
+  /**
+   * Returns the number of lookups that were not in the cache.
+   */
+  long getMissCount();
+
+  /**
+   * Returns the number of misses that waited for a resolution already
+   * in progress for another thread instead of starting their own.
+   */
+  long getCoalescedCount();
+
+  /**
+   * Returns the number of resolutions renewed in the background
+   * before they expired.
+   */
+  long getRefreshCount();
+
+  /**
+   * Returns the number of resolutions removed from the cache because
+   * they expired or the cache was full.
+   */
+  long getEvictionCount();
+
+  /**
+   * Returns the number of resolutions currently in the cache.
+   */
+  int getSize();
+
+}
@@ -0,0 +1,573 @@
+/* ClassDataCache.java -- On-disk cache of class data from a jar file
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.net.loader;
+
+import gnu.classpath.SystemProperties;
+import gnu.java.net.IndexListParser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped archive holding the inflated class files of one jar
+ * file, its manifest and <code>INDEX.LIST</code>, and the names of all
+ * its entries.  A {@link JarURLLoader} with an archive finds classes
+ * without opening, let alone inflating, the jar; it only opens the jar
+ * for other resources.
+ *
+ * <p>Archives are only used if the system property
+ * <code>gnu.java.net.loader.classDataCache</code> names a directory.
+ * There is one archive per jar, named after the jar's canonical path.
+ * It records the jar's path, size and modification time, and a
+ * checksum of its central directory, and is written anew when any of
+ * them no longer match.  It also records a CRC-32 of every entry it
+ * stores, and an entry whose contents no longer match is read from
+ * the jar instead.  Signed jars are not cached, since the classes'
+ * certificates can only be had by reading them from the jar.</p>
+ */
+final class ClassDataCache
+{
+  /** The property naming the cache directory. */
+  private static final String CACHE_DIR
+    = "gnu.java.net.loader.classDataCache";
+
+  private static final int MAGIC = 0x47435044; // "GCPD"
+  private static final int VERSION = 2;
+
+  /** Set in the header of the archive of a jar that cannot be cached. */
+  private static final int FLAG_UNCACHEABLE = 1;
+
+  private static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+  private static final File cacheDir;
+
+  /**
+   * Returned by {@link #read} for an up to date archive of a jar that
+   * cannot be cached.
+   */
+  private static final ClassDataCache UNCACHEABLE
+    = new ClassDataCache(null, null);
+
+  static
+  {
+    String dir = SystemProperties.getProperty(CACHE_DIR);
+    cacheDir = dir == null ? null : new File(dir);
+  }
+
+  /** The archive contents, starting at the first data byte. */
+  private final ByteBuffer data;
+
+  /**
+   * The offset into data, the length and the CRC-32 of every entry, by
+   * name.  The offset is -1 for an entry whose contents are not stored.
+   */
+  private final HashMap<String,long[]> entries;
+
+  private Set<String> packageNames;
+
+  private ClassDataCache(ByteBuffer data, HashMap<String,long[]> entries)
+  {
+    this.data = data;
+    this.entries = entries;
+  }
+
+  /**
+   * Returns the archive for the jar at the given absolute
+   * <code>file:</code> URL, writing it first if it is missing or out
+   * of date.  Returns null if caching is off, or the jar cannot be
+   * cached, or anything goes wrong.
+   */
+  static ClassDataCache open(URL jarURL)
+  {
+    if (cacheDir == null || ! "file".equals(jarURL.getProtocol()))
+      return null;
+    try
+      {
+        File jar = new File(decode(jarURL.getFile())).getCanonicalFile();
+        if (! jar.isFile())
+          return null;
+        String path = jar.getPath();
+        File archive = new File(cacheDir, jar.getName() + "-"
+                                + Integer.toHexString(path.hashCode())
+                                + ".jcd");
+        ClassDataCache result = read(archive, jar);
+        if (result == null)
+          {
+            write(archive, jar);
+            result = read(archive, jar);
+          }
+        return result == UNCACHEABLE ? null : result;
+      }
+    catch (IOException ioe)
+      {
+        return null;
+      }
+    catch (SecurityException se)
+      {
+        return null;
+      }
+  }
+
+  /**
+   * Decodes the escaped characters of a <code>file:</code> URL's path.
+   * A path that is not validly escaped is returned as is.
+   */
+  private static String decode(String file)
+  {
+    if (file.indexOf('%') == -1)
+      return file;
+    try
+      {
+        // A '+' in a URL path is not a space.
+        return URLDecoder.decode(file.replace("+", "%2B"), "UTF-8");
+      }
+    catch (IllegalArgumentException iae)
+      {
+        return file;
+      }
+    catch (UnsupportedEncodingException uee)
+      {
+        return file;
+      }
+  }
+
+  /**
+   * Maps the archive and checks that it describes the jar as it is
+   * now.  Returns null if it does not, or does not exist, and
+   * {@link #UNCACHEABLE} if it records that the jar cannot be cached.
+   */
+  private static ClassDataCache read(File archive, File jar)
+    throws IOException
+  {
+    if (! archive.isFile())
+      return null;
+    FileInputStream in = new FileInputStream(archive);
+    MappedByteBuffer map;
+    try
+      {
+        FileChannel ch = in.getChannel();
+        map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+      }
+    finally
+      {
+        in.close();
+      }
+
+    DataInputStream header = new DataInputStream(new BufferInputStream(map));
+    try
+      {
+        if (header.readInt() != MAGIC || header.readInt() != VERSION
+            || ! header.readUTF().equals(jar.getPath())
+            || header.readLong() != jar.length()
+            || header.readLong() != jar.lastModified()
+            || header.readLong() != centralDirectoryChecksum(jar))
+          return null;
+        if ((header.readInt() & FLAG_UNCACHEABLE) != 0)
+          return UNCACHEABLE;
+        int count = header.readInt();
+        HashMap<String,long[]> entries = new HashMap<String,long[]>(count * 2);
+        for (int i = 0; i < count; i++)
+          {
+            String name = header.readUTF();
+            int offset = header.readInt();
+            int length = header.readInt();
+            long crc = header.readInt() & 0xffffffffL;
+            entries.put(name, new long[] { offset, length, crc });
+          }
+        ByteBuffer data = map.slice();
+        for (Iterator<long[]> it = entries.values().iterator(); it.hasNext(); )
+          {
+            long[] e = it.next();
+            if (e[0] != -1 && (e[0] < 0 || e[1] < 0
+                               || e[0] + e[1] > data.capacity()))
+              return null;
+          }
+        ClassDataCache result = new ClassDataCache(data, entries);
+        // A missing manifest or index could not be told from a damaged
+        // one later, so check them now.
+        if ((entries.containsKey(MANIFEST) && result.getData(MANIFEST) == null)
+            || (entries.containsKey(IndexListParser.JAR_INDEX_FILE)
+                && result.getData(IndexListParser.JAR_INDEX_FILE) == null))
+          return null;
+        return result;
+      }
+    catch (IOException ioe)
+      {
+        // Truncated or otherwise corrupt; it will be written again.
+        return null;
+      }
+  }
+
+  /**
+   * Writes the archive for the jar.  The archive is written to a
+   * temporary file first and then renamed, so that other processes
+   * never see a partial archive.
+   */
+  private static void write(File archive, File jar) throws IOException
+  {
+    String path = jar.getPath();
+    long length = jar.length();
+    long lastModified = jar.lastModified();
+    long checksum = centralDirectoryChecksum(jar);
+
+    ArrayList<String> names = new ArrayList<String>();
+    ArrayList<byte[]> contents = new ArrayList<byte[]>();
+    int flags = 0;
+    long total = 0;
+    JarFile jarfile = new JarFile(jar, false);
+    try
+      {
+        Enumeration<JarEntry> e = jarfile.entries();
+        while (e.hasMoreElements() && flags == 0)
+          {
+            JarEntry je = e.nextElement();
+            String name = je.getName();
+            names.add(name);
+            if (isSignature(name))
+              flags |= FLAG_UNCACHEABLE;
+            else if (name.endsWith(".class") || name.equals(MANIFEST)
+                     || name.equals(IndexListParser.JAR_INDEX_FILE))
+              {
+                byte[] b = readFully(jarfile.getInputStream(je));
+                contents.add(b);
+                total += b.length;
+                if (total > Integer.MAX_VALUE)
+                  flags |= FLAG_UNCACHEABLE;
+              }
+            else
+              contents.add(null);
+          }
+      }
+    finally
+      {
+        jarfile.close();
+      }
+    // Make sure we don't cache a jar that changed while we read it.
+    if (jar.length() != length || jar.lastModified() != lastModified
+        || centralDirectoryChecksum(jar) != checksum)
+      return;
+
+    if (! cacheDir.isDirectory() && ! cacheDir.mkdirs())
+      return;
+    File tmp = File.createTempFile(archive.getName(), ".tmp", cacheDir);
+    try
+      {
+        DataOutputStream out = new DataOutputStream
+          (new BufferedOutputStream(new FileOutputStream(tmp)));
+        try
+          {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(path);
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeLong(checksum);
+            out.writeInt(flags);
+            if (flags != 0)
+              out.writeInt(0);
+            else
+              {
+                out.writeInt(names.size());
+                int offset = 0;
+                for (int i = 0; i < names.size(); i++)
+                  {
+                    byte[] b = contents.get(i);
+                    out.writeUTF(names.get(i));
+                    out.writeInt(b == null ? -1 : offset);
+                    out.writeInt(b == null ? 0 : b.length);
+                    out.writeInt(b == null ? 0 : (int) crc(ByteBuffer.wrap(b)));
+                    if (b != null)
+                      offset += b.length;
+                  }
+                for (int i = 0; i < contents.size(); i++)
+                  {
+                    byte[] b = contents.get(i);
+                    if (b != null)
+                      out.write(b);
+                  }
+              }
+          }
+        finally
+          {
+            out.close();
+          }
+        if (! tmp.renameTo(archive))
+          {
+            // Some systems will not rename over an existing file.
+            archive.delete();
+            tmp.renameTo(archive);
+          }
+      }
+    finally
+      {
+        tmp.delete();
+      }
+  }
+
+  /**
+   * Returns the CRC-32 of the jar's central directory, which changes
+   * whenever an entry is added, removed or replaced, even if the size
+   * and modification time of the jar stay the same.
+   */
+  private static long centralDirectoryChecksum(File jar) throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(jar, "r");
+    try
+      {
+        // The end of central directory record is 22 bytes long, and is
+        // followed by a comment of at most 65535 bytes.
+        long length = raf.length();
+        byte[] buf = new byte[(int) Math.min(length, 22 + 0xffff)];
+        raf.seek(length - buf.length);
+        raf.readFully(buf);
+        for (int i = buf.length - 22; i >= 0; i--)
+          if (buf[i] == 'P' && buf[i + 1] == 'K'
+              && buf[i + 2] == 5 && buf[i + 3] == 6)
+            {
+              long size = readLeInt(buf, i + 12);
+              long offset = readLeInt(buf, i + 16);
+              if (offset + size > length)
+                break;
+              CRC32 crc = new CRC32();
+              byte[] cd = new byte[(int) Math.min(size, 8192)];
+              raf.seek(offset);
+              while (size > 0)
+                {
+                  int n = (int) Math.min(size, cd.length);
+                  raf.readFully(cd, 0, n);
+                  crc.update(cd, 0, n);
+                  size -= n;
+                }
+              return crc.getValue();
+            }
+        throw new IOException("no central directory: " + jar);
+      }
+    finally
+      {
+        raf.close();
+      }
+  }
+
+  private static long readLeInt(byte[] b, int off)
+  {
+    return ((b[off] & 0xff) | (b[off + 1] & 0xff) << 8
+            | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xffL) << 24);
+  }
+
+  private static long crc(ByteBuffer b)
+  {
+    CRC32 crc = new CRC32();
+    crc.update(b);
+    return crc.getValue();
+  }
+
+  /**
+   * Returns true if the entry is part of a jar signature.
+   */
+  private static boolean isSignature(String name)
+  {
+    if (! name.startsWith("META-INF/") || name.indexOf('/', 9) != -1)
+      return false;
+    name = name.toUpperCase();
+    return (name.endsWith(".SF") || name.endsWith(".DSA")
+            || name.endsWith(".RSA") || name.endsWith(".EC")
+            || name.startsWith("META-INF/SIG-"));
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException
+  {
+    try
+      {
+        byte[] buf = new byte[4096];
+        int len = 0;
+        int n;
+        while ((n = in.read(buf, len, buf.length - len)) != -1)
+          {
+            len += n;
+            if (len == buf.length)
+              {
+                byte[] newBuf = new byte[buf.length * 2];
+                System.arraycopy(buf, 0, newBuf, 0, len);
+                buf = newBuf;
+              }
+          }
+        byte[] result = new byte[len];
+        System.arraycopy(buf, 0, result, 0, len);
+        return result;
+      }
+    finally
+      {
+        in.close();
+      }
+  }
+
+  /**
+   * Returns true if the jar has an entry with this name, or with this
+   * name followed by a slash.  Like <code>ZipFile.getEntry()</code>,
+   * this finds directories without their trailing slash.
+   */
+  boolean contains(String name)
+  {
+    return (entries.containsKey(name)
+            || (! name.endsWith("/") && entries.containsKey(name + '/')));
+  }
+
+  /**
+   * Returns the contents of the named entry, or null if they are not
+   * in the archive or do not match their CRC-32.  The buffer is a
+   * read-only view of the archive.
+   */
+  ByteBuffer getData(String name)
+  {
+    long[] e = entries.get(name);
+    if (e == null || e[0] == -1)
+      return null;
+    ByteBuffer b = data.duplicate();
+    b.position((int) e[0]);
+    b.limit((int) (e[0] + e[1]));
+    b = b.slice();
+    if (crc(b.duplicate()) != e[2])
+      return null;
+    return b;
+  }
+
+  /**
+   * Returns the jar's manifest, or null if it has none.
+   */
+  Manifest getManifest() throws IOException
+  {
+    ByteBuffer b = getData(MANIFEST);
+    return b == null ? null : new Manifest(new BufferInputStream(b));
+  }
+
+  /**
+   * Returns the jar's INDEX.LIST, or null if it has none.
+   */
+  InputStream getIndexList()
+  {
+    ByteBuffer b = getData(IndexListParser.JAR_INDEX_FILE);
+    return b == null ? null : new BufferInputStream(b);
+  }
+
+  /**
+   * Returns the package names of all entries, as described by
+   * {@link URLLoader#getPackageNames()}.
+   */
+  synchronized Set<String> getPackageNames()
+  {
+    if (packageNames == null)
+      {
+        HashSet<String> names = new HashSet<String>();
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); )
+          {
+            String name = it.next();
+            names.add(URLLoader.getPackageName(name));
+            if (name.endsWith("/"))
+              names.add(URLLoader.getPackageName
+                        (name.substring(0, name.length() - 1)));
+          }
+        packageNames = names;
+      }
+    return packageNames;
+  }
+
+  /**
+   * An input stream reading the remaining bytes of a buffer, and
+   * advancing its position.
+   */
+  static final class BufferInputStream extends InputStream
+  {
+    private final ByteBuffer buf;
+
+    BufferInputStream(ByteBuffer buf)
+    {
+      this.buf = buf;
+    }
+
+    public int read()
+    {
+      return buf.hasRemaining() ? buf.get() & 0xff : -1;
+    }
+
+    public int read(byte[] b, int off, int len)
+    {
+      if (len == 0)
+        return 0;
+      if (! buf.hasRemaining())
+        return -1;
+      len = Math.min(len, buf.remaining());
+      buf.get(b, off, len);
+      return len;
+    }
+
+    public long skip(long n)
+    {
+      int len = (int) Math.min(Math.max(n, 0), buf.remaining());
+      buf.position(buf.position() + len);
+      return len;
+    }
+
+    public int available()
+    {
+      return buf.remaining();
+    }
+  }
+}
@@ -3,12 +3,16 @@ package gnu.java.net.loader;
 import gnu.java.net.IndexListParser;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.JarURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLStreamHandlerFactory;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -25,10 +29,19 @@ import java.util.jar.Manifest;
  */
 public final class JarURLLoader extends URLLoader
 {
-  // True if we've initialized -- i.e., tried open the jar file.
-  boolean initialized;
+  // True if we've initialized -- i.e., tried open the jar file, or
+  // found it in the class data cache.  Loaders may run in parallel, so
+  // this is volatile; it is set last, publishing the fields initialize()
+  // sets.
+  volatile boolean initialized;
+  // True if we've tried to open the jar file.
+  private boolean opened;
   // The jar file for this url.
   JarFile jarfile;
+  // The cached class data of the jar file, or null.
+  private ClassDataCache classData;
+  // The absolute URL of the jar file.
+  private final URL absoluteURL;
   // Base jar: url for all resources loaded from jar.
   final URL baseJarURL;
   // The "Class-Path" attribute of this Jar's manifest.
@@ -37,6 +50,9 @@ public final class JarURLLoader extends URLLoader
   // This is a set of all prefixes and top-level files that
   // ought to be available in this jar.
   Set<String> indexSet;
+  // The package names of all entries in the jar, computed when first
+  // asked for if there is no index.
+  private volatile Set<String> entrySet;
 
   // This constructor is used internally.  It purposely does not open
   // the jar file -- it defers this until later.  This allows us to
@@ -60,6 +76,7 @@ public final class JarURLLoader extends URLLoader
         // Ignore.
       }
     this.baseJarURL = newBaseURL;
+    this.absoluteURL = absoluteUrl;
     this.classPath = null;
     this.indexSet = indexSet;
   }
@@ -76,21 +93,38 @@ public final class JarURLLoader extends URLLoader
     initialize();
   }
 
-  private void initialize()
+  private synchronized void initialize()
   {
-    JarFile jarfile = null;
+    if (initialized)
+      return;
     try
       {
-        jarfile =
-          ((JarURLConnection) baseJarURL.openConnection()).getJarFile();
-
         Manifest manifest;
         Attributes attributes;
         String classPathString;
+        LinkedHashMap<URL, Set<String>> indexMap;
+
+        // With cached class data we don't open the jar file until we
+        // are asked for a resource that is not in the cache.
+        classData = ClassDataCache.open(absoluteURL);
+        if (classData != null)
+          {
+            InputStream index = classData.getIndexList();
+            if (index != null)
+              indexMap = new IndexListParser(index, baseURL).getHeaders();
+            else
+              indexMap = null;
+          }
+        else
+          {
+            JarFile jarfile = openJarFile();
+            if (jarfile == null)
+              return;
+            IndexListParser parser = new IndexListParser(jarfile, baseJarURL,
+                                                         baseURL);
+            indexMap = parser.getHeaders();
+          }
 
-        IndexListParser parser = new IndexListParser(jarfile, baseJarURL,
-                                                     baseURL);
-        LinkedHashMap<URL, Set<String>> indexMap = parser.getHeaders();
         if (indexMap != null)
           {
             // Note that the index also computes
@@ -121,7 +155,9 @@ public final class JarURLLoader extends URLLoader
                   }
               }
           }
-        else if ((manifest = jarfile.getManifest()) != null
+        else if ((manifest = (classData != null
+                              ? classData.getManifest()
+                              : jarfile.getManifest())) != null
                  && (attributes = manifest.getMainAttributes()) != null
                  && ((classPathString
                       = attributes.getValue(Attributes.Name.CLASS_PATH))
@@ -159,9 +195,29 @@ public final class JarURLLoader extends URLLoader
       {
         /* ignored */
       }
+    finally
+      {
+        this.initialized = true;
+      }
+  }
 
-    this.jarfile = jarfile;
-    this.initialized = true;
+  // Opens the jar file, the first time only.
+  private synchronized JarFile openJarFile()
+  {
+    if (! opened)
+      {
+        opened = true;
+        try
+          {
+            jarfile =
+              ((JarURLConnection) baseJarURL.openConnection()).getJarFile();
+          }
+        catch (IOException ioe)
+          {
+            /* ignored */
+          }
+      }
+    return jarfile;
   }
 
   /** get resource with the name "name" in the jar url */
@@ -172,11 +228,7 @@ public final class JarURLLoader extends URLLoader
     if (indexSet != null)
       {
         // Trust the index.
-        String basename = name;
-        int offset = basename.lastIndexOf('/');
-        if (offset != -1)
-          basename = basename.substring(0, offset);
-        if (! indexSet.contains(basename))
+        if (! indexSet.contains(getPackageName(name)))
           return null;
         // FIXME: if the index claim to hold the resource, and jar file
         // doesn't have it, we're supposed to throw an exception.  However,
@@ -186,6 +238,16 @@ public final class JarURLLoader extends URLLoader
 
     if (! initialized)
       initialize();
+    if (classData != null)
+      {
+        if (! classData.contains(name))
+          return null;
+        ByteBuffer data = classData.getData(name);
+        if (data != null)
+          return new ClassDataResource(this, name, data);
+      }
+
+    JarFile jarfile = openJarFile();
     if (jarfile == null)
       return null;
 
@@ -200,6 +262,8 @@ public final class JarURLLoader extends URLLoader
   {
     try
       {
+        if (classData != null)
+          return classData.getManifest();
         return (jarfile == null) ? null : jarfile.getManifest();
       }
     catch (IOException ioe)
@@ -212,4 +276,54 @@ public final class JarURLLoader extends URLLoader
   {
     return classPath;
   }
+
+  // Returns the jar: URL of the named entry.
+  URL getResourceURL(String name)
+  {
+    try
+      {
+        return new URL(baseJarURL, name, cache.get(factory, "jar"));
+      }
+    catch (MalformedURLException e)
+      {
+        InternalError ie = new InternalError();
+        ie.initCause(e);
+        throw ie;
+      }
+  }
+
+  public Set<String> getPackageNames()
+  {
+    if (indexSet != null)
+      return indexSet;
+    if (classData != null)
+      return classData.getPackageNames();
+
+    Set<String> names = entrySet;
+    if (names == null)
+      {
+        if (! initialized)
+          initialize();
+        if (indexSet != null)
+          return indexSet;
+        if (classData != null)
+          return classData.getPackageNames();
+        names = new HashSet<String>();
+        if (jarfile != null)
+          {
+            Enumeration<JarEntry> e = jarfile.entries();
+            while (e.hasMoreElements())
+              {
+                String entryName = e.nextElement().getName();
+                names.add(getPackageName(entryName));
+                // getResource() also finds "a/b/" when asked for "a/b".
+                if (entryName.endsWith("/"))
+                  names.add(getPackageName(entryName.substring
+                                           (0, entryName.length() - 1)));
+              }
+          }
+        entrySet = names;
+      }
+    return names;
+  }
 }
@@ -41,7 +41,6 @@ package gnu.java.net.loader;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.cert.Certificate;
 import java.util.jar.JarEntry;
@@ -79,16 +78,6 @@ public final class JarURLResource extends Resource
 
   public URL getURL()
   {
-    try
-      {
-        return new URL(((JarURLLoader) loader).baseJarURL, name,
-                       loader.cache.get(loader.factory, "jar"));
-      }
-    catch (MalformedURLException e)
-      {
-        InternalError ie = new InternalError();
-        ie.initCause(e);
-        throw ie;
-      }
+    return ((JarURLLoader) loader).getResourceURL(name);
   }
 }
@@ -39,6 +39,8 @@ exception statement from your version. */
 package gnu.java.net.loader;
 
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -107,4 +109,52 @@ public abstract class Resource
    * this resource can be loaded.
    */
   public abstract InputStream getInputStream() throws IOException;
+
+  /**
+   * Returns the contents of this <code>Resource</code>.
+   */
+  public byte[] getBytes() throws IOException
+  {
+    byte[] data;
+    InputStream in = getInputStream();
+    try
+      {
+        int length = getLength();
+        if (length != -1)
+          {
+            // We know the length of the data.
+            // Just try to read it in all at once
+            data = new byte[length];
+            int pos = 0;
+            while (length - pos > 0)
+              {
+                int len = in.read(data, pos, length - pos);
+                if (len == -1)
+                  throw new EOFException("Not enough data reading from: "
+                                         + in);
+                pos += len;
+              }
+          }
+        else
+          {
+            // We don't know the data length.
+            // Have to read it in chunks.
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            byte[] b = new byte[4096];
+            int l = 0;
+            while (l != -1)
+              {
+                l = in.read(b);
+                if (l != -1)
+                  out.write(b, 0, l);
+              }
+            data = out.toByteArray();
+          }
+      }
+    finally
+      {
+        in.close();
+      }
+    return data;
+  }
 }
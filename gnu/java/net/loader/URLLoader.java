@@ -44,6 +44,7 @@ import java.net.URLStreamHandlerFactory;
 import java.security.CodeSource;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.jar.Manifest;
 
 /**
@@ -145,4 +146,31 @@ public abstract class URLLoader
   {
     return null;
   }
+
+  /**
+   * Returns the set of all directories, and of all top-level file
+   * names, under which this <code>URLLoader</code> can find resources,
+   * in the form computed by {@link #getPackageName(String)}; or
+   * <code>null</code> if this is not known and every resource name
+   * has to be tried.
+   */
+  public Set<String> getPackageNames()
+  {
+    return null;
+  }
+
+  /**
+   * Returns the key under which a resource is listed in the result of
+   * {@link #getPackageNames()}: the directory part of the resource
+   * name, or the name itself for a top-level file.  This is also the
+   * form used by <code>META-INF/INDEX.LIST</code>.
+   */
+  public static String getPackageName(String resourceName)
+  {
+    int start = resourceName.startsWith("/") ? 1 : 0;
+    int offset = resourceName.lastIndexOf('/');
+    if (offset < start)
+      return resourceName.substring(start);
+    return resourceName.substring(start, offset);
+  }
 }
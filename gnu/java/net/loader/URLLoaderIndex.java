@@ -0,0 +1,115 @@
+/* URLLoaderIndex.java -- Find the URLLoaders that may hold a resource
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.net.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps package names to the <code>URLLoader</code>s of a class
+ * loader that can hold resources in that package, so that a lookup
+ * does not have to probe every jar on the class path.  The index of a
+ * jar comes from its <code>META-INF/INDEX.LIST</code> when it has one,
+ * and from its entry names otherwise; see
+ * {@link URLLoader#getPackageNames()}.  Loaders that cannot tell what
+ * they hold, such as directories, are candidates for every package.
+ *
+ * <p>The candidates for a package are computed when it is first
+ * looked up and are kept until {@link #clear()} is called, which the
+ * owner must do whenever it adds a loader.</p>
+ */
+public final class URLLoaderIndex
+{
+  private static final URLLoader[] NO_LOADERS = new URLLoader[0];
+
+  /** The loaders in search order; owned and updated by the class loader. */
+  private final List<URLLoader> loaders;
+
+  /** The candidate loaders, in search order, by package name. */
+  private volatile ConcurrentHashMap<String,URLLoader[]> candidates
+    = new ConcurrentHashMap<String,URLLoader[]>();
+
+  /**
+   * Creates an index over the given list, which must be safe to copy
+   * while another thread adds to it (a <code>Vector</code>, say).
+   */
+  public URLLoaderIndex(List<URLLoader> loaders)
+  {
+    this.loaders = loaders;
+  }
+
+  /**
+   * Returns the loaders that may hold the named resource, in the
+   * order in which they should be searched.
+   */
+  public URLLoader[] getLoaders(String resourceName)
+  {
+    String packageName = URLLoader.getPackageName(resourceName);
+    // Read the map before the list, so that a loader added meanwhile
+    // can only make us store into a map that has been dropped.
+    ConcurrentHashMap<String,URLLoader[]> map = candidates;
+    URLLoader[] result = map.get(packageName);
+    if (result == null)
+      {
+        URLLoader[] all = loaders.toArray(NO_LOADERS);
+        ArrayList<URLLoader> list = new ArrayList<URLLoader>();
+        for (int i = 0; i < all.length; i++)
+          {
+            URLLoader loader = all[i];
+            if (loader == null)
+              continue;
+            Set<String> names = loader.getPackageNames();
+            if (names == null || names.contains(packageName))
+              list.add(loader);
+          }
+        result = list.isEmpty() ? NO_LOADERS : list.toArray(NO_LOADERS);
+        map.put(packageName, result);
+      }
+    return result;
+  }
+
+  /**
+   * Forgets all computed candidates.
+   */
+  public void clear()
+  {
+    candidates = new ConcurrentHashMap<String,URLLoader[]>();
+  }
+}
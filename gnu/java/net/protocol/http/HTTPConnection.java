@@ -47,18 +47,33 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import javax.net.ssl.HandshakeCompletedListener;
 import javax.net.ssl.SSLContext;
@@ -342,15 +357,38 @@ public class HTTPConnection
   }
 
   /**
-   * Manages a pool of HTTPConections.  The pool will have a maximum
-   * size determined by the value of the maxConn parameter passed to
-   * the {@link #get} method.  This value inevitably comes from the
-   * http.maxConnections system property.  If the
-   * classpath.net.http.keepAliveTTL system property is set, that will
-   * be the maximum time (in seconds) that an idle connection will be
-   * maintained.
+   * Manages a pool of idle HTTPConnections, kept separately for each
+   * route, i.e. each combination of host, port, security and proxy.
+   * Connections are borrowed and returned without taking a lock.
+   * <p>
+   * The pool is configured by the following system properties, which
+   * are read once when the pool is created:
+   * <dl>
+   * <dt>http.maxConnections</dt>
+   * <dd>The maximum number of idle connections kept per route
+   * (default 5).</dd>
+   * <dt>classpath.net.http.maxIdleConnections</dt>
+   * <dd>The maximum number of idle connections kept over all routes
+   * (default 256).</dd>
+   * <dt>classpath.net.http.maxConnectionsPerRoute</dt>
+   * <dd>If greater than zero, the maximum number of connections, idle
+   * or in use, to a single route.  Callers asking for more wait until
+   * a connection is closed or the connect timeout expires.  A
+   * connection that is never closed gives its place back when it is
+   * garbage collected, or once it is older than maxConnectionAge.
+   * Unlimited by default.</dd>
+   * <dt>classpath.net.http.keepAliveTTL</dt>
+   * <dd>The maximum time (in seconds) that an idle connection will be
+   * maintained (default 10).</dd>
+   * <dt>classpath.net.http.maxConnectionAge</dt>
+   * <dd>If greater than zero, the maximum time (in seconds) since a
+   * connection was established after which it is no longer reused.</dd>
+   * </dl>
+   * The pool's statistics are exported through JMX as
+   * {@link HTTPConnectionPoolMBean}.
    */
   static class Pool
+    implements HTTPConnectionPoolMBean
   {
     /**
      * Singleton instance of the pool.
@@ -358,109 +396,251 @@ public class HTTPConnection
     static Pool instance = new Pool();
 
     /**
-     * The pool
+     * The JMX name of the pool.
      */
-    final LinkedList<HTTPConnection> connectionPool
-      = new LinkedList<HTTPConnection>();
+    static final String OBJECT_NAME =
+      "gnu.java.net.protocol.http:type=HTTPConnectionPool";
 
     /**
-     * Maximum size of the pool.
+     * Identifies the server a connection talks to.
      */
-    int maxConnections;
+    static final class Route
+    {
+      final String host;
+      final int port;
+      final boolean secure;
+      final String proxyHost;
+      final int proxyPort;
+
+      Route(String host, int port, boolean secure,
+            String proxyHost, int proxyPort)
+      {
+        this.host = host;
+        this.port = port;
+        this.secure = secure;
+        this.proxyHost = proxyHost;
+        this.proxyPort = proxyHost == null ? 0 : proxyPort;
+      }
+
+      public boolean equals(Object o)
+      {
+        if (!(o instanceof Route))
+          return false;
+        Route r = (Route) o;
+        return host.equals(r.host) && port == r.port && secure == r.secure
+          && proxyPort == r.proxyPort
+          && (proxyHost == null ? r.proxyHost == null
+              : proxyHost.equals(r.proxyHost));
+      }
+
+      public int hashCode()
+      {
+        int h = host.hashCode() * 31 + port;
+        if (proxyHost != null)
+          h = h * 31 + proxyHost.hashCode() + proxyPort;
+        return secure ? ~h : h;
+      }
+    }
+
+    /**
+     * The idle connections of one route, oldest first.
+     */
+    static final class RoutePool
+    {
+      final Route route;
+
+      final ConcurrentLinkedQueue<HTTPConnection> idle
+        = new ConcurrentLinkedQueue<HTTPConnection>();
+
+      /**
+       * The number of connections in idle.  Kept separately, as the
+       * size of a ConcurrentLinkedQueue is expensive to compute.
+       */
+      final AtomicInteger idleCount = new AtomicInteger();
+
+      /**
+       * Permits for the connections to this route, or null if the
+       * number of connections is not limited.
+       */
+      final Semaphore permits;
+
+      /**
+       * The leases of the permits taken, with a value of TRUE.
+       */
+      final ConcurrentHashMap<Lease, Boolean> leases
+        = new ConcurrentHashMap<Lease, Boolean>();
+
+      RoutePool(Route route, int maxConnections)
+      {
+        this.route = route;
+        permits = maxConnections > 0 ? new Semaphore(maxConnections) : null;
+      }
+    }
+
+    /**
+     * Records that a connection holds a permit of its route.  It only
+     * weakly refers to the connection, so that the permit can be
+     * returned when a connection that was never closed is collected.
+     */
+    static final class Lease
+      extends WeakReference<HTTPConnection>
+    {
+      final RoutePool routePool;
+
+      Lease(HTTPConnection c, RoutePool routePool,
+            ReferenceQueue<HTTPConnection> queue)
+      {
+        super(c, queue);
+        this.routePool = routePool;
+      }
+    }
+
+    /**
+     * The pools of idle connections, by route.
+     */
+    final ConcurrentHashMap<Route, RoutePool> routes
+      = new ConcurrentHashMap<Route, RoutePool>();
+
+    /**
+     * Maximum number of idle connections per route.
+     */
+    final int maxConnections;
+
+    /**
+     * Maximum number of idle connections over all routes.
+     */
+    final int maxIdleConnections;
+
+    /**
+     * If greater than zero, the maximum number of connections per
+     * route, idle or in use.
+     */
+    final int maxConnectionsPerRoute;
 
     /**
      * If greater than zero, the maximum time a connection will remain
-     * int the pool.
+     * in the pool.
+     */
+    final int connectionTTL;
+
+    /**
+     * If greater than zero, the maximum time since a connection was
+     * established after which it is no longer reused.
+     */
+    final int maxConnectionAge;
+
+    /**
+     * The number of idle connections over all routes.
+     */
+    final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * The number of permits taken and not yet returned over all routes.
+     */
+    final AtomicInteger leaseCount = new AtomicInteger();
+
+    /**
+     * The leases of connections that were collected.
+     */
+    final ReferenceQueue<HTTPConnection> collected
+      = new ReferenceQueue<HTTPConnection>();
+
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    final AtomicLong evictions = new AtomicLong();
+    final AtomicLong waitTime = new AtomicLong();
+
+    /**
+     * Whether a Reaper thread is currently running.
+     */
+    final AtomicBoolean reaperRunning = new AtomicBoolean();
+
+    /**
+     * Whether the pool was already registered with JMX.
      */
-    int connectionTTL;
+    final AtomicBoolean registered = new AtomicBoolean();
 
     /**
-     * A thread that removes connections older than connectionTTL.
+     * A thread that removes connections that are idle for longer than
+     * connectionTTL, or older than maxConnectionAge, and returns the
+     * permits of connections that were never closed.  It sweeps the
+     * pool periodically, and exits when the pool stays empty and no
+     * permits are taken for one period.
      */
     class Reaper
       implements Runnable
     {
       public void run()
       {
-        synchronized (Pool.this)
+        // Half the shorter of the limits that are set; with neither,
+        // there are only collected connections to look for.
+        long period = connectionTTL;
+        if (maxConnectionAge > 0 && (period <= 0 || maxConnectionAge < period))
+          period = maxConnectionAge;
+        if (period <= 0)
+          period = 10000;
+        period = Math.max(period / 2, 100);
+        try
           {
-            try
+            do
               {
-                do
+                try
                   {
-                    while (connectionPool.size() > 0)
-                      {
-                        long currentTime = System.currentTimeMillis();
-
-                        HTTPConnection c = connectionPool.getFirst();
-
-                        long waitTime = c.timeLastUsed
-                          + connectionTTL - currentTime;
-
-                        if (waitTime <= 0)
-                          removeOldest();
-                        else
-                          try
-                            {
-                              Pool.this.wait(waitTime);
-                            }
-                          catch (InterruptedException _)
-                            {
-                              // Ignore the interrupt.
-                            }
-                      }
-                    // After the pool is empty, wait TTL to see if it
-                    // is used again.  This is because in the
-                    // situation where a single thread is making HTTP
-                    // requests to the same server it can remove the
-                    // connection from the pool before the Reaper has
-                    // a chance to start.  This would cause the Reaper
-                    // to exit if it were not for this extra delay.
-                    // The result would be starting a Reaper thread
-                    // for each HTTP request.  With the delay we get
-                    // at most one Reaper created each TTL.
-                    try
-                      {
-                        Pool.this.wait(connectionTTL);
-                      }
-                    catch (InterruptedException _)
-                      {
-                        // Ignore the interrupt.
-                      }
+                    Thread.sleep(period);
                   }
-                while (connectionPool.size() > 0);
-              }
-            finally
-              {
-                reaper = null;
+                catch (InterruptedException _)
+                  {
+                    // Ignore the interrupt.
+                  }
+                sweep(System.currentTimeMillis());
               }
+            while (idleCount.get() > 0 || leaseCount.get() > 0);
+          }
+        finally
+          {
+            reaperRunning.set(false);
           }
+        // A connection may have been returned after the last check.
+        if (idleCount.get() > 0 || leaseCount.get() > 0)
+          startReaper();
       }
     }
 
-    Reaper reaper;
-
     /**
      * Private constructor to ensure singleton.
      */
     private Pool()
     {
+      maxConnections = getIntProperty("http.maxConnections", 5, 1);
+      maxIdleConnections =
+        getIntProperty("classpath.net.http.maxIdleConnections", 256, 1);
+      maxConnectionsPerRoute =
+        getIntProperty("classpath.net.http.maxConnectionsPerRoute", 0, 0);
+      connectionTTL =
+        1000 * getIntProperty("classpath.net.http.keepAliveTTL", 10, 0);
+      maxConnectionAge =
+        1000 * getIntProperty("classpath.net.http.maxConnectionAge", 0, 0);
     }
 
     /**
-     * Tests for a matching connection.
-     *
-     * @param c connection to match.
-     * @param h the host name.
-     * @param p the port.
-     * @param sec true if using https.
-     *
-     * @return true if c matches h, p, and sec.
+     * Returns the value of an integer system property, or the default
+     * if it is unset, malformed or less than min.
      */
-    private static boolean matches(HTTPConnection c,
-                                   String h, int p, boolean sec)
+    private static int getIntProperty(String name, int def, int min)
     {
-      return h.equals(c.hostname) && (p == c.port) && (sec == c.secure);
+      String s = SystemProperties.getProperty(name);
+      if (s != null && s.length() > 0)
+        try
+          {
+            int v = Integer.parseInt(s);
+            if (v >= min)
+              return v;
+          }
+        catch (NumberFormatException _)
+          {
+            // Ignore.
+          }
+      return def;
     }
 
     /**
@@ -471,117 +651,311 @@ public class HTTPConnection
      * @param host the name of the host to connect to
      * @param port the port on the host to connect to
      * @param secure whether to use a secure connection
+     * @param proxyHost the name of the proxy to connect through, or null
+     * @param proxyPort the port on the proxy
      *
      * @return the HTTPConnection.
+     * @throws IOException if the route's connection limit is reached and
+     * no connection becomes available within the connect timeout
      */
-    synchronized HTTPConnection get(String host,
-                                    int port,
-                                    boolean secure,
-                                    int connectionTimeout, int timeout)
+    HTTPConnection get(String host, int port, boolean secure,
+                       String proxyHost, int proxyPort,
+                       int connectionTimeout, int timeout)
+      throws IOException
     {
-      String ttl =
-        SystemProperties.getProperty("classpath.net.http.keepAliveTTL");
-      connectionTTL = 10000;
-      if (ttl != null && ttl.length() > 0)
-        try
-          {
-            int v = 1000 * Integer.parseInt(ttl);
-            if (v >= 0)
-              connectionTTL = v;
-          }
-        catch (NumberFormatException _)
-          {
-            // Ignore.
-          }
+      if (!registered.get() && registered.compareAndSet(false, true))
+        register();
 
-      String mc = SystemProperties.getProperty("http.maxConnections");
-      maxConnections = 5;
-      if (mc != null && mc.length() > 0)
-        try
-          {
-            int v = Integer.parseInt(mc);
-            if (v > 0)
-              maxConnections = v;
-          }
-        catch (NumberFormatException _)
-          {
-            // Ignore.
-          }
+      Route route = new Route(host, port, secure, proxyHost, proxyPort);
+      RoutePool rp = routes.get(route);
+      if (rp == null)
+        {
+          RoutePool nrp = new RoutePool(route, maxConnectionsPerRoute);
+          rp = routes.putIfAbsent(route, nrp);
+          if (rp == null)
+            rp = nrp;
+        }
 
-      HTTPConnection c = null;
+      long now = System.currentTimeMillis();
+      HTTPConnection c;
+      while ((c = rp.idle.poll()) != null)
+        {
+          rp.idleCount.decrementAndGet();
+          idleCount.decrementAndGet();
+          if (c.closed) // closed while idle; its permit is already back
+            continue;
+          if (!isExpired(c, now))
+            break;
+          evictions.incrementAndGet();
+          discard(c);
+        }
+      if (c != null)
+        {
+          hits.incrementAndGet();
+          // Update the timeout.
+          if (c.socket != null)
+            try
+              {
+                c.socket.setSoTimeout(timeout);
+              }
+            catch (SocketException _)
+              {
+                // Ignore.
+              }
+          return c;
+        }
 
-      ListIterator<HTTPConnection> it = connectionPool.listIterator(0);
-      while (it.hasNext())
+      misses.incrementAndGet();
+      if (rp.permits != null)
+        acquire(rp.permits, connectionTimeout);
+      c = new HTTPConnection(host, port, secure, connectionTimeout, timeout);
+      if (proxyHost != null)
+        c.setProxy(proxyHost, proxyPort);
+      c.routePool = rp;
+      c.setPool(this);
+      if (rp.permits != null)
         {
-          HTTPConnection cc = it.next();
-          if (matches(cc, host, port, secure))
+          c.lease = new Lease(c, rp, collected);
+          rp.leases.put(c.lease, Boolean.TRUE);
+          leaseCount.incrementAndGet();
+          startReaper();
+        }
+      return c;
+    }
+
+    /**
+     * Waits for a connection permit, adding the time spent to waitTime.
+     */
+    private void acquire(Semaphore permits, int connectionTimeout)
+      throws IOException
+    {
+      if (permits.tryAcquire())
+        return;
+      long start = System.nanoTime();
+      try
+        {
+          if (connectionTimeout > 0)
             {
-              c = cc;
-              it.remove();
-              // Update the timeout.
-              if (c.socket != null)
-                try
-                  {
-                    c.socket.setSoTimeout(timeout);
-                  }
-                catch (SocketException _)
-                  {
-                    // Ignore.
-                  }
-              break;
+              if (!permits.tryAcquire(connectionTimeout,
+                                      TimeUnit.MILLISECONDS))
+                throw new SocketTimeoutException("timed out waiting for "
+                                                 + "a pooled connection");
             }
+          else
+            permits.acquire();
         }
-      if (c == null)
+      catch (InterruptedException e)
         {
-          c = new HTTPConnection(host, port, secure,
-                                 connectionTimeout, timeout);
-          c.setPool(this);
+          Thread.currentThread().interrupt();
+          throw (IOException) new InterruptedIOException().initCause(e);
+        }
+      finally
+        {
+          waitTime.addAndGet(System.nanoTime() - start);
         }
-      return c;
     }
 
     /**
      * Put an idle HTTPConnection back into the pool.  If this causes
-     * the pool to be come too large, the oldest connection is removed
-     * and closed.
-     *
+     * the route's pool to become too large, its oldest connection is
+     * removed and closed.  If the pool as a whole is full, c itself is
+     * closed.
      */
-    synchronized void put(HTTPConnection c)
+    void put(HTTPConnection c)
     {
-      c.timeLastUsed = System.currentTimeMillis();
-      connectionPool.addLast(c);
-
-      // maxConnections must always be >= 1
-      while (connectionPool.size() >= maxConnections)
-        removeOldest();
-
-      if (connectionTTL > 0 && null == reaper) {
-        // If there is a connectionTTL, then the reaper has removed
-        // any stale connections, so we don't have to check for stale
-        // now.  We do have to start a reaper though, as there is not
-        // one running now.
-        reaper = new Reaper();
-        Thread t = new Thread(reaper, "HTTPConnection.Reaper");
-        t.setDaemon(true);
-        t.start();
-      }
+      RoutePool rp = c.routePool;
+      // The connection has just been used; only its age counts here.
+      long now = System.currentTimeMillis();
+      c.timeLastUsed = now;
+      if (rp == null || isExpired(c, now))
+        {
+          evictions.incrementAndGet();
+          discard(c);
+          return;
+        }
+      if (idleCount.incrementAndGet() > maxIdleConnections)
+        {
+          idleCount.decrementAndGet();
+          evictions.incrementAndGet();
+          discard(c);
+          return;
+        }
+
+      rp.idle.offer(c);
+      if (rp.idleCount.incrementAndGet() > maxConnections)
+        {
+          HTTPConnection cx = rp.idle.poll();
+          if (cx != null)
+            {
+              rp.idleCount.decrementAndGet();
+              idleCount.decrementAndGet();
+              evictions.incrementAndGet();
+              discard(cx);
+            }
+        }
+
+      if (connectionTTL > 0 || maxConnectionAge > 0)
+        startReaper();
+    }
+
+    /**
+     * Starts a Reaper thread, unless one is already running.
+     */
+    void startReaper()
+    {
+      if (!reaperRunning.get() && reaperRunning.compareAndSet(false, true))
+        {
+          Thread t = new Thread(new Reaper(), "HTTPConnection.Reaper");
+          t.setDaemon(true);
+          t.start();
+        }
+    }
+
+    /**
+     * Tests whether a connection is no longer fit for reuse.
+     */
+    boolean isExpired(HTTPConnection c, long now)
+    {
+      if (connectionTTL > 0 && c.timeLastUsed > 0
+          && now - c.timeLastUsed >= connectionTTL)
+        return true;
+      return maxConnectionAge > 0 && c.timeConnected > 0
+        && now - c.timeConnected >= maxConnectionAge;
+    }
+
+    /**
+     * Removes and closes all expired idle connections, and returns the
+     * permits of connections that were collected or, while in use,
+     * became older than maxConnectionAge.
+     */
+    void sweep(long now)
+    {
+      Reference<? extends HTTPConnection> ref;
+      while ((ref = collected.poll()) != null)
+        release((Lease) ref);
+
+      Iterator<RoutePool> routeIt = routes.values().iterator();
+      while (routeIt.hasNext())
+        {
+          RoutePool rp = routeIt.next();
+          Iterator<HTTPConnection> it = rp.idle.iterator();
+          while (it.hasNext())
+            {
+              HTTPConnection c = it.next();
+              // Another thread may have borrowed c in the meantime.
+              if (isExpired(c, now) && rp.idle.remove(c))
+                {
+                  rp.idleCount.decrementAndGet();
+                  idleCount.decrementAndGet();
+                  evictions.incrementAndGet();
+                  discard(c);
+                }
+            }
+          if (maxConnectionAge > 0)
+            for (Lease lease : rp.leases.keySet())
+              {
+                HTTPConnection c = lease.get();
+                if (c != null && c.timeConnected > 0
+                    && now - c.timeConnected >= maxConnectionAge)
+                  release(lease);
+              }
+        }
+    }
+
+    /**
+     * Returns the permit of a lease, unless that was already done.
+     */
+    void release(Lease lease)
+    {
+      RoutePool rp = lease.routePool;
+      if (rp.leases.remove(lease) != null)
+        {
+          leaseCount.decrementAndGet();
+          rp.permits.release();
+        }
     }
 
     /**
-     * Remove the oldest connection from the pool and close it.
+     * Closes a connection that leaves the pool for good.
      */
-    void removeOldest()
+    void discard(HTTPConnection c)
     {
-      HTTPConnection cx = connectionPool.removeFirst();
       try
         {
-          cx.closeConnection();
+          c.close();
         }
       catch (IOException ioe)
         {
           // Ignore it.  We are just cleaning up.
         }
     }
+
+    /**
+     * Removes a closed connection from the idle connections, and
+     * returns a connection permit of its route if the number of
+     * connections per route is limited.
+     */
+    void closed(HTTPConnection c)
+    {
+      RoutePool rp = c.routePool;
+      if (rp == null)
+        return;
+      if (rp.idle.remove(c))
+        {
+          rp.idleCount.decrementAndGet();
+          idleCount.decrementAndGet();
+        }
+      if (c.lease != null)
+        release(c.lease);
+    }
+
+    /**
+     * Registers the pool with the platform MBean server.
+     */
+    private void register()
+    {
+      try
+        {
+          MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+          server.registerMBean(new StandardMBean(this,
+                                                 HTTPConnectionPoolMBean.class),
+                               new ObjectName(OBJECT_NAME));
+        }
+      catch (Exception e)
+        {
+          // The pool works just as well without monitoring.
+        }
+    }
+
+    public long getHitCount()
+    {
+      return hits.get();
+    }
+
+    public long getMissCount()
+    {
+      return misses.get();
+    }
+
+    public long getEvictionCount()
+    {
+      return evictions.get();
+    }
+
+    public long getWaitTime()
+    {
+      return waitTime.get() / 1000000;
+    }
+
+    public int getIdleConnectionCount()
+    {
+      return idleCount.get();
+    }
+
+    public int getRouteCount()
+    {
+      return routes.size();
+    }
   }
 
   /**
@@ -594,6 +968,26 @@ public class HTTPConnection
    */
   long timeLastUsed;
 
+  /**
+   * The time the current socket was connected, or 0.
+   */
+  long timeConnected;
+
+  /**
+   * The route in the pool this connection belongs to, if any.
+   */
+  Pool.RoutePool routePool;
+
+  /**
+   * The lease of the route's permit this connection holds, if any.
+   */
+  Pool.Lease lease;
+
+  /**
+   * Whether this connection has been closed by {@link #close}.
+   */
+  private volatile boolean closed;
+
   /**
    * Set the connection pool that this HTTPConnection is a member of.
    * If left unset or set to null, it will not be a member of any pool
@@ -613,11 +1007,10 @@ public class HTTPConnection
    */
   void release()
   {
-    if (pool != null)
+    if (pool != null && !closed)
       {
         useCount++;
         pool.put(this);
-
       }
     else
       {
@@ -689,7 +1082,21 @@ public class HTTPConnection
   public void close()
     throws IOException
   {
-    closeConnection();
+    try
+      {
+        closeConnection();
+      }
+    finally
+      {
+        Pool p;
+        synchronized (this)
+          {
+            p = closed ? null : pool;
+            closed = true;
+          }
+        if (p != null)
+          p.closed(this);
+      }
   }
 
   /**
@@ -759,6 +1166,7 @@ public class HTTPConnection
         in = new BufferedInputStream(in);
         out = socket.getOutputStream();
         out = new BufferedOutputStream(out);
+        timeConnected = System.currentTimeMillis();
       }
     return socket;
   }
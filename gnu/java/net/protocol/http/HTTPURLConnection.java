@@ -358,7 +358,11 @@ public class HTTPURLConnection
     HTTPConnection connection;
     if (keepAlive)
       {
+        int pport = proxyPort;
+        if (proxyHostname != null && pport < 0)
+          pport = secure ? HTTPConnection.HTTPS_PORT : HTTPConnection.HTTP_PORT;
         connection = HTTPConnection.Pool.instance.get(host, port, secure,
+                                                      proxyHostname, pport,
                                                       getConnectTimeout(),
                                                       getReadTimeout());
       }
@@ -38,12 +38,12 @@ exception statement from your version. */
 
 package gnu.java.nio;
 
-import java.io.IOException;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.spi.AbstractSelectionKey;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Casey Marshall (csm@gnu.org)
@@ -53,11 +53,16 @@ public class EpollSelectionKeyImpl extends AbstractSelectionKey
   final int fd;
   private final EpollSelectorImpl selector;
   private final SelectableChannel channel;
-  int interestOps;
+  volatile int interestOps;
   int selectedOps;
   int key;
   boolean valid;
-  boolean cancelled;
+
+  /** The epoll events the kernel has for our fd, or -1 if not added yet. */
+  int registeredEvents = -1;
+
+  /** Whether this key is queued for the selector to update. */
+  final AtomicBoolean updatePending = new AtomicBoolean();
 
   EpollSelectionKeyImpl(EpollSelectorImpl selector,
                         SelectableChannel channel, int fd)
@@ -88,19 +93,12 @@ public class EpollSelectionKeyImpl extends AbstractSelectionKey
    */
   public SelectionKey interestOps(int ops)
   {
-    if (cancelled)
+    if (!isValid())
       throw new CancelledKeyException();
     if ((ops & ~(channel.validOps())) != 0)
       throw new IllegalArgumentException("unsupported channel ops");
-    try
-      {
-        selector.epoll_modify(this, ops);
-        interestOps = ops;
-      }
-    catch (IOException ioe)
-      {
-        throw new IllegalArgumentException(ioe);
-      }
+    interestOps = ops;
+    selector.queueUpdate(this);
     return this;
   }
 
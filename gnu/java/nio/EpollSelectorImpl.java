@@ -35,29 +35,56 @@ this exception to your version of the library, but you are not
 obligated to do so.  If you do not wish to do so, delete this
 exception statement from your version. */
 
-
 package gnu.java.nio;
 
 import gnu.classpath.Configuration;
+import gnu.classpath.SystemProperties;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SelectableChannel;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.nio.channels.spi.AbstractSelector;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * An implementation of {@link Selector} that uses the epoll event
  * notification mechanism on GNU/Linux.
  *
+ * <p>This selector is meant to scale to a very large number of
+ * registered channels. Keys are kept in an array indexed by file
+ * descriptor; registrations and interest set changes are only queued
+ * by the calling thread and are handed to the kernel in one batch at
+ * the start of the next selection operation; and the events returned
+ * by <code>epoll_wait</code> are decoded straight out of the direct
+ * buffer they were written into. {@link #wakeup()} writes to an
+ * eventfd (or a pipe, where eventfd is unavailable) that is part of
+ * the epoll set.</p>
+ *
+ * <p>If the system property <code>gnu.java.nio.epollEdgeTriggered</code>
+ * is <code>true</code>, channels are registered with
+ * <code>EPOLLET</code>. A key is then only selected when its channel
+ * <em>becomes</em> ready, so the application must read or write until
+ * the operation would block before it selects again. This saves the
+ * kernel from rescanning ready descriptors on every call, but is not
+ * the behaviour the {@link Selector} specification describes, which is
+ * why it is off by default.</p>
+ *
+ * <p>As with other selectors, a channel registered (or a key whose
+ * interest set is changed) while another thread is blocked in
+ * {@link #select()} takes part in selection from the next selection
+ * operation on.</p>
+ *
  * @author Casey Marshall (csm@gnu.org)
  */
 public class EpollSelectorImpl extends AbstractSelector
@@ -71,12 +98,57 @@ public class EpollSelectorImpl extends AbstractSelector
   private static final int OP_READ    = SelectionKey.OP_READ;
   private static final int OP_WRITE   = SelectionKey.OP_WRITE;
 
+  private static final String EDGE_TRIGGERED
+    = "gnu.java.nio.epollEdgeTriggered";
+
+  /** Change operations understood by {@link #epoll_update}. */
+  private static final int CTL_ADD = 1;
+  private static final int CTL_MOD = 2;
+  private static final int CTL_DEL = 3;
+
+  /** Offsets of the fields in `struct epoll_event'. */
+  private static final int EVENTS_OFFSET;
+  private static final int DATA_OFFSET;
+
+  /** The values of the epoll event flags we use. */
+  private static final int EPOLLIN;
+  private static final int EPOLLOUT;
+  private static final int EPOLLERR;
+  private static final int EPOLLHUP;
+  private static final int EPOLLET;
+
+  /** The largest number of events fetched by one epoll_wait call. */
+  private static final int MAX_EVENTS = 4096;
+
   /** our epoll file descriptor. */
   private int epoll_fd;
 
-  private final HashMap keys;
-  private Set selectedKeys;
-  private Thread waitingThread;
+  /** The read end and the write end of the wakeup eventfd or pipe. */
+  private final int[] wakeup_fds = new int[2];
+
+  /** Set from wakeup() until the selecting thread has seen the wakeup. */
+  private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+  /** Whether channels are registered edge triggered. */
+  private final boolean edgeTriggered;
+
+  /**
+   * The registered keys indexed by file descriptor. Only touched by
+   * the selecting thread.
+   */
+  private EpollSelectionKeyImpl[] fdToKey;
+
+  /** All registered keys. */
+  private final Set<SelectionKey> keys;
+  private final Set<SelectionKey> publicKeys;
+  private final Set<SelectionKey> selectedKeys;
+
+  /** Keys that were registered, or whose interest set changed. */
+  private final ConcurrentLinkedQueue<EpollSelectionKeyImpl> updates;
+
+  /** Encoded changes; three ints (operation, fd, events) per change. */
+  private int[] changes;
+
   private ByteBuffer events;
 
   private static final int INITIAL_CAPACITY;
@@ -88,10 +160,19 @@ public class EpollSelectorImpl extends AbstractSelector
     if (Configuration.INIT_LOAD_LIBRARY)
       System.loadLibrary("javanio");
 
+    int[] layout = new int[8];
     if (epoll_supported())
-      sizeof_struct_epoll_event = sizeof_struct();
+      epoll_layout(layout);
     else
-      sizeof_struct_epoll_event = -1;
+      layout[0] = -1;
+    sizeof_struct_epoll_event = layout[0];
+    EVENTS_OFFSET = layout[1];
+    DATA_OFFSET = layout[2];
+    EPOLLIN = layout[3];
+    EPOLLOUT = layout[4];
+    EPOLLERR = layout[5];
+    EPOLLHUP = layout[6];
+    EPOLLET = layout[7];
 
     INITIAL_CAPACITY = 64 * sizeof_struct_epoll_event;
     MAX_DOUBLING_CAPACITY = 1024 * sizeof_struct_epoll_event;
@@ -100,20 +181,59 @@ public class EpollSelectorImpl extends AbstractSelector
 
   public EpollSelectorImpl(SelectorProvider provider)
     throws IOException
+  {
+    this(provider,
+         Boolean.valueOf(SystemProperties.getProperty(EDGE_TRIGGERED))
+           .booleanValue());
+  }
+
+  /**
+   * Create a new epoll selector.
+   *
+   * @param provider The provider that created this selector.
+   * @param edgeTriggered Whether channels should be registered with
+   * <code>EPOLLET</code>; see the class documentation.
+   * @throws IOException If allocating the epoll descriptor fails.
+   */
+  public EpollSelectorImpl(SelectorProvider provider, boolean edgeTriggered)
+    throws IOException
   {
     super(provider);
+    this.edgeTriggered = edgeTriggered;
     epoll_fd = epoll_create(DEFAULT_EPOLL_SIZE);
-    keys = new HashMap();
-    selectedKeys = null;
+    try
+      {
+        wakeup_open(wakeup_fds);
+      }
+    catch (IOException ioe)
+      {
+        VMChannel.close(epoll_fd);
+        throw ioe;
+      }
+    changes = new int[3 * 16];
+    changes[0] = CTL_ADD;
+    changes[1] = wakeup_fds[0];
+    changes[2] = EPOLLIN;
+    epoll_update(epoll_fd, changes, 1);
+
+    fdToKey = new EpollSelectionKeyImpl[64];
+    keys = Collections.newSetFromMap
+      (new ConcurrentHashMap<SelectionKey,Boolean>());
+    publicKeys = Collections.unmodifiableSet(keys);
+    selectedKeys = new HashSet<SelectionKey>();
+    updates = new ConcurrentLinkedQueue<EpollSelectionKeyImpl>();
     events = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    events.order(ByteOrder.nativeOrder());
   }
 
   /* (non-Javadoc)
    * @see java.nio.channels.Selector#keys()
    */
-  public Set keys()
+  public Set<SelectionKey> keys()
   {
-    return new HashSet(keys.values());
+    if (!isOpen())
+      throw new ClosedSelectorException();
+    return publicKeys;
   }
 
   /* (non-Javadoc)
@@ -133,86 +253,197 @@ public class EpollSelectorImpl extends AbstractSelector
       throw new IllegalArgumentException("timeout is too large");
     if (timeout < 0)
       throw new IllegalArgumentException("invalid timeout");
-    return doSelect((int) timeout);
+    return doSelect(timeout == 0 ? -1 : (int) timeout);
   }
 
   private int doSelect(int timeout) throws IOException
   {
-    synchronized (keys)
-    {
-      Set cancelledKeys = cancelledKeys();
-      synchronized (cancelledKeys)
+    synchronized (selectedKeys)
       {
-        for (Iterator it = cancelledKeys.iterator(); it.hasNext(); )
-          {
-            EpollSelectionKeyImpl key = (EpollSelectionKeyImpl) it.next();
-            epoll_delete(epoll_fd, key.fd);
-            key.valid = false;
-            keys.remove(Integer.valueOf(key.fd));
-            it.remove();
-            deregister(key);
-          }
-
-        // Clear out closed channels. The fds are removed from the epoll
-        // fd when closed, so there is no need to remove them manually.
-        for (Iterator it = keys.values().iterator(); it.hasNext(); )
-          {
-            EpollSelectionKeyImpl key = (EpollSelectionKeyImpl) it.next();
-            SelectableChannel ch = key.channel();
-            if (ch instanceof VMChannelOwner)
-              {
-                if (!((VMChannelOwner) ch).getVMChannel().getState().isValid())
-                  it.remove();
-              }
-          }
-
-        // Don't bother if we have nothing to select.
-        if (keys.isEmpty())
-          return 0;
+        processCancelledKeys();
+        processUpdates();
+        reallocateBuffer();
 
         int ret;
         try
           {
             begin();
-            waitingThread = Thread.currentThread();
-            ret = epoll_wait(epoll_fd, events, keys.size(), timeout);
+            ret = epoll_wait(epoll_fd, events, events.capacity()
+                             / sizeof_struct_epoll_event, timeout);
           }
         finally
           {
-            Thread.interrupted();
-            waitingThread = null;
             end();
           }
 
-        HashSet s = new HashSet(ret);
-        for (int i = 0; i < ret; i++)
+        // Keys cancelled while we were waiting must not be selected.
+        processCancelledKeys();
+
+        int wakeup_fd = wakeup_fds[0];
+        EpollSelectionKeyImpl[] fdToKey = this.fdToKey;
+        ByteBuffer events = this.events;
+        int updated = 0;
+        for (int i = 0, p = 0; i < ret; i++, p += sizeof_struct_epoll_event)
           {
-            events.position(i * sizeof_struct_epoll_event);
-            ByteBuffer b = events.slice();
-            int fd = selected_fd(b);
-            EpollSelectionKeyImpl key
-              = (EpollSelectionKeyImpl) keys.get(Integer.valueOf(fd));
-            if (key == null)
-              throw new IOException("fd was selected, but no key found");
-            key.selectedOps = selected_ops(b) & key.interestOps;
-            s.add(key);
+            int fd = events.getInt(p + DATA_OFFSET);
+            if (fd == wakeup_fd)
+              {
+                // Drain before clearing the flag: a wakeup signalled in
+                // between would otherwise be consumed with the flag left
+                // set, and no later wakeup would signal again.
+                wakeup_drain(wakeup_fd);
+                wakeupPending.set(false);
+                continue;
+              }
+            // An fd closed after epoll_wait returned may already have
+            // been reused by a channel that has not been added yet.
+            if (fd >= fdToKey.length || fdToKey[fd] == null)
+              continue;
+            EpollSelectionKeyImpl key = fdToKey[fd];
+            int ready = readyOps(events.getInt(p + EVENTS_OFFSET))
+              & key.interestOps;
+            if (ready == 0)
+              continue;
+            if (selectedKeys.add(key))
+              key.selectedOps = ready;
+            else if ((key.selectedOps | ready) != key.selectedOps)
+              key.selectedOps |= ready;
+            else
+              continue;
+            updated++;
           }
 
-        reallocateBuffer();
+        return updated;
+      }
+  }
+
+  /**
+   * Translate the events of a selected `struct epoll_event' into
+   * selection key operations.
+   */
+  private static int readyOps(int events)
+  {
+    int ops = 0;
+    if ((events & (EPOLLERR | EPOLLHUP)) != 0)
+      return OP_ACCEPT | OP_CONNECT | OP_READ | OP_WRITE;
+    if ((events & EPOLLIN) != 0)
+      ops |= OP_ACCEPT | OP_READ;
+    if ((events & EPOLLOUT) != 0)
+      ops |= OP_CONNECT | OP_WRITE;
+    return ops;
+  }
+
+  /**
+   * Translate selection key operations into epoll events.
+   */
+  private int epollEvents(int ops)
+  {
+    int events = 0;
+    if ((ops & (OP_ACCEPT | OP_READ)) != 0)
+      events |= EPOLLIN;
+    if ((ops & (OP_CONNECT | OP_WRITE)) != 0)
+      events |= EPOLLOUT;
+    if (edgeTriggered)
+      events |= EPOLLET;
+    return events;
+  }
 
-        selectedKeys = s;
-        return ret;
+  /**
+   * Remove the keys in the cancelled key set from the epoll set and
+   * deregister them.
+   */
+  private void processCancelledKeys() throws IOException
+  {
+    Set<SelectionKey> cancelledKeys = cancelledKeys();
+    synchronized (cancelledKeys)
+      {
+        if (cancelledKeys.isEmpty())
+          return;
+        int n = 0;
+        for (Iterator<SelectionKey> it = cancelledKeys.iterator();
+             it.hasNext(); )
+          {
+            EpollSelectionKeyImpl key = (EpollSelectionKeyImpl) it.next();
+            it.remove();
+            // The fd may have been closed and reused by a newer key;
+            // only the key that owns the fd may remove it.
+            if (key.fd < fdToKey.length && fdToKey[key.fd] == key)
+              {
+                fdToKey[key.fd] = null;
+                n = addChange(n, CTL_DEL, key.fd, 0);
+              }
+            key.valid = false;
+            keys.remove(key);
+            selectedKeys.remove(key);
+            deregister(key);
+          }
+        if (n > 0)
+          epoll_update(epoll_fd, changes, n);
       }
-    }
+  }
+
+  /**
+   * Hand all queued registrations and interest set changes to the
+   * kernel in one call.
+   */
+  private void processUpdates() throws IOException
+  {
+    int n = 0;
+    EpollSelectionKeyImpl key;
+    while ((key = updates.poll()) != null)
+      {
+        // Clear the flag before reading the interest set, so that a
+        // concurrent change either is seen here or queues the key again.
+        key.updatePending.set(false);
+        if (!key.valid || !key.isValid())
+          continue;
+        int ops = epollEvents(key.interestOps);
+        if (key.registeredEvents == -1)
+          {
+            int fd = key.fd;
+            if (fd >= fdToKey.length)
+              {
+                int len = fdToKey.length;
+                while (len <= fd)
+                  len <<= 1;
+                EpollSelectionKeyImpl[] newFdToKey
+                  = new EpollSelectionKeyImpl[len];
+                System.arraycopy(fdToKey, 0, newFdToKey, 0, fdToKey.length);
+                fdToKey = newFdToKey;
+              }
+            fdToKey[fd] = key;
+            n = addChange(n, CTL_ADD, fd, ops);
+          }
+        else if (key.registeredEvents != ops)
+          n = addChange(n, CTL_MOD, key.fd, ops);
+        key.registeredEvents = ops;
+      }
+    if (n > 0)
+      epoll_update(epoll_fd, changes, n);
+  }
+
+  private int addChange(int n, int op, int fd, int events)
+  {
+    int i = n * 3;
+    if (i == changes.length)
+      {
+        int[] newChanges = new int[changes.length << 1];
+        System.arraycopy(changes, 0, newChanges, 0, i);
+        changes = newChanges;
+      }
+    changes[i] = op;
+    changes[i + 1] = fd;
+    changes[i + 2] = events;
+    return n + 1;
   }
 
   /* (non-Javadoc)
    * @see java.nio.channels.Selector#selectedKeys()
    */
-  public Set selectedKeys()
+  public Set<SelectionKey> selectedKeys()
   {
-    if (selectedKeys == null)
-      return Collections.EMPTY_SET;
+    if (!isOpen())
+      throw new ClosedSelectorException();
     return selectedKeys;
   }
 
@@ -229,13 +460,18 @@ public class EpollSelectorImpl extends AbstractSelector
    */
   public Selector wakeup()
   {
-    try
-      {
-        waitingThread.interrupt();
-      }
-    catch (NullPointerException npe)
+    // Only the first of several wakeups before the next selection
+    // needs to signal the descriptor.
+    if (wakeupPending.compareAndSet(false, true))
       {
-        // Ignored, thrown if we are not in a blocking op.
+        try
+          {
+            wakeup_signal(wakeup_fds[1]);
+          }
+        catch (IOException ioe)
+          {
+            wakeupPending.set(false);
+          }
       }
     return this;
   }
@@ -245,7 +481,25 @@ public class EpollSelectorImpl extends AbstractSelector
    */
   protected void implCloseSelector() throws IOException
   {
-    VMChannel.close(epoll_fd);
+    // Get a selecting thread out of epoll_wait before taking its lock.
+    wakeup();
+    synchronized (selectedKeys)
+      {
+        for (Iterator<SelectionKey> it = keys.iterator(); it.hasNext(); )
+          {
+            EpollSelectionKeyImpl key = (EpollSelectionKeyImpl) it.next();
+            key.valid = false;
+            deregister(key);
+          }
+        keys.clear();
+        selectedKeys.clear();
+        updates.clear();
+        fdToKey = new EpollSelectionKeyImpl[0];
+        VMChannel.close(epoll_fd);
+        VMChannel.close(wakeup_fds[0]);
+        if (wakeup_fds[1] != wakeup_fds[0])
+          VMChannel.close(wakeup_fds[1]);
+      }
   }
 
   /* (non-Javadoc)
@@ -260,24 +514,18 @@ public class EpollSelectorImpl extends AbstractSelector
     try
       {
         int native_fd = channel.getState().getNativeFD();
-        synchronized (keys)
-        {
-          if (keys.containsKey(Integer.valueOf(native_fd)))
-            throw new IllegalArgumentException("channel already registered");
-          EpollSelectionKeyImpl result =
-            new EpollSelectionKeyImpl(this, ch, native_fd);
-          if ((ops & ~(ch.validOps())) != 0)
-            throw new IllegalArgumentException("invalid ops for channel");
-          result.interestOps = ops;
-          result.selectedOps = 0;
-          result.valid = true;
-          result.attach(att);
-          result.key = System.identityHashCode(result);
-          epoll_add(epoll_fd, result.fd, ops);
-          keys.put(Integer.valueOf(native_fd), result);
-          reallocateBuffer();
-          return result;
-        }
+        if ((ops & ~(ch.validOps())) != 0)
+          throw new IllegalArgumentException("invalid ops for channel");
+        EpollSelectionKeyImpl result =
+          new EpollSelectionKeyImpl(this, ch, native_fd);
+        result.interestOps = ops;
+        result.selectedOps = 0;
+        result.valid = true;
+        result.attach(att);
+        result.key = System.identityHashCode(result);
+        keys.add(result);
+        queueUpdate(result);
+        return result;
       }
     catch (IOException ioe)
       {
@@ -285,34 +533,45 @@ public class EpollSelectorImpl extends AbstractSelector
       }
   }
 
+  /**
+   * Queue a key whose interest set changed, or that was just
+   * registered, for the next selection operation.
+   */
+  void queueUpdate(EpollSelectionKeyImpl key)
+  {
+    if (key.updatePending.compareAndSet(false, true))
+      updates.add(key);
+  }
+
   private void reallocateBuffer()
   {
+    int needed = Math.min(keys.size(), MAX_EVENTS) * sizeof_struct_epoll_event;
     // Ensure we have enough space for all potential events that may be
     // returned.
-    if (events.capacity() < keys.size() * sizeof_struct_epoll_event)
+    if (events.capacity() < needed)
       {
         int cap = events.capacity();
-        if (cap < MAX_DOUBLING_CAPACITY)
-          cap <<= 1;
-        else
-          cap += CAPACITY_INCREMENT;
+        while (cap < needed)
+          {
+            if (cap < MAX_DOUBLING_CAPACITY)
+              cap <<= 1;
+            else
+              cap += CAPACITY_INCREMENT;
+          }
         events = ByteBuffer.allocateDirect(cap);
+        events.order(ByteOrder.nativeOrder());
       }
     // Ensure that the events buffer is not too large, given the number of
     // events registered.
-    else if (events.capacity() > keys.size() * sizeof_struct_epoll_event * 2 + 1
+    else if (events.capacity() > needed * 2 + 1
              && events.capacity() > INITIAL_CAPACITY)
       {
         int cap = events.capacity() >>> 1;
         events = ByteBuffer.allocateDirect(cap);
+        events.order(ByteOrder.nativeOrder());
       }
   }
 
-  void epoll_modify(EpollSelectionKeyImpl key, int ops) throws IOException
-  {
-    epoll_modify(epoll_fd, key.fd, ops);
-  }
-
   /**
    * Tell if epoll is supported by this system, and support was compiled in.
    *
@@ -322,12 +581,14 @@ public class EpollSelectorImpl extends AbstractSelector
 
 
   /**
-   * Returns the size of `struct epoll_event'.
+   * Describe `struct epoll_event' and the event flags. Stores, in
+   * order, the size of the struct, the offsets of its `events' and
+   * `data' fields, and the values of EPOLLIN, EPOLLOUT, EPOLLERR,
+   * EPOLLHUP and EPOLLET.
    *
-   * @return The size of `struct epoll_event'.
+   * @param layout An array of at least eight elements.
    */
-  private static native int sizeof_struct();
-
+  private static native void epoll_layout(int[] layout);
 
   /**
    * Open a new epoll file descriptor.
@@ -339,35 +600,19 @@ public class EpollSelectorImpl extends AbstractSelector
   private static native int epoll_create(int size) throws IOException;
 
   /**
-   * Add a file descriptor to this selector.
+   * Apply a batch of changes to the epoll set. Each change is three
+   * consecutive ints: the operation (CTL_ADD, CTL_MOD or CTL_DEL), the
+   * file descriptor and the epoll events. Changes to descriptors that
+   * have been closed in the meantime are ignored.
    *
-   * @param efd The epoll file descriptor.
-   * @param fd  The file descriptor to add (or modify).
-   * @param ops The interest opts.
-   */
-  private static native void epoll_add(int efd, int fd, int ops)
-    throws IOException;
-
-  /**
-   * Modify the interest ops of the key selecting for the given FD.
-   *
-   * @param efd The epoll file descriptor.
-   * @param fd  The file descriptor to modify.
-   * @param ops The ops.
-   * @throws IOException
+   * @param efd     The epoll file descriptor.
+   * @param changes The encoded changes.
+   * @param n       The number of changes.
+   * @throws IOException If a change fails for any other reason.
    */
-  private static native void epoll_modify(int efd, int fd, int ops)
+  private static native void epoll_update(int efd, int[] changes, int n)
     throws IOException;
 
-  /**
-   * Remove a file descriptor from this selector.
-   *
-   * @param efd The epoll file descriptor.
-   * @param fd  The file descriptor.
-   * @throws IOException
-   */
-  private static native void epoll_delete(int efd, int fd) throws IOException;
-
   /**
    * Select events.
    *
@@ -382,18 +627,28 @@ public class EpollSelectorImpl extends AbstractSelector
     throws IOException;
 
   /**
-   * Fetch the fd value from a selected struct epoll_event.
+   * Open the descriptor used to wake up a selecting thread. Stores the
+   * descriptor to poll in fds[0] and the one to write to in fds[1];
+   * both are the same eventfd where eventfd is available, and the ends
+   * of a pipe otherwise. The descriptors are non-blocking.
+   *
+   * @param fds An array of two elements.
+   * @throws IOException If the descriptor cannot be created.
+   */
+  private static native void wakeup_open(int[] fds) throws IOException;
+
+  /**
+   * Make the wakeup descriptor readable.
    *
-   * @param struct The direct buffer holding the struct.
-   * @return The fd value.
+   * @param fd The write end of the wakeup descriptor.
+   * @throws IOException If writing fails.
    */
-  private static native int selected_fd(ByteBuffer struct);
+  private static native void wakeup_signal(int fd) throws IOException;
 
   /**
-   * Fetch the enabled operations from a selected struct epoll_event.
+   * Read everything that was written to the wakeup descriptor.
    *
-   * @param struct The direct buffer holding the struct.
-   * @return The selected operations.
+   * @param fd The read end of the wakeup descriptor.
    */
-  private static native int selected_ops(ByteBuffer struct);
+  private static native void wakeup_drain(int fd);
 }
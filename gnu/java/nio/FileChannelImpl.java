@@ -47,6 +47,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
+import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
@@ -334,6 +335,31 @@ public final class FileChannelImpl extends FileChannel
     ch.flush(metaData);
   }
 
+  /**
+   * Returns the VMChannel of C if C is one of our own channels that
+   * can take part in a direct transfer in the given direction (READ
+   * or WRITE), or null if the data has to be copied in Java.
+   */
+  private static VMChannel directChannel (Channel c, int direction)
+  {
+    if (! c.isOpen ())
+      return null;
+    if (c instanceof FileChannelImpl)
+      {
+        FileChannelImpl f = (FileChannelImpl) c;
+        return (f.mode & direction) != 0 ? f.ch : null;
+      }
+    if (c instanceof SocketChannelImpl)
+      {
+        SocketChannelImpl s = (SocketChannelImpl) c;
+        return s.isConnected () ? s.getVMChannel () : null;
+      }
+    if (c instanceof PipeImpl.SinkChannelImpl
+        || c instanceof PipeImpl.SourceChannelImpl)
+      return ((VMChannelOwner) c).getVMChannel ();
+    return null;
+  }
+
   // like transferTo, but with a count of less than 2Gbytes
   private int smallTransferTo (long position, int count,
                                WritableByteChannel target)
@@ -371,6 +397,14 @@ public final class FileChannelImpl extends FileChannel
     if ((mode & READ) == 0)
        throw new NonReadableChannelException ();
 
+    VMChannel dst = directChannel (target, WRITE);
+    if (dst != null)
+      {
+        long transferred = ch.transferTo (position, count, dst);
+        if (transferred >= 0)
+          return transferred;
+      }
+
     final int pageSize = 65536;
     long total = 0;
 
@@ -435,6 +469,14 @@ public final class FileChannelImpl extends FileChannel
     if ((mode & WRITE) == 0)
        throw new NonWritableChannelException ();
 
+    VMChannel source = directChannel (src, READ);
+    if (source != null)
+      {
+        long transferred = ch.transferFrom (source, position, count);
+        if (transferred >= 0)
+          return transferred;
+      }
+
     final int pageSize = 65536;
     long total = 0;
 
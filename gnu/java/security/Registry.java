@@ -165,6 +165,9 @@ public interface Registry
   /** Authenticated-Encrypted mode. */
   String EAX_MODE = "eax";
 
+  /** Galois/Counter Mode (NIST). */
+  String GCM_MODE = "gcm";
+
   // Padding scheme names and synonyms........................................
 
   /** PKCS#5 padding scheme. */
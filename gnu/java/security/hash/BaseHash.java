@@ -138,13 +138,23 @@ public abstract class BaseHash
   @Override
   public byte[] digest()
   {
-    byte[] tail = padBuffer(); // pad remaining bytes in buffer
-    update(tail, 0, tail.length); // last transform of a message
-    byte[] result = getResult(); // make a result out of context
+    byte[] result = new byte[hashSize];
+    digest(result, 0);
+    return result;
+  }
+
+  @Override
+  public int digest(byte[] out, int offset)
+  {
+    if (offset < 0 || offset > out.length - hashSize)
+      throw new IndexOutOfBoundsException("offset: " + offset + ", length: "
+                                          + out.length);
+    pad(); // pad remaining bytes in buffer; last transform of a message
+    getResult(out, offset); // make a result out of context
 
     reset(); // reset this instance for future re-use
 
-    return result;
+    return hashSize;
   }
 
   @Override
@@ -172,6 +182,54 @@ public abstract class BaseHash
    */
   protected abstract byte[] padBuffer();
 
+  /**
+   * Pads the remaining bytes in the buffer and processes the last block(s) of
+   * the message. The default implementation digests the bytes returned by
+   * {@link #padBuffer()}; subclasses whose padding is a marker byte followed
+   * by the bit length of the message override it to call
+   * {@link #padInPlace(int, int, boolean)}, which allocates nothing.
+   */
+  protected void pad()
+  {
+    byte[] tail = padBuffer();
+    update(tail, 0, tail.length);
+  }
+
+  /**
+   * Pads the message in the buffer itself and processes the last block(s).
+   * The padding consists of the <code>marker</code> byte, as many zero bytes
+   * as needed, and the number of bits hashed so far encoded on the last
+   * <code>lengthSize</code> bytes of the block.
+   *
+   * @param marker the first padding byte.
+   * @param lengthSize the number of bytes of the encoded bit length; the
+   *          bits beyond the 64th are always zero.
+   * @param bigEndian whether to encode the bit length in big-endian order;
+   *          little-endian encoding is only defined for an 8-byte length.
+   */
+  protected final void padInPlace(int marker, int lengthSize, boolean bigEndian)
+  {
+    long bits = count << 3;
+    int n = (int) (count % blockSize);
+    buffer[n++] = (byte) marker;
+    if (n > blockSize - lengthSize)
+      { // no room left for the length; it goes in an extra block
+        while (n < blockSize)
+          buffer[n++] = 0;
+        transform(buffer, 0);
+        n = 0;
+      }
+    while (n < blockSize - 8)
+      buffer[n++] = 0;
+    if (bigEndian)
+      for (int i = blockSize - 1; i >= n; i--, bits >>>= 8)
+        buffer[i] = (byte) bits;
+    else
+      for (; n < blockSize; n++, bits >>>= 8)
+        buffer[n] = (byte) bits;
+    transform(buffer, 0);
+  }
+
   /**
    * Constructs the result from the contents of the current context.
    *
@@ -179,6 +237,21 @@ public abstract class BaseHash
    */
   protected abstract byte[] getResult();
 
+  /**
+   * Stores the result constructed from the contents of the current context in
+   * the designated array. The default implementation copies the array
+   * returned by {@link #getResult()}; subclasses override it to store their
+   * context directly.
+   *
+   * @param out the destination array, known to have room for
+   *          <code>hashSize</code> bytes starting at <code>offset</code>.
+   * @param offset where to start storing the result.
+   */
+  protected void getResult(byte[] out, int offset)
+  {
+    System.arraycopy(getResult(), 0, out, offset, hashSize);
+  }
+
   /** Resets the instance for future re-use. */
   protected abstract void resetContext();
 
@@ -190,4 +263,54 @@ public abstract class BaseHash
    *          input buffer.
    */
   protected abstract void transform(byte[] in, int offset);
+
+  /**
+   * Stores an <code>int</code> in big-endian order.
+   *
+   * @return the index following the stored bytes.
+   */
+  protected static int putIntBE(int x, byte[] out, int offset)
+  {
+    out[offset++] = (byte)(x >>> 24);
+    out[offset++] = (byte)(x >>> 16);
+    out[offset++] = (byte)(x >>> 8);
+    out[offset++] = (byte) x;
+    return offset;
+  }
+
+  /**
+   * Stores an <code>int</code> in little-endian order.
+   *
+   * @return the index following the stored bytes.
+   */
+  protected static int putIntLE(int x, byte[] out, int offset)
+  {
+    out[offset++] = (byte) x;
+    out[offset++] = (byte)(x >>> 8);
+    out[offset++] = (byte)(x >>> 16);
+    out[offset++] = (byte)(x >>> 24);
+    return offset;
+  }
+
+  /**
+   * Stores a <code>long</code> in big-endian order.
+   *
+   * @return the index following the stored bytes.
+   */
+  protected static int putLongBE(long x, byte[] out, int offset)
+  {
+    offset = putIntBE((int)(x >>> 32), out, offset);
+    return putIntBE((int) x, out, offset);
+  }
+
+  /**
+   * Stores a <code>long</code> in little-endian order.
+   *
+   * @return the index following the stored bytes.
+   */
+  protected static int putLongLE(long x, byte[] out, int offset)
+  {
+    offset = putIntLE((int) x, out, offset);
+    return putIntLE((int)(x >>> 32), out, offset);
+  }
 }
@@ -103,9 +103,28 @@ public interface IMessageDigest
    */
   byte[] digest();
 
+  /**
+   * Completes the message digest by performing final operations such as padding
+   * and resetting the instance, storing the hash value in the designated array
+   * rather than in a newly allocated one.
+   *
+   * @param out the array which will receive the hash value.
+   * @param offset where to start storing the hash value in <code>out</code>.
+   * @return the number of bytes stored; ie. the value of {@link #hashSize()}.
+   * @throws IndexOutOfBoundsException if <code>out</code> has fewer than
+   *           {@link #hashSize()} bytes starting at <code>offset</code>. The
+   *           state of the instance is left untouched in that case.
+   */
+  int digest(byte[] out, int offset);
+
   /**
    * Resets the current context of this instance clearing any eventually cached
    * intermediary values.
+   * <p>
+   * Resetting reuses the storage already held by the instance; it does not
+   * allocate. A single instance may therefore be reset and reused for any
+   * number of messages, which is cheaper than cloning or creating a fresh one
+   * for each of them.
    */
   void reset();
 
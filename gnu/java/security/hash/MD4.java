@@ -117,11 +117,18 @@ public class MD4
   @Override
   protected byte[] getResult()
   {
-    return new byte[] {
-        (byte) a, (byte)(a >>> 8), (byte)(a >>> 16), (byte)(a >>> 24),
-        (byte) b, (byte)(b >>> 8), (byte)(b >>> 16), (byte)(b >>> 24),
-        (byte) c, (byte)(c >>> 8), (byte)(c >>> 16), (byte)(c >>> 24),
-        (byte) d, (byte)(d >>> 8), (byte)(d >>> 16), (byte)(d >>> 24) };
+    byte[] result = new byte[hashSize];
+    getResult(result, 0);
+    return result;
+  }
+
+  @Override
+  protected void getResult(byte[] out, int offset)
+  {
+    offset = putIntLE(a, out, offset);
+    offset = putIntLE(b, out, offset);
+    offset = putIntLE(c, out, offset);
+    putIntLE(d, out, offset);
   }
 
   @Override
@@ -163,6 +170,12 @@ public class MD4
     return pad;
   }
 
+  @Override
+  protected void pad()
+  {
+    padInPlace(0x80, 8, false);
+  }
+
   @Override
   protected void transform(byte[] in, int i)
   {
@@ -344,14 +344,27 @@ public class MD5
     return result;
   }
 
+  @Override
+  protected void pad()
+  {
+    padInPlace(0x80, 8, false);
+  }
+
   @Override
   protected byte[] getResult()
   {
-    return new byte[] {
-        (byte) h0, (byte)(h0 >>> 8), (byte)(h0 >>> 16), (byte)(h0 >>> 24),
-        (byte) h1, (byte)(h1 >>> 8), (byte)(h1 >>> 16), (byte)(h1 >>> 24),
-        (byte) h2, (byte)(h2 >>> 8), (byte)(h2 >>> 16), (byte)(h2 >>> 24),
-        (byte) h3, (byte)(h3 >>> 8), (byte)(h3 >>> 16), (byte)(h3 >>> 24) };
+    byte[] result = new byte[hashSize];
+    getResult(result, 0);
+    return result;
+  }
+
+  @Override
+  protected void getResult(byte[] out, int offset)
+  {
+    offset = putIntLE(h0, out, offset);
+    offset = putIntLE(h1, out, offset);
+    offset = putIntLE(h2, out, offset);
+    putIntLE(h3, out, offset);
   }
 
   @Override
@@ -0,0 +1,213 @@
+/* MultiBufferHash.java -- Hashes many messages over reusable lanes
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+
+package gnu.java.security.hash;
+
+/**
+ * Hashes many independent messages with a fixed set of reusable
+ * {@link IMessageDigest} instances, or <i>lanes</i>.
+ * <p>
+ * Messages are scheduled onto the lanes the way a multi-buffer hashing
+ * manager does: each round feeds one block of its current message to every
+ * busy lane, and a lane whose message is exhausted stores the digest and
+ * picks up the next pending message. The lanes are reset, never recreated,
+ * and digests are stored in a caller-supplied array, so no memory is
+ * allocated per message. This makes a batch of small messages considerably
+ * cheaper to hash than one <code>digest()</code> call per message.
+ * <p>
+ * The digests are stored contiguously and in message order,
+ * {@link #hashSize()} bytes each, regardless of the order in which the lanes
+ * complete them.
+ * <p>
+ * Instances of this class are not thread-safe; use one per thread.
+ */
+public class MultiBufferHash
+{
+  /** The lanes; independent instances of the same algorithm. */
+  private final IMessageDigest[] lanes;
+
+  /** The output size of the underlying algorithm in bytes. */
+  private final int hashSize;
+
+  /** The number of bytes fed to a lane in each round. */
+  private final int blockSize;
+
+  /** Index of the message currently hashed by each lane; -1 when idle. */
+  private final int[] message;
+
+  /** Position of the next byte to feed to each lane. */
+  private final int[] position;
+
+  /** Number of bytes of its message each lane still has to hash. */
+  private final int[] remaining;
+
+  /**
+   * Constructs a new instance with the designated number of lanes, each of
+   * them a clone of <code>md</code>.
+   *
+   * @param md the prototype of the lanes. Its state is not modified.
+   * @param lanes the number of lanes.
+   * @throws IllegalArgumentException if <code>lanes</code> is less than 1.
+   */
+  public MultiBufferHash(IMessageDigest md, int lanes)
+  {
+    if (lanes < 1)
+      throw new IllegalArgumentException("lanes: " + lanes);
+    this.lanes = new IMessageDigest[lanes];
+    for (int i = 0; i < lanes; i++)
+      {
+        IMessageDigest lane = (IMessageDigest) md.clone();
+        lane.reset();
+        this.lanes[i] = lane;
+      }
+    hashSize = md.hashSize();
+    blockSize = md.blockSize();
+    message = new int[lanes];
+    position = new int[lanes];
+    remaining = new int[lanes];
+  }
+
+  /**
+   * Returns the number of lanes of this instance.
+   *
+   * @return the number of lanes of this instance.
+   */
+  public int lanes()
+  {
+    return lanes.length;
+  }
+
+  /**
+   * Returns the output length in bytes of each digest.
+   *
+   * @return the output length in bytes of each digest.
+   */
+  public int hashSize()
+  {
+    return hashSize;
+  }
+
+  /**
+   * Hashes every message of <code>in</code> in its entirety.
+   *
+   * @param in the messages to hash.
+   * @param out the array which will receive the digests.
+   * @param offset where to store the digest of the first message.
+   * @throws IndexOutOfBoundsException if <code>out</code> cannot hold
+   *           <code>in.length</code> digests starting at <code>offset</code>.
+   */
+  public void digest(byte[][] in, byte[] out, int offset)
+  {
+    digest(in, null, null, in.length, out, offset);
+  }
+
+  /**
+   * Hashes the first <code>count</code> messages designated by
+   * <code>in</code>, <code>inOffset</code> and <code>length</code>.
+   *
+   * @param in the arrays holding the messages to hash.
+   * @param inOffset the start of each message in its array, or
+   *          <code>null</code> if every message starts at index 0.
+   * @param length the length of each message, or <code>null</code> if every
+   *          message extends to the end of its array.
+   * @param count the number of messages to hash.
+   * @param out the array which will receive the digests.
+   * @param offset where to store the digest of the first message.
+   * @throws IndexOutOfBoundsException if <code>out</code> cannot hold
+   *           <code>count</code> digests starting at <code>offset</code>, or
+   *           if a message lies outside of its array.
+   */
+  public void digest(byte[][] in, int[] inOffset, int[] length, int count,
+                     byte[] out, int offset)
+  {
+    if (count < 0 || count > in.length || offset < 0
+        || offset > out.length - count * hashSize)
+      throw new IndexOutOfBoundsException("count: " + count + ", offset: "
+                                          + offset);
+    // lanes may hold a partial message if a previous batch failed
+    for (int l = 0; l < lanes.length; l++)
+      lanes[l].reset();
+
+    int next = 0;
+    int busy = 0;
+    for (int l = 0; l < lanes.length; l++)
+      if (next < count)
+        {
+          start(l, next++, in, inOffset, length);
+          busy++;
+        }
+      else
+        message[l] = -1;
+
+    while (busy > 0)
+      for (int l = 0; l < lanes.length; l++)
+        {
+          int m = message[l];
+          if (m < 0)
+            continue;
+          int n = Math.min(remaining[l], blockSize);
+          lanes[l].update(in[m], position[l], n);
+          position[l] += n;
+          remaining[l] -= n;
+          if (remaining[l] == 0)
+            {
+              lanes[l].digest(out, offset + m * hashSize);
+              if (next < count)
+                start(l, next++, in, inOffset, length);
+              else
+                {
+                  message[l] = -1;
+                  busy--;
+                }
+            }
+        }
+  }
+
+  /** Assigns the message of index <code>m</code> to lane <code>l</code>. */
+  private void start(int l, int m, byte[][] in, int[] inOffset, int[] length)
+  {
+    int off = inOffset == null ? 0 : inOffset[m];
+    int len = length == null ? in[m].length - off : length[m];
+    if (off < 0 || len < 0 || off > in[m].length - len)
+      throw new IndexOutOfBoundsException("message " + m + ": offset: " + off
+                                          + ", length: " + len);
+    message[l] = m;
+    position[l] = off;
+    remaining[l] = len;
+  }
+}
@@ -73,14 +73,18 @@ public class Sha160
 
   private static final String DIGEST0 = "A9993E364706816ABA3E25717850C26C9CD0D89D";
 
-  private static final int[] w = new int[80];
-
   /** caches the result of the correctness test, once executed. */
   private static Boolean valid;
 
   /** 160-bit interim result. */
   private int h0, h1, h2, h3, h4;
 
+  /** Message schedule, private to this instance's transform. */
+  private final int[] w = new int[80];
+
+  /** Output of this instance's transform. */
+  private final int[] t = new int[5];
+
   /** Trivial 0-arguments constructor. */
   public Sha160()
   {
@@ -108,7 +112,8 @@ public class Sha160
   public static final int[] G(int hh0, int hh1, int hh2, int hh3, int hh4,
                               byte[] in, int offset)
   {
-    return sha(hh0, hh1, hh2, hh3, hh4, in, offset);
+    return sha(hh0, hh1, hh2, hh3, hh4, in, offset,
+               new int[80], new int[5]);
   }
 
   @Override
@@ -120,7 +125,7 @@ public class Sha160
   @Override
   protected void transform(byte[] in, int offset)
   {
-    int[] result = sha(h0, h1, h2, h3, h4, in, offset);
+    int[] result = sha(h0, h1, h2, h3, h4, in, offset, w, t);
     h0 = result[0];
     h1 = result[1];
     h2 = result[2];
@@ -149,15 +154,28 @@ public class Sha160
     return result;
   }
 
+  @Override
+  protected void pad()
+  {
+    padInPlace(0x80, 8, true);
+  }
+
   @Override
   protected byte[] getResult()
   {
-    return new byte[] {
-        (byte)(h0 >>> 24), (byte)(h0 >>> 16), (byte)(h0 >>> 8), (byte) h0,
-        (byte)(h1 >>> 24), (byte)(h1 >>> 16), (byte)(h1 >>> 8), (byte) h1,
-        (byte)(h2 >>> 24), (byte)(h2 >>> 16), (byte)(h2 >>> 8), (byte) h2,
-        (byte)(h3 >>> 24), (byte)(h3 >>> 16), (byte)(h3 >>> 8), (byte) h3,
-        (byte)(h4 >>> 24), (byte)(h4 >>> 16), (byte)(h4 >>> 8), (byte) h4 };
+    byte[] result = new byte[hashSize];
+    getResult(result, 0);
+    return result;
+  }
+
+  @Override
+  protected void getResult(byte[] out, int offset)
+  {
+    offset = putIntBE(h0, out, offset);
+    offset = putIntBE(h1, out, offset);
+    offset = putIntBE(h2, out, offset);
+    offset = putIntBE(h3, out, offset);
+    putIntBE(h4, out, offset);
   }
 
   @Override
@@ -186,9 +204,8 @@ public class Sha160
     return valid.booleanValue();
   }
 
-  private static synchronized final int[] sha(int hh0, int hh1, int hh2,
-                                              int hh3, int hh4, byte[] in,
-                                              int offset)
+  private static final int[] sha(int hh0, int hh1, int hh2, int hh3, int hh4,
+                                 byte[] in, int offset, int[] w, int[] result)
   {
     int A = hh0;
     int B = hh1;
@@ -242,6 +259,11 @@ public class Sha160
         B = A;
         A = T;
       }
-    return new int[] { hh0 + A, hh1 + B, hh2 + C, hh3 + D, hh4 + E };
+    result[0] = hh0 + A;
+    result[1] = hh1 + B;
+    result[2] = hh2 + C;
+    result[3] = hh3 + D;
+    result[4] = hh4 + E;
+    return result;
   }
 }
@@ -78,14 +78,18 @@ public class Sha256
   private static final String DIGEST0 =
       "BA7816BF8F01CFEA414140DE5DAE2223B00361A396177A9CB410FF61F20015AD";
 
-  private static final int[] w = new int[64];
-
   /** caches the result of the correctness test, once executed. */
   private static Boolean valid;
 
   /** 256-bit interim result. */
   private int h0, h1, h2, h3, h4, h5, h6, h7;
 
+  /** Message schedule, private to this instance's transform. */
+  private final int[] w = new int[64];
+
+  /** Output of this instance's transform. */
+  private final int[] t = new int[8];
+
   /** Trivial 0-arguments constructor. */
   public Sha256()
   {
@@ -116,7 +120,8 @@ public class Sha256
   public static final int[] G(int hh0, int hh1, int hh2, int hh3, int hh4,
                               int hh5, int hh6, int hh7, byte[] in, int offset)
   {
-    return sha(hh0, hh1, hh2, hh3, hh4, hh5, hh6, hh7, in, offset);
+    return sha(hh0, hh1, hh2, hh3, hh4, hh5, hh6, hh7, in, offset,
+               new int[64], new int[8]);
   }
   
   @Override
@@ -128,7 +133,7 @@ public class Sha256
   @Override
   protected void transform(byte[] in, int offset)
   {
-    int[] result = sha(h0, h1, h2, h3, h4, h5, h6, h7, in, offset);
+    int[] result = sha(h0, h1, h2, h3, h4, h5, h6, h7, in, offset, w, t);
     h0 = result[0];
     h1 = result[1];
     h2 = result[2];
@@ -160,18 +165,31 @@ public class Sha256
     return result;
   }
 
+  @Override
+  protected void pad()
+  {
+    padInPlace(0x80, 8, true);
+  }
+
   @Override
   protected byte[] getResult()
   {
-    return new byte[] {
-        (byte)(h0 >>> 24), (byte)(h0 >>> 16), (byte)(h0 >>> 8), (byte) h0,
-        (byte)(h1 >>> 24), (byte)(h1 >>> 16), (byte)(h1 >>> 8), (byte) h1,
-        (byte)(h2 >>> 24), (byte)(h2 >>> 16), (byte)(h2 >>> 8), (byte) h2,
-        (byte)(h3 >>> 24), (byte)(h3 >>> 16), (byte)(h3 >>> 8), (byte) h3,
-        (byte)(h4 >>> 24), (byte)(h4 >>> 16), (byte)(h4 >>> 8), (byte) h4,
-        (byte)(h5 >>> 24), (byte)(h5 >>> 16), (byte)(h5 >>> 8), (byte) h5,
-        (byte)(h6 >>> 24), (byte)(h6 >>> 16), (byte)(h6 >>> 8), (byte) h6,
-        (byte)(h7 >>> 24), (byte)(h7 >>> 16), (byte)(h7 >>> 8), (byte) h7 };
+    byte[] result = new byte[hashSize];
+    getResult(result, 0);
+    return result;
+  }
+
+  @Override
+  protected void getResult(byte[] out, int offset)
+  {
+    offset = putIntBE(h0, out, offset);
+    offset = putIntBE(h1, out, offset);
+    offset = putIntBE(h2, out, offset);
+    offset = putIntBE(h3, out, offset);
+    offset = putIntBE(h4, out, offset);
+    offset = putIntBE(h5, out, offset);
+    offset = putIntBE(h6, out, offset);
+    putIntBE(h7, out, offset);
   }
 
   @Override
@@ -203,10 +221,9 @@ public class Sha256
     return valid.booleanValue();
   }
 
-  private static synchronized final int[] sha(int hh0, int hh1, int hh2,
-                                              int hh3, int hh4, int hh5,
-                                              int hh6, int hh7, byte[] in,
-                                              int offset)
+  private static final int[] sha(int hh0, int hh1, int hh2, int hh3, int hh4,
+                                 int hh5, int hh6, int hh7, byte[] in,
+                                 int offset, int[] w, int[] result)
   {
     int A = hh0;
     int B = hh1;
@@ -251,8 +268,14 @@ public class Sha256
         B = A;
         A = T + T2;
       }
-    return new int[] {
-        hh0 + A, hh1 + B, hh2 + C, hh3 + D,
-        hh4 + E, hh5 + F, hh6 + G, hh7 + H };
+    result[0] = hh0 + A;
+    result[1] = hh1 + B;
+    result[2] = hh2 + C;
+    result[3] = hh3 + D;
+    result[4] = hh4 + E;
+    result[5] = hh5 + F;
+    result[6] = hh6 + G;
+    result[7] = hh7 + H;
+    return result;
   }
 }
@@ -89,14 +89,18 @@ public class Sha384
       "CB00753F45A35E8BB5A03D699AC65007272C32AB0EDED1631A8B605A43FF5BED"
     + "8086072BA1E7CC2358BAECA134C825A7";
 
-  private static final long[] w = new long[80];
-
   /** caches the result of the correctness test, once executed. */
   private static Boolean valid;
 
   /** 512-bit interim result. */
   private long h0, h1, h2, h3, h4, h5, h6, h7;
 
+  /** Message schedule, private to this instance's transform. */
+  private final long[] w = new long[80];
+
+  /** Output of this instance's transform. */
+  private final long[] t = new long[8];
+
   /** Trivial 0-arguments constructor. */
   public Sha384()
   {
@@ -128,7 +132,8 @@ public class Sha384
                                long hh4, long hh5, long hh6, long hh7,
                                byte[] in, int offset)
   {
-    return sha(hh0, hh1, hh2, hh3, hh4, hh5, hh6, hh7, in, offset);
+    return sha(hh0, hh1, hh2, hh3, hh4, hh5, hh6, hh7, in, offset,
+               new long[80], new long[8]);
   }
 
   @Override
@@ -140,7 +145,7 @@ public class Sha384
   @Override
   protected void transform(byte[] in, int offset)
   {
-    long[] result = sha(h0, h1, h2, h3, h4, h5, h6, h7, in, offset);
+    long[] result = sha(h0, h1, h2, h3, h4, h5, h6, h7, in, offset, w, t);
     h0 = result[0];
     h1 = result[1];
     h2 = result[2];
@@ -174,22 +179,29 @@ public class Sha384
     return result;
   }
 
+  @Override
+  protected void pad()
+  {
+    padInPlace(0x80, 16, true);
+  }
+
   @Override
   protected byte[] getResult()
   {
-    return new byte[] {
-        (byte)(h0 >>> 56), (byte)(h0 >>> 48), (byte)(h0 >>> 40), (byte)(h0 >>> 32),
-        (byte)(h0 >>> 24), (byte)(h0 >>> 16), (byte)(h0 >>>  8), (byte) h0,
-        (byte)(h1 >>> 56), (byte)(h1 >>> 48), (byte)(h1 >>> 40), (byte)(h1 >>> 32),
-        (byte)(h1 >>> 24), (byte)(h1 >>> 16), (byte)(h1 >>>  8), (byte) h1,
-        (byte)(h2 >>> 56), (byte)(h2 >>> 48), (byte)(h2 >>> 40), (byte)(h2 >>> 32),
-        (byte)(h2 >>> 24), (byte)(h2 >>> 16), (byte)(h2 >>>  8), (byte) h2,
-        (byte)(h3 >>> 56), (byte)(h3 >>> 48), (byte)(h3 >>> 40), (byte)(h3 >>> 32),
-        (byte)(h3 >>> 24), (byte)(h3 >>> 16), (byte)(h3 >>>  8), (byte) h3,
-        (byte)(h4 >>> 56), (byte)(h4 >>> 48), (byte)(h4 >>> 40), (byte)(h4 >>> 32),
-        (byte)(h4 >>> 24), (byte)(h4 >>> 16), (byte)(h4 >>>  8), (byte) h4,
-        (byte)(h5 >>> 56), (byte)(h5 >>> 48), (byte)(h5 >>> 40), (byte)(h5 >>> 32),
-        (byte)(h5 >>> 24), (byte)(h5 >>> 16), (byte)(h5 >>>  8), (byte) h5 };
+    byte[] result = new byte[hashSize];
+    getResult(result, 0);
+    return result;
+  }
+
+  @Override
+  protected void getResult(byte[] out, int offset)
+  {
+    offset = putLongBE(h0, out, offset);
+    offset = putLongBE(h1, out, offset);
+    offset = putLongBE(h2, out, offset);
+    offset = putLongBE(h3, out, offset);
+    offset = putLongBE(h4, out, offset);
+    putLongBE(h5, out, offset);
   }
 
   @Override
@@ -221,10 +233,10 @@ public class Sha384
     return valid.booleanValue();
   }
 
-  private static synchronized final long[] sha(long hh0, long hh1, long hh2,
-                                               long hh3, long hh4, long hh5,
-                                               long hh6, long hh7, byte[] in,
-                                               int offset)
+  private static final long[] sha(long hh0, long hh1, long hh2, long hh3,
+                                  long hh4, long hh5, long hh6, long hh7,
+                                  byte[] in, int offset, long[] w,
+                                  long[] result)
   {
     long A = hh0;
     long B = hh1;
@@ -278,8 +290,14 @@ public class Sha384
         B = A;
         A = T + T2;
       }
-    return new long[] {
-        hh0 + A, hh1 + B, hh2 + C, hh3 + D,
-        hh4 + E, hh5 + F, hh6 + G, hh7 + H };
+    result[0] = hh0 + A;
+    result[1] = hh1 + B;
+    result[2] = hh2 + C;
+    result[3] = hh3 + D;
+    result[4] = hh4 + E;
+    result[5] = hh5 + F;
+    result[6] = hh6 + G;
+    result[7] = hh7 + H;
+    return result;
   }
 }
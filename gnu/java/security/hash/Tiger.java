@@ -495,16 +495,26 @@ public class Tiger
     return pad;
   }
 
+  @Override
+  protected void pad()
+  {
+    padInPlace(0x01, 8, false);
+  }
+
   @Override
   protected byte[] getResult()
   {
-    return new byte[] {
-        (byte) a,         (byte)(a >>>  8), (byte)(a >>> 16), (byte)(a >>> 24),
-        (byte)(a >>> 32), (byte)(a >>> 40), (byte)(a >>> 48), (byte)(a >>> 56),
-        (byte) b,         (byte)(b >>>  8), (byte)(b >>> 16), (byte)(b >>> 24),
-        (byte)(b >>> 32), (byte)(b >>> 40), (byte)(b >>> 48), (byte)(b >>> 56),
-        (byte) c,         (byte)(c >>>  8), (byte)(c >>> 16), (byte)(c >>> 24),
-        (byte)(c >>> 32), (byte)(c >>> 40), (byte)(c >>> 48), (byte)(c >>> 56) };
+    byte[] result = new byte[hashSize];
+    getResult(result, 0);
+    return result;
+  }
+
+  @Override
+  protected void getResult(byte[] out, int offset)
+  {
+    offset = putLongLE(a, out, offset);
+    offset = putLongLE(b, out, offset);
+    putLongLE(c, out, offset);
   }
 
   @Override
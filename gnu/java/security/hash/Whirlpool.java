@@ -263,7 +263,7 @@ public final class Whirlpool
   /** Trivial 0-arguments constructor. */
   public Whirlpool()
   {
-    super(Registry.WHIRLPOOL_HASH, 20, BLOCK_SIZE);
+    super(Registry.WHIRLPOOL_HASH, 64, BLOCK_SIZE);
   }
 
   /**
@@ -572,28 +572,32 @@ public final class Whirlpool
     return result;
   }
 
+  @Override
+  protected void pad()
+  {
+    padInPlace(0x80, 32, true);
+  }
+
   @Override
   protected byte[] getResult()
   {
-    // apply inverse mu to the context
-    return new byte[] {
-      (byte)(H0 >>> 56), (byte)(H0 >>> 48), (byte)(H0 >>> 40), (byte)(H0 >>> 32),
-      (byte)(H0 >>> 24), (byte)(H0 >>> 16), (byte)(H0 >>>  8), (byte) H0,
-      (byte)(H1 >>> 56), (byte)(H1 >>> 48), (byte)(H1 >>> 40), (byte)(H1 >>> 32),
-      (byte)(H1 >>> 24), (byte)(H1 >>> 16), (byte)(H1 >>>  8), (byte) H1,
-      (byte)(H2 >>> 56), (byte)(H2 >>> 48), (byte)(H2 >>> 40), (byte)(H2 >>> 32),
-      (byte)(H2 >>> 24), (byte)(H2 >>> 16), (byte)(H2 >>>  8), (byte) H2,
-      (byte)(H3 >>> 56), (byte)(H3 >>> 48), (byte)(H3 >>> 40), (byte)(H3 >>> 32),
-      (byte)(H3 >>> 24), (byte)(H3 >>> 16), (byte)(H3 >>>  8), (byte) H3,
-      (byte)(H4 >>> 56), (byte)(H4 >>> 48), (byte)(H4 >>> 40), (byte)(H4 >>> 32),
-      (byte)(H4 >>> 24), (byte)(H4 >>> 16), (byte)(H4 >>>  8), (byte) H4,
-      (byte)(H5 >>> 56), (byte)(H5 >>> 48), (byte)(H5 >>> 40), (byte)(H5 >>> 32),
-      (byte)(H5 >>> 24), (byte)(H5 >>> 16), (byte)(H5 >>>  8), (byte) H5,
-      (byte)(H6 >>> 56), (byte)(H6 >>> 48), (byte)(H6 >>> 40), (byte)(H6 >>> 32),
-      (byte)(H6 >>> 24), (byte)(H6 >>> 16), (byte)(H6 >>>  8), (byte) H6,
-      (byte)(H7 >>> 56), (byte)(H7 >>> 48), (byte)(H7 >>> 40), (byte)(H7 >>> 32),
-      (byte)(H7 >>> 24), (byte)(H7 >>> 16), (byte)(H7 >>>  8), (byte) H7 };
+    byte[] result = new byte[hashSize];
+    getResult(result, 0);
+    return result;
+  }
 
+  @Override
+  protected void getResult(byte[] out, int offset)
+  {
+    // apply inverse mu to the context
+    offset = putLongBE(H0, out, offset);
+    offset = putLongBE(H1, out, offset);
+    offset = putLongBE(H2, out, offset);
+    offset = putLongBE(H3, out, offset);
+    offset = putLongBE(H4, out, offset);
+    offset = putLongBE(H5, out, offset);
+    offset = putLongBE(H6, out, offset);
+    putLongBE(H7, out, offset);
   }
 
   @Override
@@ -127,9 +127,7 @@ class MessageDigestAdapter
     if (len < result)
       throw new DigestException();
 
-    byte[] md = adaptee.digest();
-    System.arraycopy(md, 0, buf, offset, result);
-    return result;
+    return adaptee.digest(buf, offset);
   }
 
   @Override
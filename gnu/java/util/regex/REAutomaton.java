@@ -0,0 +1,1842 @@
+/* REAutomaton.java -- linear-time matcher for backtracking-free expressions
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+
+package gnu.java.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A linear-time matcher for regular expressions that need no
+ * backtracking: literals, character classes and escapes, capturing
+ * and non-capturing groups, alternation, greedy and reluctant
+ * quantifiers, and anchors at either end of the expression.  The
+ * expression is compiled to a Thompson NFA.  A DFA built lazily from
+ * it, and cached across matches, finds where a match ends and a DFA
+ * of the reversed expression finds where it starts; the NFA is then
+ * simulated with the Pike VM over just the matched text to recover
+ * group positions.  Anchors are resolved by the DFAs from the
+ * characters on either side.  The time taken is proportional to the
+ * length of the input, and the per-match scratch space is reused.
+ *
+ * <p>Matches follow the leftmost-first priority of the backtracking
+ * {@link RE} engine, and anchors and the predefined classes behave as
+ * they do there.  {@link #compile} returns null for expressions
+ * outside the supported subset, such as those using back references,
+ * lookaround, possessive quantifiers, embedded flags or
+ * case-insensitive matching, and also for those where {@link RE}'s
+ * results depend on the order it tries things in: word boundaries,
+ * anchors inside the expression, repeats of bodies that can match
+ * the empty string, and counted repeats of bodies with alternatives,
+ * repeats or groups of their own.  Callers should then use
+ * {@link RE}.</p>
+ *
+ * <p>Instances are immutable apart from the DFA cache and may be
+ * shared between threads.</p>
+ */
+public final class REAutomaton
+{
+  // Instruction opcodes.
+  private static final int CHAR = 0;
+  private static final int SET = 1;
+  private static final int ANY = 2;
+  private static final int SPLIT = 3;
+  private static final int JMP = 4;
+  private static final int SAVE = 5;
+  private static final int ASSERT = 6;
+  private static final int MATCH = 7;
+
+  // Assertion kinds.
+  private static final int BOL = 0;
+  private static final int MBOL = 1;
+  private static final int EOL = 2;
+  private static final int MEOL = 3;
+  private static final int WORD_BOUNDARY = 4;
+  private static final int NOT_WORD_BOUNDARY = 5;
+
+  // Predefined classes, as bits of CharSet.classes.
+  private static final int DIGIT = 0x01;
+  private static final int NOT_DIGIT = 0x02;
+  private static final int SPACE = 0x04;
+  private static final int NOT_SPACE = 0x08;
+  private static final int WORD = 0x10;
+  private static final int NOT_WORD = 0x20;
+
+  // DFA modes.
+  private static final int UNANCHORED = 0;
+  private static final int ANCHORED = 1;
+  private static final int ENTIRE = 2;
+  private static final int REVERSE = 3;
+
+  // Classes of the character beside a position, all that assertions
+  // look at; BOUNDARY stands for either end of the input.
+  private static final int BOUNDARY = 0;
+  private static final int WORD_CHAR = 1;
+  private static final int LF = 2;
+  private static final int CR = 3;
+  private static final int TERMINATOR = 4;
+  private static final int OTHER = 5;
+  private static final int NCONTEXTS = 6;
+
+  /** Largest compiled program; counted repeats can expand a lot. */
+  private static final int MAX_PROGRAM = 5000;
+
+  /** Largest visited set, in bits, of the bounded backtracker. */
+  private static final int MAX_VISITED = 1 << 18;
+
+  /** Transition slots one DFA may allocate before it is discarded. */
+  private static final int MAX_DFA_SLOTS = 1 << 16;
+
+  /** DFA discards after which matching uses the Pike VM only. */
+  private static final int MAX_DFA_RESETS = 8;
+
+  /** Returned by the DFA scans when the state cache filled up. */
+  private static final int GAVE_UP = -2;
+
+  private final Program forward;
+  private final Program reverse;
+  private final int numSubs;
+  private final int ncap;
+
+  private final boolean dotNewline;
+  private final boolean dotNotNull;
+
+  /** True if multiline anchors only know "\n", false for all Java ones. */
+  private final boolean unixLines;
+
+  /** DFAs by mode and by the REG_NOTBOL and REG_NOTEOL flags. */
+  private final DFA[] dfas = new DFA[16];
+  private int dfaResets;
+  private volatile boolean dfaEnabled = true;
+
+  /** Scratch space of a finished search, handed to the next one. */
+  private final AtomicReference<Pike> spare = new AtomicReference<Pike> ();
+
+  private REAutomaton (Node tree, int numSubs, boolean dotNewline,
+                       boolean dotNotNull, boolean unixLines)
+    throws Unsupported
+  {
+    this.numSubs = numSubs;
+    this.ncap = 2 * (numSubs + 1);
+    this.dotNewline = dotNewline;
+    this.dotNotNull = dotNotNull;
+    this.unixLines = unixLines;
+
+    Compiler c = new Compiler (false);
+    c.emit (SAVE, 0, 0);
+    c.compile (tree);
+    c.emit (SAVE, 1, 0);
+    c.emit (MATCH, 0, 0);
+    forward = c.finish ();
+
+    Compiler r = new Compiler (true);
+    r.compile (tree);
+    r.emit (MATCH, 0, 0);
+    reverse = r.finish ();
+  }
+
+  /**
+   * Compiles an expression for linear-time matching.
+   *
+   * @param pattern the expression.
+   * @param cflags the compilation flags, as for {@link RE}.
+   * @param syntax the syntax to interpret the expression in.
+   * @return the compiled automaton, or null if the expression (or one
+   * of the flags) needs the backtracking engine.
+   */
+  public static REAutomaton compile (String pattern, int cflags,
+                                     RESyntax syntax)
+  {
+    if ((cflags & (RE.REG_ICASE | RE.REG_X_COMMENTS)) != 0)
+      return null;
+    if (syntax.get (RESyntax.RE_BK_PLUS_QM)
+        || !syntax.get (RESyntax.RE_NO_BK_PARENS)
+        || !syntax.get (RESyntax.RE_NO_BK_VBAR)
+        || !syntax.get (RESyntax.RE_NO_BK_BRACES)
+        || !syntax.get (RESyntax.RE_INTERVALS)
+        || !syntax.get (RESyntax.RE_STINGY_OPS)
+        || !syntax.get (RESyntax.RE_PURE_GROUPING)
+        || !syntax.get (RESyntax.RE_STRING_ANCHORS)
+        || !syntax.get (RESyntax.RE_CHAR_CLASS_ESCAPES)
+        || !syntax.get (RESyntax.RE_CHAR_CLASS_ESC_IN_LISTS)
+        || !syntax.get (RESyntax.RE_BACKSLASH_ESCAPE_IN_LISTS))
+      return null;
+    String separator = syntax.getLineSeparator ();
+    if (separator != null && !separator.equals ("\n"))
+      return null;
+    try
+      {
+        Parser p = new Parser (pattern.toCharArray (), cflags, syntax);
+        Node tree = p.parse ();
+        return new REAutomaton (tree, p.numSubs,
+                                syntax.get (RESyntax.RE_DOT_NEWLINE)
+                                || (cflags & RE.REG_DOT_NEWLINE) != 0,
+                                syntax.get (RESyntax.RE_DOT_NOT_NULL),
+                                separator != null);
+      }
+    catch (Unsupported _)
+      {
+        return null;
+      }
+  }
+
+  /**
+   * Returns the number of capturing groups in the expression.
+   */
+  public int getNumSubs ()
+  {
+    return numSubs;
+  }
+
+  /**
+   * Returns the first match at or after the given index, exactly as
+   * {@link RE#getMatch(Object,int,int)} would for the same
+   * expression.  The execution flags understood are
+   * <code>REG_NOTBOL</code>, <code>REG_NOTEOL</code>,
+   * <code>REG_ANCHORINDEX</code>, <code>REG_TRY_ENTIRE_MATCH</code> and
+   * <code>REG_FIX_STARTING_POSITION</code>.
+   *
+   * @param input the text to search.
+   * @param indexed the same text as handed to {@link RE}; its last
+   * match and hit-end state are updated as {@link RE} would.
+   * @param index where to start, between 0 and the input length.
+   * @param eflags the execution flags.
+   * @return the match, or null if there is none.
+   */
+  public REMatch getMatch (CharSequence input, CharIndexed indexed,
+                           int index, int eflags)
+  {
+    int len = input.length ();
+    if (index < 0 || index > len)
+      throw new IndexOutOfBoundsException (String.valueOf (index));
+    boolean entire = (eflags & RE.REG_TRY_ENTIRE_MATCH) != 0;
+    boolean anchored = entire
+      || (eflags & RE.REG_FIX_STARTING_POSITION) != 0;
+
+    Pike pike = spare.getAndSet (null);
+    if (pike == null)
+      pike = new Pike ();
+    try
+      {
+        pike.hitEnd = false;
+        int[] caps = null;
+        boolean searched = false;
+        if (dfaEnabled
+            && ((eflags & RE.REG_ANCHORINDEX) == 0 || index == 0))
+          {
+            int mode = entire ? ENTIRE : anchored ? ANCHORED : UNANCHORED;
+            int end = scanForward (mode, pike, input, index, len, eflags);
+            if (end == -1)
+              searched = true;
+            else if (end >= 0)
+              {
+                int start = anchored ? index
+                  : scanReverse (input, end, index, eflags);
+                if (start >= 0)
+                  {
+                    searched = true;
+                    if (numSubs == 0)
+                      {
+                        caps = pike.best;
+                        caps[0] = start;
+                        caps[1] = end;
+                      }
+                    else
+                      {
+                        caps = pike.backtrack (input, len, start, end,
+                                               index, eflags);
+                        if (caps == null)
+                          {
+                            boolean hit = pike.hitEnd;
+                            caps = pike.run (input, len, start, true, entire,
+                                             index, eflags);
+                            pike.hitEnd = hit;
+                          }
+                      }
+                  }
+              }
+          }
+        if (!searched)
+          caps = pike.run (input, len, index, anchored, entire, index,
+                           eflags);
+
+        if (pike.hitEnd || caps == null)
+          {
+            // The backtracking engine always tries the end of the
+            // input before it gives up.
+            REMatch probe = new REMatch (0, 0, eflags);
+            probe.index = len;
+            indexed.setAnchor (0);
+            indexed.setHitEnd (probe);
+          }
+        if (caps == null)
+          return null;
+
+        int start = caps[0];
+        REMatch m = new REMatch (numSubs, index, eflags);
+        m.clear (start);
+        for (int i = 1; i <= numSubs; i++)
+          if (caps[2 * i] >= 0 && caps[2 * i + 1] >= 0)
+            {
+              m.start[i] = caps[2 * i] - start;
+              m.end[i] = caps[2 * i + 1] - start;
+            }
+        m.end[0] = m.index = caps[1] - start;
+        indexed.setAnchor (start);
+        m.finish (indexed);
+        indexed.setLastMatch (m);
+        return m;
+      }
+    finally
+      {
+        spare.set (pike);
+      }
+  }
+
+  /**
+   * Runs the forward DFA from <code>from</code> and returns where the
+   * leftmost-first match ends, -1 if there is no match or GAVE_UP.
+   */
+  private int scanForward (int mode, Pike pike, CharSequence input,
+                           int from, int len, int eflags)
+  {
+    DFA dfa = dfa (mode, eflags);
+    if (dfa == null)
+      return GAVE_UP;
+    State s = dfa.start (from == 0 ? BOUNDARY
+                         : contextOf (input.charAt (from - 1)));
+    if (s == null)
+      return GAVE_UP;
+    boolean entire = mode == ENTIRE;
+    int last = -1;
+    for (int pos = from; ; pos++)
+      {
+        if (pos == len)
+          {
+            pike.hitEnd = true;
+            s = dfa.next (s, -1);
+            if (s == null)
+              return GAVE_UP;
+            if (s.matchBefore)
+              last = pos;
+            break;
+          }
+        s = dfa.next (s, input.charAt (pos));
+        if (s == null)
+          return GAVE_UP;
+        if (s.matchBefore && !entire)
+          last = pos;
+        if (s.dead)
+          break;
+      }
+    return last;
+  }
+
+  /**
+   * Runs the reversed expression's DFA backwards from the end of a
+   * match and returns the leftmost position, not before
+   * <code>limit</code>, where the match can start.
+   */
+  private int scanReverse (CharSequence input, int end, int limit,
+                           int eflags)
+  {
+    DFA dfa = dfa (REVERSE, eflags);
+    if (dfa == null)
+      return GAVE_UP;
+    State s = dfa.start (end == input.length () ? BOUNDARY
+                         : contextOf (input.charAt (end)));
+    if (s == null)
+      return GAVE_UP;
+    int first = -1;
+    for (int pos = end; ; pos--)
+      {
+        s = dfa.next (s, pos == 0 ? -1 : input.charAt (pos - 1));
+        if (s == null)
+          return GAVE_UP;
+        if (s.matchBefore)
+          first = pos;
+        if (s.dead || pos == limit)
+          break;
+      }
+    return first;
+  }
+
+  /**
+   * Returns the DFA for a mode and execution flags, or null once DFAs
+   * have been given up.
+   */
+  private DFA dfa (int mode, int eflags)
+  {
+    int index = mode << 2;
+    if (forward.hasAssertions)
+      {
+        if ((eflags & RE.REG_NOTBOL) != 0)
+          index |= 1;
+        if ((eflags & RE.REG_NOTEOL) != 0)
+          index |= 2;
+      }
+    DFA dfa = dfas[index];
+    if (dfa != null && !dfa.full)
+      return dfa;
+    synchronized (dfas)
+      {
+        dfa = dfas[index];
+        if (dfa != null && dfa.full)
+          {
+            if (++dfaResets > MAX_DFA_RESETS)
+              {
+                dfaEnabled = false;
+                return null;
+              }
+            dfa = null;
+          }
+        if (dfa == null)
+          {
+            dfa = new DFA (mode == REVERSE ? reverse : forward, mode,
+                           eflags);
+            dfas[index] = dfa;
+          }
+        return dfa;
+      }
+  }
+
+  /** Whether an input character is matched by a consuming instruction. */
+  private boolean matches (Program p, int pc, char c)
+  {
+    switch (p.op[pc])
+      {
+      case CHAR:
+        return c == p.arg[pc];
+      case SET:
+        return p.sets[p.arg[pc]].contains (c);
+      case ANY:
+        return (dotNewline || c != '\n') && (!dotNotNull || c != 0);
+      default:
+        return false;
+      }
+  }
+
+  private static boolean isWordChar (char c)
+  {
+    return Character.isLetterOrDigit (c) || (c == '_');
+  }
+
+  /** Returns the class of a character as far as assertions care. */
+  private static int contextOf (char c)
+  {
+    if (isWordChar (c))
+      return WORD_CHAR;
+    switch (c)
+      {
+      case '\n':
+        return LF;
+      case '\r':
+        return CR;
+      case '\u0085':
+      case '\u2028':
+      case '\u2029':
+        return TERMINATOR;
+      default:
+        return OTHER;
+      }
+  }
+
+  /**
+   * Evaluates an assertion as the corresponding {@link REToken} does.
+   *
+   * @param kind the assertion.
+   * @param lc the class of the character before the position.
+   * @param rc the class of the character after it.
+   * @param start whether the position is where the input starts, or
+   * the anchor with <code>REG_ANCHORINDEX</code>.
+   * @param eflags the execution flags.
+   */
+  private boolean check (int kind, int lc, int rc, boolean start,
+                         int eflags)
+  {
+    switch (kind)
+      {
+      case MBOL:
+        if (lc == LF)
+          return true;
+        if (!unixLines)
+          {
+            if (lc == CR)
+              return rc != LF;
+            if (lc == TERMINATOR)
+              return true;
+          }
+        // Fall through.
+      case BOL:
+        return start && (eflags & RE.REG_NOTBOL) == 0;
+      case EOL:
+        return rc == BOUNDARY && (eflags & RE.REG_NOTEOL) == 0;
+      case MEOL:
+        if (rc == BOUNDARY)
+          return (eflags & RE.REG_NOTEOL) == 0;
+        if (rc == LF)
+          return unixLines || lc != CR;
+        return !unixLines && (rc == CR || rc == TERMINATOR);
+      default:
+        boolean before = lc == WORD_CHAR
+          && !(start && (eflags & RE.REG_ANCHORINDEX) != 0);
+        boolean after = rc == WORD_CHAR;
+        return (before != after) == (kind == WORD_BOUNDARY);
+      }
+  }
+
+  /**
+   * Thrown by the parser and compiler for expressions outside the
+   * supported subset.
+   */
+  private static final class Unsupported extends Exception
+  {
+    private static final long serialVersionUID = 1L;
+  }
+
+  /**
+   * A character class: ranges and predefined classes, possibly negated.
+   */
+  private static final class CharSet
+  {
+    final char[] ranges;
+    final int classes;
+    final boolean negated;
+
+    CharSet (char[] ranges, int classes, boolean negated)
+    {
+      this.ranges = ranges;
+      this.classes = classes;
+      this.negated = negated;
+    }
+
+    boolean contains (char c)
+    {
+      return in (c) != negated;
+    }
+
+    private boolean in (char c)
+    {
+      for (int i = 0; i < ranges.length; i += 2)
+        if (c >= ranges[i] && c <= ranges[i + 1])
+          return true;
+      if (classes == 0)
+        return false;
+      if ((classes & (DIGIT | NOT_DIGIT)) != 0)
+        {
+          boolean d = Character.isDigit (c);
+          if ((classes & DIGIT) != 0 && d)
+            return true;
+          if ((classes & NOT_DIGIT) != 0 && !d)
+            return true;
+        }
+      if ((classes & (SPACE | NOT_SPACE)) != 0)
+        {
+          boolean s = Character.isWhitespace (c);
+          if ((classes & SPACE) != 0 && s)
+            return true;
+          if ((classes & NOT_SPACE) != 0 && !s)
+            return true;
+        }
+      if ((classes & (WORD | NOT_WORD)) != 0)
+        {
+          boolean w = isWordChar (c);
+          if ((classes & WORD) != 0 && w)
+            return true;
+          if ((classes & NOT_WORD) != 0 && !w)
+            return true;
+        }
+      return false;
+    }
+  }
+
+  // Syntax tree node types.
+  private static final int N_EMPTY = 0;
+  private static final int N_CHAR = 1;
+  private static final int N_SET = 2;
+  private static final int N_ANY = 3;
+  private static final int N_ASSERT = 4;
+  private static final int N_CAT = 5;
+  private static final int N_ALT = 6;
+  private static final int N_GROUP = 7;
+  private static final int N_REPEAT = 8;
+
+  /** A syntax tree node. */
+  private static final class Node
+  {
+    final int type;
+    char ch;
+    CharSet set;
+    int arg;
+    int min;
+    int max;
+    boolean greedy;
+    Node sub;
+    List<Node> kids;
+
+    Node (int type)
+    {
+      this.type = type;
+    }
+
+    boolean nullable ()
+    {
+      switch (type)
+        {
+        case N_EMPTY:
+        case N_ASSERT:
+          return true;
+        case N_CAT:
+          for (Node n : kids)
+            if (!n.nullable ())
+              return false;
+          return true;
+        case N_ALT:
+          for (Node n : kids)
+            if (n.nullable ())
+              return true;
+          return false;
+        case N_GROUP:
+          return sub.nullable ();
+        case N_REPEAT:
+          return min == 0 || sub.nullable ();
+        default:
+          return false;
+        }
+    }
+  }
+
+  /**
+   * Parses the supported subset of the Java syntax into a tree, and
+   * throws Unsupported for anything else.  The expression has already
+   * been accepted by {@link RE}, so errors need no reporting.
+   */
+  private static final class Parser
+  {
+    private final char[] p;
+    private final boolean multiline;
+    private final boolean octal;
+    private final boolean hex;
+    private final boolean unicode;
+    private int pos;
+    int numSubs;
+
+    Parser (char[] p, int cflags, RESyntax syntax)
+    {
+      this.p = p;
+      multiline = (cflags & RE.REG_MULTILINE) != 0;
+      octal = syntax.get (RESyntax.RE_OCTAL_CHAR);
+      hex = syntax.get (RESyntax.RE_HEX_CHAR);
+      unicode = syntax.get (RESyntax.RE_UNICODE_CHAR);
+    }
+
+    Node parse () throws Unsupported
+    {
+      Node n = alternation ();
+      if (pos != p.length)
+        throw new Unsupported ();
+      checkAssertions (n);
+      return n;
+    }
+
+    /**
+     * Throws Unsupported unless every assertion in the tree is a
+     * leading <code>^</code> or <code>\A</code>, or a trailing
+     * <code>$</code>, <code>\z</code> or <code>\Z</code>, of the
+     * expression as a whole.  Anywhere else, and for word boundaries,
+     * the backtracking engine gets results that depend on the order
+     * in which it tries quantifiers and alternatives, which the
+     * automaton does not reproduce.
+     */
+    private static void checkAssertions (Node tree) throws Unsupported
+    {
+      if (tree.type != N_CAT)
+        {
+          if (tree.type == N_ASSERT && tree.arg > MEOL)
+            throw new Unsupported ();
+          if (tree.type != N_ASSERT && contains (tree, N_ASSERT))
+            throw new Unsupported ();
+          return;
+        }
+      int last = tree.kids.size () - 1;
+      for (int i = 0; i <= last; i++)
+        {
+          Node n = tree.kids.get (i);
+          if (n.type != N_ASSERT)
+            {
+              if (contains (n, N_ASSERT))
+                throw new Unsupported ();
+            }
+          else if (!(i == 0 && (n.arg == BOL || n.arg == MBOL))
+                   && !(i == last && (n.arg == EOL || n.arg == MEOL)))
+            throw new Unsupported ();
+        }
+    }
+
+    /**
+     * Returns true if the tree contains a node of the given type.
+     */
+    private static boolean contains (Node n, int type)
+    {
+      if (n.type == type)
+        return true;
+      switch (n.type)
+        {
+        case N_CAT:
+        case N_ALT:
+          for (Node k : n.kids)
+            if (contains (k, type))
+              return true;
+          return false;
+        case N_GROUP:
+        case N_REPEAT:
+          return contains (n.sub, type);
+        default:
+          return false;
+        }
+    }
+
+    private Node alternation () throws Unsupported
+    {
+      Node first = sequence ();
+      if (pos == p.length || p[pos] != '|')
+        return first;
+      Node alt = new Node (N_ALT);
+      alt.kids = new ArrayList<Node> ();
+      alt.kids.add (first);
+      while (pos < p.length && p[pos] == '|')
+        {
+          pos++;
+          alt.kids.add (sequence ());
+        }
+      return alt;
+    }
+
+    private Node sequence () throws Unsupported
+    {
+      Node cat = new Node (N_CAT);
+      cat.kids = new ArrayList<Node> ();
+      while (pos < p.length && p[pos] != '|' && p[pos] != ')')
+        cat.kids.add (repeat ());
+      if (cat.kids.isEmpty ())
+        return new Node (N_EMPTY);
+      return cat.kids.size () == 1 ? cat.kids.get (0) : cat;
+    }
+
+    private Node repeat () throws Unsupported
+    {
+      Node atom = atom ();
+      if (pos == p.length)
+        return atom;
+      int min;
+      int max;
+      switch (p[pos])
+        {
+        case '*':
+          min = 0;
+          max = -1;
+          pos++;
+          break;
+        case '+':
+          min = 1;
+          max = -1;
+          pos++;
+          break;
+        case '?':
+          min = 0;
+          max = 1;
+          pos++;
+          break;
+        case '{':
+          pos++;
+          min = number ();
+          max = min;
+          if (pos < p.length && p[pos] == ',')
+            {
+              pos++;
+              max = (pos < p.length && p[pos] == '}') ? -1 : number ();
+            }
+          if (pos == p.length || p[pos] != '}' || (max != -1 && max < min))
+            throw new Unsupported ();
+          pos++;
+          // The backtracking engine can count an iteration twice, or
+          // keep groups of an earlier one, when the body of a counted
+          // repeat has choices or groups of its own.
+          if (contains (atom, N_ALT) || contains (atom, N_REPEAT)
+              || contains (atom, N_GROUP))
+            throw new Unsupported ();
+          break;
+        default:
+          return atom;
+        }
+      if (atom.type == N_ASSERT || atom.type == N_EMPTY)
+        throw new Unsupported ();
+      // Repeats of empty-matching bodies get special treatment from
+      // the backtracking engine.
+      if (atom.nullable ())
+        throw new Unsupported ();
+      Node n = new Node (N_REPEAT);
+      n.sub = atom;
+      n.min = min;
+      n.max = max;
+      n.greedy = true;
+      if (pos < p.length && p[pos] == '?')
+        {
+          n.greedy = false;
+          pos++;
+        }
+      if (pos < p.length
+          && (p[pos] == '*' || p[pos] == '+' || p[pos] == '?'
+              || p[pos] == '{'))
+        throw new Unsupported ();
+      return n;
+    }
+
+    private int number () throws Unsupported
+    {
+      int start = pos;
+      int n = 0;
+      while (pos < p.length && p[pos] >= '0' && p[pos] <= '9')
+        {
+          n = n * 10 + (p[pos++] - '0');
+          if (n > MAX_PROGRAM)
+            throw new Unsupported ();
+        }
+      if (pos == start)
+        throw new Unsupported ();
+      return n;
+    }
+
+    private Node atom () throws Unsupported
+    {
+      char c = p[pos++];
+      Node n;
+      switch (c)
+        {
+        case '(':
+          int group = 0;
+          if (pos < p.length && p[pos] == '?')
+            {
+              if (pos + 1 == p.length || p[pos + 1] != ':')
+                throw new Unsupported ();
+              pos += 2;
+            }
+          else
+            group = ++numSubs;
+          Node body = alternation ();
+          if (pos == p.length || p[pos] != ')')
+            throw new Unsupported ();
+          pos++;
+          if (group == 0)
+            return body;
+          n = new Node (N_GROUP);
+          n.arg = group;
+          n.sub = body;
+          return n;
+        case '[':
+          return charClass ();
+        case '.':
+          return new Node (N_ANY);
+        case '^':
+          n = new Node (N_ASSERT);
+          n.arg = multiline ? MBOL : BOL;
+          return n;
+        case '$':
+          n = new Node (N_ASSERT);
+          n.arg = multiline ? MEOL : EOL;
+          return n;
+        case '\\':
+          return escape ();
+        case ')':
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+        case '}':
+        case ']':
+          throw new Unsupported ();
+        default:
+          n = new Node (N_CHAR);
+          n.ch = c;
+          return n;
+        }
+    }
+
+    private Node escape () throws Unsupported
+    {
+      if (pos == p.length)
+        throw new Unsupported ();
+      char c = p[pos];
+      Node n;
+      switch (c)
+        {
+        case 'b':
+        case 'B':
+        case 'A':
+        case 'z':
+        case 'Z':
+          pos++;
+          n = new Node (N_ASSERT);
+          n.arg = c == 'b' ? WORD_BOUNDARY : c == 'B' ? NOT_WORD_BOUNDARY
+            : c == 'A' ? BOL : EOL;
+          return n;
+        default:
+          int classes = predefinedClass ();
+          if (classes != 0)
+            {
+              n = new Node (N_SET);
+              n.set = new CharSet (new char[0], classes, false);
+              return n;
+            }
+          n = new Node (N_CHAR);
+          n.ch = escapedChar ();
+          return n;
+        }
+    }
+
+    /**
+     * Parses <code>\d</code> and friends, the backslash already
+     * consumed; returns 0 and consumes nothing for other escapes.
+     */
+    private int predefinedClass ()
+    {
+      int classes;
+      switch (p[pos])
+        {
+        case 'd':
+          classes = DIGIT;
+          break;
+        case 'D':
+          classes = NOT_DIGIT;
+          break;
+        case 's':
+          classes = SPACE;
+          break;
+        case 'S':
+          classes = NOT_SPACE;
+          break;
+        case 'w':
+          classes = WORD;
+          break;
+        case 'W':
+          classes = NOT_WORD;
+          break;
+        default:
+          return 0;
+        }
+      pos++;
+      return classes;
+    }
+
+    /**
+     * Parses an escaped character, the backslash already consumed.
+     */
+    private char escapedChar () throws Unsupported
+    {
+      char c = p[pos++];
+      switch (c)
+        {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'x':
+          if (!hex)
+            throw new Unsupported ();
+          return (char) digits (2, 2, 16);
+        case 'u':
+          if (!unicode)
+            throw new Unsupported ();
+          return (char) digits (4, 4, 16);
+        case '0':
+          if (!octal)
+            throw new Unsupported ();
+          // As RE.getCharExpression: up to three octal digits, \0377
+          // at most.
+          int max = (pos + 2 < p.length && p[pos] <= '3') ? 3 : 2;
+          return (char) digits (1, max, 8);
+        case '<':
+        case '>':
+          throw new Unsupported ();
+        default:
+          if (Character.isLetterOrDigit (c))
+            throw new Unsupported ();
+          return c;
+        }
+    }
+
+    private int digits (int min, int max, int radix) throws Unsupported
+    {
+      int n = 0;
+      int count = 0;
+      while (count < max && pos < p.length)
+        {
+          int d = Character.digit (p[pos], radix);
+          if (d < 0 || p[pos] > 'f')
+            break;
+          n = n * radix + d;
+          pos++;
+          count++;
+        }
+      if (count < min)
+        throw new Unsupported ();
+      return n;
+    }
+
+    private Node charClass () throws Unsupported
+    {
+      boolean negated = false;
+      if (pos < p.length && p[pos] == '^')
+        {
+          negated = true;
+          pos++;
+        }
+      if (pos < p.length && p[pos] == ']')
+        throw new Unsupported ();
+      StringBuilder ranges = new StringBuilder ();
+      int classes = 0;
+      while (true)
+        {
+          if (pos == p.length)
+            throw new Unsupported ();
+          char c = p[pos++];
+          if (c == ']')
+            break;
+          if (c == '[' || (c == '&' && pos < p.length && p[pos] == '&'))
+            throw new Unsupported ();
+          if (c == '\\')
+            {
+              if (pos == p.length)
+                throw new Unsupported ();
+              int cls = predefinedClass ();
+              if (cls != 0)
+                {
+                  classes |= cls;
+                  continue;
+                }
+              c = escapedChar ();
+            }
+          char hi = c;
+          if (pos + 1 < p.length && p[pos] == '-' && p[pos + 1] != ']')
+            {
+              pos++;
+              hi = p[pos++];
+              if (hi == '[')
+                throw new Unsupported ();
+              if (hi == '\\')
+                {
+                  if (pos == p.length || predefinedClass () != 0)
+                    throw new Unsupported ();
+                  hi = escapedChar ();
+                }
+              if (hi < c)
+                throw new Unsupported ();
+            }
+          ranges.append (c).append (hi);
+        }
+      char[] r = new char[ranges.length ()];
+      ranges.getChars (0, r.length, r, 0);
+      Node n = new Node (N_SET);
+      n.set = new CharSet (r, classes, negated);
+      return n;
+    }
+  }
+
+  /**
+   * A compiled program: one instruction per index, with an opcode,
+   * an argument and, for SPLIT, the lower-priority target.
+   */
+  private static final class Program
+  {
+    final int[] op;
+    final int[] arg;
+    final int[] alt;
+    final CharSet[] sets;
+    final int size;
+    final boolean hasAssertions;
+
+    /**
+     * Maps Latin-1 characters to DFA transition columns; column
+     * ncolumns is taken at the end of the input.
+     */
+    final byte[] columns = new byte[256];
+    final int ncolumns;
+
+    Program (int[] op, int[] arg, int[] alt, CharSet[] sets, int size,
+             boolean hasAssertions, REAutomaton owner)
+    {
+      this.op = op;
+      this.arg = arg;
+      this.alt = alt;
+      this.sets = sets;
+      this.size = size;
+      this.hasAssertions = hasAssertions;
+
+      // Characters no instruction or assertion tells apart share a
+      // column.
+      boolean[] boundary = new boolean[256];
+      for (int pc = 0; pc < size; pc++)
+        if (op[pc] == CHAR || op[pc] == SET || op[pc] == ANY)
+          {
+            boolean prev = owner.matches (this, pc, (char) 0);
+            for (int c = 1; c < 256; c++)
+              {
+                boolean m = owner.matches (this, pc, (char) c);
+                if (m != prev)
+                  boundary[c] = true;
+                prev = m;
+              }
+          }
+      if (hasAssertions)
+        for (int c = 1; c < 256; c++)
+          if (contextOf ((char) c) != contextOf ((char) (c - 1)))
+            boundary[c] = true;
+      int column = 0;
+      for (int c = 0; c < 256; c++)
+        {
+          if (boundary[c])
+            column++;
+          columns[c] = (byte) column;
+        }
+      ncolumns = column + 1;
+    }
+  }
+
+  /**
+   * Translates a syntax tree into a program.  Counted repeats are
+   * expanded into copies of their operand.
+   */
+  private final class Compiler
+  {
+    private final boolean reversed;
+    private int[] op = new int[16];
+    private int[] arg = new int[16];
+    private int[] alt = new int[16];
+    private int size;
+    private final List<CharSet> sets = new ArrayList<CharSet> ();
+    boolean hasAssertions;
+
+    Compiler (boolean reversed)
+    {
+      this.reversed = reversed;
+    }
+
+    int emit (int opcode, int a, int b) throws Unsupported
+    {
+      if (size == MAX_PROGRAM)
+        throw new Unsupported ();
+      if (size == op.length)
+        {
+          int n = size * 2;
+          int[] o = new int[n];
+          int[] x = new int[n];
+          int[] y = new int[n];
+          System.arraycopy (op, 0, o, 0, size);
+          System.arraycopy (arg, 0, x, 0, size);
+          System.arraycopy (alt, 0, y, 0, size);
+          op = o;
+          arg = x;
+          alt = y;
+        }
+      op[size] = opcode;
+      arg[size] = a;
+      alt[size] = b;
+      return size++;
+    }
+
+    void compile (Node n) throws Unsupported
+    {
+      switch (n.type)
+        {
+        case N_EMPTY:
+          break;
+        case N_CHAR:
+          emit (CHAR, n.ch, 0);
+          break;
+        case N_SET:
+          sets.add (n.set);
+          emit (SET, sets.size () - 1, 0);
+          break;
+        case N_ANY:
+          emit (ANY, 0, 0);
+          break;
+        case N_ASSERT:
+          hasAssertions = true;
+          emit (ASSERT, n.arg, 0);
+          break;
+        case N_CAT:
+          if (reversed)
+            for (int i = n.kids.size () - 1; i >= 0; i--)
+              compile (n.kids.get (i));
+          else
+            for (Node k : n.kids)
+              compile (k);
+          break;
+        case N_ALT:
+          int[] exits = new int[n.kids.size () - 1];
+          for (int i = 0; i < exits.length; i++)
+            {
+              int split = emit (SPLIT, size + 1, 0);
+              compile (n.kids.get (i));
+              exits[i] = emit (JMP, 0, 0);
+              alt[split] = size;
+            }
+          compile (n.kids.get (exits.length));
+          for (int i = 0; i < exits.length; i++)
+            arg[exits[i]] = size;
+          break;
+        case N_GROUP:
+          if (!reversed)
+            emit (SAVE, 2 * n.arg, 0);
+          compile (n.sub);
+          if (!reversed)
+            emit (SAVE, 2 * n.arg + 1, 0);
+          break;
+        case N_REPEAT:
+          for (int i = 0; i < n.min; i++)
+            compile (n.sub);
+          if (n.max == -1)
+            {
+              int loop = split (n.greedy);
+              compile (n.sub);
+              emit (JMP, loop, 0);
+              target (loop, n.greedy);
+            }
+          else if (n.max > n.min)
+            {
+              int[] splits = new int[n.max - n.min];
+              for (int i = 0; i < splits.length; i++)
+                {
+                  splits[i] = split (n.greedy);
+                  compile (n.sub);
+                }
+              for (int i = 0; i < splits.length; i++)
+                target (splits[i], n.greedy);
+            }
+          break;
+        }
+    }
+
+    /**
+     * Emits a split into the following instruction and a yet unknown
+     * exit, preferring the former when greedy.
+     */
+    private int split (boolean greedy) throws Unsupported
+    {
+      return greedy ? emit (SPLIT, size + 1, 0) : emit (SPLIT, 0, size + 1);
+    }
+
+    /** Points the exit of a split at the next instruction. */
+    private void target (int split, boolean greedy)
+    {
+      if (greedy)
+        alt[split] = size;
+      else
+        arg[split] = size;
+    }
+
+    Program finish ()
+    {
+      return new Program (op, arg, alt, sets.toArray (new CharSet[sets.size ()]),
+                          size, hasAssertions, REAutomaton.this);
+    }
+  }
+
+  /**
+   * An ordered set of program counters, the threads of an NFA
+   * simulation in priority order, with the capture positions of each.
+   */
+  private static final class Threads
+  {
+    final int[] sparse;
+    final int[] dense;
+    final int[] caps;
+    int size;
+
+    Threads (int n, int ncap)
+    {
+      sparse = new int[n];
+      dense = new int[n];
+      caps = new int[ncap == 0 ? 0 : n * ncap];
+    }
+
+    boolean contains (int pc)
+    {
+      int i = sparse[pc];
+      return i < size && dense[i] == pc;
+    }
+
+    void add (int pc)
+    {
+      sparse[pc] = size;
+      dense[size++] = pc;
+    }
+  }
+
+  /**
+   * The scratch space of one Pike VM search.
+   */
+  private final class Pike
+  {
+    private final Program prog = forward;
+    private Threads current = new Threads (prog.size, ncap);
+    private Threads next = new Threads (prog.size, ncap);
+    private final int[] stackPc = new int[2 * prog.size + 2];
+    private final int[] stackVal = new int[2 * prog.size + 2];
+    private final int[] scratch = new int[ncap];
+    final int[] best = new int[ncap];
+    boolean hitEnd;
+
+    // The bounded backtracker's visited set and job stack.
+    private int[] visited = new int[64];
+    private int[] jobPc = new int[64];
+    private int[] jobVal = new int[64];
+
+    /**
+     * Searches from <code>from</code> and returns the capture
+     * positions of the leftmost-first match, or null.
+     */
+    int[] run (CharSequence in, int len, int from, boolean anchored,
+               boolean entire, int anchor, int eflags)
+    {
+      Threads clist = current;
+      Threads nlist = next;
+      clist.size = 0;
+      boolean matched = false;
+      for (int pos = from; ; pos++)
+        {
+          if (!matched && (pos == from || !anchored))
+            {
+              for (int i = 0; i < ncap; i++)
+                scratch[i] = -1;
+              addThread (clist, 0, in, len, pos, anchor, eflags);
+            }
+          if (clist.size == 0)
+            {
+              if (matched || anchored || pos >= len)
+                break;
+              continue;
+            }
+          if (pos == len)
+            hitEnd = true;
+          char c = pos < len ? in.charAt (pos) : 0;
+          nlist.size = 0;
+          for (int i = 0; i < clist.size; i++)
+            {
+              int pc = clist.dense[i];
+              int op = prog.op[pc];
+              if (op == MATCH)
+                {
+                  if (entire && (pos != len || (eflags & RE.REG_NOTEOL) != 0))
+                    continue;
+                  System.arraycopy (clist.caps, pc * ncap, best, 0, ncap);
+                  matched = true;
+                  // Lower-priority threads cannot win any more.
+                  break;
+                }
+              if (pos < len && matches (prog, pc, c))
+                {
+                  System.arraycopy (clist.caps, pc * ncap, scratch, 0, ncap);
+                  addThread (nlist, pc + 1, in, len, pos + 1, anchor, eflags);
+                }
+            }
+          Threads t = clist;
+          clist = nlist;
+          nlist = t;
+          if (pos >= len)
+            break;
+        }
+      current = clist;
+      next = nlist;
+      return matched ? best : null;
+    }
+
+    /**
+     * Finds the capture positions of the leftmost-first match known
+     * to run from <code>start</code> to <code>end</code> by
+     * backtracking, visiting each instruction at each position at most
+     * once.  Returns null if the visited set would be too large.
+     */
+    int[] backtrack (CharSequence in, int len, int start, int end,
+                     int anchor, int eflags)
+    {
+      int width = end - start + 1;
+      if ((long) prog.size * width > MAX_VISITED)
+        return null;
+      int words = (prog.size * width + 31) >>> 5;
+      if (visited.length < words)
+        visited = new int[Math.max (words, 2 * visited.length)];
+      else
+        Arrays.fill (visited, 0, words, 0);
+      for (int i = 0; i < ncap; i++)
+        scratch[i] = -1;
+
+      int sp = 0;
+      jobPc[sp] = 0;
+      jobVal[sp++] = start;
+      while (sp > 0)
+        {
+          int pc = jobPc[--sp];
+          if (pc < 0)
+            {
+              // Restore a capture overwritten by a SAVE.
+              scratch[-pc - 1] = jobVal[sp];
+              continue;
+            }
+          int pos = jobVal[sp];
+          while (true)
+            {
+              int bit = pc * width + pos - start;
+              if ((visited[bit >>> 5] & (1 << bit)) != 0)
+                break;
+              visited[bit >>> 5] |= 1 << bit;
+              int op = prog.op[pc];
+              if (op == JMP)
+                pc = prog.arg[pc];
+              else if (op == SPLIT || op == SAVE)
+                {
+                  if (sp + 1 >= jobPc.length)
+                    {
+                      jobPc = grow (jobPc);
+                      jobVal = grow (jobVal);
+                    }
+                  if (op == SPLIT)
+                    {
+                      jobPc[sp] = prog.alt[pc];
+                      jobVal[sp++] = pos;
+                      pc = prog.arg[pc];
+                    }
+                  else
+                    {
+                      int slot = prog.arg[pc];
+                      jobPc[sp] = -slot - 1;
+                      jobVal[sp++] = scratch[slot];
+                      scratch[slot] = pos;
+                      pc++;
+                    }
+                }
+              else if (op == ASSERT)
+                {
+                  int lc = pos == 0 ? BOUNDARY : contextOf (in.charAt (pos - 1));
+                  int rc = pos == len ? BOUNDARY : contextOf (in.charAt (pos));
+                  boolean atStart = (eflags & RE.REG_ANCHORINDEX) != 0
+                    ? pos == anchor : pos == 0;
+                  if (!check (prog.arg[pc], lc, rc, atStart, eflags))
+                    break;
+                  pc++;
+                }
+              else if (op == MATCH)
+                {
+                  if (pos != end)
+                    break;
+                  System.arraycopy (scratch, 0, best, 0, ncap);
+                  return best;
+                }
+              else if (pos < end && matches (prog, pc, in.charAt (pos)))
+                {
+                  pc++;
+                  pos++;
+                }
+              else
+                break;
+            }
+        }
+      return null;
+    }
+
+    private int[] grow (int[] a)
+    {
+      int[] b = new int[a.length * 2];
+      System.arraycopy (a, 0, b, 0, a.length);
+      return b;
+    }
+
+    /**
+     * Adds the thread at <code>pc0</code>, with the captures in
+     * scratch, and everything reachable from it without consuming
+     * input, in priority order.
+     */
+    private void addThread (Threads list, int pc0, CharSequence in, int len,
+                            int pos, int anchor, int eflags)
+    {
+      int sp = 0;
+      stackPc[sp++] = pc0;
+      while (sp > 0)
+        {
+          int pc = stackPc[--sp];
+          if (pc < 0)
+            {
+              // Restore a capture overwritten by a SAVE.
+              scratch[-pc - 1] = stackVal[sp];
+              continue;
+            }
+          while (!list.contains (pc))
+            {
+              list.add (pc);
+              int op = prog.op[pc];
+              if (op == JMP)
+                pc = prog.arg[pc];
+              else if (op == SPLIT)
+                {
+                  stackPc[sp++] = prog.alt[pc];
+                  pc = prog.arg[pc];
+                }
+              else if (op == SAVE)
+                {
+                  int slot = prog.arg[pc];
+                  stackVal[sp] = scratch[slot];
+                  stackPc[sp++] = -slot - 1;
+                  scratch[slot] = pos;
+                  pc++;
+                }
+              else if (op == ASSERT)
+                {
+                  int lc = pos == 0 ? BOUNDARY : contextOf (in.charAt (pos - 1));
+                  int rc = pos == len ? BOUNDARY : contextOf (in.charAt (pos));
+                  boolean start = (eflags & RE.REG_ANCHORINDEX) != 0
+                    ? pos == anchor : pos == 0;
+                  if (!check (prog.arg[pc], lc, rc, start, eflags))
+                    break;
+                  pc++;
+                }
+              else
+                {
+                  System.arraycopy (scratch, 0, list.caps, pc * ncap, ncap);
+                  break;
+                }
+            }
+        }
+    }
+  }
+
+  /**
+   * A DFA state: the consuming instructions, MATCH and unresolved
+   * assertions of the live NFA threads in priority order, with the
+   * class of the character last consumed.  States are only created
+   * under the DFA's lock, but their transitions are read without it;
+   * a missing transition is computed under the lock.
+   */
+  private static final class State
+  {
+    final int[] pcs;
+    final int context;
+    final boolean seen;
+
+    /** Whether a match ended before the character that led here. */
+    final boolean matchBefore;
+    final boolean dead;
+    final int hash;
+    final State[] next;
+
+    /** The last transition on a character outside Latin-1. */
+    Edge high;
+
+    State (int[] pcs, int context, boolean seen, boolean matchBefore,
+           boolean dead, int hash, int ncolumns)
+    {
+      this.pcs = pcs;
+      this.context = context;
+      this.seen = seen;
+      this.matchBefore = matchBefore;
+      this.dead = dead;
+      this.hash = hash;
+      next = new State[ncolumns + 1];
+    }
+  }
+
+  /** A transition on a single character. */
+  private static final class Edge
+  {
+    final char c;
+    final State to;
+
+    Edge (char c, State to)
+    {
+      this.c = c;
+      this.to = to;
+    }
+  }
+
+  /**
+   * A lazily built DFA for one search mode.  In the unanchored mode
+   * a new thread starts at every position until a match has been
+   * seen; in the leftmost-first modes the threads of lower priority
+   * than a match are dropped.  The ENTIRE and REVERSE modes keep all
+   * threads so that any match reaching the end is seen.  Assertions
+   * are resolved when the character after them is known, so a match
+   * is only reported one transition after it ends.
+   */
+  private final class DFA
+  {
+    private final Program prog;
+    private final boolean unanchored;
+    private final boolean cut;
+    private final boolean reversed;
+    private final int eflags;
+    private final int maxStates;
+    private State[] table = new State[64];
+    private int count;
+    private final State[] starts = new State[NCONTEXTS];
+    volatile boolean full;
+
+    // Scratch space for building states, used under the lock.
+    private final Threads list;
+    private final Threads nextList;
+    private final int[] stack;
+
+    DFA (Program prog, int mode, int eflags)
+    {
+      this.prog = prog;
+      this.eflags = eflags;
+      unanchored = mode == UNANCHORED;
+      cut = mode == UNANCHORED || mode == ANCHORED;
+      reversed = mode == REVERSE;
+      maxStates = Math.max (16, MAX_DFA_SLOTS / (prog.ncolumns + 1));
+      list = new Threads (prog.size, 0);
+      nextList = new Threads (prog.size, 0);
+      stack = new int[prog.size + 1];
+    }
+
+    /**
+     * Returns the state to start in after a character of the given
+     * class, or null if the cache is full.
+     */
+    State start (int context)
+    {
+      if (!prog.hasAssertions)
+        context = BOUNDARY;
+      State s = starts[context];
+      if (s == null)
+        synchronized (this)
+          {
+            s = starts[context];
+            if (s == null && !full)
+              {
+                list.size = 0;
+                closure (list, 0, false, 0, 0);
+                s = intern (list, context, false, false);
+                if (s == null)
+                  full = true;
+                else
+                  starts[context] = s;
+              }
+          }
+      return s;
+    }
+
+    /**
+     * Returns the state following s on c, or on the end of the input
+     * if c is -1, or null if the cache is full.
+     */
+    State next (State s, int c)
+    {
+      if (c < 0)
+        {
+          State t = s.next[prog.ncolumns];
+          if (t != null)
+            return t;
+        }
+      else if (c < 256)
+        {
+          State t = s.next[prog.columns[c]];
+          if (t != null)
+            return t;
+        }
+      else
+        {
+          Edge e = s.high;
+          if (e != null && e.c == c)
+            return e.to;
+        }
+      return transition (s, c);
+    }
+
+    private synchronized State transition (State s, int c)
+    {
+      if (full)
+        return null;
+      int context = c < 0 ? BOUNDARY : contextOf ((char) c);
+      int lc = reversed ? context : s.context;
+      int rc = reversed ? s.context : context;
+
+      // Resolve the assertions between the last character and c.
+      list.size = 0;
+      for (int i = 0; i < s.pcs.length; i++)
+        closure (list, s.pcs[i], true, lc, rc);
+
+      nextList.size = 0;
+      boolean matched = false;
+      for (int i = 0; i < list.size; i++)
+        {
+          int pc = list.dense[i];
+          if (prog.op[pc] == MATCH)
+            {
+              matched = true;
+              if (cut)
+                break;
+            }
+          else if (c >= 0 && matches (prog, pc, (char) c))
+            closure (nextList, pc + 1, false, 0, 0);
+        }
+      boolean seen = unanchored && (s.seen || matched);
+      if (c >= 0 && unanchored && !seen)
+        closure (nextList, 0, false, 0, 0);
+      State t = intern (nextList, prog.hasAssertions ? context : BOUNDARY,
+                        seen, matched);
+      if (t == null)
+        {
+          full = true;
+          return null;
+        }
+      if (c < 0)
+        s.next[prog.ncolumns] = t;
+      else if (c < 256)
+        s.next[prog.columns[c]] = t;
+      else
+        s.high = new Edge ((char) c, t);
+      return t;
+    }
+
+    /**
+     * Appends pc and the instructions it reaches to the list.  With
+     * resolve, assertions are evaluated between characters of classes
+     * lc and rc; otherwise they are kept for later.
+     */
+    private void closure (Threads l, int pc0, boolean resolve, int lc,
+                          int rc)
+    {
+      int sp = 0;
+      stack[sp++] = pc0;
+      while (sp > 0)
+        {
+          int pc = stack[--sp];
+          while (!l.contains (pc))
+            {
+              l.add (pc);
+              int op = prog.op[pc];
+              if (op == JMP)
+                pc = prog.arg[pc];
+              else if (op == SPLIT)
+                {
+                  stack[sp++] = prog.alt[pc];
+                  pc = prog.arg[pc];
+                }
+              else if (op == SAVE)
+                pc++;
+              else if (op == ASSERT && resolve
+                       && check (prog.arg[pc], lc, rc, lc == BOUNDARY,
+                                 eflags))
+                pc++;
+              else
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the state for the consuming instructions, MATCH and
+     * assertions in the list, creating it if needed, or null if there
+     * are too many states.
+     */
+    private State intern (Threads l, int context, boolean seen,
+                          boolean matchBefore)
+    {
+      int n = 0;
+      int hash = (context << 2) | (seen ? 2 : 0) | (matchBefore ? 1 : 0);
+      for (int i = 0; i < l.size; i++)
+        {
+          int pc = l.dense[i];
+          int op = prog.op[pc];
+          if (op != JMP && op != SPLIT && op != SAVE)
+            {
+              l.dense[n++] = pc;
+              hash = hash * 31 + pc;
+              if (op == MATCH && cut)
+                break;
+            }
+        }
+      int mask = table.length - 1;
+      int h = hash & mask;
+      for (State s = table[h]; s != null; s = table[h = (h + 1) & mask])
+        if (s.hash == hash && s.context == context && s.seen == seen
+            && s.matchBefore == matchBefore && same (s.pcs, l.dense, n))
+          return s;
+
+      if (count == maxStates)
+        return null;
+      int[] pcs = new int[n];
+      System.arraycopy (l.dense, 0, pcs, 0, n);
+      boolean dead = n == 0 && (seen || !unanchored);
+      State s = new State (pcs, context, seen, matchBefore, dead, hash,
+                           prog.ncolumns);
+      table[h] = s;
+      if (++count * 2 > table.length)
+        rehash ();
+      return s;
+    }
+
+    private boolean same (int[] a, int[] b, int n)
+    {
+      if (a.length != n)
+        return false;
+      for (int i = 0; i < n; i++)
+        if (a[i] != b[i])
+          return false;
+      return true;
+    }
+
+    private void rehash ()
+    {
+      State[] old = table;
+      table = new State[old.length * 2];
+      int mask = table.length - 1;
+      for (int i = 0; i < old.length; i++)
+        if (old[i] != null)
+          {
+            int h = old[i].hash & mask;
+            while (table[h] != null)
+              h = (h + 1) & mask;
+            table[h] = old[i];
+          }
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/* Checksums.java -- Combining and parallel computation of checksums
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.util.zip;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * Utility methods for combining {@link CRC32} and {@link Adler32}
+ * checksums of adjacent pieces of data, and for checksumming large
+ * files in parallel chunks.  The combination algorithms are those
+ * of zlib's <code>crc32_combine</code> and <code>adler32_combine</code>.
+ */
+public final class Checksums
+{
+  /** largest prime smaller than 65536 */
+  private static final int ADLER_BASE = 65521;
+
+  /** The reversed CRC-32 polynomial. */
+  private static final int CRC_POLY = 0xedb88320;
+
+  /** The default size of the chunks checksummed in parallel. */
+  public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  private Checksums()
+  {
+  }
+
+  /**
+   * Returns the CRC-32 of the concatenation of two pieces of data.
+   *
+   * @param crc1 the CRC-32 of the first piece
+   * @param crc2 the CRC-32 of the second piece
+   * @param len2 the length of the second piece, in bytes
+   *
+   * @return the CRC-32 of both pieces
+   */
+  public static long combineCRC32(long crc1, long crc2, long len2)
+  {
+    if (len2 <= 0)
+      return crc1;
+
+    // even and odd are the operators that append 2^k zero bits to a
+    // CRC, for even and odd k respectively.
+    int[] even = new int[32];
+    int[] odd = new int[32];
+
+    // Operator for one zero bit.
+    odd[0] = CRC_POLY;
+    int row = 1;
+    for (int n = 1; n < 32; n++)
+      {
+        odd[n] = row;
+        row <<= 1;
+      }
+    // Operators for two and four zero bits.
+    gf2MatrixSquare(even, odd);
+    gf2MatrixSquare(odd, even);
+
+    // Apply len2 zero bytes to crc1; the first squaring gives the
+    // operator for one zero byte.
+    int crc = (int) crc1;
+    do
+      {
+        gf2MatrixSquare(even, odd);
+        if ((len2 & 1) != 0)
+          crc = gf2MatrixTimes(even, crc);
+        len2 >>>= 1;
+        if (len2 == 0)
+          break;
+        gf2MatrixSquare(odd, even);
+        if ((len2 & 1) != 0)
+          crc = gf2MatrixTimes(odd, crc);
+        len2 >>>= 1;
+      }
+    while (len2 != 0);
+
+    return (long) (crc ^ (int) crc2) & 0xffffffffL;
+  }
+
+  /**
+   * Returns the Adler-32 checksum of the concatenation of two pieces
+   * of data.
+   *
+   * @param adler1 the Adler-32 checksum of the first piece
+   * @param adler2 the Adler-32 checksum of the second piece
+   * @param len2 the length of the second piece, in bytes
+   *
+   * @return the Adler-32 checksum of both pieces
+   */
+  public static long combineAdler32(long adler1, long adler2, long len2)
+  {
+    if (len2 < 0)
+      return adler1;
+    long rem = len2 % ADLER_BASE;
+    long sum1 = adler1 & 0xffff;
+    long sum2 = (rem * sum1) % ADLER_BASE;
+    sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+    sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff)
+      + ADLER_BASE - rem;
+    if (sum1 >= ADLER_BASE)
+      sum1 -= ADLER_BASE;
+    if (sum1 >= ADLER_BASE)
+      sum1 -= ADLER_BASE;
+    if (sum2 >= 2 * ADLER_BASE)
+      sum2 -= 2 * ADLER_BASE;
+    if (sum2 >= ADLER_BASE)
+      sum2 -= ADLER_BASE;
+    return sum1 | (sum2 << 16);
+  }
+
+  /**
+   * Computes the CRC-32 of a region of a file, splitting it into
+   * chunks that are checksummed in parallel by the given executor.
+   * The chunks are memory-mapped, so no data is copied.
+   *
+   * @param channel the file
+   * @param position the start of the region
+   * @param length the length of the region
+   * @param executor the executor that runs the chunk computations
+   * @param chunkSize the size of the chunks
+   *
+   * @return the CRC-32 of the region
+   * @throws IOException if the file cannot be read
+   */
+  public static long crc32(final FileChannel channel, long position,
+                           long length, ExecutorService executor,
+                           int chunkSize)
+    throws IOException
+  {
+    if (chunkSize <= 0)
+      throw new IllegalArgumentException("chunkSize must be positive");
+    List<Future<Long>> results = new ArrayList<Future<Long>>();
+    List<Long> lengths = new ArrayList<Long>();
+    for (long off = 0; off < length; off += chunkSize)
+      {
+        final long start = position + off;
+        final long size = Math.min(chunkSize, length - off);
+        results.add(executor.submit(new Callable<Long>()
+          {
+            public Long call() throws IOException
+            {
+              MappedByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+              CRC32 crc = new CRC32();
+              crc.update(buf);
+              return Long.valueOf(crc.getValue());
+            }
+          }));
+        lengths.add(Long.valueOf(size));
+      }
+
+    long crc = 0;
+    try
+      {
+        for (int i = 0; i < results.size(); i++)
+          crc = combineCRC32(crc, results.get(i).get().longValue(),
+                             lengths.get(i).longValue());
+      }
+    catch (InterruptedException e)
+      {
+        for (Future<Long> f : results)
+          f.cancel(true);
+        Thread.currentThread().interrupt();
+        throw (IOException) new InterruptedIOException().initCause(e);
+      }
+    catch (ExecutionException e)
+      {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        throw (IOException) new IOException().initCause(cause);
+      }
+    return crc;
+  }
+
+  /**
+   * Computes the CRC-32 of a whole file in parallel, using chunks of
+   * {@link #DEFAULT_CHUNK_SIZE} bytes.
+   *
+   * @param channel the file
+   * @param executor the executor that runs the chunk computations
+   *
+   * @return the CRC-32 of the file
+   * @throws IOException if the file cannot be read
+   */
+  public static long crc32(FileChannel channel, ExecutorService executor)
+    throws IOException
+  {
+    return crc32(channel, 0, channel.size(), executor, DEFAULT_CHUNK_SIZE);
+  }
+
+  /** Multiplies the 32x32 GF(2) matrix mat with the vector vec. */
+  private static int gf2MatrixTimes(int[] mat, int vec)
+  {
+    int sum = 0;
+    for (int i = 0; vec != 0; i++, vec >>>= 1)
+      if ((vec & 1) != 0)
+        sum ^= mat[i];
+    return sum;
+  }
+
+  /** Stores the square of the GF(2) matrix mat in square. */
+  private static void gf2MatrixSquare(int[] square, int[] mat)
+  {
+    for (int n = 0; n < 32; n++)
+      square[n] = gf2MatrixTimes(mat, mat[n]);
+  }
+}
@@ -0,0 +1,416 @@
+/* ParallelGZIPOutputStream.java -- GZIP compression on several threads
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.java.util.zip;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An output stream writing the GZIP format, as {@link
+ * java.util.zip.GZIPOutputStream} does, but compressing on several
+ * threads.  The data is cut into blocks which are deflated
+ * independently, each one primed with the last 32K of the data before
+ * it as dictionary so that little compression is lost.  All but the
+ * last block end with a sync flush, so the compressed blocks can simply
+ * be concatenated, and the CRC-32 in the trailer is combined from those
+ * of the blocks.  The result is a single ordinary GZIP member.
+ *
+ * <p>At most a few blocks per thread are in progress at once, so memory
+ * use is bounded however much is written.  The stream itself must not
+ * be used by several threads at once.</p>
+ */
+public class ParallelGZIPOutputStream
+  extends FilterOutputStream
+{
+  /** The default size of the blocks compressed in parallel. */
+  public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+  /** The size of the dictionary a block is primed with. */
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  private final int level;
+  private final int blockSize;
+  private final ExecutorService executor;
+  private final boolean ownExecutor;
+
+  /** The most blocks compressed or waiting to be written at once. */
+  private final int maxPending;
+
+  /** The blocks being compressed, in order. */
+  private final LinkedList<Future<Block>> pending =
+    new LinkedList<Future<Block>>();
+
+  /** Deflaters not in use by a block. */
+  private final ConcurrentLinkedQueue<Deflater> deflaters =
+    new ConcurrentLinkedQueue<Deflater>();
+
+  /** The block being filled. */
+  private byte[] buffer;
+  private int count;
+
+  /** The last data written before the block being filled. */
+  private byte[] dictionary;
+
+  private long crc;
+  private long totalIn;
+  private boolean finished;
+
+  /**
+   * Creates a stream compressing at the default level on as many
+   * threads as there are processors.
+   *
+   * @param out the stream to write the compressed data to.
+   * @exception IOException if the header cannot be written.
+   */
+  public ParallelGZIPOutputStream(OutputStream out) throws IOException
+  {
+    this(out, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE, null);
+  }
+
+  /**
+   * Creates a stream.
+   *
+   * @param out the stream to write the compressed data to.
+   * @param level the compression level, as for {@link Deflater}.
+   * @param blockSize the size of the blocks compressed in parallel.
+   * @param executor the threads to compress on, or null to use as many
+   * threads as there are processors.  An executor given here is not
+   * shut down when the stream is closed.
+   * @exception IOException if the header cannot be written.
+   * @exception IllegalArgumentException if the level is out of range or
+   * the block size is not positive.
+   */
+  public ParallelGZIPOutputStream(OutputStream out, int level, int blockSize,
+                                  ExecutorService executor)
+    throws IOException
+  {
+    super(out);
+    if (level != Deflater.DEFAULT_COMPRESSION
+        && (level < Deflater.NO_COMPRESSION
+            || level > Deflater.BEST_COMPRESSION))
+      throw new IllegalArgumentException("level: " + level);
+    if (blockSize <= 0)
+      throw new IllegalArgumentException("blockSize: " + blockSize);
+    this.level = level;
+    this.blockSize = blockSize;
+    int threads = Runtime.getRuntime().availableProcessors();
+    if (executor == null)
+      {
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+          {
+            public Thread newThread(Runnable r)
+            {
+              Thread t = new Thread(r, "ParallelGZIPOutputStream");
+              t.setDaemon(true);
+              return t;
+            }
+          });
+        ownExecutor = true;
+      }
+    else
+      ownExecutor = false;
+    this.executor = executor;
+    maxPending = 2 * threads + 1;
+    buffer = new byte[blockSize];
+    dictionary = new byte[0];
+
+    int modTime = (int) (System.currentTimeMillis() / 1000L);
+    byte[] header =
+      {
+        (byte) GZIPInputStream.GZIP_MAGIC,
+        (byte) (GZIPInputStream.GZIP_MAGIC >> 8),
+        (byte) Deflater.DEFLATED,
+        0,
+        (byte) modTime, (byte) (modTime >> 8),
+        (byte) (modTime >> 16), (byte) (modTime >> 24),
+        0,
+        (byte) 255
+      };
+    out.write(header);
+  }
+
+  public void write(int b) throws IOException
+  {
+    checkOpen();
+    if (count == blockSize)
+      submit(false);
+    buffer[count++] = (byte) b;
+  }
+
+  public void write(byte[] buf, int off, int len) throws IOException
+  {
+    if (off < 0 || len < 0 || off + len > buf.length || off + len < 0)
+      throw new IndexOutOfBoundsException();
+    checkOpen();
+    while (len > 0)
+      {
+        if (count == blockSize)
+          submit(false);
+        int n = Math.min(len, blockSize - count);
+        System.arraycopy(buf, off, buffer, count, n);
+        count += n;
+        off += n;
+        len -= n;
+      }
+  }
+
+  /**
+   * Compresses the data written so far, writes it all to the
+   * underlying stream and flushes that.
+   *
+   * @exception IOException if an I/O error occurs.
+   */
+  public void flush() throws IOException
+  {
+    checkOpen();
+    if (count > 0)
+      submit(false);
+    while (!pending.isEmpty())
+      writeBlock();
+    out.flush();
+  }
+
+  /**
+   * Finishes the compressed data and writes the trailer, without
+   * closing the underlying stream.
+   *
+   * @exception IOException if an I/O error occurs.
+   */
+  public void finish() throws IOException
+  {
+    if (finished)
+      return;
+    submit(true);
+    while (!pending.isEmpty())
+      writeBlock();
+    finished = true;
+    if (ownExecutor)
+      executor.shutdown();
+
+    int crcval = (int) crc;
+    int totalin = (int) totalIn;
+    byte[] trailer =
+      {
+        (byte) crcval, (byte) (crcval >> 8),
+        (byte) (crcval >> 16), (byte) (crcval >> 24),
+        (byte) totalin, (byte) (totalin >> 8),
+        (byte) (totalin >> 16), (byte) (totalin >> 24)
+      };
+    out.write(trailer);
+  }
+
+  /**
+   * Finishes the compressed data and closes the underlying stream.
+   *
+   * @exception IOException if an I/O error occurs.
+   */
+  public void close() throws IOException
+  {
+    try
+      {
+        finish();
+      }
+    finally
+      {
+        if (ownExecutor)
+          executor.shutdownNow();
+        out.close();
+      }
+  }
+
+  private void checkOpen() throws IOException
+  {
+    if (finished)
+      throw new IOException("stream finished");
+  }
+
+  /**
+   * Hands the block being filled to the executor, first writing out
+   * the oldest block if too many are in progress.
+   */
+  private void submit(boolean last) throws IOException
+  {
+    checkOpen();
+    if (pending.size() >= maxPending)
+      writeBlock();
+    byte[] input = buffer;
+    int length = count;
+    pending.add(executor.submit(new Block(input, length, dictionary, last)));
+    dictionary = nextDictionary(dictionary, input, length);
+    buffer = new byte[blockSize];
+    count = 0;
+  }
+
+  /**
+   * Returns the last 32K of the data made of a dictionary followed by
+   * a block.
+   */
+  private static byte[] nextDictionary(byte[] dict, byte[] block, int length)
+  {
+    if (length >= DICTIONARY_SIZE)
+      return Arrays.copyOfRange(block, length - DICTIONARY_SIZE, length);
+    int keep = Math.min(dict.length, DICTIONARY_SIZE - length);
+    byte[] next = new byte[keep + length];
+    System.arraycopy(dict, dict.length - keep, next, 0, keep);
+    System.arraycopy(block, 0, next, keep, length);
+    return next;
+  }
+
+  /**
+   * Waits for the oldest block and writes it out.
+   */
+  private void writeBlock() throws IOException
+  {
+    Future<Block> future = pending.removeFirst();
+    Block block;
+    try
+      {
+        block = future.get();
+      }
+    catch (InterruptedException e)
+      {
+        cancelAll();
+        InterruptedIOException iioe = new InterruptedIOException();
+        iioe.initCause(e);
+        throw iioe;
+      }
+    catch (ExecutionException e)
+      {
+        cancelAll();
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        IOException ioe = new IOException("compression failed");
+        ioe.initCause(cause);
+        throw ioe;
+      }
+    out.write(block.output, 0, block.outputLength);
+    crc = Checksums.combineCRC32(crc, block.crc, block.length);
+    totalIn += block.length;
+  }
+
+  private void cancelAll()
+  {
+    for (Future<Block> f : pending)
+      f.cancel(true);
+    pending.clear();
+    finished = true;
+  }
+
+  /**
+   * A block of data, and once it has run, its compressed form.
+   */
+  private final class Block
+    implements Callable<Block>
+  {
+    final byte[] input;
+    final int length;
+    final byte[] dictionary;
+    final boolean last;
+
+    byte[] output;
+    int outputLength;
+    long crc;
+
+    Block(byte[] input, int length, byte[] dictionary, boolean last)
+    {
+      this.input = input;
+      this.length = length;
+      this.dictionary = dictionary;
+      this.last = last;
+    }
+
+    public Block call()
+    {
+      CRC32 checksum = new CRC32();
+      checksum.update(input, 0, length);
+      crc = checksum.getValue();
+
+      Deflater def = deflaters.poll();
+      if (def == null)
+        def = new Deflater(level, true);
+      try
+        {
+          if (dictionary.length > 0)
+            def.setDictionary(dictionary);
+          def.setInput(input, 0, length);
+          if (last)
+            def.finish();
+          output = new byte[length + (length >> 3) + 64];
+          while (true)
+            {
+              int n;
+              if (last)
+                n = def.deflate(output, outputLength,
+                                output.length - outputLength);
+              else
+                n = def.deflate(output, outputLength,
+                                output.length - outputLength,
+                                Deflater.SYNC_FLUSH);
+              outputLength += n;
+              if (last ? def.finished() : outputLength < output.length)
+                break;
+              if (outputLength == output.length)
+                output = Arrays.copyOf(output, 2 * output.length);
+            }
+        }
+      finally
+        {
+          def.reset();
+          deflaters.offer(def);
+        }
+      return this;
+    }
+  }
+}
@@ -42,6 +42,9 @@ import gnu.java.lang.CPStringBuilder;
 
 import gnu.java.security.Configuration;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -58,6 +61,11 @@ public abstract class BaseCipher
 {
   private static final Logger log = Configuration.DEBUG ?
                         Logger.getLogger(BaseCipher.class.getName()) : null;
+  /**
+   * The size, in bytes, of the intermediate buffer used for blocks from and
+   * to buffers without accessible arrays.
+   */
+  private static final int BUFFER_SIZE = 4096;
   /** The canonical name prefix of the cipher. */
   protected String name;
   /** The default block size, in bytes. */
@@ -179,6 +187,126 @@ public abstract class BaseCipher
       }
   }
 
+  public void encryptBlocks(byte[] in, int inOffset, byte[] out,
+                            int outOffset, int count)
+      throws IllegalStateException
+  {
+    synchronized (lock)
+      {
+        if (currentKey == null)
+          throw new IllegalStateException();
+        encrypt(in, inOffset, out, outOffset, currentKey, currentBlockSize,
+                count);
+      }
+  }
+
+  public void decryptBlocks(byte[] in, int inOffset, byte[] out,
+                            int outOffset, int count)
+      throws IllegalStateException
+  {
+    synchronized (lock)
+      {
+        if (currentKey == null)
+          throw new IllegalStateException();
+        decrypt(in, inOffset, out, outOffset, currentKey, currentBlockSize,
+                count);
+      }
+  }
+
+  public void encryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+      throws IllegalStateException
+  {
+    blocks(in, out, count, true);
+  }
+
+  public void decryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+      throws IllegalStateException
+  {
+    blocks(in, out, count, false);
+  }
+
+  /**
+   * Encrypts a number of consecutive blocks with a given session key. This
+   * implementation encrypts them one at a time; concrete ciphers override it
+   * when they can do better.
+   *
+   * @param in the plaintext.
+   * @param i index of <code>in</code> from which to start considering data.
+   * @param out the ciphertext.
+   * @param j index of <code>out</code> from which to store result.
+   * @param k the session key.
+   * @param bs the block size.
+   * @param count the number of blocks.
+   */
+  protected void encrypt(byte[] in, int i, byte[] out, int j, Object k,
+                         int bs, int count)
+  {
+    for (; count > 0; count--, i += bs, j += bs)
+      encrypt(in, i, out, j, k, bs);
+  }
+
+  /**
+   * Decrypts a number of consecutive blocks with a given session key. This
+   * implementation decrypts them one at a time; concrete ciphers override it
+   * when they can do better.
+   *
+   * @param in the ciphertext.
+   * @param i index of <code>in</code> from which to start considering data.
+   * @param out the plaintext.
+   * @param j index of <code>out</code> from which to store result.
+   * @param k the session key.
+   * @param bs the block size.
+   * @param count the number of blocks.
+   */
+  protected void decrypt(byte[] in, int i, byte[] out, int j, Object k,
+                         int bs, int count)
+  {
+    for (; count > 0; count--, i += bs, j += bs)
+      decrypt(in, i, out, j, k, bs);
+  }
+
+  /**
+   * Encrypts or decrypts blocks from one buffer to another.  Buffers with
+   * accessible arrays are worked on in place; otherwise the blocks go through
+   * an intermediate array.
+   */
+  private void blocks(ByteBuffer in, ByteBuffer out, int count,
+                      boolean encrypt)
+  {
+    int bs = currentBlockSize();
+    int len = count * bs;
+    if (in.remaining() < len)
+      throw new BufferUnderflowException();
+    if (out.remaining() < len)
+      throw new BufferOverflowException();
+    if (in.hasArray() && out.hasArray())
+      {
+        int inOffset = in.arrayOffset() + in.position();
+        int outOffset = out.arrayOffset() + out.position();
+        if (encrypt)
+          encryptBlocks(in.array(), inOffset, out.array(), outOffset, count);
+        else
+          decryptBlocks(in.array(), inOffset, out.array(), outOffset, count);
+        in.position(in.position() + len);
+        out.position(out.position() + len);
+        return;
+      }
+
+    int max = Math.max(BUFFER_SIZE / bs, 1);
+    byte[] buf = new byte[Math.min(count, max) * bs];
+    while (count > 0)
+      {
+        int n = Math.min(count, max);
+        in.get(buf, 0, n * bs);
+        if (encrypt)
+          encryptBlocks(buf, 0, buf, 0, n);
+        else
+          decryptBlocks(buf, 0, buf, 0, n);
+        out.put(buf, 0, n * bs);
+        count -= n;
+      }
+  }
+
   public boolean selfTest()
   {
     int ks;
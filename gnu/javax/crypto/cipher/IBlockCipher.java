@@ -38,6 +38,7 @@ exception statement from your version.  */
 
 package gnu.javax.crypto.cipher;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.util.Iterator;
 import java.util.Map;
@@ -184,6 +185,70 @@ public interface IBlockCipher
   void decryptBlock(byte[] in, int inOffset, byte[] out, int outOffset)
       throws IllegalStateException;
 
+  /**
+   * Encrypts a number of consecutive blocks of plaintext.  The plaintext and
+   * the ciphertext may occupy the same bytes of the same array.
+   *
+   * @param in the plaintext.
+   * @param inOffset index of <code>in</code> from which to start considering
+   *          data.
+   * @param out the ciphertext.
+   * @param outOffset index of <code>out</code> from which to store result.
+   * @param count the number of blocks.
+   * @exception IllegalStateException if the instance is not initialised.
+   */
+  void encryptBlocks(byte[] in, int inOffset, byte[] out, int outOffset,
+                     int count)
+      throws IllegalStateException;
+
+  /**
+   * Decrypts a number of consecutive blocks of ciphertext.  The ciphertext
+   * and the plaintext may occupy the same bytes of the same array.
+   *
+   * @param in the ciphertext.
+   * @param inOffset index of <code>in</code> from which to start considering
+   *          data.
+   * @param out the plaintext.
+   * @param outOffset index of <code>out</code> from which to store result.
+   * @param count the number of blocks.
+   * @exception IllegalStateException if the instance is not initialised.
+   */
+  void decryptBlocks(byte[] in, int inOffset, byte[] out, int outOffset,
+                     int count)
+      throws IllegalStateException;
+
+  /**
+   * Encrypts a number of consecutive blocks of plaintext from the position of
+   * one buffer to the position of another, advancing both positions.
+   *
+   * @param in the plaintext.
+   * @param out the ciphertext.
+   * @param count the number of blocks.
+   * @exception IllegalStateException if the instance is not initialised.
+   * @exception java.nio.BufferUnderflowException if <code>in</code> has
+   *              fewer than <code>count</code> blocks remaining.
+   * @exception java.nio.BufferOverflowException if <code>out</code> has
+   *              room for fewer than <code>count</code> blocks.
+   */
+  void encryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+      throws IllegalStateException;
+
+  /**
+   * Decrypts a number of consecutive blocks of ciphertext from the position
+   * of one buffer to the position of another, advancing both positions.
+   *
+   * @param in the ciphertext.
+   * @param out the plaintext.
+   * @param count the number of blocks.
+   * @exception IllegalStateException if the instance is not initialised.
+   * @exception java.nio.BufferUnderflowException if <code>in</code> has
+   *              fewer than <code>count</code> blocks remaining.
+   * @exception java.nio.BufferOverflowException if <code>out</code> has
+   *              room for fewer than <code>count</code> blocks.
+   */
+  void decryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+      throws IllegalStateException;
+
   /**
    * A <i>correctness</i> test that consists of basic symmetric encryption /
    * decryption test(s) for all supported block and key sizes, as well as one
@@ -408,157 +408,180 @@ public final class Rijndael
       log.fine("PT=" + Util.toString(out, outOffset - bs, bs));
   }
 
-  private static void aesEncrypt(byte[] in, int i, byte[] out, int j, Object key)
+  /**
+   * Encrypts consecutive 128-bit blocks with AES.
+   *
+   * @param Ke the encryption round keys, one after the other.
+   */
+  private static void aesEncrypt(byte[] in, int i, byte[] out, int j,
+                                 int[] Ke, int count)
   {
-    int[][] Ke = (int[][])((Object[]) key)[0]; // extract encryption round keys
-    int ROUNDS = Ke.length - 1;
-    int[] Ker = Ke[0];
-    // plaintext to ints + key
-    int t0 = (in[i++]         << 24
+    // AES has 10, 12 or 14 rounds, so there is an odd number of full rounds
+    // between the first and the last; one of them is done on its own and
+    // the others in pairs, which saves copying the state between rounds.
+    int last = Ke.length - 4;
+    int t0, t1, t2, t3, a0, a1, a2, a3, k, tt;
+    for (; count > 0; count--)
+      {
+        // plaintext to ints + key
+        t0 = (in[i++]         << 24
            | (in[i++] & 0xFF) << 16
            | (in[i++] & 0xFF) <<  8
-           | (in[i++] & 0xFF)      ) ^ Ker[0];
-    int t1 = (in[i++]         << 24
+           | (in[i++] & 0xFF)      ) ^ Ke[0];
+        t1 = (in[i++]         << 24
            | (in[i++] & 0xFF) << 16
            | (in[i++] & 0xFF) <<  8
-           | (in[i++] & 0xFF)      ) ^ Ker[1];
-    int t2 = (in[i++]         << 24
+           | (in[i++] & 0xFF)      ) ^ Ke[1];
+        t2 = (in[i++]         << 24
            | (in[i++] & 0xFF) << 16
            | (in[i++] & 0xFF) <<  8
-           | (in[i++] & 0xFF)      ) ^ Ker[2];
-    int t3 = (in[i++]         << 24
+           | (in[i++] & 0xFF)      ) ^ Ke[2];
+        t3 = (in[i++]         << 24
            | (in[i++] & 0xFF) << 16
            | (in[i++] & 0xFF) <<  8
-           | (in[i++] & 0xFF)      ) ^ Ker[3];
-    int a0, a1, a2, a3;
-    for (int r = 1; r < ROUNDS; r++) // apply round transforms
-      {
-        Ker = Ke[r];
-        a0 = (T1[(t0 >>> 24)       ]
-            ^ T2[(t1 >>> 16) & 0xFF]
-            ^ T3[(t2 >>>  8) & 0xFF]
-            ^ T4[ t3         & 0xFF]) ^ Ker[0];
-        a1 = (T1[(t1 >>> 24)       ]
-            ^ T2[(t2 >>> 16) & 0xFF]
-            ^ T3[(t3 >>>  8) & 0xFF]
-            ^ T4[ t0         & 0xFF]) ^ Ker[1];
-        a2 = (T1[(t2 >>> 24)       ]
-            ^ T2[(t3 >>> 16) & 0xFF]
-            ^ T3[(t0 >>>  8) & 0xFF]
-            ^ T4[ t1         & 0xFF]) ^ Ker[2];
-        a3 = (T1[(t3 >>> 24)       ]
-            ^ T2[(t0 >>> 16) & 0xFF]
-            ^ T3[(t1 >>>  8) & 0xFF]
-            ^ T4[ t2         & 0xFF]) ^ Ker[3];
-        t0 = a0;
-        t1 = a1;
-        t2 = a2;
-        t3 = a3;
+           | (in[i++] & 0xFF)      ) ^ Ke[3];
+        // apply round transforms
+        a0 = T1[t0 >>> 24] ^ T2[(t1 >>> 16) & 0xFF]
+           ^ T3[(t2 >>> 8) & 0xFF] ^ T4[t3 & 0xFF] ^ Ke[4];
+        a1 = T1[t1 >>> 24] ^ T2[(t2 >>> 16) & 0xFF]
+           ^ T3[(t3 >>> 8) & 0xFF] ^ T4[t0 & 0xFF] ^ Ke[5];
+        a2 = T1[t2 >>> 24] ^ T2[(t3 >>> 16) & 0xFF]
+           ^ T3[(t0 >>> 8) & 0xFF] ^ T4[t1 & 0xFF] ^ Ke[6];
+        a3 = T1[t3 >>> 24] ^ T2[(t0 >>> 16) & 0xFF]
+           ^ T3[(t1 >>> 8) & 0xFF] ^ T4[t2 & 0xFF] ^ Ke[7];
+        for (k = 8; k < last; k += 8)
+          {
+            t0 = T1[a0 >>> 24] ^ T2[(a1 >>> 16) & 0xFF]
+               ^ T3[(a2 >>> 8) & 0xFF] ^ T4[a3 & 0xFF] ^ Ke[k];
+            t1 = T1[a1 >>> 24] ^ T2[(a2 >>> 16) & 0xFF]
+               ^ T3[(a3 >>> 8) & 0xFF] ^ T4[a0 & 0xFF] ^ Ke[k + 1];
+            t2 = T1[a2 >>> 24] ^ T2[(a3 >>> 16) & 0xFF]
+               ^ T3[(a0 >>> 8) & 0xFF] ^ T4[a1 & 0xFF] ^ Ke[k + 2];
+            t3 = T1[a3 >>> 24] ^ T2[(a0 >>> 16) & 0xFF]
+               ^ T3[(a1 >>> 8) & 0xFF] ^ T4[a2 & 0xFF] ^ Ke[k + 3];
+            a0 = T1[t0 >>> 24] ^ T2[(t1 >>> 16) & 0xFF]
+               ^ T3[(t2 >>> 8) & 0xFF] ^ T4[t3 & 0xFF] ^ Ke[k + 4];
+            a1 = T1[t1 >>> 24] ^ T2[(t2 >>> 16) & 0xFF]
+               ^ T3[(t3 >>> 8) & 0xFF] ^ T4[t0 & 0xFF] ^ Ke[k + 5];
+            a2 = T1[t2 >>> 24] ^ T2[(t3 >>> 16) & 0xFF]
+               ^ T3[(t0 >>> 8) & 0xFF] ^ T4[t1 & 0xFF] ^ Ke[k + 6];
+            a3 = T1[t3 >>> 24] ^ T2[(t0 >>> 16) & 0xFF]
+               ^ T3[(t1 >>> 8) & 0xFF] ^ T4[t2 & 0xFF] ^ Ke[k + 7];
+          }
+        if (Configuration.DEBUG)
+          log.fine("CT" + (last / 4 - 1) + "=" + Util.toString(a0)
+                   + Util.toString(a1) + Util.toString(a2) + Util.toString(a3));
+        // last round is special
+        tt = Ke[last];
+        out[j++] = (byte)(S[(a0 >>> 24)       ] ^ (tt >>> 24));
+        out[j++] = (byte)(S[(a1 >>> 16) & 0xFF] ^ (tt >>> 16));
+        out[j++] = (byte)(S[(a2 >>>  8) & 0xFF] ^ (tt >>>  8));
+        out[j++] = (byte)(S[ a3         & 0xFF] ^  tt        );
+        tt = Ke[last + 1];
+        out[j++] = (byte)(S[(a1 >>> 24)       ] ^ (tt >>> 24));
+        out[j++] = (byte)(S[(a2 >>> 16) & 0xFF] ^ (tt >>> 16));
+        out[j++] = (byte)(S[(a3 >>>  8) & 0xFF] ^ (tt >>>  8));
+        out[j++] = (byte)(S[ a0         & 0xFF] ^  tt        );
+        tt = Ke[last + 2];
+        out[j++] = (byte)(S[(a2 >>> 24)       ] ^ (tt >>> 24));
+        out[j++] = (byte)(S[(a3 >>> 16) & 0xFF] ^ (tt >>> 16));
+        out[j++] = (byte)(S[(a0 >>>  8) & 0xFF] ^ (tt >>>  8));
+        out[j++] = (byte)(S[ a1         & 0xFF] ^  tt        );
+        tt = Ke[last + 3];
+        out[j++] = (byte)(S[(a3 >>> 24)       ] ^ (tt >>> 24));
+        out[j++] = (byte)(S[(a0 >>> 16) & 0xFF] ^ (tt >>> 16));
+        out[j++] = (byte)(S[(a1 >>>  8) & 0xFF] ^ (tt >>>  8));
+        out[j++] = (byte)(S[ a2         & 0xFF] ^  tt        );
         if (Configuration.DEBUG)
-          log.fine("CT" + r + "=" + Util.toString(t0) + Util.toString(t1)
-                   + Util.toString(t2) + Util.toString(t3));
+          log.fine("CT=" + Util.toString(out, j - 16, 16));
       }
-    // last round is special
-    Ker = Ke[ROUNDS];
-    int tt = Ker[0];
-    out[j++] = (byte)(S[(t0 >>> 24)       ] ^ (tt >>> 24));
-    out[j++] = (byte)(S[(t1 >>> 16) & 0xFF] ^ (tt >>> 16));
-    out[j++] = (byte)(S[(t2 >>>  8) & 0xFF] ^ (tt >>>  8));
-    out[j++] = (byte)(S[ t3         & 0xFF] ^  tt        );
-    tt = Ker[1];
-    out[j++] = (byte)(S[(t1 >>> 24)       ] ^ (tt >>> 24));
-    out[j++] = (byte)(S[(t2 >>> 16) & 0xFF] ^ (tt >>> 16));
-    out[j++] = (byte)(S[(t3 >>>  8) & 0xFF] ^ (tt >>>  8));
-    out[j++] = (byte)(S[ t0         & 0xFF] ^  tt        );
-    tt = Ker[2];
-    out[j++] = (byte)(S[(t2 >>> 24)       ] ^ (tt >>> 24));
-    out[j++] = (byte)(S[(t3 >>> 16) & 0xFF] ^ (tt >>> 16));
-    out[j++] = (byte)(S[(t0 >>>  8) & 0xFF] ^ (tt >>>  8));
-    out[j++] = (byte)(S[ t1         & 0xFF] ^  tt        );
-    tt = Ker[3];
-    out[j++] = (byte)(S[(t3 >>> 24)       ] ^ (tt >>> 24));
-    out[j++] = (byte)(S[(t0 >>> 16) & 0xFF] ^ (tt >>> 16));
-    out[j++] = (byte)(S[(t1 >>>  8) & 0xFF] ^ (tt >>>  8));
-    out[j++] = (byte)(S[ t2         & 0xFF] ^  tt        );
-    if (Configuration.DEBUG)
-      log.fine("CT=" + Util.toString(out, j - 16, 16));
   }
 
-  private static void aesDecrypt(byte[] in, int i, byte[] out, int j, Object key)
+  /**
+   * Decrypts consecutive 128-bit blocks with AES.
+   *
+   * @param Kd the decryption round keys, one after the other.
+   */
+  private static void aesDecrypt(byte[] in, int i, byte[] out, int j,
+                                 int[] Kd, int count)
   {
-    int[][] Kd = (int[][])((Object[]) key)[1]; // extract decryption round keys
-    int ROUNDS = Kd.length - 1;
-    int[] Kdr = Kd[0];
-    // ciphertext to ints + key
-    int t0 = (in[i++]         << 24
+    // see aesEncrypt
+    int last = Kd.length - 4;
+    int t0, t1, t2, t3, a0, a1, a2, a3, k, tt;
+    for (; count > 0; count--)
+      {
+        // ciphertext to ints + key
+        t0 = (in[i++]         << 24
            | (in[i++] & 0xFF) << 16
            | (in[i++] & 0xFF) <<  8
-           | (in[i++] & 0xFF)      ) ^ Kdr[0];
-    int t1 = (in[i++]         << 24
+           | (in[i++] & 0xFF)      ) ^ Kd[0];
+        t1 = (in[i++]         << 24
            | (in[i++] & 0xFF) << 16
            | (in[i++] & 0xFF) <<  8
-           | (in[i++] & 0xFF)      ) ^ Kdr[1];
-    int t2 = (in[i++]         << 24
+           | (in[i++] & 0xFF)      ) ^ Kd[1];
+        t2 = (in[i++]         << 24
            | (in[i++] & 0xFF) << 16
            | (in[i++] & 0xFF) <<  8
-           | (in[i++] & 0xFF)      ) ^ Kdr[2];
-    int t3 = (in[i++]         << 24
+           | (in[i++] & 0xFF)      ) ^ Kd[2];
+        t3 = (in[i++]         << 24
            | (in[i++] & 0xFF) << 16
            | (in[i++] & 0xFF) <<  8
-           | (in[i++] & 0xFF)      ) ^ Kdr[3];
-
-    int a0, a1, a2, a3;
-    for (int r = 1; r < ROUNDS; r++) // apply round transforms
-      {
-        Kdr = Kd[r];
-        a0 = (T5[(t0 >>> 24)       ]
-            ^ T6[(t3 >>> 16) & 0xFF]
-            ^ T7[(t2 >>>  8) & 0xFF]
-            ^ T8[ t1         & 0xFF]) ^ Kdr[0];
-        a1 = (T5[(t1 >>> 24)       ]
-            ^ T6[(t0 >>> 16) & 0xFF]
-            ^ T7[(t3 >>>  8) & 0xFF]
-            ^ T8[ t2         & 0xFF]) ^ Kdr[1];
-        a2 = (T5[(t2 >>> 24)       ]
-            ^ T6[(t1 >>> 16) & 0xFF]
-            ^ T7[(t0 >>>  8) & 0xFF]
-            ^ T8[ t3         & 0xFF]) ^ Kdr[2];
-        a3 = (T5[(t3 >>> 24)       ]
-            ^ T6[(t2 >>> 16) & 0xFF]
-            ^ T7[(t1 >>>  8) & 0xFF]
-            ^ T8[ t0         & 0xFF]) ^ Kdr[3];
-        t0 = a0;
-        t1 = a1;
-        t2 = a2;
-        t3 = a3;
+           | (in[i++] & 0xFF)      ) ^ Kd[3];
+        // apply round transforms
+        a0 = T5[t0 >>> 24] ^ T6[(t3 >>> 16) & 0xFF]
+           ^ T7[(t2 >>> 8) & 0xFF] ^ T8[t1 & 0xFF] ^ Kd[4];
+        a1 = T5[t1 >>> 24] ^ T6[(t0 >>> 16) & 0xFF]
+           ^ T7[(t3 >>> 8) & 0xFF] ^ T8[t2 & 0xFF] ^ Kd[5];
+        a2 = T5[t2 >>> 24] ^ T6[(t1 >>> 16) & 0xFF]
+           ^ T7[(t0 >>> 8) & 0xFF] ^ T8[t3 & 0xFF] ^ Kd[6];
+        a3 = T5[t3 >>> 24] ^ T6[(t2 >>> 16) & 0xFF]
+           ^ T7[(t1 >>> 8) & 0xFF] ^ T8[t0 & 0xFF] ^ Kd[7];
+        for (k = 8; k < last; k += 8)
+          {
+            t0 = T5[a0 >>> 24] ^ T6[(a3 >>> 16) & 0xFF]
+               ^ T7[(a2 >>> 8) & 0xFF] ^ T8[a1 & 0xFF] ^ Kd[k];
+            t1 = T5[a1 >>> 24] ^ T6[(a0 >>> 16) & 0xFF]
+               ^ T7[(a3 >>> 8) & 0xFF] ^ T8[a2 & 0xFF] ^ Kd[k + 1];
+            t2 = T5[a2 >>> 24] ^ T6[(a1 >>> 16) & 0xFF]
+               ^ T7[(a0 >>> 8) & 0xFF] ^ T8[a3 & 0xFF] ^ Kd[k + 2];
+            t3 = T5[a3 >>> 24] ^ T6[(a2 >>> 16) & 0xFF]
+               ^ T7[(a1 >>> 8) & 0xFF] ^ T8[a0 & 0xFF] ^ Kd[k + 3];
+            a0 = T5[t0 >>> 24] ^ T6[(t3 >>> 16) & 0xFF]
+               ^ T7[(t2 >>> 8) & 0xFF] ^ T8[t1 & 0xFF] ^ Kd[k + 4];
+            a1 = T5[t1 >>> 24] ^ T6[(t0 >>> 16) & 0xFF]
+               ^ T7[(t3 >>> 8) & 0xFF] ^ T8[t2 & 0xFF] ^ Kd[k + 5];
+            a2 = T5[t2 >>> 24] ^ T6[(t1 >>> 16) & 0xFF]
+               ^ T7[(t0 >>> 8) & 0xFF] ^ T8[t3 & 0xFF] ^ Kd[k + 6];
+            a3 = T5[t3 >>> 24] ^ T6[(t2 >>> 16) & 0xFF]
+               ^ T7[(t1 >>> 8) & 0xFF] ^ T8[t0 & 0xFF] ^ Kd[k + 7];
+          }
+        if (Configuration.DEBUG)
+          log.fine("PT" + (last / 4 - 1) + "=" + Util.toString(a0)
+                   + Util.toString(a1) + Util.toString(a2) + Util.toString(a3));
+        // last round is special
+        tt = Kd[last];
+        out[j++] = (byte)(Si[(a0 >>> 24)       ] ^ (tt >>> 24));
+        out[j++] = (byte)(Si[(a3 >>> 16) & 0xFF] ^ (tt >>> 16));
+        out[j++] = (byte)(Si[(a2 >>>  8) & 0xFF] ^ (tt >>>  8));
+        out[j++] = (byte)(Si[ a1         & 0xFF] ^  tt        );
+        tt = Kd[last + 1];
+        out[j++] = (byte)(Si[(a1 >>> 24)       ] ^ (tt >>> 24));
+        out[j++] = (byte)(Si[(a0 >>> 16) & 0xFF] ^ (tt >>> 16));
+        out[j++] = (byte)(Si[(a3 >>>  8) & 0xFF] ^ (tt >>>  8));
+        out[j++] = (byte)(Si[ a2         & 0xFF] ^  tt        );
+        tt = Kd[last + 2];
+        out[j++] = (byte)(Si[(a2 >>> 24)       ] ^ (tt >>> 24));
+        out[j++] = (byte)(Si[(a1 >>> 16) & 0xFF] ^ (tt >>> 16));
+        out[j++] = (byte)(Si[(a0 >>>  8) & 0xFF] ^ (tt >>>  8));
+        out[j++] = (byte)(Si[ a3         & 0xFF] ^  tt        );
+        tt = Kd[last + 3];
+        out[j++] = (byte)(Si[(a3 >>> 24)       ] ^ (tt >>> 24));
+        out[j++] = (byte)(Si[(a2 >>> 16) & 0xFF] ^ (tt >>> 16));
+        out[j++] = (byte)(Si[(a1 >>>  8) & 0xFF] ^ (tt >>>  8));
+        out[j++] = (byte)(Si[ a0         & 0xFF] ^  tt        );
         if (Configuration.DEBUG)
-          log.fine("PT" + r + "=" + Util.toString(t0) + Util.toString(t1)
-                   + Util.toString(t2) + Util.toString(t3));
+          log.fine("PT=" + Util.toString(out, j - 16, 16));
       }
-    // last round is special
-    Kdr = Kd[ROUNDS];
-    int tt = Kdr[0];
-    out[j++] = (byte)(Si[(t0 >>> 24)       ] ^ (tt >>> 24));
-    out[j++] = (byte)(Si[(t3 >>> 16) & 0xFF] ^ (tt >>> 16));
-    out[j++] = (byte)(Si[(t2 >>>  8) & 0xFF] ^ (tt >>>  8));
-    out[j++] = (byte)(Si[ t1         & 0xFF] ^  tt        );
-    tt = Kdr[1];
-    out[j++] = (byte)(Si[(t1 >>> 24)       ] ^ (tt >>> 24));
-    out[j++] = (byte)(Si[(t0 >>> 16) & 0xFF] ^ (tt >>> 16));
-    out[j++] = (byte)(Si[(t3 >>>  8) & 0xFF] ^ (tt >>>  8));
-    out[j++] = (byte)(Si[ t2         & 0xFF] ^  tt        );
-    tt = Kdr[2];
-    out[j++] = (byte)(Si[(t2 >>> 24)       ] ^ (tt >>> 24));
-    out[j++] = (byte)(Si[(t1 >>> 16) & 0xFF] ^ (tt >>> 16));
-    out[j++] = (byte)(Si[(t0 >>>  8) & 0xFF] ^ (tt >>>  8));
-    out[j++] = (byte)(Si[ t3         & 0xFF] ^  tt        );
-    tt = Kdr[3];
-    out[j++] = (byte)(Si[(t3 >>> 24)       ] ^ (tt >>> 24));
-    out[j++] = (byte)(Si[(t2 >>> 16) & 0xFF] ^ (tt >>> 16));
-    out[j++] = (byte)(Si[(t1 >>>  8) & 0xFF] ^ (tt >>>  8));
-    out[j++] = (byte)(Si[ t0         & 0xFF] ^  tt        );
-    if (Configuration.DEBUG)
-      log.fine("PT=" + Util.toString(out, j - 16, 16));
   }
 
   public Object clone()
@@ -668,7 +691,20 @@ public final class Rijndael
                    ^ U3[(tt >>>  8) & 0xFF]
                    ^ U4[ tt         & 0xFF];
         }
-    return new Object[] { Ke, Kd };
+    return new Object[] { Ke, Kd, flatten(Ke), flatten(Kd) };
+  }
+
+  /**
+   * Returns the round keys of all rounds one after the other, so that the
+   * AES routines can walk them with a single index.
+   */
+  private static int[] flatten(int[][] K)
+  {
+    int BC = K[0].length;
+    int[] result = new int[K.length * BC];
+    for (int r = 0; r < K.length; r++)
+      System.arraycopy(K[r], 0, result, r * BC, BC);
+    return result;
   }
 
   public void encrypt(byte[] in, int i, byte[] out, int j, Object k, int bs)
@@ -676,21 +712,39 @@ public final class Rijndael
     if (! (bs == 16 || bs == 24 || bs == 32))
       throw new IllegalArgumentException();
     if (bs == DEFAULT_BLOCK_SIZE)
-      aesEncrypt(in, i, out, j, k);
+      aesEncrypt(in, i, out, j, (int[]) ((Object[]) k)[2], 1);
     else
       rijndaelEncrypt(in, i, out, j, k, bs);
   }
 
+  protected void encrypt(byte[] in, int i, byte[] out, int j, Object k,
+                         int bs, int count)
+  {
+    if (bs == DEFAULT_BLOCK_SIZE)
+      aesEncrypt(in, i, out, j, (int[]) ((Object[]) k)[2], count);
+    else
+      super.encrypt(in, i, out, j, k, bs, count);
+  }
+
   public void decrypt(byte[] in, int i, byte[] out, int j, Object k, int bs)
   {
     if (! (bs == 16 || bs == 24 || bs == 32))
       throw new IllegalArgumentException();
     if (bs == DEFAULT_BLOCK_SIZE)
-      aesDecrypt(in, i, out, j, k);
+      aesDecrypt(in, i, out, j, (int[]) ((Object[]) k)[3], 1);
     else
       rijndaelDecrypt(in, i, out, j, k, bs);
   }
 
+  protected void decrypt(byte[] in, int i, byte[] out, int j, Object k,
+                         int bs, int count)
+  {
+    if (bs == DEFAULT_BLOCK_SIZE)
+      aesDecrypt(in, i, out, j, (int[]) ((Object[]) k)[3], count);
+    else
+      super.decrypt(in, i, out, j, k, bs, count);
+  }
+
   public boolean selfTest()
   {
     if (valid == null)
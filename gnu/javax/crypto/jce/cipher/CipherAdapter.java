@@ -42,6 +42,8 @@ import gnu.java.security.Registry;
 import gnu.javax.crypto.cipher.CipherFactory;
 import gnu.javax.crypto.cipher.IBlockCipher;
 import gnu.javax.crypto.jce.spec.BlockCipherParameterSpec;
+import gnu.javax.crypto.mac.IMac;
+import gnu.javax.crypto.mode.IAuthenticatedMode;
 import gnu.javax.crypto.mode.IMode;
 import gnu.javax.crypto.mode.ModeFactory;
 import gnu.javax.crypto.pad.IPad;
@@ -60,12 +62,14 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.CipherSpi;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 
 /**
@@ -84,6 +88,14 @@ import javax.crypto.spec.IvParameterSpec;
  * and the initialization vector, the subclass should override those methods.
  * Otherwise a subclass need only call the {@link #CipherAdapter(String)}
  * constructor with the name of the cipher.
+ * <p>
+ * Authenticated modes, such as GCM, accept input of any length and
+ * take no padding. Their header is passed in with {@link #engineUpdateAAD},
+ * and {@link #engineDoFinal(byte[],int,int)} appends the tag when encrypting.
+ * When decrypting, the last bytes of the input are held back as the tag and
+ * verified by <code>engineDoFinal</code>, which throws an
+ * {@link AEADBadTagException} if they do not match; the plaintext returned by
+ * the preceding updates must not be trusted until then.
  */
 class CipherAdapter
     extends CipherSpi
@@ -98,7 +110,10 @@ class CipherAdapter
   protected int keyLen;
   /** Our attributes map. */
   protected Map attributes;
-  /** An incomplete block. */
+  /**
+   * An incomplete block; for an authenticated mode that is decrypting, the
+   * bytes that may be the tag.
+   */
   protected byte[] partBlock;
   /** The number of bytes in {@link #partBlock}. */
   protected int partLen;
@@ -161,6 +176,11 @@ class CipherAdapter
     mode = ModeFactory.getInstance(modeName, cipher, blockLen);
     if (mode == null)
       throw new NoSuchAlgorithmException(modeName);
+    if (mode instanceof IAuthenticatedMode)
+      {
+        attributes.put(IMode.MODE_BLOCK_SIZE, Integer.valueOf(1));
+        pad = null;
+      }
   }
 
   protected void engineSetPadding(String padName) throws NoSuchPaddingException
@@ -170,6 +190,8 @@ class CipherAdapter
         pad = null;
         return;
       }
+    if (mode instanceof IAuthenticatedMode)
+      throw new NoSuchPaddingException(padName);
     pad = PadFactory.getInstance(padName);
     if (pad == null)
       throw new NoSuchPaddingException(padName);
@@ -184,6 +206,13 @@ class CipherAdapter
 
   protected int engineGetOutputSize(int inputLen)
   {
+    if (mode instanceof IAuthenticatedMode)
+      {
+        int tagLen = ((IAuthenticatedMode) mode).macSize();
+        if (isDecrypting())
+          return Math.max(partLen + inputLen - tagLen, 0);
+        return partLen + inputLen + tagLen;
+      }
     final int blockSize = mode.currentBlockSize();
     return ((inputLen + partLen) / blockSize) * blockSize;
   }
@@ -305,6 +334,7 @@ class CipherAdapter
                             SecureRandom random) throws InvalidKeyException,
       InvalidAlgorithmParameterException
   {
+    attributes.remove(IMac.TRUNCATED_SIZE);
     if (params == null)
       {
         // All cipher modes require parameters (like an IV) except ECB. When
@@ -354,6 +384,17 @@ class CipherAdapter
         attributes.put(IBlockCipher.CIPHER_BLOCK_SIZE, Integer.valueOf(blockLen));
         keyLen = 0;
       }
+    else if (params instanceof GCMParameterSpec)
+      {
+        GCMParameterSpec gcm = (GCMParameterSpec) params;
+        if (! (mode instanceof IAuthenticatedMode) || gcm.getTLen() % 8 != 0)
+          throw new InvalidAlgorithmParameterException();
+        attributes.put(IMode.IV, gcm.getIV());
+        attributes.put(IMac.TRUNCATED_SIZE, Integer.valueOf(gcm.getTLen() / 8));
+        blockLen = cipher.defaultBlockSize();
+        attributes.put(IBlockCipher.CIPHER_BLOCK_SIZE, Integer.valueOf(blockLen));
+        keyLen = 0;
+      }
     engineInitHandler(opmode, key, random);
   }
 
@@ -386,6 +427,10 @@ class CipherAdapter
         && ((Integer) attributes.get(IMode.STATE)).intValue() == IMode.DECRYPTION
         && (partLen + inLen) % blockSize == 0)
       blockCount--;
+    // keep the bytes that may be the tag
+    if (mode instanceof IAuthenticatedMode && isDecrypting())
+      blockCount = Math.max(blockCount - ((IAuthenticatedMode) mode).macSize(),
+                            0);
 
     final byte[] out = new byte[blockCount * blockSize];
     try
@@ -404,6 +449,8 @@ class CipherAdapter
   {
     if (inLen == 0) // nothing to process
       return 0;
+    if (mode instanceof IAuthenticatedMode && isDecrypting())
+      return updateAuthenticated(in, inOff, inLen, out, outOff);
     final int blockSize = mode.currentBlockSize();
     int blockCount = (partLen + inLen) / blockSize;
 
@@ -435,12 +482,8 @@ class CipherAdapter
           System.arraycopy(in, inOff, buf, partLen, inLen);
         inOff = 0;
       }
-    for (int i = 0; i < blockCount; i++) // update blockCount * blockSize
-      {
-        mode.update(buf, inOff, out, outOff);
-        inOff += blockSize;
-        outOff += blockSize;
-      }
+    mode.update(buf, inOff, out, outOff, blockCount);
+    inOff += result;
     partLen += inLen - result;
     if (partLen > 0) // cache remaining bytes from buf
       System.arraycopy(buf, inOff, partBlock, 0, partLen);
@@ -452,7 +495,9 @@ class CipherAdapter
   {
     final byte[] result;
     final byte[] buf = engineUpdate(input, off, len);
-    if (pad != null)
+    if (mode instanceof IAuthenticatedMode)
+      result = finishAuthenticated(buf);
+    else if (pad != null)
       {
         switch (((Integer) attributes.get(IMode.STATE)).intValue())
           {
@@ -492,16 +537,15 @@ class CipherAdapter
         result = buf;
       }
 
-    try
+    if (mode instanceof IAuthenticatedMode && ! isDecrypting())
       {
-        reset();
-      }
-    catch (InvalidKeyException ike)
-      {
-        // Should not happen; if we initialized it with the current
-        // parameters before, we should be able to do it again.
-        throw new Error(ike);
+        // Encrypting again under the same IV would reuse the key stream, so
+        // the mode stays uninitialized until init is called with a new IV.
+        mode.reset();
+        partLen = 0;
       }
+    else
+      reinit();
     return result;
   }
 
@@ -516,6 +560,102 @@ class CipherAdapter
     return buf.length;
   }
 
+  protected void engineUpdateAAD(byte[] src, int offset, int len)
+  {
+    if (! (mode instanceof IAuthenticatedMode))
+      throw new IllegalStateException(mode.name()
+                                      + " does not accept additional data");
+    ((IAuthenticatedMode) mode).update(src, offset, len);
+  }
+
+  /**
+   * Decrypts all but the last bytes of the held and the new input with an
+   * authenticated mode, holding those back as they may be the tag.
+   */
+  private int updateAuthenticated(byte[] in, int inOff, int inLen, byte[] out,
+                                  int outOff) throws ShortBufferException
+  {
+    final int tagLen = ((IAuthenticatedMode) mode).macSize();
+    final int result = Math.max(partLen + inLen - tagLen, 0);
+    if (result > out.length - outOff)
+      throw new ShortBufferException();
+    // released held bytes come first, then the new input
+    int held = Math.min(partLen, result);
+    int fresh = result - held;
+    if (held > 0)
+      {
+        if (in == out) // writing the held bytes must not clobber the input
+          {
+            byte[] copy = new byte[inLen];
+            System.arraycopy(in, inOff, copy, 0, inLen);
+            in = copy;
+            inOff = 0;
+          }
+        mode.update(partBlock, 0, out, outOff, held);
+        System.arraycopy(partBlock, held, partBlock, 0, partLen - held);
+        partLen -= held;
+      }
+    System.arraycopy(in, inOff + fresh, partBlock, partLen, inLen - fresh);
+    partLen += inLen - fresh;
+    if (fresh > 0)
+      mode.update(in, inOff, out, outOff + held, fresh);
+    return result;
+  }
+
+  /**
+   * Completes an authenticated mode operation: appends the tag to the output
+   * of the last update when encrypting, and verifies the held back tag when
+   * decrypting.
+   */
+  private byte[] finishAuthenticated(byte[] buf) throws AEADBadTagException
+  {
+    IAuthenticatedMode aead = (IAuthenticatedMode) mode;
+    final int tagLen = aead.macSize();
+    if (! isDecrypting())
+      {
+        byte[] result = new byte[buf.length + tagLen];
+        System.arraycopy(buf, 0, result, 0, buf.length);
+        System.arraycopy(aead.digest(), 0, result, buf.length, tagLen);
+        return result;
+      }
+    boolean ok = partLen == tagLen;
+    if (ok)
+      {
+        byte[] tag = aead.digest();
+        int diff = 0;
+        for (int i = 0; i < tagLen; i++)
+          diff |= tag[i] ^ partBlock[i];
+        ok = diff == 0;
+      }
+    if (! ok)
+      {
+        reinit();
+        throw new AEADBadTagException("tag mismatch");
+      }
+    return buf;
+  }
+
+  private boolean isDecrypting()
+  {
+    Integer state = (Integer) attributes.get(IMode.STATE);
+    return state != null && state.intValue() == IMode.DECRYPTION;
+  }
+
+  /** Prepares for the next operation with the same parameters. */
+  private void reinit()
+  {
+    try
+      {
+        reset();
+      }
+    catch (InvalidKeyException ike)
+      {
+        // Should not happen; if we initialized it with the current
+        // parameters before, we should be able to do it again.
+        throw new Error(ike);
+      }
+  }
+
   private void reset() throws InvalidKeyException
   {
     mode.reset();
@@ -42,6 +42,9 @@ import gnu.java.lang.CPStringBuilder;
 
 import gnu.javax.crypto.cipher.IBlockCipher;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -57,6 +60,11 @@ import java.util.Map;
 public abstract class BaseMode
     implements IMode
 {
+  /**
+   * The size, in bytes, of the intermediate buffer used for blocks from and
+   * to buffers without accessible arrays.
+   */
+  private static final int BUFFER_SIZE = 4096;
   /** The canonical name prefix of this mode. */
   protected String name;
   /** The state indicator of this instance. */
@@ -111,6 +119,27 @@ public abstract class BaseMode
       }
   }
 
+  @Override
+  public void update(byte[] in, int inOffset, byte[] out, int outOffset,
+                     int count)
+      throws IllegalStateException
+  {
+    synchronized (lock)
+      {
+        switch (state)
+          {
+          case ENCRYPTION:
+            encryptBlocks(in, inOffset, out, outOffset, count);
+            break;
+          case DECRYPTION:
+            decryptBlocks(in, inOffset, out, outOffset, count);
+            break;
+          default:
+            throw new IllegalStateException();
+          }
+      }
+  }
+
   @Override
   public String name()
   {
@@ -265,6 +294,82 @@ public abstract class BaseMode
   @Override
   public abstract void decryptBlock(byte[] in, int i, byte[] out, int o);
 
+  /**
+   * Encrypts a number of consecutive blocks. This implementation encrypts
+   * them one at a time; concrete modes override it when they can do better.
+   */
+  @Override
+  public void encryptBlocks(byte[] in, int i, byte[] out, int o, int count)
+  {
+    for (; count > 0; count--, i += modeBlockSize, o += modeBlockSize)
+      encryptBlock(in, i, out, o);
+  }
+
+  /**
+   * Decrypts a number of consecutive blocks. This implementation decrypts
+   * them one at a time; concrete modes override it when they can do better.
+   */
+  @Override
+  public void decryptBlocks(byte[] in, int i, byte[] out, int o, int count)
+  {
+    for (; count > 0; count--, i += modeBlockSize, o += modeBlockSize)
+      decryptBlock(in, i, out, o);
+  }
+
+  @Override
+  public void encryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+  {
+    blocks(in, out, count, true);
+  }
+
+  @Override
+  public void decryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+  {
+    blocks(in, out, count, false);
+  }
+
+  /**
+   * Encrypts or decrypts blocks from one buffer to another.  Buffers with
+   * accessible arrays are worked on in place; otherwise the blocks go through
+   * an intermediate array.
+   */
+  private void blocks(ByteBuffer in, ByteBuffer out, int count,
+                      boolean encrypt)
+  {
+    int bs = currentBlockSize();
+    int len = count * bs;
+    if (in.remaining() < len)
+      throw new BufferUnderflowException();
+    if (out.remaining() < len)
+      throw new BufferOverflowException();
+    if (in.hasArray() && out.hasArray())
+      {
+        int inOffset = in.arrayOffset() + in.position();
+        int outOffset = out.arrayOffset() + out.position();
+        if (encrypt)
+          encryptBlocks(in.array(), inOffset, out.array(), outOffset, count);
+        else
+          decryptBlocks(in.array(), inOffset, out.array(), outOffset, count);
+        in.position(in.position() + len);
+        out.position(out.position() + len);
+        return;
+      }
+
+    int max = Math.max(BUFFER_SIZE / bs, 1);
+    byte[] buf = new byte[Math.min(count, max) * bs];
+    while (count > 0)
+      {
+        int n = Math.min(count, max);
+        in.get(buf, 0, n * bs);
+        if (encrypt)
+          encryptBlocks(buf, 0, buf, 0, n);
+        else
+          decryptBlocks(buf, 0, buf, 0, n);
+        out.put(buf, 0, n * bs);
+        count -= n;
+      }
+  }
+
   private boolean testSymmetry(int ks, int bs)
   {
     try
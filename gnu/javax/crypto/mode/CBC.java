@@ -59,10 +59,14 @@ public class CBC
     extends BaseMode
     implements Cloneable
 {
+  /** The number of blocks decrypted by one call to the cipher. */
+  private static final int BLOCKS = 8;
   /** The last (de|en)crypted block */
   private byte[] lastBlock;
   /** An intermediate buffer. */
   private byte[] scratch;
+  /** The ciphertext blocks being decrypted. */
+  private byte[] chain;
 
   /**
    * Package-private constructor for the factory class.
@@ -92,6 +96,7 @@ public class CBC
       throw new IllegalArgumentException();
     scratch = new byte[cipherBlockSize];
     lastBlock = new byte[cipherBlockSize];
+    chain = new byte[BLOCKS * cipherBlockSize];
     // lastBlock gets initialized to the initialization vector.
     for (int i = 0; i < lastBlock.length && i < iv.length; i++)
       lastBlock[i] = iv[i];
@@ -101,6 +106,7 @@ public class CBC
   {
     lastBlock = null;
     scratch = null;
+    chain = null;
   }
 
   public void encryptBlock(byte[] in, int i, byte[] out, int o)
@@ -113,11 +119,32 @@ public class CBC
 
   public void decryptBlock(byte[] in, int i, byte[] out, int o)
   {
-    byte[] buf = new byte[cipherBlockSize];
-    System.arraycopy(in, i, buf, 0, cipherBlockSize);
-    cipher.decryptBlock(in, i, scratch, 0);
-    for (int k = 0; k < scratch.length; k++)
-      out[o + k] = (byte)(lastBlock[k] ^ scratch[k]);
-    System.arraycopy(buf, 0, lastBlock, 0, cipherBlockSize);
+    decryptBlocks(in, i, out, o, 1);
+  }
+
+  /**
+   * Decrypts a number of blocks.  Unlike encryption, this does not depend on
+   * the result for the previous block, so the cipher decrypts several blocks
+   * in one call; the ciphertext is kept aside first, since it is needed for
+   * the chaining and may be overwritten by the plaintext.
+   */
+  public void decryptBlocks(byte[] in, int i, byte[] out, int o, int count)
+  {
+    int bs = cipherBlockSize;
+    while (count > 0)
+      {
+        int n = Math.min(count, BLOCKS);
+        int len = n * bs;
+        System.arraycopy(in, i, chain, 0, len);
+        cipher.decryptBlocks(chain, 0, out, o, n);
+        for (int k = 0; k < bs; k++)
+          out[o + k] ^= lastBlock[k];
+        for (int k = bs; k < len; k++)
+          out[o + k] ^= chain[k - bs];
+        System.arraycopy(chain, len - bs, lastBlock, 0, bs);
+        i += len;
+        o += len;
+        count -= n;
+      }
   }
 }
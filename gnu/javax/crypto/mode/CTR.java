@@ -78,8 +78,12 @@ public class CTR
     extends BaseMode
     implements Cloneable
 {
+  /** The number of key stream blocks generated by one call to the cipher. */
+  private static final int BLOCKS = 8;
   private int off;
   private byte[] counter, enc;
+  /** The following counter blocks, and the key stream they produce. */
+  private byte[] counters, stream;
 
   /**
    * Trivial package-private constructor for use by the Factory class.
@@ -119,6 +123,8 @@ public class CTR
       counter[i--] = iv[j--];
     enc = new byte[cipherBlockSize];
     cipher.encryptBlock(counter, 0, enc, 0);
+    counters = new byte[BLOCKS * cipherBlockSize];
+    stream = new byte[BLOCKS * cipherBlockSize];
   }
 
   public void teardown()
@@ -127,6 +133,10 @@ public class CTR
       Arrays.fill(counter, (byte) 0);
     if (enc != null)
       Arrays.fill(enc, (byte) 0);
+    if (counters != null)
+      Arrays.fill(counters, (byte) 0);
+    if (stream != null)
+      Arrays.fill(stream, (byte) 0);
   }
 
   public void encryptBlock(byte[] in, int i, byte[] out, int o)
@@ -139,6 +149,16 @@ public class CTR
     ctr(in, i, out, o);
   }
 
+  public void encryptBlocks(byte[] in, int i, byte[] out, int o, int count)
+  {
+    ctr(in, i, out, o, count);
+  }
+
+  public void decryptBlocks(byte[] in, int i, byte[] out, int o, int count)
+  {
+    ctr(in, i, out, o, count);
+  }
+
   public Iterator blockSizes()
   {
     return new Sequence(1, cipherBlockSize).iterator();
@@ -151,18 +171,66 @@ public class CTR
         out[outOffset++] = (byte)(in[inOffset++] ^ enc[off++]);
         if (off == cipherBlockSize)
           {
-            int j;
-            for (j = cipherBlockSize - 1; j >= 0; j--)
-              {
-                counter[j]++;
-                if ((counter[j] & 0xFF) != 0)
-                  break;
-              }
-            if (j == 0)
-              counter[cipherBlockSize - 1]++;
+            nextCounter();
             off = 0;
             cipher.encryptBlock(counter, 0, enc, 0);
           }
       }
   }
+
+  /**
+   * Processes a number of blocks.  When they are whole cipher blocks, the
+   * key stream for several of them is generated in one call to the cipher.
+   */
+  private void ctr(byte[] in, int inOffset, byte[] out, int outOffset,
+                   int count)
+  {
+    if (off != 0 || modeBlockSize != cipherBlockSize)
+      {
+        for (; count > 0; count--)
+          {
+            ctr(in, inOffset, out, outOffset);
+            inOffset += modeBlockSize;
+            outOffset += modeBlockSize;
+          }
+        return;
+      }
+
+    int bs = cipherBlockSize;
+    while (count > 0)
+      {
+        // enc already holds the key stream for the current counter; generate
+        // it for the next n counters, the last of which becomes current.
+        int n = Math.min(count, BLOCKS);
+        int len = n * bs;
+        for (int k = 0; k < len; k += bs)
+          {
+            nextCounter();
+            System.arraycopy(counter, 0, counters, k, bs);
+          }
+        cipher.encryptBlocks(counters, 0, stream, 0, n);
+        for (int k = 0; k < bs; k++)
+          out[outOffset + k] = (byte)(in[inOffset + k] ^ enc[k]);
+        for (int k = bs; k < len; k++)
+          out[outOffset + k] = (byte)(in[inOffset + k] ^ stream[k - bs]);
+        System.arraycopy(stream, len - bs, enc, 0, bs);
+        inOffset += len;
+        outOffset += len;
+        count -= n;
+      }
+  }
+
+  /** Advances the counter to the next block. */
+  private void nextCounter()
+  {
+    int j;
+    for (j = cipherBlockSize - 1; j >= 0; j--)
+      {
+        counter[j]++;
+        if ((counter[j] & 0xFF) != 0)
+          break;
+      }
+    if (j == 0)
+      counter[cipherBlockSize - 1]++;
+  }
 }
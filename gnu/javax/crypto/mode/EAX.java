@@ -43,6 +43,8 @@ import gnu.javax.crypto.cipher.IBlockCipher;
 import gnu.javax.crypto.mac.IMac;
 import gnu.javax.crypto.mac.MacFactory;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.util.Arrays;
 import java.util.Collections;
@@ -231,6 +233,52 @@ public class EAX
     ctr.update(in, inOff, out, outOff);
   }
 
+  @Override
+  public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff,
+                            int count)
+  {
+    if (! init)
+      throw new IllegalStateException("not initialized");
+    if (state != ENCRYPTION)
+      throw new IllegalStateException("not encrypting");
+    ctr.update(in, inOff, out, outOff, count);
+    msgOmac.update(out, outOff, count * ctr.currentBlockSize());
+  }
+
+  @Override
+  public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff,
+                            int count)
+  {
+    if (! init)
+      throw new IllegalStateException("not initialized");
+    if (state != DECRYPTION)
+      throw new IllegalStateException("not decrypting");
+    msgOmac.update(in, inOff, count * ctr.currentBlockSize());
+    ctr.update(in, inOff, out, outOff, count);
+  }
+
+  @Override
+  public void encryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+  {
+    byte[] buf = new byte[count * ctr.currentBlockSize()];
+    if (out.remaining() < buf.length)
+      throw new BufferOverflowException();
+    in.get(buf);
+    encryptBlocks(buf, 0, buf, 0, count);
+    out.put(buf);
+  }
+
+  @Override
+  public void decryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+  {
+    byte[] buf = new byte[count * ctr.currentBlockSize()];
+    if (out.remaining() < buf.length)
+      throw new BufferOverflowException();
+    in.get(buf);
+    decryptBlocks(buf, 0, buf, 0, count);
+    out.put(buf);
+  }
+
   public void update(byte[] in, int inOff, byte[] out, int outOff)
   {
     switch (state)
@@ -246,6 +294,21 @@ public class EAX
       }
   }
 
+  public void update(byte[] in, int inOff, byte[] out, int outOff, int count)
+  {
+    switch (state)
+      {
+      case ENCRYPTION:
+        encryptBlocks(in, inOff, out, outOff, count);
+        break;
+      case DECRYPTION:
+        decryptBlocks(in, inOff, out, outOff, count);
+        break;
+      default:
+        throw new IllegalStateException("impossible state " + state);
+      }
+  }
+
   @Override
   public void reset()
   {
@@ -118,4 +118,14 @@ public class ECB
   {
     cipher.decryptBlock(in, i, out, o);
   }
+
+  public void encryptBlocks(byte[] in, int i, byte[] out, int o, int count)
+  {
+    cipher.encryptBlocks(in, i, out, o, count);
+  }
+
+  public void decryptBlocks(byte[] in, int i, byte[] out, int o, int count)
+  {
+    cipher.decryptBlocks(in, i, out, o, count);
+  }
 }
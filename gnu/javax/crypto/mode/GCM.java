@@ -0,0 +1,663 @@
+/* GCM.java -- Galois/Counter Mode authenticated encryption.
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package gnu.javax.crypto.mode;
+
+import gnu.java.security.Registry;
+import gnu.java.security.util.Sequence;
+import gnu.java.security.util.Util;
+import gnu.javax.crypto.cipher.IBlockCipher;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The Galois/Counter Mode of operation, an authenticated encryption mode for
+ * 128-bit block ciphers.
+ * <p>
+ * The message is encrypted with a counter mode whose initial counter block
+ * <code>J0</code> is derived from the IV; only the low 32 bits of the counter
+ * are incremented. The header (additional authenticated data) and the
+ * ciphertext are then authenticated with GHASH, a polynomial hash over
+ * GF(2<sup>128</sup>) keyed with <code>H = E(K)(0<sup>128</sup>)</code>,
+ * and the tag is the hash masked with <code>E(K)(J0)</code>.
+ * <p>
+ * The multiplications by <code>H</code> use Shoup's 8-bit table method: the
+ * 256 multiples of <code>H</code> are computed once per key, so that a block
+ * is hashed with sixteen table lookups and shifts. The key stream is produced
+ * several counter blocks at a time through
+ * {@link IBlockCipher#encryptBlocks(byte[],int,byte[],int,int)}.
+ * <p>
+ * The header must be passed through {@link #update(byte[],int,int)} before
+ * any of the message is processed. Once {@link #digest()} has returned the
+ * tag, this instance must be initialized again, with a new IV, before it can
+ * process another message. Initializing it again with the same key does not
+ * recompute the key schedule or the multiplication table.
+ * <p>
+ * References:
+ * <ol>
+ * <li><a
+ * href="http://csrc.nist.gov/publications/nistpubs/800-38D/SP-800-38D.pdf">
+ * Recommendation for Block Cipher Modes of Operation: Galois/Counter Mode
+ * (GCM) and GMAC</a>, NIST Special Publication 800-38D, Morris Dworkin.</li>
+ * <li><a href="http://www.shoup.net/papers/tbl.pdf">On Fast and Provably
+ * Secure Message Authentication Based on Universal Hashing</a>, Victor
+ * Shoup.</li>
+ * </ol>
+ */
+public class GCM
+    implements IAuthenticatedMode
+{
+  /** The number of counter blocks encrypted by one call to the cipher. */
+  private static final int BLOCKS = 8;
+  /** The largest message, in bytes, one IV may encrypt. */
+  private static final long MAX_TEXT_LENGTH = 0xFFFFFFFE0L;
+  /**
+   * The reduction, modulo the GCM polynomial, of the eight bits shifted out
+   * of the low end of an element when it is multiplied by x<sup>8</sup>.
+   */
+  private static final long[] REDUCE = new long[256];
+  static
+    {
+      for (int r = 0; r < 256; r++)
+        {
+          long hi = 0L, lo = r;
+          for (int i = 0; i < 8; i++)
+            {
+              boolean carry = (lo & 1L) != 0;
+              lo = (lo >>> 1) | (hi << 63);
+              hi >>>= 1;
+              if (carry)
+                hi ^= 0xE100000000000000L;
+            }
+          REDUCE[r] = hi;
+        }
+    }
+  private static Boolean valid;
+
+  /** The underlying cipher. */
+  private IBlockCipher cipher;
+  /** The cipher block size; always 16. */
+  private int cipherBlockSize;
+  /** The mode block size. */
+  private int modeBlockSize;
+  /** The direction state (encrypting or decrypting). */
+  private int state;
+  /** The tag size, in bytes. */
+  private int tagSize;
+  /** Whether we're initialized or not. */
+  private boolean init;
+  /** The key the cipher and the table were set up with. */
+  private byte[] key;
+  /** The high and low halves of the multiples of H. */
+  private final long[] tableHi = new long[256], tableLo = new long[256];
+  /** The current GHASH value. */
+  private long x0, x1;
+  /** A partial block of header or message waiting to be hashed. */
+  private final byte[] buffer = new byte[16];
+  /** The number of bytes in {@link #buffer}. */
+  private int bufferLength;
+  /** The header and message lengths, in bytes. */
+  private long headerLength, textLength;
+  /** Whether any of the message was processed yet. */
+  private boolean inText;
+  /** The encrypted initial counter block, used to mask the tag. */
+  private final byte[] tagMask = new byte[16];
+  /** The current counter block. */
+  private final byte[] counter = new byte[16];
+  /** The next counter blocks, and the key stream they produce. */
+  private byte[] counters, stream;
+  /** The position of the next unused key stream byte, and its end. */
+  private int streamOffset, streamLength;
+
+  /**
+   * Creates a new GCM instance over the given cipher.
+   *
+   * @param cipher the underlying cipher implementation.
+   * @param cipherBlockSize the underlying cipher block size to use.
+   * @throws IllegalArgumentException if the block size is not 16 bytes.
+   */
+  public GCM(IBlockCipher cipher, int cipherBlockSize)
+  {
+    if (cipherBlockSize != 16)
+      throw new IllegalArgumentException("GCM requires a 128-bit block cipher");
+    this.cipher = cipher;
+    this.cipherBlockSize = cipherBlockSize;
+    counters = new byte[BLOCKS * cipherBlockSize];
+    stream = new byte[BLOCKS * cipherBlockSize];
+    init = false;
+  }
+
+  @Override
+  public Object clone()
+  {
+    return new GCM((IBlockCipher) cipher.clone(), cipherBlockSize);
+  }
+
+  @Override
+  public String name()
+  {
+    return Registry.GCM_MODE + "(" + cipher.name() + ")";
+  }
+
+  @Override
+  public int defaultBlockSize()
+  {
+    return cipherBlockSize;
+  }
+
+  @Override
+  public int defaultKeySize()
+  {
+    return cipher.defaultKeySize();
+  }
+
+  @Override
+  public Iterator<Integer> blockSizes()
+  {
+    return new Sequence(1, cipherBlockSize).iterator();
+  }
+
+  @Override
+  public Iterator<Integer> keySizes()
+  {
+    return cipher.keySizes();
+  }
+
+  @Override
+  public void init(Map<String,Object> attrib) throws InvalidKeyException
+  {
+    byte[] iv = (byte[]) attrib.get(IV);
+    if (iv == null || iv.length == 0)
+      throw new IllegalArgumentException("no IV provided");
+    byte[] k = (byte[]) attrib.get(KEY_MATERIAL);
+    if (k == null)
+      throw new IllegalArgumentException("no key provided");
+
+    Integer modeSize = (Integer) attrib.get(MODE_BLOCK_SIZE);
+    if (modeSize != null)
+      modeBlockSize = modeSize.intValue();
+    else
+      modeBlockSize = cipherBlockSize;
+    if (modeBlockSize < 1 || modeBlockSize > cipherBlockSize)
+      throw new IllegalArgumentException("invalid mode block size");
+    Integer st = (Integer) attrib.get(STATE);
+    if (st != null)
+      {
+        state = st.intValue();
+        if (state != ENCRYPTION && state != DECRYPTION)
+          throw new IllegalArgumentException("invalid state");
+      }
+    else
+      state = ENCRYPTION;
+    Integer ts = (Integer) attrib.get(TRUNCATED_SIZE);
+    if (ts != null)
+      tagSize = ts.intValue();
+    else
+      tagSize = cipherBlockSize;
+    if (tagSize != 4 && tagSize != 8
+        && (tagSize < 12 || tagSize > cipherBlockSize))
+      throw new IllegalArgumentException("tag size out of range");
+
+    init = false;
+    if (key == null || ! Arrays.equals(key, k))
+      {
+        key = null;
+        HashMap<String,Object> cipherAttr = new HashMap<String,Object>();
+        cipherAttr.put(KEY_MATERIAL, k);
+        cipherAttr.put(CIPHER_BLOCK_SIZE, Integer.valueOf(cipherBlockSize));
+        cipher.reset();
+        cipher.init(cipherAttr);
+        byte[] h = new byte[cipherBlockSize];
+        cipher.encryptBlock(h, 0, h, 0);
+        setHashKey(h);
+        key = k.clone();
+      }
+
+    clearHash();
+    if (iv.length == 12)
+      {
+        System.arraycopy(iv, 0, counter, 0, 12);
+        counter[12] = counter[13] = counter[14] = 0;
+        counter[15] = 1;
+      }
+    else
+      {
+        hash(iv, 0, iv.length);
+        finishHash(0L, (long) iv.length << 3, counter, 0);
+        clearHash();
+      }
+    cipher.encryptBlock(counter, 0, tagMask, 0);
+    streamOffset = streamLength = 0;
+    init = true;
+  }
+
+  @Override
+  public int currentBlockSize()
+  {
+    if (! init)
+      throw new IllegalStateException("not initialized");
+    return modeBlockSize;
+  }
+
+  @Override
+  public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff)
+  {
+    checkState(ENCRYPTION);
+    crypt(in, inOff, out, outOff, modeBlockSize);
+  }
+
+  @Override
+  public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff)
+  {
+    checkState(DECRYPTION);
+    crypt(in, inOff, out, outOff, modeBlockSize);
+  }
+
+  @Override
+  public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff,
+                            int count)
+  {
+    checkState(ENCRYPTION);
+    crypt(in, inOff, out, outOff, count * modeBlockSize);
+  }
+
+  @Override
+  public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff,
+                            int count)
+  {
+    checkState(DECRYPTION);
+    crypt(in, inOff, out, outOff, count * modeBlockSize);
+  }
+
+  @Override
+  public void encryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+  {
+    checkState(ENCRYPTION);
+    crypt(in, out, count * modeBlockSize);
+  }
+
+  @Override
+  public void decryptBlocks(ByteBuffer in, ByteBuffer out, int count)
+  {
+    checkState(DECRYPTION);
+    crypt(in, out, count * modeBlockSize);
+  }
+
+  public void update(byte[] in, int inOff, byte[] out, int outOff)
+  {
+    switch (state)
+      {
+      case ENCRYPTION:
+        encryptBlock(in, inOff, out, outOff);
+        break;
+      case DECRYPTION:
+        decryptBlock(in, inOff, out, outOff);
+        break;
+      default:
+        throw new IllegalStateException("impossible state " + state);
+      }
+  }
+
+  public void update(byte[] in, int inOff, byte[] out, int outOff, int count)
+  {
+    switch (state)
+      {
+      case ENCRYPTION:
+        encryptBlocks(in, inOff, out, outOff, count);
+        break;
+      case DECRYPTION:
+        decryptBlocks(in, inOff, out, outOff, count);
+        break;
+      default:
+        throw new IllegalStateException("impossible state " + state);
+      }
+  }
+
+  @Override
+  public void reset()
+  {
+    init = false;
+    clearHash();
+    Arrays.fill(counter, (byte) 0);
+    Arrays.fill(tagMask, (byte) 0);
+    Arrays.fill(counters, (byte) 0);
+    Arrays.fill(stream, (byte) 0);
+    streamOffset = streamLength = 0;
+  }
+
+  @Override
+  public boolean selfTest()
+  {
+    if (valid == null)
+      {
+        // GHASH of test case 2 of the GCM specification, which does not
+        // depend on the cipher.
+        GCM gcm = new GCM(cipher, cipherBlockSize);
+        gcm.setHashKey(Util.toBytesFromString("66E94BD4EF8A2C3B884CFA59CA342B2E"));
+        byte[] c = Util.toBytesFromString("0388DACE60B6A392F328C2B971B2FE78");
+        gcm.hash(c, 0, c.length);
+        byte[] s = new byte[16];
+        gcm.finishHash(0L, 128L, s, 0);
+        valid = Boolean.valueOf(Arrays.equals(s, Util.toBytesFromString(
+            "F38CBB1AD69223DCC3457AE5B6B0F885")));
+      }
+    return valid.booleanValue();
+  }
+
+  @Override
+  public int macSize()
+  {
+    return tagSize;
+  }
+
+  @Override
+  public byte[] digest()
+  {
+    byte[] tag = new byte[tagSize];
+    digest(tag, 0);
+    return tag;
+  }
+
+  /**
+   * Computes the tag over the header and the message processed so far, and
+   * places it in the given array. This instance must then be initialized again
+   * before it can be used.
+   *
+   * @param out the array to place the tag in.
+   * @param outOffset the offset at which to place it.
+   */
+  public void digest(byte[] out, int outOffset)
+  {
+    if (! init)
+      throw new IllegalStateException("not initialized");
+    if (outOffset < 0 || outOffset + tagSize > out.length)
+      throw new IndexOutOfBoundsException();
+    byte[] s = new byte[cipherBlockSize];
+    finishHash(headerLength << 3, textLength << 3, s, 0);
+    for (int i = 0; i < tagSize; i++)
+      out[outOffset + i] = (byte)(s[i] ^ tagMask[i]);
+    reset();
+  }
+
+  @Override
+  public void update(byte b)
+  {
+    checkHeader();
+    buffer[bufferLength++] = b;
+    if (bufferLength == 16)
+      {
+        multiply(getLong(buffer, 0), getLong(buffer, 8));
+        bufferLength = 0;
+      }
+    headerLength++;
+  }
+
+  @Override
+  public void update(byte[] buf, int off, int len)
+  {
+    checkHeader();
+    hash(buf, off, len);
+    headerLength += len;
+  }
+
+  private void checkState(int expected)
+  {
+    if (! init)
+      throw new IllegalStateException("not initialized");
+    if (state != expected)
+      throw new IllegalStateException(expected == ENCRYPTION ? "not encrypting"
+                                                             : "not decrypting");
+  }
+
+  private void checkHeader()
+  {
+    if (! init)
+      throw new IllegalStateException("not initialized");
+    if (inText)
+      throw new IllegalStateException("header must precede the message");
+  }
+
+  /**
+   * Encrypts or decrypts <code>len</code> bytes of the message, hashing the
+   * ciphertext.
+   */
+  private void crypt(byte[] in, int inOff, byte[] out, int outOff, int len)
+  {
+    if (! inText)
+      {
+        // the header is padded to a whole block
+        if (bufferLength > 0)
+          padHash();
+        inText = true;
+      }
+    textLength += len;
+    if (textLength > MAX_TEXT_LENGTH)
+      throw new IllegalStateException("message too long");
+    if (state == DECRYPTION)
+      hash(in, inOff, len);
+    int o = outOff;
+    for (int n = len; n > 0;)
+      {
+        if (streamOffset == streamLength)
+          nextStream(Math.min(BLOCKS, (n + 15) >>> 4));
+        int k = Math.min(n, streamLength - streamOffset);
+        for (int i = 0; i < k; i++)
+          out[o + i] = (byte)(in[inOff + i] ^ stream[streamOffset + i]);
+        streamOffset += k;
+        inOff += k;
+        o += k;
+        n -= k;
+      }
+    if (state == ENCRYPTION)
+      hash(out, outOff, len);
+  }
+
+  private void crypt(ByteBuffer in, ByteBuffer out, int len)
+  {
+    if (in.remaining() < len)
+      throw new BufferUnderflowException();
+    if (out.remaining() < len)
+      throw new BufferOverflowException();
+    if (in.hasArray() && out.hasArray())
+      {
+        crypt(in.array(), in.arrayOffset() + in.position(),
+              out.array(), out.arrayOffset() + out.position(), len);
+        in.position(in.position() + len);
+        out.position(out.position() + len);
+      }
+    else
+      {
+        byte[] buf = new byte[len];
+        in.get(buf);
+        crypt(buf, 0, buf, 0, len);
+        out.put(buf);
+      }
+  }
+
+  /**
+   * Encrypts the next <code>n</code> counter blocks into the key stream. Only
+   * the last 32 bits of the counter are incremented.
+   */
+  private void nextStream(int n)
+  {
+    int len = n * cipherBlockSize;
+    for (int k = 0; k < len; k += cipherBlockSize)
+      {
+        for (int i = 15; i >= 12; i--)
+          if (++counter[i] != 0)
+            break;
+        System.arraycopy(counter, 0, counters, k, cipherBlockSize);
+      }
+    cipher.encryptBlocks(counters, 0, stream, 0, n);
+    streamOffset = 0;
+    streamLength = len;
+  }
+
+  /** Computes the multiples of H by every 8-bit polynomial. */
+  private void setHashKey(byte[] h)
+  {
+    long v0 = getLong(h, 0), v1 = getLong(h, 8);
+    // The most significant bit holds the lowest coefficient, so 0x80 is H,
+    // 0x40 is H times x, and so on.
+    tableHi[0] = tableLo[0] = 0L;
+    tableHi[128] = v0;
+    tableLo[128] = v1;
+    for (int i = 64; i > 0; i >>= 1)
+      {
+        boolean carry = (v1 & 1L) != 0;
+        v1 = (v1 >>> 1) | (v0 << 63);
+        v0 >>>= 1;
+        if (carry)
+          v0 ^= 0xE100000000000000L;
+        tableHi[i] = v0;
+        tableLo[i] = v1;
+      }
+    for (int i = 2; i < 256; i <<= 1)
+      for (int j = 1; j < i; j++)
+        {
+          tableHi[i + j] = tableHi[i] ^ tableHi[j];
+          tableLo[i + j] = tableLo[i] ^ tableLo[j];
+        }
+  }
+
+  private void clearHash()
+  {
+    x0 = x1 = 0L;
+    Arrays.fill(buffer, (byte) 0);
+    bufferLength = 0;
+    headerLength = textLength = 0L;
+    inText = false;
+  }
+
+  /** Hashes bytes, keeping an incomplete last block for later. */
+  private void hash(byte[] in, int off, int len)
+  {
+    if (bufferLength > 0)
+      {
+        int n = Math.min(16 - bufferLength, len);
+        System.arraycopy(in, off, buffer, bufferLength, n);
+        bufferLength += n;
+        off += n;
+        len -= n;
+        if (bufferLength < 16)
+          return;
+        multiply(getLong(buffer, 0), getLong(buffer, 8));
+        bufferLength = 0;
+      }
+    for (; len >= 16; off += 16, len -= 16)
+      multiply(getLong(in, off), getLong(in, off + 8));
+    if (len > 0)
+      {
+        System.arraycopy(in, off, buffer, 0, len);
+        bufferLength = len;
+      }
+  }
+
+  /** Hashes the incomplete block, padded with zeroes. */
+  private void padHash()
+  {
+    Arrays.fill(buffer, bufferLength, 16, (byte) 0);
+    multiply(getLong(buffer, 0), getLong(buffer, 8));
+    bufferLength = 0;
+  }
+
+  /** Hashes the lengths block and stores the result. */
+  private void finishHash(long a, long b, byte[] out, int off)
+  {
+    if (bufferLength > 0)
+      padHash();
+    multiply(a, b);
+    putLong(x0, out, off);
+    putLong(x1, out, off + 8);
+  }
+
+  /**
+   * Adds the block (a, b) to the hash value and multiplies the sum by H, a
+   * byte at a time from the highest coefficients down.
+   */
+  private void multiply(long a, long b)
+  {
+    a ^= x0;
+    b ^= x1;
+    int k = (int) b & 0xFF;
+    long z0 = tableHi[k], z1 = tableLo[k];
+    for (int s = 8; s < 64; s += 8)
+      {
+        k = (int)(b >>> s) & 0xFF;
+        int r = (int) z1 & 0xFF;
+        z1 = ((z1 >>> 8) | (z0 << 56)) ^ tableLo[k];
+        z0 = (z0 >>> 8) ^ REDUCE[r] ^ tableHi[k];
+      }
+    for (int s = 0; s < 64; s += 8)
+      {
+        k = (int)(a >>> s) & 0xFF;
+        int r = (int) z1 & 0xFF;
+        z1 = ((z1 >>> 8) | (z0 << 56)) ^ tableLo[k];
+        z0 = (z0 >>> 8) ^ REDUCE[r] ^ tableHi[k];
+      }
+    x0 = z0;
+    x1 = z1;
+  }
+
+  private static long getLong(byte[] b, int off)
+  {
+    return ((long)(b[off] & 0xFF) << 56)
+           | ((long)(b[off + 1] & 0xFF) << 48)
+           | ((long)(b[off + 2] & 0xFF) << 40)
+           | ((long)(b[off + 3] & 0xFF) << 32)
+           | ((long)(b[off + 4] & 0xFF) << 24)
+           | ((b[off + 5] & 0xFF) << 16)
+           | ((b[off + 6] & 0xFF) << 8)
+           | (b[off + 7] & 0xFF);
+  }
+
+  private static void putLong(long v, byte[] b, int off)
+  {
+    for (int i = 7; i >= 0; i--)
+      {
+        b[off + i] = (byte) v;
+        v >>>= 8;
+      }
+  }
+}
@@ -120,4 +120,20 @@ public interface IMode
    */
   void update(byte[] in, int inOffset, byte[] out, int outOffset)
       throws IllegalStateException;
+
+  /**
+   * A convenience method. Effectively invokes the <code>encryptBlocks()</code>
+   * or <code>decryptBlocks()</code> method depending on the operational state
+   * of the instance.
+   *
+   * @param in the plaintext.
+   * @param inOffset index of <code>in</code> from which to start considering
+   *          data.
+   * @param out the ciphertext.
+   * @param outOffset index of <code>out</code> from which to store result.
+   * @param count the number of blocks.
+   * @exception IllegalStateException if the instance is not initialised.
+   */
+  void update(byte[] in, int inOffset, byte[] out, int outOffset, int count)
+      throws IllegalStateException;
 }
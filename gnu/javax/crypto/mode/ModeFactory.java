@@ -117,6 +117,8 @@ public class ModeFactory
       result = new CFB(cipher, cipherBlockSize);
     else if (mode.equalsIgnoreCase(EAX_MODE))
       result = new EAX(cipher, cipherBlockSize);
+    else if (mode.equalsIgnoreCase(GCM_MODE) && cipherBlockSize == 16)
+      result = new GCM(cipher, cipherBlockSize);
 
     if (result != null && ! result.selfTest())
       throw new InternalError(result.name());
@@ -143,6 +145,7 @@ public class ModeFactory
             hs.add(CBC_MODE);
             hs.add(CFB_MODE);
             hs.add(EAX_MODE);
+            hs.add(GCM_MODE);
             names = Collections.unmodifiableSet(hs);
           }
       }
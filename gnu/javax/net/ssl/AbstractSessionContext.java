@@ -175,8 +175,7 @@ public abstract class AbstractSessionContext implements SSLSessionContext
   public final SSLSession getSession (byte[] sessionId)
   {
     Session s = implGet (sessionId);
-    if (s != null
-        && System.currentTimeMillis () - s.getLastAccessedTime () > timeout)
+    if (s != null && isExpired (s, System.currentTimeMillis ()))
       {
         remove (sessionId);
         return null;
@@ -184,12 +183,41 @@ public abstract class AbstractSessionContext implements SSLSessionContext
     return s;
   }
 
+  /**
+   * Fetch the most suitable saved session for the given peer, or null if
+   * there is no such session, or if it has expired.
+   *
+   * @param host The peer's host name.
+   * @param port The peer's port.
+   * @return The found session, or null.
+   */
   public final SSLSession getSession(String host, int port)
+  {
+    Session s = implGet(host, port);
+    if (s != null && isExpired(s, System.currentTimeMillis()))
+      {
+        remove(s.getId());
+        return null;
+      }
+    return s;
+  }
+
+  /**
+   * Find a session by the peer it was established with. Subclasses do
+   * not need to check timeouts in this method. This implementation
+   * searches every session in this context; subclasses that index their
+   * sessions by peer should override it.
+   *
+   * @param host The peer's host name.
+   * @param port The peer's port.
+   * @return The session, or <code>null</code> if none was found.
+   */
+  protected Session implGet(String host, int port)
   {
     for (Enumeration e = getIds(); e.hasMoreElements(); )
       {
         byte[] id = (byte[]) e.nextElement();
-        SSLSession s = getSession(id);
+        Session s = (Session) getSession(id);
         if (s == null) // session expired.
           continue;
         String host2 = s.getPeerHost();
@@ -221,6 +249,19 @@ public abstract class AbstractSessionContext implements SSLSessionContext
    */
   protected abstract Session implGet (byte[] sessionId);
 
+  /**
+   * Tell if a session has gone unused for longer than this context's
+   * timeout. A timeout of zero means that sessions never expire.
+   *
+   * @param session The session.
+   * @param now The current time, in milliseconds.
+   * @return True if the session has expired.
+   */
+  protected final boolean isExpired(Session session, long now)
+  {
+    return timeout > 0 && now - session.getLastAccessedTime() > timeout;
+  }
+
   public int getSessionTimeout()
   {
     return (int) (timeout / 1000);
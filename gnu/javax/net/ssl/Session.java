@@ -86,6 +86,7 @@ public abstract class Session implements SSLSession, Serializable
   protected Session()
   {
     creationTime = System.currentTimeMillis();
+    lastAccessedTime = creationTime;
     values = new HashMap<String, Object>();
     applicationBufferSize = (1 << 14);
   }
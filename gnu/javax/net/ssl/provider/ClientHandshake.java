@@ -101,6 +101,7 @@ public class ClientHandshake extends AbstractHandshake
     WRITE_CLIENT_KEY_EXCHANGE (false, true),
     WRITE_CERTIFICATE_VERIFY (false, true),
     WRITE_FINISHED (false, true),
+    READ_NEW_SESSION_TICKET (true, false),
     READ_FINISHED (true, false),
     DONE (false, false);
 
@@ -133,6 +134,8 @@ public class ClientHandshake extends AbstractHandshake
   private PrivateKey privateKey;
   private MaxFragmentLength maxFragmentLengthSent;
   private boolean truncatedHMacSent;
+  private boolean ticketSent;
+  private boolean expectTicket;
   private ProtocolVersion sentVersion;
 
   // Delegated tasks.
@@ -193,11 +196,7 @@ public class ClientHandshake extends AbstractHandshake
             {
               continuedSession = true;
               engine.setSession(continued);
-            }
-          else if (engine.getEnableSessionCreation())
-            {
-              ((AbstractSessionContext) engine.contextImpl
-                  .engineGetClientSessionContext()).put(engine.session());
+              continued.access();
             }
           ExtensionList extensions = hello.extensions();
           if (extensions != null)
@@ -220,17 +219,41 @@ public class ClientHandshake extends AbstractHandshake
                         if (truncatedHMacSent)
                           engine.session().setTruncatedMac(true);
                         break;
+
+                      case SESSION_TICKET:
+                        if (ticketSent)
+                          expectTicket = true;
+                        break;
                     }
                 }
             }
 
+          if (!continuedSession)
+            {
+              byte[] id = hello.sessionId();
+              // A server that issues us a ticket may send no session ID;
+              // make one up to file the session under.
+              if (id.length == 0 && expectTicket)
+                {
+                  id = new byte[32];
+                  engine.session().random().nextBytes(id);
+                }
+              engine.session().setId(new Session.ID(id));
+              if (id.length > 0 && engine.getEnableSessionCreation())
+                ((AbstractSessionContext) engine.contextImpl
+                    .engineGetClientSessionContext()).put(engine.session());
+            }
+
           KeyExchangeAlgorithm kex = engine.session().suite.keyExchangeAlgorithm();
           if (continuedSession)
             {
               byte[][] keys = generateKeys(clientRandom, serverRandom,
                                            engine.session());
               setupSecurityParameters(keys, true, engine, compression);
-              state = READ_FINISHED;
+              if (expectTicket)
+                state = READ_NEW_SESSION_TICKET;
+              else
+                state = READ_FINISHED;
             }
           else if (kex == RSA || kex == DH_DSS || kex == DH_RSA
                    || kex == DHE_DSS || kex == DHE_RSA || kex == RSA_PSK)
@@ -444,6 +467,8 @@ public class ClientHandshake extends AbstractHandshake
                 }
             }
 
+          engine.session().setValid(true);
+          engine.session().access();
           if (continuedSession)
             {
               engine.changeCipherSpec();
@@ -454,6 +479,24 @@ public class ClientHandshake extends AbstractHandshake
         }
         break;
 
+        // New Session Ticket.
+        //
+        // Sent by the server just before its change cipher spec message,
+        // if it agreed to issue us a session ticket. We keep the ticket
+        // with the session, and present it when we next try to resume
+        // the session.
+        case READ_NEW_SESSION_TICKET:
+        {
+          if (handshake.type() != Handshake.Type.NEW_SESSION_TICKET)
+            throw new AlertException(new Alert(Level.FATAL,
+                                               Description.UNEXPECTED_MESSAGE));
+          NewSessionTicket nst = (NewSessionTicket) handshake.body();
+          byte[] ticket = nst.ticket();
+          engine.session().ticket = ticket.length > 0 ? ticket : null;
+          state = READ_FINISHED;
+        }
+        break;
+
         default:
           throw new IllegalStateException("invalid state: " + state);
       }
@@ -512,6 +555,8 @@ outer_loop:
                 engine.contextImpl.engineGetClientSessionContext();
               continued = (SessionImpl) ctx.getSession(engine.getPeerHost(),
                                                        engine.getPeerPort());
+              if (continued != null && !continued.isValid())
+                continued = null;
               engine.session().setId(new Session.ID(new byte[0]));
               Session.ID sid = engine.session().id();
               // If we have a session that we may want to continue, send
@@ -559,6 +604,16 @@ outer_loop:
                       truncatedHMacSent = true;
                     }
 
+                  if (sessionTickets())
+                    {
+                      byte[] ticket = new byte[0];
+                      if (continued != null && continued.ticket != null)
+                        ticket = continued.ticket;
+                      extensions.add(new Extension(Extension.Type.SESSION_TICKET,
+                                                   new SessionTicket(ticket)));
+                      ticketSent = true;
+                    }
+
                   ExtensionList elist = new ExtensionList(extensions);
                   hello.setExtensions(elist.buffer());
                 }
@@ -776,6 +831,8 @@ outer_loop:
 
               if (continuedSession)
                 state = DONE;
+              else if (expectTicket)
+                state = READ_NEW_SESSION_TICKET;
               else
                 state = READ_FINISHED;
             }
@@ -913,6 +970,13 @@ outer_loop:
     return Boolean.valueOf(AccessController.doPrivileged(action));
   }
 
+  private boolean sessionTickets()
+  {
+    GetSecurityPropertyAction action
+      = new GetSecurityPropertyAction("jessie.client.sessionTickets");
+    return Boolean.valueOf(AccessController.doPrivileged(action));
+  }
+
   private String getPSKIdentity()
   {
     GetSecurityPropertyAction action
@@ -57,6 +57,7 @@ struct
     case hello_request:       HelloRequest;
     case client_hello:        ClientHello;
     case server_hello:        ServerHello;
+    case new_session_ticket:  NewSessionTicket;
     case certificate:         Certificate;
     case server_key_exchange: ServerKeyExchange;
     case certificate_request: CertificateRequest;
@@ -138,6 +139,9 @@ public final class Handshake implements Constructed
       case SERVER_HELLO:
         return new ServerHello (bodyBuffer);
 
+      case NEW_SESSION_TICKET:
+        return new NewSessionTicket (bodyBuffer);
+
       case CERTIFICATE:
         return new Certificate (bodyBuffer, CertificateType.X509);
 
@@ -244,6 +248,7 @@ public final class Handshake implements Constructed
     HELLO_REQUEST       ( 0),
     CLIENT_HELLO        ( 1),
     SERVER_HELLO        ( 2),
+    NEW_SESSION_TICKET  ( 4),
     CERTIFICATE         (11),
     SERVER_KEY_EXCHANGE (12),
     CERTIFICATE_REQUEST (13),
@@ -278,6 +283,7 @@ public final class Handshake implements Constructed
         case 0:  return HELLO_REQUEST;
         case 1:  return CLIENT_HELLO;
         case 2:  return SERVER_HELLO;
+        case 4:  return NEW_SESSION_TICKET;
         case 11: return CERTIFICATE;
         case 12: return SERVER_KEY_EXCHANGE;
         case 13: return CERTIFICATE_REQUEST;
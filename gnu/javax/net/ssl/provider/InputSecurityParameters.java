@@ -40,13 +40,11 @@ package gnu.javax.net.ssl.provider;
 
 import gnu.classpath.debug.Component;
 import gnu.classpath.debug.SystemLogger;
-import gnu.java.security.util.ByteArray;
 import gnu.java.security.util.ByteBufferOutputStream;
 
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
-import java.util.Arrays;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -67,6 +65,9 @@ public class InputSecurityParameters
   private final CipherSuite suite;
   private long sequence;
 
+  /** The decrypted fragment, reused from record to record. */
+  private ByteBuffer plaintext;
+
   public InputSecurityParameters (final Cipher cipher, final Mac mac,
                                   final Inflater inflater,
                                   final SessionImpl session,
@@ -133,7 +134,10 @@ public class InputSecurityParameters
     if (cipher != null)
       {
         ByteBuffer input = record.fragment();
-        fragment = ByteBuffer.allocate(input.remaining());
+        if (plaintext == null || plaintext.capacity() < input.remaining())
+          plaintext = ByteBuffer.allocate(session.getPacketBufferSize());
+        plaintext.clear();
+        fragment = plaintext;
         cipher.update(input, fragment);
       }
     else
@@ -169,14 +173,18 @@ public class InputSecurityParameters
           {
             // In TLSv1 and later, the padding must be `padlen' copies of the
             // value `padlen'.
-            byte[] pad = new byte[padlen];
-            ((ByteBuffer) fragment.duplicate().position(record.length() - padlen - 1)).get(pad);
-            for (int i = 0; i < pad.length; i++)
-              if ((pad[i] & 0xFF) != padlen)
-                badPadding = true;
-            if (Debug.DEBUG)
+            int start = record.length() - padlen - 1;
+            if (start < 0)
+              badPadding = true;
+            else
+              for (int i = start; i < start + padlen; i++)
+                if ((fragment.get(i) & 0xFF) != padlen)
+                  badPadding = true;
+            if (Debug.DEBUG && !badPadding)
               logger.logv(Component.SSL_RECORD_LAYER, "TLSv1.x padding\n{0}",
-                          new ByteArray(pad));
+                          Util.hexDump((ByteBuffer) fragment.duplicate()
+                                       .position(start)
+                                       .limit(start + padlen), " >> "));
           }
 
         if (Debug.DEBUG)
@@ -215,13 +223,17 @@ public class InputSecurityParameters
           (ByteBuffer) fragment.duplicate().position(ivlen).limit(fragmentLength);
         mac.update(content);
         byte[] mac1 = mac.doFinal ();
-        byte[] mac2 = new byte[maclen];
         mac.reset();
-        ((ByteBuffer) fragment.duplicate().position(fragmentLength)).get(mac2);
         if (Debug.DEBUG)
           logger.logv(Component.SSL_RECORD_LAYER, "mac1:{0} mac2:{1}",
-                      Util.toHexString(mac1, ':'), Util.toHexString(mac2, ':'));
-        if (!Arrays.equals (mac1, mac2))
+                      Util.toHexString(mac1, ':'),
+                      Util.hexDump((ByteBuffer) fragment.duplicate()
+                                   .position(fragmentLength)
+                                   .limit(fragmentLength + maclen), ""));
+        int diff = 0;
+        for (int i = 0; i < maclen; i++)
+          diff |= mac1[i] ^ fragment.get(fragmentLength + i);
+        if (diff != 0)
           badPadding = true;
       }
 
@@ -0,0 +1,133 @@
+/* NewSessionTicket.java -- the session ticket handshake message
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+
+package gnu.javax.net.ssl.provider;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The handshake message a server uses to hand the client a new session
+ * ticket (RFC 5077).
+ *
+ * <pre>
+struct {
+  uint32 ticket_lifetime_hint;
+  opaque ticket&lt;0..2^16-1&gt;;
+} NewSessionTicket;</pre>
+ */
+public class NewSessionTicket implements Handshake.Body, Builder
+{
+  private final ByteBuffer buffer;
+
+  public NewSessionTicket(final ByteBuffer buffer)
+  {
+    this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+  }
+
+  public NewSessionTicket(final long lifetimeHint, final byte[] ticket)
+  {
+    if (ticket.length > 0xFFFF)
+      throw new IllegalArgumentException("ticket too long");
+    buffer = ByteBuffer.allocate(6 + ticket.length);
+    buffer.putInt((int) lifetimeHint);
+    buffer.putShort((short) ticket.length);
+    buffer.put(ticket);
+    buffer.rewind();
+  }
+
+  public int length()
+  {
+    return 6 + (buffer.getShort(4) & 0xFFFF);
+  }
+
+  public ByteBuffer buffer()
+  {
+    return (ByteBuffer) buffer.duplicate().rewind().limit(length());
+  }
+
+  /**
+   * Returns the number of seconds the server suggests the client keep
+   * the ticket, or zero if the server gives no hint.
+   *
+   * @return The ticket lifetime hint.
+   */
+  public long lifetimeHint()
+  {
+    return buffer.getInt(0) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Returns the opaque ticket. An empty ticket means the server will not
+   * accept the ticket the client presented again.
+   *
+   * @return The ticket bytes.
+   */
+  public byte[] ticket()
+  {
+    byte[] ticket = new byte[buffer.getShort(4) & 0xFFFF];
+    ((ByteBuffer) buffer.duplicate().position(6)).get(ticket);
+    return ticket;
+  }
+
+  public @Override String toString()
+  {
+    return toString(null);
+  }
+
+  public String toString(final String prefix)
+  {
+    StringWriter str = new StringWriter();
+    PrintWriter out = new PrintWriter(str);
+    if (prefix != null) out.print(prefix);
+    out.println("struct {");
+    if (prefix != null) out.print(prefix);
+    out.print("  ticket_lifetime_hint = ");
+    out.print(lifetimeHint());
+    out.println(";");
+    if (prefix != null) out.print(prefix);
+    out.print("  ticket = ");
+    out.print(buffer.getShort(4) & 0xFFFF);
+    out.println(" bytes;");
+    if (prefix != null) out.print(prefix);
+    out.print("} NewSessionTicket;");
+    return str.toString();
+  }
+}
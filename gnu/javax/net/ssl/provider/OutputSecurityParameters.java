@@ -62,6 +62,10 @@ public class OutputSecurityParameters
   private final CipherSuite suite;
   private long sequence;
 
+  /** The explicit IV and the padding, reused from record to record. */
+  private byte[] iv;
+  private final byte[] pad = new byte[256];
+
   static final boolean enableCBCProtection;
 
   static
@@ -86,7 +90,9 @@ public class OutputSecurityParameters
   }
 
   /**
-   * Encrypt a record, storing the result in the given output buffer.
+   * Encrypt a record, storing the result in the given output buffer. The
+   * content is gathered from the input buffers in order, up to the maximum
+   * fragment length of the session.
    *
    * @return The number of bytes taken from the input, and the number stored
    * into `output;' that is, the size of the encrypted fragment, plus the
@@ -110,13 +116,15 @@ public class OutputSecurityParameters
       maclen = session.isTruncatedMac() ? 10 : mac.getMacLength ();
 
     int ivlen = 0;
-    byte[] iv = null;
+    boolean explicitIV = false;
     if (session.version.compareTo(ProtocolVersion.TLS_1_1) >= 0
         && !suite.isStreamCipher())
       {
         ivlen = cipher.getBlockSize();
-        iv = new byte[ivlen];
+        if (iv == null || iv.length != ivlen)
+          iv = new byte[ivlen];
         session.random().nextBytes(iv);
+        explicitIV = true;
       }
 
     int padaddlen = 0;
@@ -143,7 +151,7 @@ public class OutputSecurityParameters
         // as much data as we have space for *uncompressed*,
         int limit = output.remaining() - (maclen + ivlen + padaddlen) - 1024;
 
-        for (int i = offset; i < length && written < limit; i++)
+        for (int i = offset; i < offset + length && written < limit; i++)
           {
             ByteBuffer in = input[i];
             while (in.hasRemaining() && written < limit)
@@ -172,9 +180,10 @@ public class OutputSecurityParameters
       }
     else
       {
-        int limit = output.remaining() - (maclen + ivlen + padaddlen);
+        int limit = Math.min(output.remaining() - (maclen + ivlen + padaddlen),
+                             session.getApplicationBufferSize());
         fragments = input;
-        for (int i = offset; i < length && fragmentLength < limit; i++)
+        for (int i = offset; i < offset + length && fragmentLength < limit; i++)
           {
             int l = Math.min(limit - fragmentLength, fragments[i].remaining());
             fragmentLength += l;
@@ -184,7 +193,6 @@ public class OutputSecurityParameters
 
     // Compute padding...
     int padlen = 0;
-    byte[] pad = null;
     if (!suite.isStreamCipher())
       {
         int bs = cipher.getBlockSize();
@@ -201,7 +209,6 @@ public class OutputSecurityParameters
             padlen += padaddlen;
             while (padlen > 255)
               padlen -= bs;
-            pad = new byte[padlen];
             for (int i = 0; i < padlen; i++)
               pad[i] = (byte) (padlen - 1);
           }
@@ -209,11 +216,10 @@ public class OutputSecurityParameters
           {
             // SSL 3 uses a pad only as large as the block size, but the
             // pad may contain any values.
-            pad = new byte[padlen];
             session.random().nextBytes(pad);
             pad[padlen - 1] = (byte) (padlen - 1);
           }
-        fragmentLength += pad.length;
+        fragmentLength += padlen;
       }
 
     // If there is a MAC, compute it.
@@ -238,12 +244,13 @@ public class OutputSecurityParameters
         mac.update((byte) (toWrite >>> 8));
         mac.update((byte)  toWrite);
         int written = 0;
-        for (int i = offset; i < length && written < toWrite; i++)
+        for (int i = offset; i < offset + length && written < toWrite; i++)
           {
             ByteBuffer fragment = fragments[i].duplicate();
             int l = Math.min(fragment.remaining(), toWrite - written);
             fragment.limit(fragment.position() + l);
             mac.update(fragment);
+            written += l;
           }
         macValue = mac.doFinal();
       }
@@ -258,7 +265,7 @@ public class OutputSecurityParameters
 
     if (cipher != null)
       {
-        if (iv != null)
+        if (explicitIV)
           cipher.update(ByteBuffer.wrap(iv), outfragment);
         int toWrite = fragmentLength - maclen - ivlen - padlen;
         for (int i = offset; i < offset + length && consumed < toWrite; i++)
@@ -272,8 +279,8 @@ public class OutputSecurityParameters
           }
         if (macValue != null)
           cipher.update(ByteBuffer.wrap(macValue), outfragment);
-        if (pad != null)
-          cipher.update(ByteBuffer.wrap(pad), outfragment);
+        if (padlen > 0)
+          cipher.update(ByteBuffer.wrap(pad, 0, padlen), outfragment);
       }
     else
       {
@@ -281,10 +288,11 @@ public class OutputSecurityParameters
         int toWrite = fragmentLength - maclen;
         for (int i = offset; i < offset + length && consumed < toWrite; i++)
           {
-            ByteBuffer fragment = fragments[i];
+            ByteBuffer fragment = fragments[i].slice();
             int l = Math.min(fragment.remaining(), toWrite - consumed);
-            fragment.limit(fragment.position() + l);
+            fragment.limit(l);
             outfragment.put(fragment);
+            fragments[i].position(fragments[i].position() + l);
             consumed += l;
           }
         if (macValue != null)
@@ -152,13 +152,14 @@ public class Record
    * @throws java.nio.ReadOnlyBufferException If the underlying buffer
    * is not writeable.
    * @throws IllegalArgumentException If the length is not between 0
-   * and 16384, inclusive.
+   * and 18432, inclusive. A protected fragment may exceed the 16384
+   * byte plaintext limit by up to 2048 bytes of MAC and padding.
    */
   public void setLength (final int length)
   {
-    if (length < 0 || length > 16384)
+    if (length < 0 || length > 16384 + 2048)
       throw new IllegalArgumentException ("length " + length + " out of range; "
-                                          + "must be between 0 and 16384");
+                                          + "must be between 0 and 18432");
     buffer.putShort (3, (short) length);
   }
 
@@ -81,6 +81,7 @@ public final class SSLContextImpl extends SSLContextSpi
   X509TrustManager trustManager;
   SRPTrustManager srpTrustManager;
   SecureRandom random;
+  private SessionTicketKey ticketKey;
 
   public SSLContextImpl()
   {
@@ -211,6 +212,19 @@ public final class SSLContextImpl extends SSLContextSpi
       }
   }
 
+  /**
+   * Returns the key that servers created from this context seal session
+   * tickets with, creating it on first use.
+   *
+   * @return The session ticket key.
+   */
+  synchronized SessionTicketKey sessionTicketKey()
+  {
+    if (ticketKey == null)
+      ticketKey = new SessionTicketKey(random);
+    return ticketKey;
+  }
+
   /**
    * Create and return a default key manager. The default is the JessieX509
    * algorithm, loaded from either the jssecerts file, or the cacerts file.
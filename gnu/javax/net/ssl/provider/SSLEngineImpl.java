@@ -63,6 +63,17 @@ import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLEngineResult.Status;
 
+/**
+ * The SSL engine.
+ * <p>
+ * The inbound and outbound halves of the engine are locked separately, so
+ * that {@link #wrap} and {@link #unwrap} may run concurrently, as
+ * {@link SSLEngine} allows. Application data records only take the lock of
+ * their own direction and only touch that direction's security parameters.
+ * Every other record, and a wrap with an alert, a change cipher spec or
+ * handshake data pending, also locks the engine itself, always after the
+ * direction lock, since those share the handshake state.
+ */
 public final class SSLEngineImpl extends SSLEngine
 {
   final SSLContextImpl contextImpl;
@@ -71,16 +82,20 @@ public final class SSLEngineImpl extends SSLEngine
   private SessionImpl session;
   private InputSecurityParameters insec;
   private OutputSecurityParameters outsec;
-  private boolean inClosed;
-  private boolean outClosed;
+  private volatile boolean inClosed;
+  private volatile boolean outClosed;
   private boolean createSessions;
   private boolean needClientAuth;
   private boolean wantClientAuth;
   private boolean initialHandshakeDone;
-  private AbstractHandshake handshake;
-  private Alert lastAlert;
-  private SSLEngineResult.HandshakeStatus handshakeStatus;
-  private boolean changeCipherSpec;
+  private volatile AbstractHandshake handshake;
+  private volatile Alert lastAlert;
+  private volatile SSLEngineResult.HandshakeStatus handshakeStatus;
+  private volatile boolean changeCipherSpec;
+
+  /** The locks of the inbound and the outbound halves. */
+  private final Object inboundLock = new Object();
+  private final Object outboundLock = new Object();
 
   private String[] enabledSuites;
   private String[] enabledProtocols;
@@ -113,6 +128,7 @@ public final class SSLEngineImpl extends SSLEngine
     contextImpl.random.nextBytes(sid);
     session.setId(new Session.ID(sid));
     session.setRandom(contextImpl.random);
+    session.setPeer(host, port);
 
     if (Debug.DEBUG)
       logger.logv(Component.SSL_RECORD_LAYER, "generated session ID {0} with random {1}",
@@ -197,7 +213,7 @@ public final class SSLEngineImpl extends SSLEngine
   }*/
 
   @Override
-  public void beginHandshake () throws SSLException
+  public synchronized void beginHandshake () throws SSLException
   {
     if (Debug.DEBUG)
       logger.log(Component.SSL_HANDSHAKE, "{0} handshake begins", mode);
@@ -378,6 +394,24 @@ public final class SSLEngineImpl extends SSLEngine
                                            final ByteBuffer[] sinks,
                                            final int offset, final int length)
     throws SSLException
+  {
+    synchronized (inboundLock)
+      {
+        if (source.remaining() >= 5
+            && ((source.get(source.position()) & 0xFF)
+                == ContentType.APPLICATION_DATA.getValue()))
+          return unwrapRecord(source, sinks, offset, length);
+        synchronized (this)
+          {
+            return unwrapRecord(source, sinks, offset, length);
+          }
+      }
+  }
+
+  private SSLEngineResult unwrapRecord (final ByteBuffer source,
+                                        final ByteBuffer[] sinks,
+                                        final int offset, final int length)
+    throws SSLException
   {
     if (mode == null)
       throw new IllegalStateException ("setUseClientMode was never called");
@@ -672,6 +706,28 @@ public final class SSLEngineImpl extends SSLEngine
   public @Override SSLEngineResult wrap (ByteBuffer[] sources, int offset, int length,
                                          ByteBuffer sink)
     throws SSLException
+  {
+    synchronized (outboundLock)
+      {
+        if (lastAlert == null && !changeCipherSpec && handshake == null)
+          return wrapRecord(sources, offset, length, sink, true);
+        synchronized (this)
+          {
+            return wrapRecord(sources, offset, length, sink, false);
+          }
+      }
+  }
+
+  /**
+   * Wraps the next outbound record.
+   *
+   * @param applicationOnly Whether only application data may be wrapped,
+   * because the engine itself is not locked.
+   */
+  private SSLEngineResult wrapRecord (ByteBuffer[] sources, int offset,
+                                      int length, ByteBuffer sink,
+                                      boolean applicationOnly)
+    throws SSLException
   {
     if (mode == null)
       throw new IllegalStateException ("setUseClientMode was never called");
@@ -685,23 +741,25 @@ public final class SSLEngineImpl extends SSLEngine
     if (Debug.DEBUG)
       logger.logv(Component.SSL_RECORD_LAYER, "wrap {0} {1} {2} {3} / {4}",
                   sources, offset, length, sink, getHandshakeStatus());
-    if (lastAlert != null)
+    Alert alert = applicationOnly ? null : lastAlert;
+    if (alert != null)
       {
         type = ContentType.ALERT;
         sysMessage = ByteBuffer.allocate(2);
-        Alert alert = new Alert(sysMessage);
-        alert.setDescription(lastAlert.description());
-        alert.setLevel(lastAlert.level());
-        if (lastAlert.description() == Alert.Description.CLOSE_NOTIFY)
+        Alert message = new Alert(sysMessage);
+        message.setDescription(alert.description());
+        message.setLevel(alert.level());
+        if (alert.description() == Alert.Description.CLOSE_NOTIFY)
           outClosed = true;
       }
-    else if (changeCipherSpec)
+    else if (!applicationOnly && changeCipherSpec)
       {
         type = ContentType.CHANGE_CIPHER_SPEC;
         sysMessage = ByteBuffer.allocate(1);
         sysMessage.put(0, (byte) 1);
       }
-    else if (getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP)
+    else if (!applicationOnly
+             && getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP)
       {
         // If we are not encrypting, optimize the handshake to fill
         // the buffer directly.
@@ -799,30 +857,41 @@ public final class SSLEngineImpl extends SSLEngine
       {
         // We don't expect this to happen, except for bugs; signal an
         // internal error.
-        lastAlert = new Alert(Alert.Level.FATAL, Alert.Description.INTERNAL_ERROR);
+        internalError();
         return new SSLEngineResult(SSLEngineResult.Status.OK, handshakeStatus, 0, 0);
       }
     catch (IllegalBlockSizeException ibse)
       {
         // We don't expect this to happen, except for bugs; signal an
         // internal error.
-        lastAlert = new Alert(Alert.Level.FATAL, Alert.Description.INTERNAL_ERROR);
+        internalError();
         return new SSLEngineResult(SSLEngineResult.Status.OK, handshakeStatus, 0, 0);
       }
     catch (DataFormatException dfe)
       {
         // We don't expect this to happen; signal an internal error.
-        lastAlert = new Alert(Alert.Level.FATAL, Alert.Description.INTERNAL_ERROR);
+        internalError();
         return new SSLEngineResult(SSLEngineResult.Status.OK, handshakeStatus, 0, 0);
       }
 
-    if (lastAlert != null && lastAlert.level() == Alert.Level.FATAL)
+    // The engine may not be locked yet, if only application data was
+    // wrapped; the alert is shared with the inbound side.
+    synchronized (this)
       {
-        AlertException ae = new AlertException(lastAlert);
-        lastAlert = null;
-        throw ae;
+        alert = lastAlert;
+        if (alert != null && alert.level() == Alert.Level.FATAL)
+          {
+            AlertException ae = new AlertException(alert);
+            lastAlert = null;
+            throw ae;
+          }
       }
 
+    if (applicationOnly)
+      return new SSLEngineResult(outClosed ? SSLEngineResult.Status.CLOSED
+                                           : SSLEngineResult.Status.OK,
+                                 handshakeStatus, consumed, produced);
+
     if (changeCipherSpec)
       {
         outsec = handshake.getOutputParams();
@@ -840,6 +909,14 @@ public final class SSLEngineImpl extends SSLEngine
     return result;
   }
 
+  /**
+   * Records an internal error, to be sent as a fatal alert.
+   */
+  private synchronized void internalError()
+  {
+    lastAlert = new Alert(Alert.Level.FATAL, Alert.Description.INTERNAL_ERROR);
+  }
+
   // Package-private methods.
 
   SessionImpl session ()
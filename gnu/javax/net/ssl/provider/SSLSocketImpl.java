@@ -54,6 +54,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.ssl.HandshakeCompletedEvent;
 import javax.net.ssl.HandshakeCompletedListener;
@@ -65,17 +66,37 @@ import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLEngineResult.Status;
 
 /**
+ * An SSL socket over another socket, driving an {@link SSLEngineImpl}.
+ * <p>
+ * Reading and writing lock only their own stream, and the engine unwraps
+ * and wraps records concurrently, so a reader blocked on the network does
+ * not hold up a writer. Each stream allocates its record buffers once and
+ * reuses them for every record.
+ * <p>
+ * The output stream gathers the bytes of a write into records of up to the
+ * maximum fragment length. Like any socket stream it does not hold data
+ * back: every write is sent before it returns, unless another thread is
+ * waiting to write, in which case that thread's bytes are coalesced with
+ * it and the two are sent together.
+ *
  * @author Casey Marshall (csm@gnu.org)
  */
 public class SSLSocketImpl extends SSLSocket
 {
   private class SocketOutputStream extends OutputStream
   {
-    private final ByteBuffer buffer;
+    /** Serializes writers. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Application data not yet wrapped into a record. */
+    private ByteBuffer pending;
+    /** The outgoing record. */
+    private ByteBuffer buffer;
+    private final ByteBuffer[] sources = new ByteBuffer[2];
     private final OutputStream out;
 
     SocketOutputStream() throws IOException
     {
+      pending = ByteBuffer.allocate(getSession().getApplicationBufferSize());
       buffer = ByteBuffer.wrap(new byte[getSession().getPacketBufferSize()]);
       if (underlyingSocket != null)
         out = underlyingSocket.getOutputStream();
@@ -85,49 +106,179 @@ public class SSLSocketImpl extends SSLSocket
 
     @Override public void write(byte[] buf, int off, int len) throws IOException
     {
-      if (!initialHandshakeDone
-          || engine.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING)
+      if (off < 0 || len < 0 || off > buf.length - len)
+        throw new IndexOutOfBoundsException();
+      checkHandshake();
+
+      lock.lock();
+      try
         {
-          doHandshake();
-          if (handshakeException != null)
-            throw handshakeException;
+          resize();
+          if (len < pending.remaining())
+            pending.put(buf, off, len);
+          else
+            {
+              // Gather the pending bytes and the new ones into full records;
+              // what is left over is less than a record.
+              ByteBuffer in = ByteBuffer.wrap(buf, off, len);
+              pending.flip();
+              sources[0] = pending;
+              sources[1] = in;
+              try
+                {
+                  while (pending.hasRemaining()
+                         || in.remaining() >= pending.capacity())
+                    if (!wrap(sources))
+                      return;
+                }
+              finally
+                {
+                  sources[1] = null;
+                  pending.clear();
+                }
+              pending.put(in);
+            }
+          sendUnlessQueued();
+        }
+      finally
+        {
+          lock.unlock();
         }
+    }
 
-      int k = 0;
-      while (k < len)
+    @Override public void write(int b) throws IOException
+    {
+      checkHandshake();
+
+      lock.lock();
+      try
         {
-          synchronized (engine)
+          resize();
+          if (pending.remaining() > 1)
             {
-              int l = Math.min(len-k, getSession().getApplicationBufferSize());
-              ByteBuffer in = ByteBuffer.wrap(buf, off+k, l);
-              SSLEngineResult result = engine.wrap(in, buffer);
-              if (result.getStatus() == Status.CLOSED)
-                return;
-              if (result.getStatus() != Status.OK)
-                throw new SSLException("unexpected SSL state " + result.getStatus());
-              buffer.flip();
-              out.write(buffer.array(), 0, buffer.limit());
-              k += result.bytesConsumed();
-              buffer.clear();
+              pending.put((byte) b);
+              sendUnlessQueued();
+              return;
             }
         }
+      finally
+        {
+          lock.unlock();
+        }
+      write(new byte[] { (byte) b }, 0, 1);
     }
 
-    @Override public void write(int b) throws IOException
+    @Override public void flush() throws IOException
     {
-      write(new byte[] { (byte) b });
+      lock.lock();
+      try
+        {
+          flushPending();
+        }
+      finally
+        {
+          lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the pending data, unless another thread is writing.  Used
+     * when closing: a writer blocked on the network must not hold up
+     * the close that would unblock it, and it sends what is pending
+     * itself.
+     */
+    void tryFlush() throws IOException
+    {
+      if (lock.tryLock())
+        {
+          try
+            {
+              flushPending();
+            }
+          finally
+            {
+              lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Sends the pending data, unless another thread waits to write or
+     * flush; that thread will send it along with its own. Must be called
+     * with the lock held.
+     */
+    private void sendUnlessQueued() throws IOException
+    {
+      if (!lock.hasQueuedThreads())
+        flushPending();
     }
 
     @Override public void close() throws IOException
     {
       SSLSocketImpl.this.close();
     }
+
+    private void flushPending() throws IOException
+    {
+      if (pending.position() > 0)
+        {
+          pending.flip();
+          sources[0] = pending;
+          try
+            {
+              while (pending.hasRemaining())
+                if (!wrap(sources))
+                  break;
+            }
+          finally
+            {
+              pending.clear();
+            }
+        }
+      out.flush();
+    }
+
+    /**
+     * Wraps one record from the sources and writes it out. Returns false
+     * if the engine is closed.
+     */
+    private boolean wrap(ByteBuffer[] srcs) throws IOException
+    {
+      int n = srcs[1] == null ? 1 : 2;
+      buffer.clear();
+      SSLEngineResult result = engine.wrap(srcs, 0, n, buffer);
+      if (result.getStatus() == Status.CLOSED)
+        return false;
+      if (result.getStatus() != Status.OK)
+        throw new SSLException("unexpected SSL state " + result.getStatus());
+      out.write(buffer.array(), 0, buffer.position());
+      return true;
+    }
+
+    /** Follows a change of the negotiated fragment length. */
+    private void resize()
+    {
+      int size = getSession().getApplicationBufferSize();
+      if (pending.capacity() != size && pending.position() <= size)
+        {
+          ByteBuffer b = ByteBuffer.allocate(size);
+          pending.flip();
+          b.put(pending);
+          pending = b;
+        }
+      if (buffer.capacity() != getSession().getPacketBufferSize())
+        buffer = ByteBuffer.wrap(new byte[getSession().getPacketBufferSize()]);
+    }
   }
 
   private class SocketInputStream extends InputStream
   {
-    private final ByteBuffer inBuffer;
-    private final ByteBuffer appBuffer;
+    /** The incoming record. */
+    private ByteBuffer inBuffer;
+    /** Decrypted application data not yet read. */
+    private ByteBuffer appBuffer;
+    private final ByteBuffer[] sinks = new ByteBuffer[1];
+    private final byte[] single = new byte[1];
     private final DataInputStream in;
 
     SocketInputStream() throws IOException
@@ -142,49 +293,65 @@ public class SSLSocketImpl extends SSLSocket
         in = new DataInputStream(SSLSocketImpl.super.getInputStream());
     }
 
-    @Override public int read(byte[] buf, int off, int len) throws IOException
+    @Override public synchronized int read(byte[] buf, int off, int len)
+      throws IOException
     {
-      if (!initialHandshakeDone ||
-          engine.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING)
-        {
-          doHandshake();
-          if (handshakeException != null)
-            throw handshakeException;
-        }
+      if (off < 0 || len < 0 || off > buf.length - len)
+        throw new IndexOutOfBoundsException();
+      checkHandshake();
+      if (len == 0)
+        return 0;
 
-      if (!appBuffer.hasRemaining())
+      while (!appBuffer.hasRemaining())
         {
           int x = in.read();
           if (x == -1)
             return -1;
-          inBuffer.clear();
-          inBuffer.put((byte) x);
-          inBuffer.putInt(in.readInt());
-          int reclen = inBuffer.getShort(3) & 0xFFFF;
-          in.readFully(inBuffer.array(), 5, reclen);
-          inBuffer.position(0).limit(reclen + 5);
-          synchronized (engine)
-            {
-              appBuffer.clear();
-              SSLEngineResult result = engine.unwrap(inBuffer, appBuffer);
-              Status status = result.getStatus();
-              if (status == Status.CLOSED && result.bytesProduced() == 0)
-                return -1;
-            }
-          inBuffer.compact();
+          readRecord(x);
+          appBuffer.clear();
+          sinks[0] = appBuffer;
+          SSLEngineResult result = engine.unwrap(inBuffer, sinks, 0, 1);
           appBuffer.flip();
+          if (result.getStatus() == Status.CLOSED
+              && result.bytesProduced() == 0)
+            return -1;
         }
       int l = Math.min(len, appBuffer.remaining());
       appBuffer.get(buf, off, l);
       return l;
     }
 
-    @Override public int read() throws IOException
+    @Override public synchronized int read() throws IOException
     {
-      byte[] b = new byte[1];
-      if (read(b) == -1)
+      if (read(single, 0, 1) == -1)
         return -1;
-      return b[0] & 0xFF;
+      return single[0] & 0xFF;
+    }
+
+    @Override public synchronized int available()
+    {
+      return appBuffer.remaining();
+    }
+
+    /** Reads the rest of the record that begins with the given byte. */
+    private void readRecord(int first) throws IOException
+    {
+      int packetSize = getSession().getPacketBufferSize();
+      if (inBuffer.capacity() != packetSize)
+        inBuffer = ByteBuffer.wrap(new byte[packetSize]);
+      if (appBuffer.capacity() != getSession().getApplicationBufferSize())
+        {
+          appBuffer = ByteBuffer.allocate(getSession().getApplicationBufferSize());
+          appBuffer.flip();
+        }
+      inBuffer.clear();
+      inBuffer.put((byte) first);
+      inBuffer.putInt(in.readInt());
+      int reclen = inBuffer.getShort(3) & 0xFFFF;
+      if (reclen > inBuffer.capacity() - 5)
+        throw new SSLException("record too long: " + reclen);
+      in.readFully(inBuffer.array(), 5, reclen);
+      inBuffer.position(0).limit(reclen + 5);
     }
   }
 
@@ -195,8 +362,10 @@ public class SSLSocketImpl extends SSLSocket
   private Socket underlyingSocket;
   private boolean isHandshaking;
   private IOException handshakeException;
-  private boolean initialHandshakeDone = false;
+  private volatile boolean initialHandshakeDone = false;
   private final boolean autoClose;
+  private SocketInputStream inputStream;
+  private volatile SocketOutputStream outputStream;
 
   public SSLSocketImpl(SSLContextImpl contextImpl, String host, int port)
   {
@@ -379,6 +548,18 @@ public class SSLSocketImpl extends SSLSocket
     t.start();
   }
 
+  /** Completes the handshake first, if one is needed. */
+  private void checkHandshake() throws IOException
+  {
+    if (!initialHandshakeDone
+        || engine.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING)
+      {
+        doHandshake();
+        if (handshakeException != null)
+          throw handshakeException;
+      }
+  }
+
   void doHandshake() throws IOException
   {
     synchronized (engine)
@@ -590,14 +771,18 @@ public class SSLSocketImpl extends SSLSocket
     throw new UnsupportedOperationException("use javax.net.ssl.SSLEngine for NIO");
   }
 
-  @Override public InputStream getInputStream() throws IOException
+  @Override public synchronized InputStream getInputStream() throws IOException
   {
-    return new SocketInputStream();
+    if (inputStream == null)
+      inputStream = new SocketInputStream();
+    return inputStream;
   }
 
-  @Override public OutputStream getOutputStream() throws IOException
+  @Override public synchronized OutputStream getOutputStream() throws IOException
   {
-    return new SocketOutputStream();
+    if (outputStream == null)
+      outputStream = new SocketOutputStream();
+    return outputStream;
   }
 
   @Override public void setTcpNoDelay(boolean on) throws SocketException
@@ -698,9 +883,18 @@ public class SSLSocketImpl extends SSLSocket
 
   @Override public void close() throws IOException
   {
-    // XXX closure alerts.
-    if (autoClose)
-      underlyingSocket.close();
+    SocketOutputStream out = outputStream;
+    try
+      {
+        if (out != null && !underlyingSocket.isClosed())
+          out.tryFlush();
+      }
+    finally
+      {
+        // XXX closure alerts.
+        if (autoClose)
+          underlyingSocket.close();
+      }
   }
 
   @Override public void shutdownInput() throws IOException
@@ -710,7 +904,16 @@ public class SSLSocketImpl extends SSLSocket
 
   @Override public void shutdownOutput() throws IOException
   {
-    underlyingSocket.shutdownOutput();
+    SocketOutputStream out = outputStream;
+    try
+      {
+        if (out != null && !underlyingSocket.isOutputShutdown())
+          out.tryFlush();
+      }
+    finally
+      {
+        underlyingSocket.shutdownOutput();
+      }
   }
 
   @Override public boolean isConnected()
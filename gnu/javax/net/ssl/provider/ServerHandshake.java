@@ -67,6 +67,7 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Level;
@@ -102,6 +103,7 @@ class ServerHandshake extends AbstractHandshake
     WRITE_SERVER_KEY_EXCHANGE (true, false),
     WRITE_CERTIFICATE_REQUEST (true, false),
     WRITE_SERVER_HELLO_DONE (true, false),
+    WRITE_NEW_SESSION_TICKET (true, false),
     WRITE_FINISHED (true, false),
     READ_CLIENT_HELLO (false, true),
     READ_CERTIFICATE (false, true),
@@ -136,6 +138,7 @@ class ServerHandshake extends AbstractHandshake
   private ByteBuffer outBuffer;
   private boolean clientHadExtensions = false;
   private boolean continuedSession = false;
+  private boolean sendTicket = false;
   private ServerNameList requestedNames = null;
   private String keyAlias = null;
   private X509Certificate clientCert = null;
@@ -346,6 +349,7 @@ class ServerHandshake extends AbstractHandshake
                           compression);
             clientRandom = hello.random().copy();
             byte[] sessionId = hello.sessionId();
+            byte[] ticket = null;
             if (hello.hasExtensions())
               {
                 ExtensionList exts = hello.extensions();
@@ -376,6 +380,14 @@ class ServerHandshake extends AbstractHandshake
                       engine.session().putValue("gnu.javax.net.ssl.RequestedServerNames", names);
                       break;
 
+                    case SESSION_TICKET:
+                      if (sessionTickets())
+                        {
+                          sendTicket = true;
+                          ticket = ((SessionTicket) e.value()).ticket();
+                        }
+                      break;
+
                     default:
                       logger.log(Level.INFO, "skipping unsupported extension {0}", e);
                     }
@@ -383,12 +395,17 @@ class ServerHandshake extends AbstractHandshake
               }
             AbstractSessionContext sessions = (AbstractSessionContext)
               engine.contextImpl.engineGetServerSessionContext();
-            SSLSession s = sessions.getSession(sessionId);
+            SSLSession s = null;
+            if (ticket != null && ticket.length > 0 && sessionId.length > 0)
+              s = resumeTicket(ticket, sessionId, hello);
+            if (s == null)
+              s = sessions.getSession(sessionId);
             if (Debug.DEBUG)
               logger.logv(Component.SSL_HANDSHAKE, "looked up saved session {0}", s);
             if (s != null && s.isValid() && (s instanceof SessionImpl))
               {
                 engine.setSession((SessionImpl) s);
+                engine.session().access();
                 continuedSession = true;
               }
             else
@@ -402,7 +419,10 @@ class ServerHandshake extends AbstractHandshake
                     engine.session().random().nextBytes(newId);
                     engine.session().setId(new Session.ID(newId));
                   }
-                sessions.put(engine.session());
+                // If the client takes a ticket, it holds the session state
+                // for us.
+                if (!sendTicket)
+                  sessions.put(engine.session());
               }
             state = WRITE_SERVER_HELLO;
           }
@@ -681,8 +701,12 @@ class ServerHandshake extends AbstractHandshake
                   }
               }
 
+            engine.session().setValid(true);
+            engine.session().access();
             if (continuedSession)
               state = DONE;
+            else if (sendTicket)
+              state = WRITE_NEW_SESSION_TICKET;
             else
               {
                 engine.changeCipherSpec();
@@ -828,7 +852,17 @@ output_loop:
               hello.setSessionId(engine.session().getId());
               hello.setCipherSuite(engine.session().suite);
               hello.setCompressionMethod(compression);
-              if (clientHadExtensions)
+              if (sendTicket)
+                {
+                  // Tell the client that we will send it a new ticket.
+                  Extension ext
+                    = new Extension(Extension.Type.SESSION_TICKET,
+                                    new SessionTicket(new byte[0]));
+                  ExtensionList exts
+                    = new ExtensionList(Collections.singletonList(ext));
+                  hello.setExtensions(exts.buffer());
+                }
+              else if (clientHadExtensions)
                 {
                   // XXX figure this out.
                 }
@@ -854,8 +888,16 @@ output_loop:
                   byte[][] keys = generateKeys(clientRandom, serverRandom,
                                                engine.session());
                   setupSecurityParameters(keys, false, engine, compression);
-                  engine.changeCipherSpec();
-                  state = WRITE_FINISHED;
+                  if (sendTicket)
+                    state = WRITE_NEW_SESSION_TICKET;
+                  else
+                    {
+                      // Our finished message must follow the change cipher
+                      // spec message, in a record of its own.
+                      engine.changeCipherSpec();
+                      state = WRITE_FINISHED;
+                      break output_loop;
+                    }
                 }
               else if (kex == DHE_DSS || kex == DHE_RSA || kex == RSA
                        || kex == RSA_PSK)
@@ -1098,6 +1140,38 @@ output_loop:
             }
             break output_loop; // XXX temporary
 
+            // New Session Ticket.
+            //
+            // This message is sent just before the change cipher spec
+            // message, if the client asked for a session ticket. It carries
+            // the session state, sealed with a key only we know, so the
+            // client can resume the session later without our keeping the
+            // session in our cache.
+            case WRITE_NEW_SESSION_TICKET:
+            {
+              AbstractSessionContext sessions = (AbstractSessionContext)
+                engine.contextImpl.engineGetServerSessionContext();
+              byte[] ticket = engine.contextImpl.sessionTicketKey()
+                .seal(engine.session(), engine.session().random());
+              NewSessionTicket nst
+                = new NewSessionTicket(sessions.getSessionTimeout(), ticket);
+
+              if (Debug.DEBUG)
+                logger.log(Component.SSL_HANDSHAKE, "{0}", nst);
+
+              fragment.putInt((NEW_SESSION_TICKET.getValue() << 24)
+                              | (nst.length() & 0xFFFFFF));
+
+              outBuffer = nst.buffer();
+              int l = Math.min(fragment.remaining(), outBuffer.remaining());
+              fragment.put((ByteBuffer) outBuffer.duplicate().limit(outBuffer.position() + l));
+              outBuffer.position(outBuffer.position() + l);
+
+              engine.changeCipherSpec();
+              state = WRITE_FINISHED;
+            }
+            break output_loop;
+
             // Finished.
             //
             // This is always sent by the server to verify the keys that the
@@ -1167,6 +1241,53 @@ output_loop:
     return HandshakeStatus.FINISHED;
   }
 
+  /**
+   * Recover the session sealed into a ticket the client presented, if we
+   * issued the ticket, it has not expired, and the session's parameters
+   * are still acceptable.
+   *
+   * @return The resumed session, or null.
+   */
+  private SessionImpl resumeTicket(byte[] ticket, byte[] sessionId,
+                                   ClientHello hello)
+  {
+    AbstractSessionContext sessions = (AbstractSessionContext)
+      engine.contextImpl.engineGetServerSessionContext();
+    long lifetime = sessions.getSessionTimeout() * 1000L;
+    if (lifetime == 0)
+      lifetime = Long.MAX_VALUE;
+    SessionImpl s = engine.contextImpl.sessionTicketKey().unseal(ticket,
+                                                                 lifetime);
+    if (s == null || !s.version.equals(engine.session().version))
+      return null;
+    boolean offered = false;
+    for (CipherSuite suite : hello.cipherSuites())
+      offered |= s.suite.equals(suite.resolve());
+    boolean enabled = false;
+    for (String name : engine.getEnabledCipherSuites())
+      enabled |= s.suite.equals(CipherSuite.forName(name));
+    if (!offered || !enabled)
+      return null;
+
+    s.setId(new Session.ID(sessionId));
+    s.setRandom(engine.session().random());
+    s.setPeer(engine.getPeerHost(), engine.getPeerPort());
+    if (s.keyAlias != null)
+      {
+        X509ExtendedKeyManager km = engine.contextImpl.keyManager;
+        s.setLocalCertificates(km.getCertificateChain(s.keyAlias));
+      }
+    s.setValid(true);
+    return s;
+  }
+
+  private boolean sessionTickets()
+  {
+    GetSecurityPropertyAction action
+      = new GetSecurityPropertyAction("jessie.server.sessionTickets");
+    return Boolean.valueOf(AccessController.doPrivileged(action));
+  }
+
   @Override void checkKeyExchange() throws SSLException
   {
     if (continuedSession) // No key exchange needed.
@@ -1272,6 +1393,7 @@ output_loop:
         throw new SSLException("no certificates available");
       X509Certificate[] chain = km.getCertificateChain(keyAlias);
       engine.session().setLocalCertificates(chain);
+      engine.session().keyAlias = keyAlias;
       localCert = chain[0];
       serverKey = km.getPrivateKey(keyAlias);
       if (kexalg == DH_DSS || kexalg == DH_RSA)
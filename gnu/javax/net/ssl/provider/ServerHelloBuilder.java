@@ -114,17 +114,19 @@ public class ServerHelloBuilder extends ServerHello implements Builder
 
   public void setExtensions(ByteBuffer extensions)
   {
+    int elen = extensions.getShort(extensions.position()) & 0xFFFF;
+    setExtensionsLength(elen);
     extensions = (ByteBuffer)
-      extensions.duplicate().limit(extensions.position() + extensionsLength());
+      extensions.duplicate().limit(extensions.position() + elen + 2);
     ((ByteBuffer) buffer.duplicate().position(SESSID_OFFSET2
                                               + (buffer.get(SESSID_OFFSET) & 0xFF)
-                                              )).put(extensions);
+                                              + 3)).put(extensions);
   }
 
   public void ensureCapacity(int newCapacity)
   {
     ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
-    newBuffer.put(buffer);
+    newBuffer.put((ByteBuffer) buffer.duplicate().position(0));
     newBuffer.position(0);
     buffer = newBuffer;
   }
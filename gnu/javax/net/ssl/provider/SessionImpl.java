@@ -60,6 +60,8 @@ public class SessionImpl extends Session
   byte[] privateDataSalt;
   SealedObject sealedPrivateData;
   MaxFragmentLength maxLength;
+  String keyAlias;
+  byte[] ticket;
 
   transient PrivateData privateData;
 
@@ -184,6 +186,27 @@ public class SessionImpl extends Session
     this.peerVerified = peerVerified;
   }
 
+  boolean isPeerVerified()
+  {
+    return peerVerified;
+  }
+
+  java.security.cert.Certificate[] peerCertificates()
+  {
+    return peerCerts;
+  }
+
+  void setPeer(String host, int port)
+  {
+    this.peerHost = host;
+    this.peerPort = port;
+  }
+
+  void setValid(boolean valid)
+  {
+    this.valid = valid;
+  }
+
   static class PrivateData implements Serializable
   {
     static final long serialVersionUID = -8040597659545984581L;
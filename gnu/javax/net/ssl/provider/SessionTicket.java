@@ -0,0 +1,94 @@
+/* SessionTicket.java -- the session ticket hello extension
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+
+package gnu.javax.net.ssl.provider;
+
+import gnu.javax.net.ssl.provider.Extension.Value;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The value type for the {@link Extension.Type#SESSION_TICKET} extension
+ * (RFC 5077). The whole extension value is the opaque ticket; the client
+ * sends an empty value to ask for a new ticket, and the server sends an
+ * empty value to say that it will issue one.
+ */
+public class SessionTicket extends Value
+{
+  private final ByteBuffer buffer;
+
+  public SessionTicket(final ByteBuffer buffer)
+  {
+    this.buffer = buffer.duplicate();
+  }
+
+  public SessionTicket(final byte[] ticket)
+  {
+    this(ByteBuffer.wrap(ticket));
+  }
+
+  public int length()
+  {
+    return buffer.limit();
+  }
+
+  public ByteBuffer buffer()
+  {
+    return (ByteBuffer) buffer.duplicate().rewind().limit(length());
+  }
+
+  public byte[] ticket()
+  {
+    byte[] ticket = new byte[length()];
+    ((ByteBuffer) buffer.duplicate().position(0)).get(ticket);
+    return ticket;
+  }
+
+  public String toString()
+  {
+    return toString(null);
+  }
+
+  public String toString(String prefix)
+  {
+    String s = "SessionTicket { " + length() + " bytes };";
+    if (prefix != null)
+      s = prefix + s;
+    return s;
+  }
+}
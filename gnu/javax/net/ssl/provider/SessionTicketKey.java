@@ -0,0 +1,237 @@
+/* SessionTicketKey.java -- protects session state sealed into tickets
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+
+package gnu.javax.net.ssl.provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.net.ssl.SSLException;
+
+/**
+ * The secret a server uses to protect the session state it hands to
+ * clients in RFC 5077 session tickets, so that it can resume those
+ * sessions without keeping them in its session cache.
+ *
+ * <p>The state is encrypted and authenticated with AES-GCM, with the key
+ * name as additional authenticated data, in the format RFC 5077
+ * recommends (with GCM's tag in place of the separate MAC):
+ *
+ * <pre>
+struct {
+  opaque key_name[16];
+  opaque iv[12];
+  opaque encrypted_state&lt;0..2^16-1&gt;;
+} ticket;
+
+struct {
+  ProtocolVersion protocol_version;
+  CipherSuite cipher_suite;
+  uint64 issue_time;
+  opaque master_secret&lt;0..2^8-1&gt;;
+  opaque key_alias&lt;0..2^16-1&gt;;
+  Boolean peer_verified;
+  Boolean truncated_mac;
+  opaque peer_certificates&lt;0..2^8-1&gt;&lt;0..2^16-1&gt;;
+} state;</pre>
+ */
+final class SessionTicketKey
+{
+  private static final int NAME_LENGTH = 16;
+  private static final int IV_LENGTH = 12;
+  private static final int TAG_LENGTH = 16;
+
+  private final byte[] name;
+  private final SecretKeySpec key;
+
+  SessionTicketKey(final SecureRandom random)
+  {
+    name = new byte[NAME_LENGTH];
+    random.nextBytes(name);
+    byte[] k = new byte[16];
+    random.nextBytes(k);
+    key = new SecretKeySpec(k, "AES");
+  }
+
+  /**
+   * Seal the given session into a new ticket.
+   *
+   * @param session The session to seal.
+   * @param random The source of the ticket's IV.
+   * @return The ticket.
+   * @throws SSLException If the session cannot be encoded or encrypted.
+   */
+  byte[] seal(final SessionImpl session, final SecureRandom random)
+    throws SSLException
+  {
+    try
+      {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeShort(session.version.rawValue());
+        out.write(session.suite.id());
+        out.writeLong(System.currentTimeMillis());
+        byte[] secret = session.privateData.masterSecret;
+        out.writeByte(secret.length);
+        out.write(secret);
+        out.writeUTF(session.keyAlias != null ? session.keyAlias : "");
+        out.writeBoolean(session.isPeerVerified());
+        out.writeBoolean(session.isTruncatedMac());
+        Certificate[] chain = session.peerCertificates();
+        int n = chain != null ? chain.length : 0;
+        out.writeByte(n);
+        for (int i = 0; i < n; i++)
+          {
+            byte[] encoded = chain[i].getEncoded();
+            out.writeShort(encoded.length);
+            out.write(encoded);
+          }
+        byte[] state = bout.toByteArray();
+
+        byte[] ticket = new byte[NAME_LENGTH + IV_LENGTH + state.length
+                                 + TAG_LENGTH];
+        System.arraycopy(name, 0, ticket, 0, NAME_LENGTH);
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        System.arraycopy(iv, 0, ticket, NAME_LENGTH, IV_LENGTH);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key,
+                    new GCMParameterSpec(TAG_LENGTH * 8, iv));
+        cipher.updateAAD(name);
+        cipher.doFinal(state, 0, state.length, ticket, NAME_LENGTH + IV_LENGTH);
+        Arrays.fill(state, (byte) 0);
+        return ticket;
+      }
+    catch (IOException ioe)
+      {
+        throw new SSLException(ioe);
+      }
+    catch (GeneralSecurityException gse)
+      {
+        throw new SSLException(gse);
+      }
+  }
+
+  /**
+   * Recover the session sealed into a ticket. The returned session has
+   * no ID, random source or local certificates; the caller fills those
+   * in.
+   *
+   * @param ticket The ticket the client presented.
+   * @param lifetime How old, in milliseconds, a ticket may be.
+   * @return The session, or <code>null</code> if the ticket was not
+   *  sealed with this key, was tampered with, or has expired.
+   */
+  SessionImpl unseal(final byte[] ticket, final long lifetime)
+  {
+    if (ticket.length < NAME_LENGTH + IV_LENGTH + TAG_LENGTH)
+      return null;
+    for (int i = 0; i < NAME_LENGTH; i++)
+      if (ticket[i] != name[i])
+        return null;
+
+    byte[] state = null;
+    try
+      {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key,
+                    new GCMParameterSpec(TAG_LENGTH * 8, ticket,
+                                         NAME_LENGTH, IV_LENGTH));
+        cipher.updateAAD(name);
+        state = cipher.doFinal(ticket, NAME_LENGTH + IV_LENGTH,
+                               ticket.length - NAME_LENGTH - IV_LENGTH);
+
+        DataInputStream in
+          = new DataInputStream(new ByteArrayInputStream(state));
+        SessionImpl session = new SessionImpl();
+        session.version = ProtocolVersion.getInstance(in.readShort());
+        session.suite = CipherSuite.forValue(in.readShort()).resolve();
+        long issued = in.readLong();
+        if (System.currentTimeMillis() - issued > lifetime)
+          return null;
+        byte[] secret = new byte[in.readUnsignedByte()];
+        in.readFully(secret);
+        session.privateData.masterSecret = secret;
+        String alias = in.readUTF();
+        session.keyAlias = alias.length() > 0 ? alias : null;
+        session.setPeerVerified(in.readBoolean());
+        session.setTruncatedMac(in.readBoolean());
+        int n = in.readUnsignedByte();
+        if (n > 0)
+          {
+            CertificateFactory factory = CertificateFactory.getInstance("X.509");
+            Certificate[] chain = new Certificate[n];
+            for (int i = 0; i < n; i++)
+              {
+                byte[] encoded = new byte[in.readUnsignedShort()];
+                in.readFully(encoded);
+                chain[i]
+                  = factory.generateCertificate(new ByteArrayInputStream(encoded));
+              }
+            session.setPeerCertificates(chain);
+          }
+        return session;
+      }
+    catch (IOException ioe)
+      {
+        return null;
+      }
+    catch (GeneralSecurityException gse)
+      {
+        return null;
+      }
+    finally
+      {
+        if (state != null)
+          Arrays.fill(state, (byte) 0);
+      }
+  }
+}
@@ -42,13 +42,23 @@ import gnu.javax.net.ssl.AbstractSessionContext;
 import gnu.javax.net.ssl.Session;
 import gnu.javax.net.ssl.SessionStoreException;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A simple, non-persistent SessionContext.
  *
+ * <p>Sessions are kept in concurrent maps, by ID and by peer, so lookups
+ * neither block each other nor the handshakes that add sessions. A
+ * linked list, guarded by a lock, keeps the sessions in least recently
+ * used order. When the cache is full the least recently used session is
+ * dropped, and expired sessions are dropped from the old end of the list
+ * whenever a session is added, so no operation scans the whole cache. A
+ * lookup only moves its session to the recent end of the list if it can
+ * take the lock without waiting; under contention the order is only
+ * approximate, which is good enough for a cache.
+ *
  * @author csm
  */
 public final class SimpleSessionContext
@@ -59,20 +69,51 @@ public final class SimpleSessionContext
    */
   public static final int DEFAULT_TIMEOUT = 300;
 
-  private final HashMap<Session.ID, Session> store;
-  private int storeLimit;
+  private final ConcurrentHashMap<Session.ID, Entry> store;
+  private final ConcurrentHashMap<String, Entry> peers;
+  private final ReentrantLock lock;
+
+  /**
+   * The list sentinel; <code>head.next</code> is the least recently used
+   * entry, and <code>head.prev</code> the most recently used.
+   */
+  private final Entry head;
+  private int size;
+  private volatile int storeLimit;
 
   public SimpleSessionContext()
   {
     super(DEFAULT_TIMEOUT);
     storeLimit = 0;
-    store = new HashMap<Session.ID, Session>();
+    store = new ConcurrentHashMap<Session.ID, Entry>();
+    peers = new ConcurrentHashMap<String, Entry>();
+    lock = new ReentrantLock();
+    head = new Entry(null, null);
+    head.prev = head;
+    head.next = head;
   }
 
   @Override
   protected Session implGet(byte[] sessionId)
   {
-    return store.get(new Session.ID(sessionId));
+    Entry e = store.get(new Session.ID(sessionId));
+    if (e == null)
+      return null;
+    touch(e);
+    return e.session;
+  }
+
+  @Override
+  protected Session implGet(String host, int port)
+  {
+    Entry e = peers.get(peerKey(host, port));
+    if (e == null)
+      return null;
+    String host2 = e.session.getPeerHost();
+    if (host == null ? host2 != null : !host.equals(host2))
+      return null;
+    touch(e);
+    return e.session;
   }
 
   @Override
@@ -84,25 +125,42 @@ public final class SimpleSessionContext
   @Override
   public void put(Session session)
   {
-    if (storeLimit > 0 && store.size() >= storeLimit)
+    Entry e = new Entry(session, peerKey(session.getPeerHost(),
+                                         session.getPeerPort()));
+    lock.lock();
+    try
       {
-        Session oldest = null;
-        for (Map.Entry<Session.ID, Session> e : store.entrySet())
+        Entry old = store.put(session.id(), e);
+        if (old != null)
           {
-            Session s = e.getValue();
-            long stamp = s.getLastAccessedTime();
-            if (oldest == null || oldest.getLastAccessedTime() > stamp)
-              oldest = s;
+            unlink(old);
+            peers.remove(old.peer, old);
           }
-        store.remove(oldest.id());
+        link(e);
+        peers.put(e.peer, e);
+        trim();
+      }
+    finally
+      {
+        lock.unlock();
       }
-    store.put(session.id(), session);
   }
 
   @Override
   public void remove(byte[] sessionId)
   {
-    store.remove(new Session.ID(sessionId));
+    Entry e = store.get(new Session.ID(sessionId));
+    if (e == null)
+      return;
+    lock.lock();
+    try
+      {
+        evict(e);
+      }
+    finally
+      {
+        lock.unlock();
+      }
   }
 
   @Override
@@ -139,6 +197,103 @@ public final class SimpleSessionContext
     if (size < 0)
       throw new IllegalArgumentException("cache size must be nonnegative");
     this.storeLimit = size;
+    lock.lock();
+    try
+      {
+        trim();
+      }
+    finally
+      {
+        lock.unlock();
+      }
+  }
+
+  private static String peerKey(String host, int port)
+  {
+    return host + ':' + port;
+  }
+
+  /**
+   * Move an entry to the recent end of the list, unless another thread
+   * holds the lock.
+   */
+  private void touch(Entry e)
+  {
+    if (!lock.tryLock())
+      return;
+    try
+      {
+        if (e.prev != null)
+          {
+            unlink(e);
+            link(e);
+          }
+      }
+    finally
+      {
+        lock.unlock();
+      }
+  }
+
+  /**
+   * Drop sessions from the old end of the list while the cache is over
+   * its limit, or while the oldest session has expired. The lock must be
+   * held.
+   */
+  private void trim()
+  {
+    int limit = storeLimit;
+    long now = System.currentTimeMillis();
+    while (head.next != head)
+      {
+        Entry e = head.next;
+        if ((limit == 0 || size <= limit) && !isExpired(e.session, now))
+          break;
+        evict(e);
+      }
   }
 
+  /**
+   * Remove an entry from the maps and the list. The lock must be held.
+   */
+  private void evict(Entry e)
+  {
+    if (e.prev == null)
+      return;
+    store.remove(e.session.id(), e);
+    peers.remove(e.peer, e);
+    unlink(e);
+  }
+
+  private void link(Entry e)
+  {
+    e.prev = head.prev;
+    e.next = head;
+    head.prev.next = e;
+    head.prev = e;
+    size++;
+  }
+
+  private void unlink(Entry e)
+  {
+    e.prev.next = e.next;
+    e.next.prev = e.prev;
+    e.prev = null;
+    e.next = null;
+    size--;
+  }
+
+  private static final class Entry
+  {
+    final Session session;
+    final String peer;
+    Entry prev;
+    Entry next;
+
+    Entry(Session session, String peer)
+    {
+      this.session = session;
+      this.peer = peer;
+    }
+  }
 }
@@ -0,0 +1,361 @@
+/* BlockDataOutput.java -- Buffered output of ObjectOutputStream
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package java.io;
+
+/**
+ * The buffer through which {@link ObjectOutputStream} writes to its
+ * underlying stream.  Primitive values are encoded straight into a
+ * byte array, which goes to the underlying stream only when it is
+ * full, or on {@link #drain()}, {@link #flush()} and {@link #close()}.
+ *
+ * In block data mode, the data is framed into blocks of at most
+ * {@link #MAX_BLOCK_SIZE} bytes.  Room for the longest block header is
+ * kept in front of each block as it is filled; when the block ends,
+ * its header is filled in, and a short block is moved over the unused
+ * part of that room.
+ */
+final class BlockDataOutput
+{
+  /**
+   * The largest block of block data.  This value comes from the 1.2
+   * spec, but is used in 1.1 as well.
+   */
+  static final int MAX_BLOCK_SIZE = 1024;
+
+  /** The length of a TC_BLOCKDATALONG header. */
+  private static final int HEADER_SIZE = 5;
+
+  private static final int BUFFER_SIZE = 4096;
+
+  private final OutputStream out;
+  private final byte[] buf = new byte[BUFFER_SIZE];
+  private int pos;
+  private boolean blockMode;
+
+  /**
+   * The position of the first byte of data of the current block, or -1
+   * if no block is being filled.
+   */
+  private int blockStart = -1;
+
+  BlockDataOutput(OutputStream out)
+  {
+    this.out = out;
+  }
+
+  /**
+   * Turns block data mode on or off, and returns the previous mode.
+   * Ends the current block when the mode changes.
+   */
+  boolean setBlockDataMode(boolean on)
+  {
+    boolean old = blockMode;
+    if (on != old)
+      {
+        endBlock();
+        blockMode = on;
+      }
+    return old;
+  }
+
+  /**
+   * Fills in the header of the current block, if any.
+   */
+  private void endBlock()
+  {
+    if (blockStart < 0)
+      return;
+    int len = pos - blockStart;
+    int header = blockStart - HEADER_SIZE;
+    if (len == 0)
+      pos = header;
+    else if (len < 256)
+      {
+        System.arraycopy(buf, blockStart, buf, header + 2, len);
+        buf[header] = ObjectStreamConstants.TC_BLOCKDATA;
+        buf[header + 1] = (byte) len;
+        pos = header + 2 + len;
+      }
+    else
+      {
+        buf[header] = ObjectStreamConstants.TC_BLOCKDATALONG;
+        buf[header + 1] = (byte) (len >> 24);
+        buf[header + 2] = (byte) (len >> 16);
+        buf[header + 3] = (byte) (len >> 8);
+        buf[header + 4] = (byte) len;
+      }
+    blockStart = -1;
+  }
+
+  /**
+   * Makes room for n more bytes, n at most MAX_BLOCK_SIZE.  In block
+   * data mode, ends the current block if they do not fit into it, and
+   * starts a new one if needed.
+   */
+  private void reserve(int n) throws IOException
+  {
+    if (blockMode)
+      {
+        if (blockStart >= 0
+            && (pos + n - blockStart > MAX_BLOCK_SIZE || pos + n > buf.length))
+          endBlock();
+        if (blockStart < 0)
+          {
+            if (pos + HEADER_SIZE + n > buf.length)
+              writeBuffer();
+            pos += HEADER_SIZE;
+            blockStart = pos;
+          }
+      }
+    else if (pos + n > buf.length)
+      writeBuffer();
+  }
+
+  /**
+   * Writes the buffer to the underlying stream.  No block may be open.
+   */
+  private void writeBuffer() throws IOException
+  {
+    out.write(buf, 0, pos);
+    pos = 0;
+  }
+
+  /**
+   * Ends the current block, and writes the buffer to the underlying
+   * stream, without flushing that.
+   */
+  void drain() throws IOException
+  {
+    endBlock();
+    if (pos > 0)
+      writeBuffer();
+  }
+
+  void flush() throws IOException
+  {
+    drain();
+    out.flush();
+  }
+
+  void close() throws IOException
+  {
+    drain();
+    out.close();
+  }
+
+  void write(int b) throws IOException
+  {
+    reserve(1);
+    buf[pos++] = (byte) b;
+  }
+
+  void write(byte[] b, int off, int len) throws IOException
+  {
+    if (off < 0 || len < 0 || b.length - off < len)
+      throw new IndexOutOfBoundsException();
+
+    // Pass large arrays of raw data on without copying them.
+    if (! blockMode && len >= BUFFER_SIZE >>> 1)
+      {
+        drain();
+        out.write(b, off, len);
+        return;
+      }
+
+    while (len > 0)
+      {
+        reserve(1);
+        int room = buf.length - pos;
+        if (blockMode)
+          room = Math.min(room, MAX_BLOCK_SIZE - (pos - blockStart));
+        int n = Math.min(room, len);
+        System.arraycopy(b, off, buf, pos, n);
+        pos += n;
+        off += n;
+        len -= n;
+      }
+  }
+
+  void writeBoolean(boolean value) throws IOException
+  {
+    reserve(1);
+    buf[pos++] = (byte) (value ? 1 : 0);
+  }
+
+  void writeByte(int value) throws IOException
+  {
+    reserve(1);
+    buf[pos++] = (byte) value;
+  }
+
+  void writeShort(int value) throws IOException
+  {
+    reserve(2);
+    buf[pos] = (byte) (value >> 8);
+    buf[pos + 1] = (byte) value;
+    pos += 2;
+  }
+
+  void writeChar(int value) throws IOException
+  {
+    writeShort(value);
+  }
+
+  void writeInt(int value) throws IOException
+  {
+    reserve(4);
+    buf[pos] = (byte) (value >> 24);
+    buf[pos + 1] = (byte) (value >> 16);
+    buf[pos + 2] = (byte) (value >> 8);
+    buf[pos + 3] = (byte) value;
+    pos += 4;
+  }
+
+  void writeLong(long value) throws IOException
+  {
+    reserve(8);
+    int hi = (int) (value >> 32);
+    int lo = (int) value;
+    buf[pos] = (byte) (hi >> 24);
+    buf[pos + 1] = (byte) (hi >> 16);
+    buf[pos + 2] = (byte) (hi >> 8);
+    buf[pos + 3] = (byte) hi;
+    buf[pos + 4] = (byte) (lo >> 24);
+    buf[pos + 5] = (byte) (lo >> 16);
+    buf[pos + 6] = (byte) (lo >> 8);
+    buf[pos + 7] = (byte) lo;
+    pos += 8;
+  }
+
+  void writeFloat(float value) throws IOException
+  {
+    writeInt(Float.floatToIntBits(value));
+  }
+
+  void writeDouble(double value) throws IOException
+  {
+    writeLong(Double.doubleToLongBits(value));
+  }
+
+  void writeBytes(String value) throws IOException
+  {
+    int len = value.length();
+    for (int i = 0; i < len; i++)
+      {
+        reserve(1);
+        buf[pos++] = (byte) value.charAt(i);
+      }
+  }
+
+  void writeChars(String value) throws IOException
+  {
+    int len = value.length();
+    for (int i = 0; i < len; i++)
+      writeShort(value.charAt(i));
+  }
+
+  void writeUTF(String value) throws IOException
+  {
+    long l = getUTFlength(value);
+    if (l > 65535)
+      throw new UTFDataFormatException();
+    writeUTFShort(value, (int) l);
+  }
+
+  /**
+   * Returns the number of bytes of the modified UTF-8 encoding of
+   * value.
+   */
+  static long getUTFlength(String value)
+  {
+    int len = value.length();
+    long sum = len;
+    for (int i = 0; i < len; i++)
+      {
+        char c = value.charAt(i);
+        if (c == '\u0000' || (c >= '\u0080' && c <= '\u07ff'))
+          sum += 1;
+        else if (c > '\u07ff')
+          sum += 2;
+      }
+    return sum;
+  }
+
+  /**
+   * Writes value with a two byte length, which the caller has taken
+   * from {@link #getUTFlength}.
+   */
+  void writeUTFShort(String value, int bytelen) throws IOException
+  {
+    writeShort(bytelen);
+    writeUTFBytes(value);
+  }
+
+  /**
+   * Writes value with an eight byte length, which the caller has taken
+   * from {@link #getUTFlength}.
+   */
+  void writeUTFLong(String value, long bytelen) throws IOException
+  {
+    writeLong(bytelen);
+    writeUTFBytes(value);
+  }
+
+  private void writeUTFBytes(String value) throws IOException
+  {
+    int len = value.length();
+    for (int i = 0; i < len; i++)
+      {
+        char c = value.charAt(i);
+        reserve(3);
+        if (c >= '\u0001' && c <= '\u007f')
+          buf[pos++] = (byte) c;
+        else if (c <= '\u07ff')
+          {
+            buf[pos++] = (byte) (0xc0 | (0x1f & (c >> 6)));
+            buf[pos++] = (byte) (0x80 | (0x3f & c));
+          }
+        else
+          {
+            buf[pos++] = (byte) (0xe0 | (0x0f & (c >> 12)));
+            buf[pos++] = (byte) (0x80 | (0x3f & (c >> 6)));
+            buf[pos++] = (byte) (0x80 | (0x3f & c));
+          }
+      }
+  }
+}
@@ -0,0 +1,399 @@
+/* FieldAccessorFactory.java -- Generates field accessors for serialization
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package java.io;
+
+import gnu.classpath.SystemProperties;
+import gnu.java.io.FieldAccessor;
+import gnu.java.lang.reflect.ClassFileWriter;
+import gnu.java.lang.reflect.TypeSignature;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+import java.util.WeakHashMap;
+
+/**
+ * Generates the {@link FieldAccessor} of a serializable class, in the
+ * way {@link java.lang.reflect.Proxy} generates proxy classes.  The
+ * accessor is defined in the package and class loader of the class, so
+ * that it can use GETFIELD and PUTFIELD on every field that is not
+ * private.  Private fields, and fields that are final as far as
+ * writing them goes, keep using reflection.
+ *
+ * Generating a class costs far more than reading the fields of a few
+ * objects by reflection, so ObjectStreamClass only asks for an
+ * accessor once {@link #THRESHOLD} objects of the class went through
+ * serialization.
+ */
+final class FieldAccessorFactory
+{
+  /**
+   * The number of objects of a class whose fields are read or written
+   * by reflection before an accessor is generated for it, from the
+   * system property <code>gnu.java.io.fieldAccessorThreshold</code>.
+   * Zero or less turns the accessors off.
+   */
+  static final int THRESHOLD;
+
+  static
+  {
+    int threshold = 32;
+    String s = SystemProperties.getProperty("gnu.java.io.fieldAccessorThreshold");
+    if (s != null)
+      {
+        try
+          {
+            threshold = Integer.parseInt(s);
+          }
+        catch (NumberFormatException e)
+          {
+          }
+      }
+    THRESHOLD = threshold;
+  }
+
+  /** The types that FieldAccessor has a getter and setter for. */
+  private static final Class[] TYPES =
+  {
+    boolean.class, byte.class, char.class, short.class, int.class,
+    long.class, float.class, double.class, Object.class
+  };
+
+  private static final String[] TYPE_NAMES =
+  {
+    "Boolean", "Byte", "Char", "Short", "Int", "Long", "Float", "Double",
+    "Object"
+  };
+
+  private static final String ACCESSOR = "gnu/java/io/FieldAccessor";
+
+  /** Makes the names of the accessor classes unique.  Guarded by accessors. */
+  private static int count;
+
+  /**
+   * The accessor classes defined so far, by the class they access.
+   * ObjectStreamClasses are only softly reachable, so the accessor of a
+   * class is reused when its ObjectStreamClass is built again, rather
+   * than defining another one.  An accessor class lives as long as its
+   * loader, which is also the loader of the class it accesses, so it is
+   * only weakly referenced here.  Guarded by itself.
+   */
+  private static final WeakHashMap<Class,WeakReference<Class>> accessors
+    = new WeakHashMap<Class,WeakReference<Class>>();
+
+  private FieldAccessorFactory() {} // Prohibits instantiation.
+
+  /**
+   * Generates an accessor for clazz and makes the given fields of
+   * clazz use it where they can.  Does nothing if no field can use it,
+   * or the accessor cannot be defined; the fields then keep using
+   * reflection.
+   *
+   * @param clazz the class
+   * @param fields its serializable fields
+   */
+  static void install(Class clazz, ObjectStreamField[] fields)
+  {
+    final ClassLoader loader = clazz.getClassLoader();
+    // Never define classes in the packages of the bootstrap loader.
+    if (loader == null || clazz.isArray() || clazz.isInterface())
+      return;
+
+    int[] counts = new int[TYPES.length];
+    int[] index = new int[fields.length];
+    boolean[] settable = new boolean[fields.length];
+    int total = 0;
+    for (int i = 0; i < fields.length; i++)
+      {
+        index[i] = -1;
+        Field f = fields[i].field;
+        if (f == null || f.getDeclaringClass() != clazz)
+          continue;
+        int mods = f.getModifiers();
+        if (Modifier.isPrivate(mods) || Modifier.isStatic(mods))
+          continue;
+        // The accessor works with the type of the field; skip fields
+        // that serialPersistentFields declares with a different one.
+        int type = typeIndex(f.getType());
+        if (type != typeIndex(fields[i].getType()))
+          continue;
+        index[i] = counts[type]++;
+        settable[i] = ! Modifier.isFinal(mods);
+        total++;
+      }
+    if (total == 0)
+      return;
+
+    Class c;
+    String name = null;
+    synchronized (accessors)
+      {
+        c = lookup(clazz);
+        if (c == null)
+          name = clazz.getName() + "$$FieldAccessor" + count++;
+      }
+    if (c == null)
+      {
+        // Generating and defining the class is done unlocked.  Should
+        // another thread have got there first, its class is used and
+        // ours is dropped.
+        c = define(loader, clazz, name,
+                   generate(clazz, name.replace('.', '/'), fields, index,
+                            settable, counts));
+        if (c == null)
+          return;
+        synchronized (accessors)
+          {
+            Class other = lookup(clazz);
+            if (other != null)
+              c = other;
+            else
+              accessors.put(clazz, new WeakReference<Class>(c));
+          }
+      }
+    FieldAccessor accessor = newInstance(c);
+    if (accessor == null)
+      return;
+
+    for (int i = 0; i < fields.length; i++)
+      if (index[i] >= 0)
+        fields[i].setAccessor(accessor, index[i], settable[i]);
+  }
+
+  /**
+   * Returns the accessor class defined for clazz, or null if there is
+   * none.  The caller must hold the lock on accessors.
+   */
+  private static Class lookup(Class clazz)
+  {
+    WeakReference<Class> ref = accessors.get(clazz);
+    return ref == null ? null : ref.get();
+  }
+
+  /**
+   * Defines the accessor class in the loader and protection domain of
+   * the class it accesses.  Returns null if that fails.
+   */
+  private static Class define(final ClassLoader loader, final Class target,
+                              final String className, final byte[] bytecode)
+  {
+    return (Class) AccessController.doPrivileged
+      (new PrivilegedAction()
+        {
+          public Object run()
+          {
+            try
+              {
+                Class vmClassLoader = Class.forName("java.lang.VMClassLoader");
+                Class[] types = { ClassLoader.class, String.class,
+                                  byte[].class, int.class, int.class,
+                                  ProtectionDomain.class };
+                Method m = vmClassLoader.getDeclaredMethod("defineClass",
+                                                           types);
+                m.setAccessible(true);
+                Object[] args = { loader, className, bytecode,
+                                  Integer.valueOf(0),
+                                  Integer.valueOf(bytecode.length),
+                                  target.getProtectionDomain() };
+                return m.invoke(null, args);
+              }
+            catch (Exception e)
+              {
+                return null;
+              }
+            catch (LinkageError e)
+              {
+                // The loader does not see FieldAccessor, or the class
+                // was not accepted.
+                return null;
+              }
+          }
+        });
+  }
+
+  /**
+   * Returns a new instance of an accessor class, or null if it cannot
+   * be created.
+   */
+  private static FieldAccessor newInstance(final Class c)
+  {
+    return (FieldAccessor) AccessController.doPrivileged
+      (new PrivilegedAction()
+        {
+          public Object run()
+          {
+            try
+              {
+                Constructor cons = c.getDeclaredConstructor(new Class[0]);
+                cons.setAccessible(true);
+                return cons.newInstance(new Object[0]);
+              }
+            catch (Exception e)
+              {
+                return null;
+              }
+            catch (LinkageError e)
+              {
+                return null;
+              }
+          }
+        });
+  }
+
+  /**
+   * Returns the index in TYPES of the getter and setter for a field of
+   * the given type.
+   */
+  private static int typeIndex(Class type)
+  {
+    if (type == null)
+      return -1;
+    if (! type.isPrimitive())
+      return TYPES.length - 1;
+    for (int i = 0; i < TYPES.length - 1; i++)
+      if (TYPES[i] == type)
+        return i;
+    return -1;
+  }
+
+  /**
+   * Returns the class file of the accessor.  Each of its getters and
+   * setters switches on the field number and uses the field with that
+   * number and type; the setters treat final fields like unknown
+   * numbers.
+   */
+  private static byte[] generate(Class clazz, String name,
+                                 ObjectStreamField[] fields, int[] index,
+                                 boolean[] settable, int[] counts)
+  {
+    ClassFileWriter cf
+      = new ClassFileWriter(ClassFileWriter.ACC_FINAL
+                            | ClassFileWriter.ACC_SUPER
+                            | ClassFileWriter.ACC_SYNTHETIC,
+                            name, ACCESSOR, null);
+    String owner = TypeSignature.getEncodingOfClass(clazz.getName(), false);
+    int ownerIndex = cf.classInfo(owner);
+    int noSuchField = cf.methodRef(ACCESSOR, "noSuchField",
+                                   "(I)Ljava/lang/InternalError;");
+
+    ClassFileWriter.Code code = cf.addMethod(0, "<init>", "()V", 1, 1);
+    code.load(Object.class, 0);
+    code.op2(ClassFileWriter.INVOKESPECIAL,
+             cf.methodRef(ACCESSOR, "<init>", "()V"));
+    code.op(ClassFileWriter.RETURN);
+
+    for (int type = 0; type < TYPES.length; type++)
+      {
+        Class t = TYPES[type];
+        String desc = TypeSignature.getEncodingOfClass(t);
+        for (int set = 0; set < 2; set++)
+          {
+            String method;
+            String sig;
+            if (set == 0)
+              {
+                method = "get" + TYPE_NAMES[type];
+                sig = "(Ljava/lang/Object;I)" + desc;
+              }
+            else
+              {
+                method = "set" + TYPE_NAMES[type];
+                sig = "(Ljava/lang/Object;I" + desc + ")V";
+              }
+            code = cf.addMethod(ClassFileWriter.ACC_PUBLIC, method, sig,
+                                3, 5);
+            int n = counts[type];
+            int switchPosition = code.position();
+            int offsets = 0;
+            if (n > 0)
+              {
+                code.load(int.class, 2);
+                switchPosition = code.position();
+                offsets = code.tableSwitch(n);
+              }
+            for (int i = 0; i < fields.length; i++)
+              {
+                if (index[i] < 0 || typeIndex(fields[i].getType()) != type
+                    || (set == 1 && ! settable[i]))
+                  continue;
+                Field f = fields[i].field;
+                int ref = cf.fieldRef(owner, f.getName(),
+                                      TypeSignature.getEncodingOfClass
+                                      (f.getType()));
+                code.patchSwitch(offsets, switchPosition, index[i]);
+                code.load(Object.class, 1);
+                code.op2(ClassFileWriter.CHECKCAST, ownerIndex);
+                if (set == 0)
+                  {
+                    code.op2(ClassFileWriter.GETFIELD, ref);
+                    code.returnValue(t);
+                  }
+                else
+                  {
+                    code.load(t, 3);
+                    if (! t.isPrimitive() && f.getType() != Object.class)
+                      code.op2(ClassFileWriter.CHECKCAST,
+                               cf.classInfo(TypeSignature.getEncodingOfClass
+                                            (f.getType().getName(), false)));
+                    code.op2(ClassFileWriter.PUTFIELD, ref);
+                    code.op(ClassFileWriter.RETURN);
+                  }
+              }
+
+            // The default case, and the final fields of a setter.
+            if (n > 0)
+              {
+                code.patchSwitch(offsets, switchPosition, -1);
+                for (int i = 0; i < fields.length; i++)
+                  if (set == 1 && index[i] >= 0 && ! settable[i]
+                      && typeIndex(fields[i].getType()) == type)
+                    code.patchSwitch(offsets, switchPosition, index[i]);
+              }
+            code.load(int.class, 2);
+            code.op2(ClassFileWriter.INVOKESTATIC, noSuchField);
+            code.op(ClassFileWriter.ATHROW);
+          }
+      }
+    return cf.toByteArray();
+  }
+}
@@ -39,7 +39,6 @@ exception statement from your version. */
 
 package java.io;
 
-import gnu.classpath.Pair;
 import gnu.classpath.VMStackWalker;
 
 import java.lang.reflect.Array;
@@ -51,10 +50,9 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.TreeSet;
 
 /**
@@ -106,7 +104,8 @@ public class ObjectInputStream extends InputStream
     this.blockDataInput = new DataInputStream(this);
     this.realInputStream = new DataInputStream(in);
     this.nextOID = baseWireHandle;
-    handles = new HashMap<Integer,Pair<Boolean,Object>>();
+    handleObjects = new Object[64];
+    handleShared = new boolean[64];
     this.classLookupTable = new Hashtable<Class,ObjectStreamClass>();
     setBlockDataMode(true);
     readStreamHeader();
@@ -700,8 +699,9 @@ public class ObjectInputStream extends InputStream
     osc.realClassIsSerializable = Serializable.class.isAssignableFrom(clazz);
     osc.realClassIsExternalizable = Externalizable.class.isAssignableFrom(clazz);
 
+    osc.localClass = ObjectStreamClass.lookupForClassObject(clazz);
     ObjectStreamField[] stream_fields = osc.fields;
-    ObjectStreamField[] real_fields = ObjectStreamClass.lookupForClassObject(clazz).fields;
+    ObjectStreamField[] real_fields = osc.localClass.fields;
     ObjectStreamField[] fieldmapping = new ObjectStreamField[2 * Math.max(stream_fields.length, real_fields.length)];
 
     int stream_idx = 0;
@@ -1651,7 +1651,19 @@ public class ObjectInputStream extends InputStream
   private void rememberHandle(Object obj, boolean shared,
                               int handle)
   {
-    handles.put(handle, new Pair<Boolean,Object>(shared, obj));
+    int i = handle - baseWireHandle;
+    if (i >= handleObjects.length)
+      {
+        int len = Math.max(handleObjects.length * 2, i + 1);
+        Object[] objects = new Object[len];
+        System.arraycopy(handleObjects, 0, objects, 0, handleObjects.length);
+        handleObjects = objects;
+        boolean[] shareds = new boolean[len];
+        System.arraycopy(handleShared, 0, shareds, 0, handleShared.length);
+        handleShared = shareds;
+      }
+    handleObjects[i] = obj;
+    handleShared[i] = shared;
   }
 
   /**
@@ -1666,16 +1678,16 @@ public class ObjectInputStream extends InputStream
   private Object lookupHandle(int handle)
     throws ObjectStreamException
   {
-    Pair<Boolean,Object> result = handles.get(handle);
-    if (result == null)
+    if (handle < baseWireHandle || handle >= nextOID)
       throw new StreamCorruptedException("The handle, " +
                                          Integer.toHexString(handle) +
                                          ", is invalid.");
-    if (!result.getLeft())
+    int i = handle - baseWireHandle;
+    if (!handleShared[i])
       throw new InvalidObjectException("The handle, " +
                                        Integer.toHexString(handle) +
                                        ", is not shared.");
-    return result.getRight();
+    return handleObjects[i];
   }
 
   private Object processResolution(ObjectStreamClass osc, Object obj, int handle,
@@ -1737,7 +1749,7 @@ public class ObjectInputStream extends InputStream
 
   private void clearHandles()
   {
-    handles.clear();
+    Arrays.fill(handleObjects, 0, nextOID - baseWireHandle, null);
     this.nextOID = baseWireHandle;
   }
 
@@ -1853,6 +1865,8 @@ public class ObjectInputStream extends InputStream
     throws ClassNotFoundException, IOException
   {
     ObjectStreamField[] fields = stream_osc.fieldMapping;
+    if (stream_osc.localClass != null)
+      stream_osc.localClass.fieldsAccessed();
 
     for (int i = 0; i < fields.length; i += 2)
       {
@@ -2064,7 +2078,10 @@ public class ObjectInputStream extends InputStream
   private boolean useSubclassMethod;
   private int nextOID;
   private boolean resolveEnabled;
-  private Map<Integer,Pair<Boolean,Object>> handles;
+  // the objects and shared flags of the handles, indexed by handle
+  // minus baseWireHandle; handles from nextOID on are not assigned
+  private Object[] handleObjects;
+  private boolean[] handleShared;
   private Object currentObject;
   private ObjectStreamClass currentObjectStreamClass;
   private TreeSet<ValidatorAndPriority> currentObjectValidators;
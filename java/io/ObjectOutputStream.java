@@ -44,7 +44,6 @@ import gnu.java.lang.reflect.TypeSignature;
 import gnu.java.security.action.SetAccessibleAction;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -142,11 +141,7 @@ public class ObjectOutputStream extends OutputStream
     if (secMan != null && overridesMethods(getClass()))
       secMan.checkPermission(SUBCLASS_IMPLEMENTATION_PERMISSION);
 
-    realOutput = new DataOutputStream(out);
-    blockData = new byte[ BUFFER_SIZE ];
-    blockDataCount = 0;
-    blockDataOutput = new DataOutputStream(this);
-    setBlockDataMode(true);
+    realOutput = new BlockDataOutput(out);
     replacementEnabled = false;
     isSerializing = false;
     nextOID = baseWireHandle;
@@ -154,6 +149,7 @@ public class ObjectOutputStream extends OutputStream
     protocolVersion = defaultProtocolVersion;
     useSubclassMethod = false;
     writeStreamHeader();
+    setBlockDataMode(true);
 
     if (DEBUG)
       {
@@ -370,7 +366,7 @@ public class ObjectOutputStream extends OutputStream
             if (obj instanceof String)
               {
                 String s = (String)obj;
-                long l = realOutput.getUTFlength(s, 0, 0);
+                long l = BlockDataOutput.getUTFlength(s);
                 if (l <= 65535)
                   {
                     realOutput.writeByte(TC_STRING);
@@ -472,10 +468,10 @@ public class ObjectOutputStream extends OutputStream
       }
     catch (IOException e)
       {
+        setBlockDataMode(false);
         realOutput.writeByte(TC_EXCEPTION);
         reset(true);
 
-        setBlockDataMode(false);
         try
           {
             if (DEBUG)
@@ -638,7 +634,9 @@ public class ObjectOutputStream extends OutputStream
         if (isSerializing)
           throw new IOException("Reset called while serialization in progress");
 
+        boolean oldmode = setBlockDataMode(false);
         realOutput.writeByte(TC_RESET);
+        setBlockDataMode(oldmode);
       }
 
     clearHandles();
@@ -803,15 +801,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void write (int data) throws IOException
   {
-    if (writeDataAsBlocks)
-      {
-        if (blockDataCount == BUFFER_SIZE)
-          drain();
-
-        blockData[ blockDataCount++ ] = (byte)data;
-      }
-    else
-      realOutput.write(data);
+    realOutput.write(data);
   }
 
 
@@ -829,25 +819,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void write(byte[] b, int off, int len) throws IOException
   {
-    if (writeDataAsBlocks)
-      {
-        if (len < 0)
-          throw new IndexOutOfBoundsException();
-
-        if (blockDataCount + len < BUFFER_SIZE)
-          {
-            System.arraycopy(b, off, blockData, blockDataCount, len);
-            blockDataCount += len;
-          }
-        else
-          {
-            drain();
-            writeBlockDataHeader(len);
-            realOutput.write(b, off, len);
-          }
-      }
-    else
-      realOutput.write(b, off, len);
+    realOutput.write(b, off, len);
   }
 
 
@@ -870,13 +842,7 @@ public class ObjectOutputStream extends OutputStream
    */
   protected void drain() throws IOException
   {
-    if (blockDataCount == 0)
-      return;
-
-    if (writeDataAsBlocks)
-      writeBlockDataHeader(blockDataCount);
-    realOutput.write(blockData, 0, blockDataCount);
-    blockDataCount = 0;
+    realOutput.drain();
   }
 
 
@@ -895,7 +861,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeBoolean(boolean data) throws IOException
   {
-    blockDataOutput.writeBoolean(data);
+    realOutput.writeBoolean(data);
   }
 
 
@@ -904,7 +870,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeByte(int data) throws IOException
   {
-    blockDataOutput.writeByte(data);
+    realOutput.writeByte(data);
   }
 
 
@@ -913,7 +879,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeShort (int data) throws IOException
   {
-    blockDataOutput.writeShort(data);
+    realOutput.writeShort(data);
   }
 
 
@@ -922,7 +888,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeChar(int data) throws IOException
   {
-    blockDataOutput.writeChar(data);
+    realOutput.writeChar(data);
   }
 
 
@@ -931,7 +897,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeInt(int data) throws IOException
   {
-    blockDataOutput.writeInt(data);
+    realOutput.writeInt(data);
   }
 
 
@@ -940,7 +906,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeLong(long data) throws IOException
   {
-    blockDataOutput.writeLong(data);
+    realOutput.writeLong(data);
   }
 
 
@@ -949,7 +915,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeFloat(float data) throws IOException
   {
-    blockDataOutput.writeFloat(data);
+    realOutput.writeFloat(data);
   }
 
 
@@ -958,7 +924,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeDouble(double data) throws IOException
   {
-    blockDataOutput.writeDouble(data);
+    realOutput.writeDouble(data);
   }
 
 
@@ -967,7 +933,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeBytes(String data) throws IOException
   {
-    blockDataOutput.writeBytes(data);
+    realOutput.writeBytes(data);
   }
 
 
@@ -976,7 +942,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeChars(String data) throws IOException
   {
-    dataOutput.writeChars(data);
+    realOutput.writeChars(data);
   }
 
 
@@ -985,7 +951,7 @@ public class ObjectOutputStream extends OutputStream
    */
   public void writeUTF(String data) throws IOException
   {
-    dataOutput.writeUTF(data);
+    realOutput.writeUTF(data);
   }
 
 
@@ -1176,20 +1142,6 @@ public class ObjectOutputStream extends OutputStream
 
   // write out the block-data buffer, picking the correct header
   // depending on the size of the buffer
-  private void writeBlockDataHeader(int size) throws IOException
-  {
-    if (size < 256)
-      {
-        realOutput.writeByte(TC_BLOCKDATA);
-        realOutput.write(size);
-      }
-    else
-      {
-        realOutput.writeByte(TC_BLOCKDATALONG);
-        realOutput.writeInt(size);
-      }
-  }
-
 
   // lookup the handle for OBJ, return null if OBJ doesn't have a
   // handle yet
@@ -1303,6 +1255,7 @@ public class ObjectOutputStream extends OutputStream
     throws IOException
   {
     ObjectStreamField[] fields = osc.fields;
+    osc.fieldsAccessed();
     boolean oldmode = setBlockDataMode(false);
 
     try
@@ -1346,23 +1299,22 @@ public class ObjectOutputStream extends OutputStream
     for (int i = 0; i < fields.length; i++)
       {
         ObjectStreamField osf = fields[i];
-        Field field = osf.field;
 
         if (DEBUG && dump)
           dumpElementln ("WRITE FIELD: " + osf.getName() + " type=" + osf.getType());
 
         switch (osf.getTypeCode())
           {
-          case 'Z': realOutput.writeBoolean(field.getBoolean(obj)); break;
-          case 'B': realOutput.writeByte   (field.getByte   (obj)); break;
-          case 'S': realOutput.writeShort  (field.getShort  (obj)); break;
-          case 'C': realOutput.writeChar   (field.getChar   (obj)); break;
-          case 'I': realOutput.writeInt    (field.getInt    (obj)); break;
-          case 'F': realOutput.writeFloat  (field.getFloat  (obj)); break;
-          case 'J': realOutput.writeLong   (field.getLong   (obj)); break;
-          case 'D': realOutput.writeDouble (field.getDouble (obj)); break;
+          case 'Z': realOutput.writeBoolean(osf.getBooleanField(obj)); break;
+          case 'B': realOutput.writeByte   (osf.getByteField   (obj)); break;
+          case 'S': realOutput.writeShort  (osf.getShortField  (obj)); break;
+          case 'C': realOutput.writeChar   (osf.getCharField   (obj)); break;
+          case 'I': realOutput.writeInt    (osf.getIntField    (obj)); break;
+          case 'F': realOutput.writeFloat  (osf.getFloatField  (obj)); break;
+          case 'J': realOutput.writeLong   (osf.getLongField   (obj)); break;
+          case 'D': realOutput.writeDouble (osf.getDoubleField (obj)); break;
           case 'L':
-          case '[':            writeObject (field.get       (obj)); break;
+          case '[':            writeObject (osf.getObjectField (obj)); break;
           default:
             throw new IOException("Unexpected type code " + osf.getTypeCode());
           }
@@ -1374,19 +1326,7 @@ public class ObjectOutputStream extends OutputStream
   // Package-private to avoid a trampoline constructor.
   boolean setBlockDataMode(boolean on) throws IOException
   {
-    if (on == writeDataAsBlocks)
-      return on;
-
-    drain();
-    boolean oldmode = writeDataAsBlocks;
-    writeDataAsBlocks = on;
-
-    if (on)
-      dataOutput = blockDataOutput;
-    else
-      dataOutput = realOutput;
-
-    return oldmode;
+    return realOutput.setBlockDataMode(on);
   }
 
 
@@ -1456,17 +1396,9 @@ public class ObjectOutputStream extends OutputStream
     System.out.println(msg);
   }
 
-  // this value comes from 1.2 spec, but is used in 1.1 as well
-  private static final int BUFFER_SIZE = 1024;
-
   private static int defaultProtocolVersion = PROTOCOL_VERSION_2;
 
-  private DataOutputStream dataOutput;
-  private boolean writeDataAsBlocks;
-  private DataOutputStream realOutput;
-  private DataOutputStream blockDataOutput;
-  private byte[] blockData;
-  private int blockDataCount;
+  private BlockDataOutput realOutput;
   private Object currentObject;
   // Package-private to avoid a trampoline.
   ObjectStreamClass currentObjectStreamClass;
@@ -44,6 +44,9 @@ import gnu.java.lang.reflect.TypeSignature;
 import gnu.java.security.action.SetAccessibleAction;
 import gnu.java.security.provider.Gnu;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
@@ -59,6 +62,7 @@ import java.security.Security;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Tom Tromey (tromey@redhat.com)
@@ -106,16 +110,19 @@ public class ObjectStreamClass implements Serializable
     if (cl == null)
       return null;
 
-    ObjectStreamClass osc = classLookupTable.get(cl);
+    ClassLoader loader = cl.getClassLoader();
+    if (loader != null && loader != ClassLoader.getSystemClassLoader())
+      return LoaderCache.lookup(loader, cl);
 
-    if (osc != null)
-      return osc;
-    else
+    ObjectStreamClass osc = systemClasses.get(cl);
+    if (osc == null)
       {
         osc = new ObjectStreamClass(cl);
-        classLookupTable.put(cl, osc);
-        return osc;
+        ObjectStreamClass old = systemClasses.putIfAbsent(cl, osc);
+        if (old != null)
+          osc = old;
       }
+    return osc;
   }
 
   /**
@@ -581,43 +588,54 @@ outer:
       || (l == ClassLoader.getSystemClassLoader() /* application loader */);
   }
 
-  static Hashtable methodCache = new Hashtable();
-
   static final Class[] readObjectSignature  = { ObjectInputStream.class };
   static final Class[] writeObjectSignature = { ObjectOutputStream.class };
 
   private void cacheMethods()
   {
     Class cl = forClass();
-    Method[] cached = (Method[]) methodCache.get(cl);
-    if (cached == null)
+    Method[] methods = cl.getDeclaredMethods();
+
+    readObjectMethod = findMethod(methods, "readObject",
+                                  readObjectSignature,
+                                  Void.TYPE, true);
+    writeObjectMethod = findMethod(methods, "writeObject",
+                                   writeObjectSignature,
+                                   Void.TYPE, true);
+
+    // readResolve and writeReplace can be in parent classes, as long as they
+    // are accessible from this class.
+    readResolveMethod = findAccessibleMethod("readResolve", cl);
+    writeReplaceMethod = findAccessibleMethod("writeReplace", cl);
+  }
+
+  /**
+   * Called each time the fields of an object of this class are read or
+   * written.  Once that happened {@link FieldAccessorFactory#THRESHOLD}
+   * times, generates an accessor for the fields.
+   */
+  void fieldsAccessed()
+  {
+    // Racy, but a lost update only delays the accessor.
+    int n = fieldAccesses;
+    if (n < FieldAccessorFactory.THRESHOLD)
       {
-        cached = new Method[4];
-        Method[] methods = cl.getDeclaredMethods();
-
-        cached[0] = findMethod(methods, "readObject",
-                               readObjectSignature,
-                               Void.TYPE, true);
-        cached[1] = findMethod(methods, "writeObject",
-                               writeObjectSignature,
-                               Void.TYPE, true);
-
-        // readResolve and writeReplace can be in parent classes, as long as they
-        // are accessible from this class.
-        cached[2] = findAccessibleMethod("readResolve", cl);
-        cached[3] = findAccessibleMethod("writeReplace", cl);
-
-        /* put in cache if classes not loaded by user class loader.
-         * For a user class loader, the cache may otherwise grow
-         * without limit.
-         */
-        if (loadedByBootOrApplicationClassLoader(cl))
-          methodCache.put(cl,cached);
+        fieldAccesses = ++n;
+        if (n == FieldAccessorFactory.THRESHOLD)
+          generateFieldAccessor();
       }
-    readObjectMethod   = cached[0];
-    writeObjectMethod  = cached[1];
-    readResolveMethod  = cached[2];
-    writeReplaceMethod = cached[3];
+  }
+
+  private void generateFieldAccessor()
+  {
+    synchronized (this)
+      {
+        if (fieldAccessorGenerated)
+          return;
+        fieldAccessorGenerated = true;
+      }
+    if (clazz != null && fields != null)
+      FieldAccessorFactory.install(clazz, fields);
   }
 
   private ObjectStreamClass(Class cl)
@@ -1068,8 +1086,13 @@ outer:
 
   public static final ObjectStreamField[] NO_FIELDS = {};
 
-  private static Hashtable<Class,ObjectStreamClass> classLookupTable
-    = new Hashtable<Class,ObjectStreamClass>();
+  /**
+   * The ObjectStreamClasses of the classes of the bootstrap and system
+   * class loaders, which are never unloaded.  The others are kept by
+   * {@link LoaderCache}.
+   */
+  private static final ConcurrentHashMap<Class,ObjectStreamClass> systemClasses
+    = new ConcurrentHashMap<Class,ObjectStreamClass>();
   private static final NullOutputStream nullOutputStream = new NullOutputStream();
   private static final Comparator interfaceComparator = new InterfaceComparator();
   private static final Comparator memberComparator = new MemberComparator();
@@ -1097,8 +1120,13 @@ outer:
   boolean realClassIsSerializable;
   boolean realClassIsExternalizable;
   ObjectStreamField[] fieldMapping;
+  // for a class descriptor read from a stream, the descriptor of the
+  // local class, whose fields are the real fields of fieldMapping
+  ObjectStreamClass localClass;
   Constructor firstNonSerializableParentConstructor;
   private Constructor constructor;  // default constructor for Externalizable
+  private int fieldAccesses;
+  private boolean fieldAccessorGenerated;
 
   boolean isProxyClass = false;
 
@@ -1107,6 +1135,116 @@ outer:
   private static final long serialVersionUID = -6120832682080437368L;
 
 
+  /**
+   * Caches the ObjectStreamClasses of the classes of class loaders other
+   * than the bootstrap and system class loaders, in one table for each
+   * loader.  Nothing here keeps a loader reachable: loaders and classes
+   * are held by weak references, and the ObjectStreamClasses, which
+   * refer to their classes, by soft references.  The table of a loader
+   * is dropped as a whole once the loader has been collected.
+   */
+  private static final class LoaderCache
+  {
+    private static final
+      ConcurrentHashMap<Key,ConcurrentHashMap<Key,SoftReference<ObjectStreamClass>>>
+      loaders
+      = new ConcurrentHashMap<Key,ConcurrentHashMap<Key,SoftReference<ObjectStreamClass>>>();
+
+    private static final ReferenceQueue<Object> queue
+      = new ReferenceQueue<Object>();
+
+    static ObjectStreamClass lookup(ClassLoader loader, Class cl)
+    {
+      ConcurrentHashMap<Key,SoftReference<ObjectStreamClass>> classes
+        = loaders.get(new Key(loader, null, null));
+      if (classes == null)
+        {
+          purge();
+          classes = new ConcurrentHashMap<Key,SoftReference<ObjectStreamClass>>();
+          ConcurrentHashMap<Key,SoftReference<ObjectStreamClass>> old
+            = loaders.putIfAbsent(new Key(loader, null, queue), classes);
+          if (old != null)
+            classes = old;
+        }
+
+      Key key = new Key(cl, null, null);
+      for (;;)
+        {
+          SoftReference<ObjectStreamClass> ref = classes.get(key);
+          ObjectStreamClass osc = ref == null ? null : ref.get();
+          if (osc != null)
+            return osc;
+
+          purge();
+          osc = new ObjectStreamClass(cl);
+          SoftReference<ObjectStreamClass> newRef
+            = new SoftReference<ObjectStreamClass>(osc);
+          if (ref == null)
+            {
+              if (classes.putIfAbsent(new Key(cl, classes, queue), newRef)
+                  == null)
+                return osc;
+            }
+          else if (classes.replace(key, ref, newRef))
+            return osc;
+        }
+    }
+
+    /**
+     * Removes the entries of the classes and loaders that were
+     * collected.
+     */
+    private static void purge()
+    {
+      Key key;
+      while ((key = (Key) queue.poll()) != null)
+        {
+          if (key.table == null)
+            loaders.remove(key);
+          else
+            key.table.remove(key);
+        }
+    }
+
+    /**
+     * A weak key that compares its referent by identity.
+     */
+    private static final class Key extends WeakReference<Object>
+    {
+      private final int hash;
+
+      /**
+       * For the key of a class, the table of its loader.
+       */
+      final ConcurrentHashMap<Key,SoftReference<ObjectStreamClass>> table;
+
+      Key(Object referent,
+          ConcurrentHashMap<Key,SoftReference<ObjectStreamClass>> table,
+          ReferenceQueue<Object> queue)
+      {
+        super(referent, queue);
+        this.table = table;
+        hash = System.identityHashCode(referent);
+      }
+
+      public int hashCode()
+      {
+        return hash;
+      }
+
+      public boolean equals(Object o)
+      {
+        if (o == this)
+          return true;
+        if (! (o instanceof Key))
+          return false;
+        Object referent = get();
+        return referent != null && referent == ((Key) o).get();
+      }
+    }
+  }
+
+
   // interfaces are compared only by name
   private static final class InterfaceComparator implements Comparator
   {
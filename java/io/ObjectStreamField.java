@@ -38,6 +38,7 @@ exception statement from your version. */
 
 package java.io;
 
+import gnu.java.io.FieldAccessor;
 import gnu.java.lang.reflect.TypeSignature;
 
 import java.lang.reflect.Field;
@@ -67,6 +68,14 @@ public class ObjectStreamField
   private boolean toset = true;
   Field field;
 
+  /**
+   * The generated accessors that read and write this field instead of
+   * reflection, or null; see {@link #setAccessor}.
+   */
+  private volatile FieldAccessor getter;
+  private volatile FieldAccessor setter;
+  private int accessorIndex;
+
   ObjectStreamField (Field field)
   {
     this (field.getName(), field.getType());
@@ -354,48 +363,173 @@ public class ObjectStreamField
     return "ObjectStreamField< " + type + " " + name + " >";
   }
 
+  /**
+   * Makes this field use a generated accessor instead of reflection.
+   * Called once the fields of enough objects of the class have been
+   * read or written; see FieldAccessorFactory.
+   *
+   * @param accessor the accessor
+   * @param index the number of this field in the accessor
+   * @param settable false if the accessor can only read this field
+   */
+  void setAccessor(FieldAccessor accessor, int index, boolean settable)
+  {
+    accessorIndex = index;
+    if (settable)
+      setter = accessor;
+    getter = accessor;
+  }
+
+  final boolean getBooleanField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getBoolean(obj, accessorIndex);
+    return field.getBoolean(obj);
+  }
+
+  final byte getByteField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getByte(obj, accessorIndex);
+    return field.getByte(obj);
+  }
+
+  final char getCharField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getChar(obj, accessorIndex);
+    return field.getChar(obj);
+  }
+
+  final short getShortField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getShort(obj, accessorIndex);
+    return field.getShort(obj);
+  }
+
+  final int getIntField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getInt(obj, accessorIndex);
+    return field.getInt(obj);
+  }
+
+  final long getLongField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getLong(obj, accessorIndex);
+    return field.getLong(obj);
+  }
+
+  final float getFloatField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getFloat(obj, accessorIndex);
+    return field.getFloat(obj);
+  }
+
+  final double getDoubleField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getDouble(obj, accessorIndex);
+    return field.getDouble(obj);
+  }
+
+  final Object getObjectField(Object obj) throws IllegalAccessException
+  {
+    FieldAccessor a = getter;
+    if (a != null)
+      return a.getObject(obj, accessorIndex);
+    return field.get(obj);
+  }
+
   final void setBooleanField(Object obj, boolean val)
   {
-    VMObjectStreamClass.setBooleanNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setBoolean(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setBooleanNative(field, obj, val);
   }
 
   final void setByteField(Object obj, byte val)
   {
-    VMObjectStreamClass.setByteNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setByte(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setByteNative(field, obj, val);
   }
 
   final void setCharField(Object obj, char val)
   {
-    VMObjectStreamClass.setCharNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setChar(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setCharNative(field, obj, val);
   }
 
   final void setShortField(Object obj, short val)
   {
-    VMObjectStreamClass.setShortNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setShort(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setShortNative(field, obj, val);
   }
 
   final void setIntField(Object obj, int val)
   {
-    VMObjectStreamClass.setIntNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setInt(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setIntNative(field, obj, val);
   }
 
   final void setLongField(Object obj, long val)
   {
-    VMObjectStreamClass.setLongNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setLong(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setLongNative(field, obj, val);
   }
 
   final void setFloatField(Object obj, float val)
   {
-    VMObjectStreamClass.setFloatNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setFloat(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setFloatNative(field, obj, val);
   }
 
   final void setDoubleField(Object obj, double val)
   {
-    VMObjectStreamClass.setDoubleNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setDouble(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setDoubleNative(field, obj, val);
   }
 
   final void setObjectField(Object obj, Object val)
   {
-    VMObjectStreamClass.setObjectNative(field, obj, val);
+    FieldAccessor a = setter;
+    if (a != null)
+      a.setObject(obj, accessorIndex, val);
+    else
+      VMObjectStreamClass.setObjectNative(field, obj, val);
   }
 }
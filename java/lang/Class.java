@@ -40,11 +40,13 @@ package java.lang;
 
 import gnu.classpath.VMStackWalker;
 import gnu.java.lang.reflect.ClassSignatureParser;
+import gnu.java.lang.reflect.ReflectionAccess;
 
 import java.io.InputStream;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Inherited;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
@@ -67,6 +69,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 
 
 /**
@@ -147,6 +150,46 @@ public final class Class<T>
   /** newInstance() caches the default constructor */
   private transient Constructor<T> constructor;
 
+  /**
+   * The members of this class, as returned by VMClass, and the public
+   * members it inherits.  These are never handed out directly: callers
+   * get copies, so that changing the accessible flag of a returned
+   * object does not affect anyone else.  The garbage collector may clear
+   * this if memory gets short.
+   */
+  private transient volatile SoftReference<ReflectionData> reflectionData;
+
+  /**
+   * Cached reflection data.  Each array is filled in when first needed;
+   * two threads may race to do so, in which case one result is kept.
+   */
+  private static final class ReflectionData
+  {
+    /** Returned by declaredMethods(boolean, String) for unknown names. */
+    static final Method[] NO_METHODS = new Method[0];
+
+    /** The count of class redefinitions when this was created. */
+    final int redefinitions;
+
+    volatile Constructor[] declaredConstructors;
+    volatile Constructor[] declaredPublicConstructors;
+    volatile Field[] declaredFields;
+    volatile Field[] declaredPublicFields;
+    volatile Field[] publicFields;
+    volatile Method[] declaredMethods;
+    volatile Method[] declaredPublicMethods;
+    volatile Method[] publicMethods;
+
+    /** declaredMethods and declaredPublicMethods, indexed by name. */
+    volatile Map<String,Method[]> declaredMethodsByName;
+    volatile Map<String,Method[]> declaredPublicMethodsByName;
+
+    ReflectionData(int redefinitions)
+    {
+      this.redefinitions = redefinitions;
+    }
+  }
+
   /**
    * Class is non-instantiable from Java code; only the VM can create
    * instances of this class.
@@ -328,12 +371,12 @@ public final class Class<T>
     throws NoSuchMethodException
   {
     memberAccessCheck(Member.PUBLIC);
-    Constructor[] constructors = getDeclaredConstructors(true);
+    Constructor[] constructors = declaredConstructors(true);
     for (int i = 0; i < constructors.length; i++)
       {
         Constructor constructor = constructors[i];
         if (matchParameters(types, constructor.getParameterTypes()))
-          return constructor;
+          return copy(constructor);
       }
     throw new NoSuchMethodException();
   }
@@ -374,12 +417,12 @@ public final class Class<T>
     throws NoSuchMethodException
   {
     memberAccessCheck(Member.DECLARED);
-    Constructor[] constructors = getDeclaredConstructors(false);
+    Constructor[] constructors = declaredConstructors(false);
     for (int i = 0; i < constructors.length; i++)
       {
         Constructor constructor = constructors[i];
         if (matchParameters(types, constructor.getParameterTypes()))
-          return constructor;
+          return copy(constructor);
       }
     throw new NoSuchMethodException();
   }
@@ -427,7 +470,27 @@ public final class Class<T>
 
   Constructor<?>[] getDeclaredConstructors (boolean publicOnly)
   {
-    return VMClass.getDeclaredConstructors (this, publicOnly);
+    return copy(declaredConstructors(publicOnly));
+  }
+
+  /**
+   * Like <code>getDeclaredConstructors(boolean)</code>, but returns the
+   * cached objects themselves.  These must not escape this class.
+   */
+  private Constructor[] declaredConstructors(boolean publicOnly)
+  {
+    ReflectionData data = reflectionData();
+    Constructor[] constructors = publicOnly
+      ? data.declaredPublicConstructors : data.declaredConstructors;
+    if (constructors == null)
+      {
+        constructors = VMClass.getDeclaredConstructors(this, publicOnly);
+        if (publicOnly)
+          data.declaredPublicConstructors = constructors;
+        else
+          data.declaredConstructors = constructors;
+      }
+    return constructors;
   }
 
   /**
@@ -449,11 +512,11 @@ public final class Class<T>
     if (name == null)
       throw new NullPointerException();
     memberAccessCheck(Member.DECLARED);
-    Field[] fields = getDeclaredFields(false);
+    Field[] fields = declaredFields(false);
     for (int i = 0; i < fields.length; i++)
       {
         if (fields[i].getName().equals(name))
-          return fields[i];
+          return copy(fields[i]);
       }
     throw new NoSuchFieldException();
   }
@@ -478,7 +541,26 @@ public final class Class<T>
 
   Field[] getDeclaredFields (boolean publicOnly)
   {
-    return VMClass.getDeclaredFields (this, publicOnly);
+    return copy(declaredFields(publicOnly));
+  }
+
+  /**
+   * Like <code>getDeclaredFields(boolean)</code>, but returns the cached
+   * objects themselves.  These must not escape this class.
+   */
+  private Field[] declaredFields(boolean publicOnly)
+  {
+    ReflectionData data = reflectionData();
+    Field[] fields = publicOnly ? data.declaredPublicFields : data.declaredFields;
+    if (fields == null)
+      {
+        fields = VMClass.getDeclaredFields(this, publicOnly);
+        if (publicOnly)
+          data.declaredPublicFields = fields;
+        else
+          data.declaredFields = fields;
+      }
+    return fields;
   }
 
   /**
@@ -509,10 +591,11 @@ public final class Class<T>
     if (methodName == null)
       throw new NullPointerException();
     memberAccessCheck(Member.DECLARED);
-    Method match = matchMethod(getDeclaredMethods(false), methodName, types);
+    Method match = matchMethod(declaredMethods(false, methodName),
+                               methodName, types);
     if (match == null)
       throw new NoSuchMethodException(methodName);
-    return match;
+    return copy(match);
   }
 
   /**
@@ -539,7 +622,63 @@ public final class Class<T>
 
   Method[] getDeclaredMethods (boolean publicOnly)
   {
-    return VMClass.getDeclaredMethods (this, publicOnly);
+    return copy(declaredMethods(publicOnly));
+  }
+
+  /**
+   * Like <code>getDeclaredMethods(boolean)</code>, but returns the cached
+   * objects themselves.  These must not escape this class.
+   */
+  private Method[] declaredMethods(boolean publicOnly)
+  {
+    ReflectionData data = reflectionData();
+    Method[] methods = publicOnly
+      ? data.declaredPublicMethods : data.declaredMethods;
+    if (methods == null)
+      {
+        methods = VMClass.getDeclaredMethods(this, publicOnly);
+        if (publicOnly)
+          data.declaredPublicMethods = methods;
+        else
+          data.declaredMethods = methods;
+      }
+    return methods;
+  }
+
+  /**
+   * Return the cached declared methods called <code>name</code>.
+   */
+  private Method[] declaredMethods(boolean publicOnly, String name)
+  {
+    ReflectionData data = reflectionData();
+    Map<String,Method[]> index = publicOnly
+      ? data.declaredPublicMethodsByName : data.declaredMethodsByName;
+    if (index == null)
+      {
+        index = new HashMap<String,Method[]>();
+        Method[] methods = declaredMethods(publicOnly);
+        for (int i = 0; i < methods.length; i++)
+          {
+            Method method = methods[i];
+            Method[] list = index.get(method.getName());
+            if (list == null)
+              list = new Method[] { method };
+            else
+              {
+                Method[] longer = new Method[list.length + 1];
+                System.arraycopy(list, 0, longer, 0, list.length);
+                longer[list.length] = method;
+                list = longer;
+              }
+            index.put(method.getName(), list);
+          }
+        if (publicOnly)
+          data.declaredPublicMethodsByName = index;
+        else
+          data.declaredMethodsByName = index;
+      }
+    Method[] methods = index.get(name);
+    return methods == null ? ReflectionData.NO_METHODS : methods;
   }
 
   /**
@@ -579,7 +718,7 @@ public final class Class<T>
     Field field = internalGetField(fieldName);
     if (field == null)
       throw new NoSuchFieldException(fieldName);
-    return field;
+    return copy(field);
   }
 
   /**
@@ -597,23 +736,30 @@ public final class Class<T>
   public Field[] getFields()
   {
     memberAccessCheck(Member.PUBLIC);
-    return internalGetFields();
+    return copy(internalGetFields());
   }
 
   /**
-   * Like <code>getFields()</code> but without the security checks.
+   * Like <code>getFields()</code> but without the security checks, and
+   * returning the cached objects themselves.
    */
   private Field[] internalGetFields()
   {
+    ReflectionData data = reflectionData();
+    Field[] fields = data.publicFields;
+    if (fields != null)
+      return fields;
     LinkedHashSet<Field> set = new LinkedHashSet<Field>();
-    set.addAll(Arrays.asList(getDeclaredFields(true)));
+    set.addAll(Arrays.asList(declaredFields(true)));
     Class[] interfaces = getInterfaces();
     for (int i = 0; i < interfaces.length; i++)
       set.addAll(Arrays.asList(interfaces[i].internalGetFields()));
     Class superClass = getSuperclass();
     if (superClass != null)
       set.addAll(Arrays.asList(superClass.internalGetFields()));
-    return set.toArray(new Field[set.size()]);
+    fields = set.toArray(new Field[set.size()]);
+    data.publicFields = fields;
+    return fields;
   }
 
   /**
@@ -722,16 +868,18 @@ public final class Class<T>
     Method method = internalGetMethod(methodName, types);
     if (method == null)
       throw new NoSuchMethodException(methodName);
-    return method;
+    return copy(method);
   }
 
   /**
    * Like <code>getMethod(String,Class[])</code> but without the security
    * checks and returns null instead of throwing NoSuchMethodException.
+   * The result is the cached object itself.
    */
   private Method internalGetMethod(String methodName, Class[] args)
   {
-    Method match = matchMethod(getDeclaredMethods(true), methodName, args);
+    Method match = matchMethod(declaredMethods(true, methodName),
+                               methodName, args);
     if (match != null)
       return match;
     Class superClass = getSuperclass();
@@ -824,14 +972,18 @@ public final class Class<T>
     // but Sun's implementation *does* return the public methods of Object
     // (as would be expected), so we follow their implementation instead
     // of their documentation.
-    return internalGetMethods();
+    return copy(internalGetMethods());
   }
 
   /**
-   * Like <code>getMethods()</code> but without the security checks.
+   * Like <code>getMethods()</code> but without the security checks, and
+   * returning the cached objects themselves.
    */
   private Method[] internalGetMethods()
   {
+    ReflectionData data = reflectionData();
+    if (data.publicMethods != null)
+      return data.publicMethods;
     HashMap<MethodKey,Method> map = new HashMap<MethodKey,Method>();
     Method[] methods;
     Class[] interfaces = getInterfaces();
@@ -852,12 +1004,82 @@ public final class Class<T>
             map.put(new MethodKey(methods[i]), methods[i]);
           }
       }
-    methods = getDeclaredMethods(true);
+    methods = declaredMethods(true);
     for(int i = 0; i < methods.length; i++)
       {
         map.put(new MethodKey(methods[i]), methods[i]);
       }
-    return map.values().toArray(new Method[map.size()]);
+    methods = map.values().toArray(new Method[map.size()]);
+    data.publicMethods = methods;
+    return methods;
+  }
+
+  /**
+   * Return the cached reflection data of this class, creating it if it
+   * has been cleared or any class has been redefined since it was made.
+   */
+  private ReflectionData reflectionData()
+  {
+    int redefinitions = ReflectionAccess.getRedefinitions();
+    SoftReference<ReflectionData> ref = reflectionData;
+    ReflectionData data = ref == null ? null : ref.get();
+    if (data == null || data.redefinitions != redefinitions)
+      {
+        data = new ReflectionData(redefinitions);
+        reflectionData = new SoftReference<ReflectionData>(data);
+      }
+    return data;
+  }
+
+  /**
+   * Copy a cached Method so it can be handed out.
+   */
+  private static Method copy(Method method)
+  {
+    return ReflectionAccess.getInstance().copy(method);
+  }
+
+  private static Method[] copy(Method[] methods)
+  {
+    ReflectionAccess access = ReflectionAccess.getInstance();
+    Method[] copies = new Method[methods.length];
+    for (int i = 0; i < methods.length; i++)
+      copies[i] = access.copy(methods[i]);
+    return copies;
+  }
+
+  /**
+   * Copy a cached Field so it can be handed out.
+   */
+  private static Field copy(Field field)
+  {
+    return ReflectionAccess.getInstance().copy(field);
+  }
+
+  private static Field[] copy(Field[] fields)
+  {
+    ReflectionAccess access = ReflectionAccess.getInstance();
+    Field[] copies = new Field[fields.length];
+    for (int i = 0; i < fields.length; i++)
+      copies[i] = access.copy(fields[i]);
+    return copies;
+  }
+
+  /**
+   * Copy a cached Constructor so it can be handed out.
+   */
+  private static <C> Constructor<C> copy(Constructor<C> constructor)
+  {
+    return ReflectionAccess.getInstance().copy(constructor);
+  }
+
+  private static Constructor[] copy(Constructor[] constructors)
+  {
+    ReflectionAccess access = ReflectionAccess.getInstance();
+    Constructor[] copies = new Constructor[constructors.length];
+    for (int i = 0; i < constructors.length; i++)
+      copies[i] = access.copy(constructors[i]);
+    return copies;
   }
 
   /**
@@ -1125,12 +1347,12 @@ public final class Class<T>
       }
     if (constructor == null)
       {
-        Constructor[] constructors = getDeclaredConstructors(false);
+        Constructor[] constructors = declaredConstructors(false);
         for (int i = 0; i < constructors.length; i++)
           {
             if (constructors[i].getParameterTypes().length == 0)
               {
-                constructor = constructors[i];
+                constructor = copy(constructors[i]);
                 break;
               }
           }
@@ -1337,7 +1559,7 @@ public final class Class<T>
    */
   private Field internalGetField(String name)
   {
-    Field[] fields = getDeclaredFields(true);
+    Field[] fields = declaredFields(true);
     for (int i = 0; i < fields.length; i++)
       {
         Field field = fields[i];
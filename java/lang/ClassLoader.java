@@ -55,10 +55,13 @@ import java.security.PermissionCollection;
 import java.security.Policy;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The ClassLoader is a way of customizing the way Java gets its classes
@@ -242,6 +245,27 @@ public abstract class ClassLoader
    */
   transient Object vmdata;
 
+  /**
+   * The locks for loading each class name, if this class loader is
+   * parallel capable; null otherwise, in which case the class loader
+   * itself is the lock.
+   */
+  private final ConcurrentHashMap<String,Object> parallelLockMap;
+
+  /**
+   * The class loader classes that are registered as parallel capable.
+   */
+  private static final class ParallelLoaders
+  {
+    static final Map<Class<?>,Boolean> classes
+      = Collections.synchronizedMap(new WeakHashMap<Class<?>,Boolean>());
+
+    static
+    {
+      classes.put(ClassLoader.class, Boolean.TRUE);
+    }
+  }
+
   /**
    * Create a new ClassLoader with as parent the system classloader. There
    * may be a security check for <code>checkCreateClassLoader</code>.
@@ -274,9 +298,67 @@ public abstract class ClassLoader
     if (sm != null)
       sm.checkCreateClassLoader();
     this.parent = parent;
+    if (ParallelLoaders.classes.containsKey(getClass()))
+      parallelLockMap = new ConcurrentHashMap<String,Object>();
+    else
+      parallelLockMap = null;
     this.initialized = true;
   }
 
+  /**
+   * Registers the calling class as parallel capable: instances of it
+   * will not lock themselves while they load a class, but only lock
+   * the name of that class, so that threads loading unrelated classes
+   * do not wait for each other.  A class loader class should call this
+   * from its static initializer; the registration only succeeds if its
+   * superclass is registered, too.  A parallel capable class loader
+   * must be prepared for <code>findClass()</code> being called by
+   * several threads at once.
+   *
+   * @return true if the caller is registered as parallel capable
+   * @since 1.7
+   */
+  protected static boolean registerAsParallelCapable()
+  {
+    Class<?> c = VMStackWalker.getCallingClass();
+    if (c == null || ! ClassLoader.class.isAssignableFrom(c))
+      return false;
+    synchronized (ParallelLoaders.classes)
+      {
+        if (! ParallelLoaders.classes.containsKey(c.getSuperclass()))
+          return false;
+        ParallelLoaders.classes.put(c, Boolean.TRUE);
+        return true;
+      }
+  }
+
+  /**
+   * Returns the object to lock while loading the named class.  This is
+   * a lock for the name alone if this class loader is parallel capable,
+   * and the class loader itself otherwise.
+   *
+   * @param className the name of the class that is loaded
+   * @return the lock to hold while loading the class
+   * @throws NullPointerException if this class loader is parallel
+   *         capable and className is null
+   * @see #registerAsParallelCapable()
+   * @since 1.7
+   */
+  protected Object getClassLoadingLock(String className)
+  {
+    if (parallelLockMap == null)
+      return this;
+    Object lock = parallelLockMap.get(className);
+    if (lock == null)
+      {
+        Object newLock = new Object();
+        lock = parallelLockMap.putIfAbsent(className, newLock);
+        if (lock == null)
+          lock = newLock;
+      }
+    return lock;
+  }
+
   /**
    * Load a class using this ClassLoader or its parent, without resolving
    * it. Calls <code>loadClass(name, false)</code>.
@@ -308,41 +390,47 @@ public abstract class ClassLoader
    * <p>Subclasses should not override this method but should override
    * <code>findClass()</code> which is called by this method.</p>
    *
+   * <p>All of this happens while holding the lock returned by
+   * <code>getClassLoadingLock(name)</code>.</p>
+   *
    * @param name the fully qualified name of the class to load
    * @param resolve whether or not to resolve the class
    * @return the loaded class
    * @throws ClassNotFoundException if the class cannot be found
    */
-  protected synchronized Class<?> loadClass(String name, boolean resolve)
+  protected Class<?> loadClass(String name, boolean resolve)
     throws ClassNotFoundException
   {
-    // Have we already loaded this class?
-    Class<?> c = findLoadedClass(name);
-    if (c == null)
+    synchronized (getClassLoadingLock(name))
       {
-        // Can the class be loaded by a parent?
-        try
+        // Have we already loaded this class?
+        Class<?> c = findLoadedClass(name);
+        if (c == null)
           {
-            if (parent == null)
+            // Can the class be loaded by a parent?
+            try
               {
-                c = VMClassLoader.loadClass(name, resolve);
-                if (c != null)
-                  return c;
+                if (parent == null)
+                  {
+                    c = VMClassLoader.loadClass(name, resolve);
+                    if (c != null)
+                      return c;
+                  }
+                else
+                  {
+                    return parent.loadClass(name, resolve);
+                  }
               }
-            else
+            catch (ClassNotFoundException e)
               {
-                return parent.loadClass(name, resolve);
               }
+            // Still not found, we have to do it ourself.
+            c = findClass(name);
           }
-        catch (ClassNotFoundException e)
-          {
-          }
-        // Still not found, we have to do it ourself.
-        c = findClass(name);
+        if (resolve)
+          resolveClass(c);
+        return c;
       }
-    if (resolve)
-      resolveClass(c);
-    return c;
   }
 
   /**
@@ -459,17 +547,25 @@ public abstract class ClassLoader
    *         do not match up
    * @since 1.2
    */
-  protected final synchronized Class<?> defineClass(String name, byte[] data,
-                                                    int offset, int len,
-                                                    ProtectionDomain domain)
+  protected final Class<?> defineClass(String name, byte[] data,
+                                       int offset, int len,
+                                       ProtectionDomain domain)
     throws ClassFormatError
   {
     checkInitialized();
     if (domain == null)
       domain = StaticData.defaultProtectionDomain;
 
-    return VMClassLoader.defineClassWithTransformers(this, name, data, offset,
-                                                     len, domain);
+    // A parallel capable class loader relies on the VM to reject a
+    // second definition of the same name.
+    if (parallelLockMap != null)
+      return VMClassLoader.defineClassWithTransformers(this, name, data,
+                                                       offset, len, domain);
+    synchronized (this)
+      {
+        return VMClassLoader.defineClassWithTransformers(this, name, data,
+                                                         offset, len, domain);
+      }
   }
 
   /**
@@ -575,10 +671,15 @@ public abstract class ClassLoader
    * @return the found Class, or null if it is not found
    * @since 1.1
    */
-  protected final synchronized Class<?> findLoadedClass(String name)
+  protected final Class<?> findLoadedClass(String name)
   {
     checkInitialized();
-    return VMClassLoader.findLoadedClass(this, name);
+    if (parallelLockMap != null)
+      return VMClassLoader.findLoadedClass(this, name);
+    synchronized (this)
+      {
+        return VMClassLoader.findLoadedClass(this, name);
+      }
   }
 
   /**
@@ -839,6 +940,10 @@ public abstract class ClassLoader
                             implTitle, implVendor, implVersion, sealed, this);
     synchronized (definedPackages)
       {
+        // Another thread may have got here first.
+        if (definedPackages.containsKey(name))
+          throw new IllegalArgumentException("Package " + name
+                                             + " already defined");
         definedPackages.put(name, p);
       }
     return p;
@@ -1095,23 +1200,36 @@ public abstract class ClassLoader
 
   static ClassLoader createSystemClassLoader(URL[] urls, ClassLoader parent)
   {
-    return
-        new URLClassLoader(urls, parent)
+    return new SystemClassLoader(urls, parent);
+  }
+
+  /**
+   * The default system class loader, which checks package access.
+   */
+  private static final class SystemClassLoader extends URLClassLoader
+  {
+    static
+    {
+      registerAsParallelCapable();
+    }
+
+    SystemClassLoader(URL[] urls, ClassLoader parent)
+    {
+      super(urls, parent);
+    }
+
+    protected Class<?> loadClass(String name, boolean resolve)
+      throws ClassNotFoundException
+    {
+      SecurityManager sm = SecurityManager.current;
+      if (sm != null)
         {
-            protected synchronized Class loadClass(String name,
-                boolean resolve)
-                throws ClassNotFoundException
-            {
-                SecurityManager sm = SecurityManager.current;
-                if (sm != null)
-                {
-                    int lastDot = name.lastIndexOf('.');
-                    if (lastDot != -1)
-                        sm.checkPackageAccess(name.substring(0, lastDot));
-                }
-                return super.loadClass(name, resolve);
-            }
-        };
+          int lastDot = name.lastIndexOf('.');
+          if (lastDot != -1)
+            sm.checkPackageAccess(name.substring(0, lastDot));
+        }
+      return super.loadClass(name, resolve);
+    }
   }
 
   static ClassLoader createAuxiliarySystemClassLoader(ClassLoader parent)
@@ -38,6 +38,8 @@ exception statement from your version. */
 
 package java.lang.reflect;
 
+import gnu.java.lang.reflect.ReflectionAccess;
+
 import java.lang.annotation.Annotation;
 
 /**
@@ -67,6 +69,27 @@ public class AccessibleObject
   // default visibility for use by inherited classes
   boolean flag = false;
 
+  static
+  {
+    ReflectionAccess.setInstance(new ReflectionAccess()
+      {
+        public Method copy(Method m)
+        {
+          return m.copy();
+        }
+
+        public Field copy(Field f)
+        {
+          return f.copy();
+        }
+
+        public <T> Constructor<T> copy(Constructor<T> c)
+        {
+          return c.copy();
+        }
+      });
+  }
+
   /**
    * Only the three reflection classes that extend this can create an
    * accessible object.  This is not serializable for security reasons.
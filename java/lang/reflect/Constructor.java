@@ -41,6 +41,7 @@ package java.lang.reflect;
 import gnu.java.lang.ClassHelper;
 import gnu.java.lang.CPStringBuilder;
 
+import gnu.java.lang.reflect.MethodAccessor;
 import gnu.java.lang.reflect.MethodSignatureParser;
 
 import java.lang.annotation.Annotation;
@@ -89,6 +90,23 @@ public final class Constructor<T>
 
   VMConstructor cons;
 
+  /** The Constructor this one is a copy of, or null. */
+  private Constructor<T> root;
+
+  /**
+   * The generated accessor of this constructor, or null.  Only the root
+   * of the copies of a constructor has one, and counts the invocations
+   * that lead to its generation.
+   */
+  private volatile MethodAccessor accessor;
+  private int invocations;
+
+  /**
+   * Whether the constructor and its class are public, so that using
+   * the accessor needs no access check.  Set before the accessor.
+   */
+  private boolean publicMember;
+
   /**
    * This class is uninstantiable outside this package.
    */
@@ -98,6 +116,18 @@ public final class Constructor<T>
     cons.cons = this;
   }
 
+  /**
+   * Return a new Constructor for the same constructor, as handed out by
+   * <code>Class</code> from its cached reflection data.  The copy
+   * is not accessible, whatever the state of this one.
+   */
+  Constructor<T> copy()
+  {
+    Constructor<T> copy = new Constructor<T>(cons.copy());
+    copy.root = root == null ? this : root;
+    return copy;
+  }
+
   private Constructor()
   {
   }
@@ -314,10 +344,35 @@ public final class Constructor<T>
     throws InstantiationException, IllegalAccessException,
            InvocationTargetException
   {
+    Constructor<T> root = this.root == null ? this : this.root;
+    MethodAccessor accessor = root.accessor;
+    if (accessor == null
+        && ++root.invocations == MethodAccessorFactory.THRESHOLD)
+      accessor = root.inflate();
+    Object ins;
+    if (accessor != null && (flag || root.publicMember))
+      ins = accessor.invoke(null, args);
+    else
+      ins = cons.construct(args);
     // Inescapable as the VM layer is 1.4 based.
     @SuppressWarnings("unchecked")
-      T ins = (T) cons.construct(args);
-    return ins;
+      T t = (T) ins;
+    return t;
+  }
+
+  /**
+   * Generates the accessor of this constructor, once it has been
+   * invoked often enough through the VM.
+   *
+   * @return the accessor, or null if there cannot be one
+   */
+  private MethodAccessor inflate()
+  {
+    publicMember = Modifier.isPublic(getModifiers())
+      && Modifier.isPublic(getDeclaringClass().getModifiers());
+    MethodAccessor accessor = MethodAccessorFactory.generate(this);
+    this.accessor = accessor;
+    return accessor;
   }
 
   /**
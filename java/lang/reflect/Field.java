@@ -99,6 +99,16 @@ extends AccessibleObject implements Member
     f.f = this;
   }
 
+  /**
+   * Return a new Field for the same field, as handed out by
+   * <code>Class</code> from its cached reflection data.  The copy
+   * is not accessible, whatever the state of this one.
+   */
+  Field copy()
+  {
+    return new Field(f.copy());
+  }
+
   /**
    * Gets the class that declared this field, or the class where this field
    * is a non-inherited member.
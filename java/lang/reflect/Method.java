@@ -41,6 +41,7 @@ package java.lang.reflect;
 import gnu.java.lang.ClassHelper;
 import gnu.java.lang.CPStringBuilder;
 
+import gnu.java.lang.reflect.MethodAccessor;
 import gnu.java.lang.reflect.MethodSignatureParser;
 
 import java.lang.annotation.Annotation;
@@ -90,6 +91,23 @@ extends AccessibleObject implements Member, GenericDeclaration
 
   VMMethod m;
 
+  /** The Method this one is a copy of, or null. */
+  private Method root;
+
+  /**
+   * The generated accessor of this method, or null.  Only the root of
+   * the copies of a method has one, and counts the invocations that
+   * lead to its generation.
+   */
+  private volatile MethodAccessor accessor;
+  private int invocations;
+
+  /**
+   * Whether the method and its class are public, so that using the
+   * accessor needs no access check.  Set before the accessor.
+   */
+  private boolean publicMember;
+
   /**
    * This class is uninstantiable outside this package.
    */
@@ -99,6 +117,18 @@ extends AccessibleObject implements Member, GenericDeclaration
     m.m = this;
   }
 
+  /**
+   * Return a new Method for the same method, as handed out by
+   * <code>Class</code> from its cached reflection data.  The copy
+   * is not accessible, whatever the state of this one.
+   */
+  Method copy()
+  {
+    Method copy = new Method(m.copy());
+    copy.root = root == null ? this : root;
+    return copy;
+  }
+
   /**
    * Gets the class that declared this method, or the class where this method
    * is a non-inherited member.
@@ -324,9 +354,31 @@ extends AccessibleObject implements Member, GenericDeclaration
   public Object invoke(Object o, Object... args)
     throws IllegalAccessException, InvocationTargetException
   {
+    Method root = this.root == null ? this : this.root;
+    MethodAccessor accessor = root.accessor;
+    if (accessor == null
+        && ++root.invocations == MethodAccessorFactory.THRESHOLD)
+      accessor = root.inflate();
+    if (accessor != null && (flag || root.publicMember))
+      return accessor.invoke(o, args);
     return m.invoke(o, args);
   }
 
+  /**
+   * Generates the accessor of this method, once it has been invoked
+   * often enough through the VM.
+   *
+   * @return the accessor, or null if there cannot be one
+   */
+  private MethodAccessor inflate()
+  {
+    publicMember = Modifier.isPublic(getModifiers())
+      && Modifier.isPublic(getDeclaringClass().getModifiers());
+    MethodAccessor accessor = MethodAccessorFactory.generate(this);
+    this.accessor = accessor;
+    return accessor;
+  }
+
   /**
    * Returns an array of <code>TypeVariable</code> objects that represents
    * the type variables declared by this constructor, in declaration order.
@@ -0,0 +1,369 @@
+/* MethodAccessorFactory.java -- Generates method and constructor accessors
+   Copyright (C) 2026 Free Software Foundation, Inc.
+
+This file is part of GNU Classpath.
+
+GNU Classpath is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 2, or (at your option)
+any later version.
+
+GNU Classpath is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with GNU Classpath; see the file COPYING.  If not, write to the
+Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+02110-1301 USA.
+
+Linking this library statically or dynamically with other modules is
+making a combined work based on this library.  Thus, the terms and
+conditions of the GNU General Public License cover the whole
+combination.
+
+As a special exception, the copyright holders of this library give you
+permission to link this library with independent modules to produce an
+executable, regardless of the license terms of these independent
+modules, and to copy and distribute the resulting executable under
+terms of your choice, provided that you also meet, for each linked
+independent module, the terms and conditions of the license of that
+module.  An independent module is a module which is not derived from
+or based on this library.  If you modify this library, you may extend
+this exception to your version of the library, but you are not
+obligated to do so.  If you do not wish to do so, delete this
+exception statement from your version. */
+
+package java.lang.reflect;
+
+import gnu.classpath.SystemProperties;
+import gnu.java.lang.reflect.ClassFileWriter;
+import gnu.java.lang.reflect.MethodAccessor;
+import gnu.java.lang.reflect.TypeSignature;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.ProtectionDomain;
+
+/**
+ * Generates the {@link MethodAccessor} of a method or constructor.  The
+ * accessor is defined in the package and class loader of the declaring
+ * class, so that it can call every member that is not private.
+ *
+ * Generating a class costs far more than a few calls through the VM,
+ * so Method and Constructor only ask for an accessor once they have
+ * been invoked {@link #THRESHOLD} times.  No accessor is generated for
+ * the classes of the bootstrap loader: besides not wanting to define
+ * classes in their packages, some of their methods look at their caller,
+ * which the accessor would change.
+ */
+final class MethodAccessorFactory
+{
+  /**
+   * The number of invocations of a method or constructor through the VM
+   * before an accessor is generated for it, from the system property
+   * <code>gnu.java.lang.reflect.inflationThreshold</code>.  Zero or less
+   * turns the accessors off.
+   */
+  static final int THRESHOLD;
+
+  static
+  {
+    int threshold = 15;
+    String s = SystemProperties.getProperty
+      ("gnu.java.lang.reflect.inflationThreshold");
+    if (s != null)
+      {
+        try
+          {
+            threshold = Integer.parseInt(s);
+          }
+        catch (NumberFormatException e)
+          {
+          }
+      }
+    THRESHOLD = threshold;
+  }
+
+  private static final String ACCESSOR = "gnu/java/lang/reflect/MethodAccessor";
+
+  private static final String INVOKE_DESCRIPTOR
+    = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+
+  /** The primitive types, their wrappers and unboxing methods. */
+  private static final Class[] PRIMITIVES =
+  {
+    boolean.class, byte.class, char.class, short.class, int.class,
+    long.class, float.class, double.class
+  };
+
+  private static final String[] WRAPPERS =
+  {
+    "java/lang/Boolean", "java/lang/Byte", "java/lang/Character",
+    "java/lang/Short", "java/lang/Integer", "java/lang/Long",
+    "java/lang/Float", "java/lang/Double"
+  };
+
+  private static final String[] UNBOX =
+  {
+    "unboxBoolean", "unboxByte", "unboxChar", "unboxShort", "unboxInt",
+    "unboxLong", "unboxFloat", "unboxDouble"
+  };
+
+  /** Makes the names of the accessor classes unique. */
+  private static int count;
+
+  private MethodAccessorFactory() {} // Prohibits instantiation.
+
+  /**
+   * Returns an accessor for the method, or null if it cannot have one.
+   */
+  static MethodAccessor generate(Method m)
+  {
+    int mods = m.getModifiers();
+    Class clazz = m.getDeclaringClass();
+    if (Modifier.isStatic(mods) && clazz.isInterface())
+      return null;
+    return generate(clazz, m.getName(), TypeSignature.getEncodingOfMethod(m),
+                    m.getParameterTypes(), m.getReturnType(), mods, false);
+  }
+
+  /**
+   * Returns an accessor for the constructor, or null if it cannot have
+   * one.
+   */
+  static MethodAccessor generate(Constructor c)
+  {
+    Class clazz = c.getDeclaringClass();
+    if (Modifier.isAbstract(clazz.getModifiers()) || clazz.isEnum())
+      return null;
+    return generate(clazz, "<init>", TypeSignature.getEncodingOfConstructor(c),
+                    c.getParameterTypes(), void.class, c.getModifiers(),
+                    true);
+  }
+
+  private static MethodAccessor generate(Class clazz, String name,
+                                         String descriptor, Class[] params,
+                                         Class returnType, int mods,
+                                         boolean constructor)
+  {
+    final ClassLoader loader = clazz.getClassLoader();
+    if (THRESHOLD <= 0 || loader == null || Modifier.isPrivate(mods)
+        || clazz.isArray() || clazz.isPrimitive())
+      return null;
+    for (int i = 0; i < params.length; i++)
+      if (! accessible(params[i], clazz))
+        return null;
+
+    // Class initialization must happen, and fail, outside the accessor,
+    // whose handler would wrap its errors.
+    if (constructor || Modifier.isStatic(mods))
+      {
+        try
+          {
+            Class.forName(clazz.getName(), true, loader);
+          }
+        catch (Throwable t)
+          {
+            return null;
+          }
+      }
+
+    String className;
+    synchronized (MethodAccessorFactory.class)
+      {
+        className = clazz.getName() + "$$MethodAccessor" + count++;
+      }
+    final byte[] bytecode = generate(clazz, className.replace('.', '/'),
+                                     name, descriptor, params, returnType,
+                                     mods, constructor);
+    final String accessorName = className;
+    final Class target = clazz;
+
+    return (MethodAccessor) AccessController.doPrivileged
+      (new PrivilegedAction()
+        {
+          public Object run()
+          {
+            try
+              {
+                Class vmClassLoader = Class.forName("java.lang.VMClassLoader");
+                Class[] types = { ClassLoader.class, String.class,
+                                  byte[].class, int.class, int.class,
+                                  ProtectionDomain.class };
+                Method m = vmClassLoader.getDeclaredMethod("defineClass",
+                                                           types);
+                m.setAccessible(true);
+                Object[] args = { loader, accessorName, bytecode,
+                                  Integer.valueOf(0),
+                                  Integer.valueOf(bytecode.length),
+                                  target.getProtectionDomain() };
+                Class c = (Class) m.invoke(null, args);
+                Constructor cons = c.getDeclaredConstructor(new Class[0]);
+                cons.setAccessible(true);
+                return cons.newInstance(new Object[0]);
+              }
+            catch (Exception e)
+              {
+                return null;
+              }
+            catch (LinkageError e)
+              {
+                // The loader does not see MethodAccessor, or the class
+                // was not accepted.
+                return null;
+              }
+          }
+        });
+  }
+
+  /**
+   * Returns true if code in the package of <code>from</code> can name
+   * <code>type</code> in a CHECKCAST.
+   */
+  private static boolean accessible(Class type, Class from)
+  {
+    while (type.isArray())
+      type = type.getComponentType();
+    if (type.isPrimitive() || Modifier.isPublic(type.getModifiers()))
+      return true;
+    if (type.getClassLoader() != from.getClassLoader())
+      return false;
+    String name = type.getName();
+    String fromName = from.getName();
+    int dot = name.lastIndexOf('.');
+    return dot == fromName.lastIndexOf('.')
+      && name.regionMatches(0, fromName, 0, dot + 1);
+  }
+
+  /**
+   * Returns the class file of the accessor.  Its invoke method checks
+   * the number of arguments and the receiver, then casts or unboxes the
+   * receiver and each argument, turning a ClassCastException into an
+   * IllegalArgumentException, and calls the member, wrapping whatever
+   * it throws in an InvocationTargetException.
+   */
+  private static byte[] generate(Class clazz, String className, String name,
+                                 String descriptor, Class[] params,
+                                 Class returnType, int mods,
+                                 boolean constructor)
+  {
+    ClassFileWriter cf
+      = new ClassFileWriter(ClassFileWriter.ACC_FINAL
+                            | ClassFileWriter.ACC_SUPER
+                            | ClassFileWriter.ACC_SYNTHETIC,
+                            className, ACCESSOR, null);
+    String owner = TypeSignature.getEncodingOfClass(clazz.getName(), false);
+    boolean isStatic = ! constructor && Modifier.isStatic(mods);
+
+    ClassFileWriter.Code code = cf.addMethod(0, "<init>", "()V", 1, 1);
+    code.load(Object.class, 0);
+    code.op2(ClassFileWriter.INVOKESPECIAL,
+             cf.methodRef(ACCESSOR, "<init>", "()V"));
+    code.op(ClassFileWriter.RETURN);
+
+    int argSlots = 0;
+    for (int i = 0; i < params.length; i++)
+      argSlots += params[i] == long.class || params[i] == double.class ? 2 : 1;
+    code = cf.addMethod(ClassFileWriter.ACC_PUBLIC, "invoke",
+                        INVOKE_DESCRIPTOR, argSlots + 4, 3);
+
+    code.load(Object.class, 2);
+    code.iconst(params.length);
+    code.op2(ClassFileWriter.INVOKESTATIC,
+             cf.methodRef(ACCESSOR, "checkArguments",
+                          "([Ljava/lang/Object;I)V"));
+    if (constructor)
+      {
+        code.op2(ClassFileWriter.NEW, cf.classInfo(owner));
+        code.op(ClassFileWriter.DUP);
+      }
+    else if (! isStatic)
+      {
+        code.load(Object.class, 1);
+        code.op2(ClassFileWriter.INVOKESTATIC,
+                 cf.methodRef(ACCESSOR, "checkReceiver",
+                              "(Ljava/lang/Object;)V"));
+      }
+
+    int start = code.position();
+    if (! constructor && ! isStatic)
+      {
+        code.load(Object.class, 1);
+        code.op2(ClassFileWriter.CHECKCAST, cf.classInfo(owner));
+      }
+    for (int i = 0; i < params.length; i++)
+      {
+        Class type = params[i];
+        code.load(Object.class, 2);
+        code.iconst(i);
+        code.op(ClassFileWriter.AALOAD);
+        if (type.isPrimitive())
+          {
+            int p = primitiveIndex(type);
+            code.op2(ClassFileWriter.INVOKESTATIC,
+                     cf.methodRef(ACCESSOR, UNBOX[p], "(Ljava/lang/Object;)"
+                                  + TypeSignature.getEncodingOfClass(type)));
+          }
+        else if (type != Object.class)
+          code.op2(ClassFileWriter.CHECKCAST,
+                   cf.classInfo(TypeSignature.getEncodingOfClass
+                                (type.getName(), false)));
+      }
+
+    int call = code.position();
+    if (constructor)
+      code.op2(ClassFileWriter.INVOKESPECIAL,
+               cf.methodRef(owner, name, descriptor));
+    else if (isStatic)
+      code.op2(ClassFileWriter.INVOKESTATIC,
+               cf.methodRef(owner, name, descriptor));
+    else if (clazz.isInterface())
+      code.invokeInterface(cf.interfaceMethodRef(owner, name, descriptor),
+                           argSlots);
+    else
+      code.op2(ClassFileWriter.INVOKEVIRTUAL,
+               cf.methodRef(owner, name, descriptor));
+    int end = code.position();
+
+    // For a constructor, the new object is left on the stack.
+    if (! constructor && returnType == void.class)
+      code.op(ClassFileWriter.ACONST_NULL);
+    else if (! constructor && returnType.isPrimitive())
+      {
+        int p = primitiveIndex(returnType);
+        code.op2(ClassFileWriter.INVOKESTATIC,
+                 cf.methodRef(WRAPPERS[p], "valueOf",
+                              "(" + TypeSignature.getEncodingOfClass(returnType)
+                              + ")L" + WRAPPERS[p] + ";"));
+      }
+    code.op(ClassFileWriter.ARETURN);
+
+    if (start < call)
+      {
+        code.addHandler(start, call, code.position(),
+                        cf.classInfo("java/lang/ClassCastException"));
+        code.op2(ClassFileWriter.INVOKESTATIC,
+                 cf.methodRef(ACCESSOR, "argumentMismatch",
+                              "(Ljava/lang/ClassCastException;)"
+                              + "Ljava/lang/IllegalArgumentException;"));
+        code.op(ClassFileWriter.ATHROW);
+      }
+    code.addHandler(call, end, code.position(), 0);
+    code.op2(ClassFileWriter.INVOKESTATIC,
+             cf.methodRef(ACCESSOR, "targetException",
+                          "(Ljava/lang/Throwable;)"
+                          + "Ljava/lang/reflect/InvocationTargetException;"));
+    code.op(ClassFileWriter.ATHROW);
+    return cf.toByteArray();
+  }
+
+  private static int primitiveIndex(Class type)
+  {
+    for (int i = 0; i < PRIMITIVES.length; i++)
+      if (PRIMITIVES[i] == type)
+        return i;
+    throw new InternalError(type.getName());
+  }
+}
@@ -43,6 +43,8 @@ import gnu.java.lang.CPStringBuilder;
 import gnu.java.lang.reflect.TypeSignature;
 
 import java.io.Serializable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.security.ProtectionDomain;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -50,6 +52,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class allows you to dynamically create an instance of any (or
@@ -168,13 +171,23 @@ public class Proxy implements Serializable
   private static final long serialVersionUID = -2222568056686623797L;
 
   /**
-   * Map of ProxyType to proxy class.
-   *
-   * @XXX This prevents proxy classes from being garbage collected.
-   * java.util.WeakHashSet is not appropriate, because that collects the
-   * keys, but we are interested in collecting the elements.
+   * The proxy classes of each class loader, by interfaces.  The loaders,
+   * the interfaces and the proxy classes are all weakly referenced, so
+   * the cache keeps none of them alive; the table of a loader goes away
+   * with the loader.  Lookups take no lock, and only generating a class
+   * locks the table of its loader.
    */
-  private static final Map proxyClasses = new HashMap();
+  private static final
+    ConcurrentHashMap<LoaderKey,ConcurrentHashMap<ProxyKey,WeakReference<Class>>>
+    proxyClasses
+    = new ConcurrentHashMap<LoaderKey,ConcurrentHashMap<ProxyKey,WeakReference<Class>>>();
+
+  /** Receives the keys of collected loaders. */
+  private static final ReferenceQueue<Object> loaderQueue
+    = new ReferenceQueue<Object>();
+
+  /** Stands for the bootstrap loader in the keys of proxyClasses. */
+  private static final Object BOOTSTRAP_LOADER = new Object();
 
   /**
    * The invocation handler for this proxy instance.  For Proxy, this
@@ -255,20 +268,30 @@ public class Proxy implements Serializable
    * @throws NullPointerException if `interfaces' is null or contains
    *         a null entry
    */
-  // synchronized so that we aren't trying to build the same class
-  // simultaneously in two threads
-  public static synchronized Class<?> getProxyClass(ClassLoader loader,
-                                                    Class<?>... interfaces)
+  public static Class<?> getProxyClass(ClassLoader loader,
+                                      Class<?>... interfaces)
   {
     interfaces = (Class[]) interfaces.clone();
-    ProxyType pt = new ProxyType(loader, interfaces);
-    Class clazz = (Class) proxyClasses.get(pt);
-    if (clazz == null)
+    ConcurrentHashMap<ProxyKey,WeakReference<Class>> classes
+      = getProxyClasses(loader, true);
+    ProxyKey key = new ProxyKey(interfaces, false);
+    Class clazz = lookup(classes, key);
+    if (clazz != null)
+      return clazz;
+
+    // Locked so that we aren't trying to build the same class
+    // simultaneously in two threads.
+    synchronized (classes)
       {
+        clazz = lookup(classes, key);
+        if (clazz != null)
+          return clazz;
+
         if (VMProxy.HAVE_NATIVE_GET_PROXY_CLASS)
           clazz = VMProxy.getProxyClass(loader, interfaces);
         else
           {
+            ProxyType pt = new ProxyType(loader, interfaces);
             ProxyData data = (VMProxy.HAVE_NATIVE_GET_PROXY_DATA
                               ? VMProxy.getProxyData(loader, interfaces)
                               : ProxyData.getProxyData(pt));
@@ -278,14 +301,54 @@ public class Proxy implements Serializable
                      : new ClassFactory(data).generate(loader));
           }
 
-        Object check = proxyClasses.put(pt, clazz);
-        // assert check == null && clazz != null;
-        if (check != null || clazz == null)
+        // assert clazz != null;
+        if (clazz == null)
           throw new InternalError(/*"Fatal flaw in getProxyClass"*/);
+        classes.put(new ProxyKey(interfaces, true),
+                    new WeakReference<Class>(clazz));
       }
     return clazz;
   }
 
+  /**
+   * Returns the table of the proxy classes of a loader, optionally
+   * creating it.
+   *
+   * @param loader the loader, or null for the bootstrap loader
+   * @param create whether to create the table if it does not exist
+   * @return the table, or null if it does not exist and create is false
+   */
+  private static ConcurrentHashMap<ProxyKey,WeakReference<Class>>
+    getProxyClasses(ClassLoader loader, boolean create)
+  {
+    Object referent = loader == null ? BOOTSTRAP_LOADER : loader;
+    ConcurrentHashMap<ProxyKey,WeakReference<Class>> classes
+      = proxyClasses.get(new LoaderKey(referent, null));
+    if (classes == null && create)
+      {
+        LoaderKey key;
+        while ((key = (LoaderKey) loaderQueue.poll()) != null)
+          proxyClasses.remove(key);
+        classes = new ConcurrentHashMap<ProxyKey,WeakReference<Class>>();
+        ConcurrentHashMap<ProxyKey,WeakReference<Class>> old
+          = proxyClasses.putIfAbsent(new LoaderKey(referent, loaderQueue),
+                                     classes);
+        if (old != null)
+          classes = old;
+      }
+    return classes;
+  }
+
+  /**
+   * Returns the proxy class in a table of proxy classes, or null.
+   */
+  private static Class lookup(ConcurrentHashMap<ProxyKey,WeakReference<Class>>
+                              classes, ProxyKey key)
+  {
+    WeakReference<Class> ref = classes.get(key);
+    return ref == null ? null : ref.get();
+  }
+
   /**
    * Combines several methods into one.  This is equivalent to:
    * <pre>
@@ -358,15 +421,16 @@ public class Proxy implements Serializable
    * @return true if the class represents a proxy class
    * @throws NullPointerException if clazz is null
    */
-  // This is synchronized on the off chance that another thread is
-  // trying to add a class to the map at the same time we read it.
-  public static synchronized boolean isProxyClass(Class<?> clazz)
+  public static boolean isProxyClass(Class<?> clazz)
   {
     if (! Proxy.class.isAssignableFrom(clazz))
       return false;
-    // This is a linear search, even though we could do an O(1) search
-    // using new ProxyType(clazz.getClassLoader(), clazz.getInterfaces()).
-    return proxyClasses.containsValue(clazz);
+    // A proxy class implements its interfaces in the order it was
+    // asked for, so it can be found under them.
+    ConcurrentHashMap<ProxyKey,WeakReference<Class>> classes
+      = getProxyClasses(clazz.getClassLoader(), false);
+    return classes != null
+      && lookup(classes, new ProxyKey(clazz.getInterfaces(), false)) == clazz;
   }
 
   /**
@@ -390,8 +454,96 @@ public class Proxy implements Serializable
   }
 
   /**
-   * Helper class for mapping unique ClassLoader and interface combinations
-   * to proxy classes.
+   * The key of the table of a loader in proxyClasses.  It refers weakly
+   * to the loader, and compares it by identity.
+   */
+  private static final class LoaderKey extends WeakReference<Object>
+  {
+    private final int hash;
+
+    LoaderKey(Object loader, ReferenceQueue<Object> queue)
+    {
+      super(loader, queue);
+      hash = System.identityHashCode(loader);
+    }
+
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    public boolean equals(Object o)
+    {
+      if (o == this)
+        return true;
+      if (! (o instanceof LoaderKey))
+        return false;
+      Object referent = get();
+      return referent != null && referent == ((LoaderKey) o).get();
+    }
+  }
+
+  /**
+   * The key of a proxy class in the table of its loader: its interfaces,
+   * in order, compared by identity.  The keys in the table refer to the
+   * interfaces weakly, so that they do not keep the loader alive; the
+   * keys used for lookups refer to them directly.
+   */
+  private static final class ProxyKey
+  {
+    /** The interfaces, or weak references to them. */
+    private final Object[] interfaces;
+    private final boolean weak;
+    private final int hash;
+
+    ProxyKey(Class[] interfaces, boolean weak)
+    {
+      this.weak = weak;
+      this.interfaces = new Object[interfaces.length];
+      int hash = 0;
+      for (int i = 0; i < interfaces.length; i++)
+        {
+          this.interfaces[i] = weak
+            ? new WeakReference<Class>(interfaces[i]) : (Object) interfaces[i];
+          hash = hash * 31 + System.identityHashCode(interfaces[i]);
+        }
+      this.hash = hash;
+    }
+
+    private Class getInterface(int i)
+    {
+      if (weak)
+        return ((WeakReference<Class>) interfaces[i]).get();
+      return (Class) interfaces[i];
+    }
+
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    public boolean equals(Object o)
+    {
+      if (o == this)
+        return true;
+      if (! (o instanceof ProxyKey))
+        return false;
+      ProxyKey key = (ProxyKey) o;
+      if (hash != key.hash || interfaces.length != key.interfaces.length)
+        return false;
+      for (int i = 0; i < interfaces.length; i++)
+        {
+          Class c = getInterface(i);
+          if (c == null || c != key.getInterface(i))
+            return false;
+        }
+      return true;
+    }
+  }
+
+  /**
+   * Helper class holding the ClassLoader and interfaces a proxy class
+   * is generated for.
    *
    * @author Eric Blake (ebb9@email.byu.edu)
    */
@@ -651,7 +803,12 @@ public class Proxy implements Serializable
     /**
      * The id of this proxy class
      */
-    final int id = count++;
+    final int id = nextId();
+
+    private static synchronized int nextId()
+    {
+      return count++;
+    }
 
     /**
      * Construct a ProxyData with uninitialized data members.
@@ -821,10 +978,12 @@ public class Proxy implements Serializable
     private static final char ICONST_0 = 3;
     private static final char BIPUSH = 16;
     private static final char SIPUSH = 17;
+    private static final char LDC_W = 19;
     private static final char ILOAD = 21;
     private static final char ILOAD_0 = 26;
     private static final char ALOAD_0 = 42;
     private static final char ALOAD_1 = 43;
+    private static final char ASTORE_0 = 75;
     private static final char AALOAD = 50;
     private static final char AASTORE = 83;
     private static final char DUP = 89;
@@ -837,15 +996,20 @@ public class Proxy implements Serializable
     private static final char ARETURN = 176;
     private static final char RETURN = 177;
     private static final char GETSTATIC = 178;
+    private static final char PUTSTATIC = 179;
     private static final char GETFIELD = 180;
     private static final char INVOKEVIRTUAL = 182;
     private static final char INVOKESPECIAL = 183;
+    private static final char INVOKESTATIC = 184;
     private static final char INVOKEINTERFACE = 185;
     private static final char NEW = 187;
     private static final char ANEWARRAY = 189;
     private static final char ATHROW = 191;
     private static final char CHECKCAST = 192;
 
+    /** The length of the bytecode putForName adds. */
+    private static final int FOR_NAME_LENGTH = 8;
+
     // Implementation note: we use StringBuffers to hold the byte data, since
     // they automatically grow.  However, we only use the low 8 bits of
     // every char in the array, so we are using twice the necessary memory
@@ -883,9 +1047,9 @@ public class Proxy implements Serializable
 
       // magic = 0xcafebabe
       // minor_version = 0
-      // major_version = 46
+      // major_version = 49, for LDC of classes
       // constant_pool_count: place-holder for now
-      pool.append("\u00ca\u00fe\u00ba\u00be\0\0\0\56\0\0");
+      pool.append("\u00ca\u00fe\u00ba\u00be\0\0\0\61\0\0");
       // constant_pool[], filled in as we go
 
       // access_flags
@@ -902,24 +1066,28 @@ public class Proxy implements Serializable
       for (int i = 0; i < data.interfaces.length; i++)
         putU2(classInfo(data.interfaces[i]));
 
-      // Recall that Proxy classes serialize specially, so we do not need
-      // to worry about a <clinit> method for this field.  Instead, we
-      // just assign it by reflection after the class is successfully loaded.
-      // fields_count - private static Method[] m;
-      putU2(1);
+      // Each handler method passes its Method to the invocation handler
+      // straight from a constant, set by <clinit>.  Recall that Proxy
+      // classes serialize specially, so adding a <clinit> does not change
+      // their serialVersionUID.
+      // fields_count - private static final Method m0, m1, ...;
+      putU2(methods.length);
       // fields[]
-      // m.access_flags
-      putU2(Modifier.PRIVATE | Modifier.STATIC);
-      // m.name_index
-      putU2(utf8Info("m"));
-      // m.descriptor_index
-      putU2(utf8Info("[Ljava/lang/reflect/Method;"));
-      // m.attributes_count
-      putU2(0);
-      // m.attributes[]
+      for (int i = 0; i < methods.length; i++)
+        {
+          // m<i>.access_flags
+          putU2(Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL);
+          // m<i>.name_index
+          putU2(utf8Info("m" + i));
+          // m<i>.descriptor_index
+          putU2(utf8Info("Ljava/lang/reflect/Method;"));
+          // m<i>.attributes_count
+          putU2(0);
+          // m<i>.attributes[]
+        }
 
-      // methods_count - # handler methods, plus <init>
-      putU2(methods.length + 1);
+      // methods_count - # handler methods, plus <init> and <clinit>
+      putU2(methods.length + 2);
       // methods[]
       // <init>.access_flags
       putU2(Modifier.PUBLIC);
@@ -947,6 +1115,7 @@ public class Proxy implements Serializable
       // <init>.Code.attributes[]
       stream.append(RETURN + "\0\0\0\0");
 
+      emitStaticInitializer();
       for (int i = methods.length - 1; i >= 0; i--)
         emitMethod(i, data.exceptions[i]);
 
@@ -956,6 +1125,166 @@ public class Proxy implements Serializable
       // XXX should we mark this with a Synthetic attribute?
     }
 
+    /**
+     * Produce the bytecode of the static initializer, which looks up the
+     * Method of each handler method. The classes involved are loaded by
+     * name rather than with ldc, as the proxy need not have access to them.
+     */
+    private void emitStaticInitializer()
+    {
+      // <clinit>.Code.info:
+      //   static {
+      //     try {
+      //       ClassLoader l = $ProxyN.class.getClassLoader();
+      //       m0 = Class.forName("Declaring0", false, l).getMethod("name0",
+      //              new Class[] {Class.forName("Param0", false, l), ...});
+      //       ...
+      //     } catch (NoSuchMethodException e) {
+      //       throw new NoSuchMethodError(e.getMessage());
+      //     } catch (ClassNotFoundException e) {
+      //       throw new NoClassDefFoundError(e.getMessage());
+      //     }
+      //   }
+      int code_length = 7; // ldc_w, invokevirtual, astore_0
+      for (int i = 0; i < methods.length; i++)
+        {
+          Class[] paramtypes = methods[i].getParameterTypes();
+          // forName, ldc_w, const, anewarray
+          code_length += FOR_NAME_LENGTH + 6 + constLength(paramtypes.length);
+          // dup, const, getstatic or forName, aastore
+          for (int j = 0; j < paramtypes.length; j++)
+            code_length += 2 + constLength(j)
+              + (paramtypes[j].isPrimitive() ? 3 : FOR_NAME_LENGTH);
+          code_length += 6; // invokevirtual, putstatic
+        }
+      int end_pc = code_length;
+      code_length += 25; // return; twice invokevirtual, new, dup_x1, swap,
+                         // invokespecial, athrow
+
+      // <clinit>.access_flags
+      putU2(Modifier.STATIC);
+      // <clinit>.name_index
+      putU2(utf8Info("<clinit>"));
+      // <clinit>.descriptor_index
+      putU2(utf8Info("()V"));
+      // <clinit>.attributes_count - only Code is needed
+      putU2(1);
+      // <clinit>.Code.attribute_name_index
+      putU2(utf8Info("Code"));
+      // <clinit>.Code.attribute_length
+      putU4(12 + code_length + 16);
+      // <clinit>.Code.max_stack
+      putU2(8);
+      // <clinit>.Code.max_locals
+      putU2(1);
+      // <clinit>.Code.code_length
+      putU4(code_length);
+      // <clinit>.Code.code[]
+      putU1(LDC_W);
+      putU2(classInfo(TypeSignature.getEncodingOfClass(qualName, false)));
+      putU1(INVOKEVIRTUAL);
+      putU2(refInfo(METHOD, "java/lang/Class", "getClassLoader",
+                    "()Ljava/lang/ClassLoader;"));
+      putU1(ASTORE_0);
+      for (int i = 0; i < methods.length; i++)
+        {
+          Method m = methods[i];
+          Class[] paramtypes = m.getParameterTypes();
+          putForName(m.getDeclaringClass());
+          putU1(LDC_W);
+          putU2(stringInfo(m.getName()));
+          putConst(paramtypes.length);
+          putU1(ANEWARRAY);
+          putU2(classInfo("java/lang/Class"));
+          for (int j = 0; j < paramtypes.length; j++)
+            {
+              putU1(DUP);
+              putConst(j);
+              if (paramtypes[j].isPrimitive())
+                {
+                  putU1(GETSTATIC);
+                  putU2(refInfo(FIELD, wrapper(paramtypes[j]), "TYPE",
+                                "Ljava/lang/Class;"));
+                }
+              else
+                putForName(paramtypes[j]);
+              putU1(AASTORE);
+            }
+          putU1(INVOKEVIRTUAL);
+          putU2(refInfo(METHOD, "java/lang/Class", "getMethod",
+                        "(Ljava/lang/String;[Ljava/lang/Class;)"
+                        + "Ljava/lang/reflect/Method;"));
+          putU1(PUTSTATIC);
+          putU2(refInfo(FIELD, TypeSignature.getEncodingOfClass(qualName,
+                                                                false),
+                        "m" + i, "Ljava/lang/reflect/Method;"));
+        }
+      putU1(RETURN);
+      putRethrow("java/lang/NoSuchMethodError");
+      putRethrow("java/lang/NoClassDefFoundError");
+
+      // <clinit>.Code.exception_table_length
+      putU2(2);
+      // <clinit>.Code.exception_table.start_pc
+      putU2(0);
+      // <clinit>.Code.exception_table.end_pc
+      putU2(end_pc);
+      // <clinit>.Code.exception_table.handler_pc
+      putU2(end_pc + 1);
+      // <clinit>.Code.exception_table.catch_type
+      putU2(classInfo("java/lang/NoSuchMethodException"));
+      // <clinit>.Code.exception_table.start_pc
+      putU2(0);
+      // <clinit>.Code.exception_table.end_pc
+      putU2(end_pc);
+      // <clinit>.Code.exception_table.handler_pc
+      putU2(end_pc + 13);
+      // <clinit>.Code.exception_table.catch_type
+      putU2(classInfo("java/lang/ClassNotFoundException"));
+      // <clinit>.Code.attributes_count
+      putU2(0);
+      // <clinit>.Code.attributes[]
+    }
+
+    /**
+     * Put bytecode on the stream that loads a class by name through the
+     * class loader held in local variable 0. This is FOR_NAME_LENGTH bytes
+     * long.
+     *
+     * @param clazz the class to load
+     */
+    private void putForName(Class clazz)
+    {
+      putU1(LDC_W);
+      putU2(stringInfo(clazz.getName()));
+      putU1(ICONST_0);
+      putU1(ALOAD_0);
+      putU1(INVOKESTATIC);
+      putU2(refInfo(METHOD, "java/lang/Class", "forName",
+                    "(Ljava/lang/String;ZLjava/lang/ClassLoader;)"
+                    + "Ljava/lang/Class;"));
+    }
+
+    /**
+     * Put the 12 bytes of an exception handler on the stream, which throws
+     * an error of the given class with the message of the caught exception.
+     *
+     * @param error the error class name, in internal form
+     */
+    private void putRethrow(String error)
+    {
+      putU1(INVOKEVIRTUAL);
+      putU2(refInfo(METHOD, "java/lang/Throwable", "getMessage",
+                    "()Ljava/lang/String;"));
+      putU1(NEW);
+      putU2(classInfo(error));
+      putU1(DUP_X1);
+      putU1(SWAP);
+      putU1(INVOKESPECIAL);
+      putU2(refInfo(METHOD, error, "<init>", "(Ljava/lang/String;)V"));
+      putU1(ATHROW);
+    }
+
     /**
      * Produce the bytecode for a single method.
      *
@@ -970,15 +1299,8 @@ public class Proxy implements Serializable
       Class[] paramtypes = m.getParameterTypes();
       int wrap_overhead = 0; // max words taken by wrapped primitive
       int param_count = 1; // 1 for this
-      int code_length = 16; // aload_0, getfield, aload_0, getstatic, const,
-      // aaload, const/aconst_null, invokeinterface
-      if (i > 5)
-        {
-          if (i > Byte.MAX_VALUE)
-            code_length += 2; // sipush
-          else
-            code_length++; // bipush
-        }
+      int code_length = 14; // aload_0, getfield, aload_0, getstatic,
+      // const/aconst_null, invokeinterface
       if (paramtypes.length > 0)
         {
           code_length += 3; // anewarray
@@ -1054,7 +1376,7 @@ public class Proxy implements Serializable
       // handler.Code.info:
       //   type name(args) {
       //     try {
-      //       return (type) h.invoke(this, methods[i], new Object[] {args});
+      //       return (type) h.invoke(this, m<i>, new Object[] {args});
       //     } catch (<declared Exceptions> e) {
       //       throw e;
       //     } catch (Throwable t) {
@@ -1086,9 +1408,7 @@ public class Proxy implements Serializable
       putU1(ALOAD_0);
       putU1(GETSTATIC);
       putU2(refInfo(FIELD, TypeSignature.getEncodingOfClass(qualName, false),
-                    "m", "[Ljava/lang/reflect/Method;"));
-      putConst(i);
-      putU1(AALOAD);
+                    "m" + i, "Ljava/lang/reflect/Method;"));
       if (paramtypes.length > 0)
         {
           putConst(paramtypes.length);
@@ -1266,16 +1586,7 @@ public class Proxy implements Serializable
           Object[] args = {loader, qualName, bytecode, Integer.valueOf(0),
                            Integer.valueOf(bytecode.length),
                            Object.class.getProtectionDomain() };
-          Class clazz = (Class) m.invoke(null, args);
-
-          // Finally, initialize the m field of the proxy class, before
-          // returning it.
-          Field f = clazz.getDeclaredField("m");
-          f.flag = true;
-          // we can share the array, because it is not publicized
-          f.set(null, methods);
-
-          return clazz;
+          return (Class) m.invoke(null, args);
         }
       catch (Exception e)
         {
@@ -1337,6 +1648,20 @@ public class Proxy implements Serializable
         }
     }
 
+    /**
+     * Returns the length of the bytecode putConst adds for an int.
+     *
+     * @param i the int
+     */
+    private static int constLength(int i)
+    {
+      if (i >= -1 && i <= 5)
+        return 1;
+      if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE)
+        return 2;
+      return 3;
+    }
+
     /**
      * Put bytecode to load a given local variable on the stream.
      *
@@ -1419,6 +1744,20 @@ public class Proxy implements Serializable
       return poolIndex(new String(c));
     }
 
+    /**
+     * Returns the entry of the string info structure of a String in the
+     * Constant pool, adding it if necessary.
+     *
+     * @param str the String
+     * @return the index of the StringInfo in the constant pool
+     */
+    private char stringInfo(String str)
+    {
+      char index = utf8Info(str);
+      char[] c = {8, (char) (index >> 8), (char) (index & 0xff)};
+      return poolIndex(new String(c));
+    }
+
     /**
      * Returns the entry of the appropriate class info structure in the
      * Constant pool, adding it if necessary.
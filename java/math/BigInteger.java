@@ -804,6 +804,8 @@ public class BigInteger extends Number implements Comparable<BigInteger>
 
   private static BigInteger times(BigInteger x, BigInteger y)
   {
+    if (x == y)
+      return square(x);
     if (y.words == null)
       return times(x, y.ival);
     if (x.words == null)
@@ -846,6 +848,25 @@ public class BigInteger extends Number implements Comparable<BigInteger>
     return result.canonicalize();
   }
 
+  private static BigInteger square(BigInteger x)
+  {
+    if (x.words == null)
+      return valueOf((long) x.ival * (long) x.ival);
+    int len = x.ival;
+    int[] xwords;
+    if (x.isNegative())
+      {
+        xwords = new int[len];
+        negate(xwords, x.words, len);
+      }
+    else
+      xwords = x.words;
+    BigInteger result = BigInteger.alloc(len + len);
+    MPN.sqr(result.words, xwords, len);
+    result.ival = len + len;
+    return result.canonicalize();
+  }
+
   public BigInteger multiply(BigInteger y)
   {
     if (USING_NATIVE)
@@ -1260,7 +1281,7 @@ public class BigInteger extends Number implements Comparable<BigInteger>
         if (exponent == 0)
           break;
         // pow2 *= pow2;
-        MPN.mul(work, pow2, plen, pow2, plen);
+        MPN.sqr(work, pow2, plen);
         int[] temp = work;  work = pow2;  pow2 = temp;  // swap to avoid a copy
         plen *= 2;
         while (pow2[plen - 1] == 0)  plen--;
@@ -1455,7 +1476,7 @@ public class BigInteger extends Number implements Comparable<BigInteger>
         if (u.and(ONE).isOne())
           s = times(s, t).mod(m);
         u = u.shiftRight(1);
-        t = times(t, t).mod(m);
+        t = square(t).mod(m);
       }
 
     return s;
@@ -1,5 +1,5 @@
 /* ResolverCache.java -- A cache of resolver lookups for InetAddress.
-   Copyright (C) 2006 Free Software Foundation, Inc.
+   Copyright (C) 2006, 2026 Free Software Foundation, Inc.
 
 This file is part of GNU Classpath.
 
@@ -38,10 +38,27 @@ exception statement from your version. */
 
 package java.net;
 
+import gnu.java.net.ResolverCacheMBean;
+
+import java.lang.management.ManagementFactory;
 import java.security.Security;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 /**
  * This class provides a cache of name service resolutions.  By
@@ -63,29 +80,74 @@ import java.util.LinkedList;
  *     unsuccessful resolutions remain in the cache.  The default
  *     is 10, indicating to cache for 10 seconds.
  *   </dd>
- * In both cases, a value of -1 indicates to cache forever and a
+ *   <dt><code>gnu.java.net.networkaddress.cache.size</code></dt>
+ *   <dd>
+ *     The maximum number of resolutions in the cache.  The default is
+ *     4096; a value below 1 leaves the cache unbounded.  When the
+ *     cache is full, expired resolutions and then those not used
+ *     recently are removed.
+ *   </dd>
+ *   <dt><code>gnu.java.net.networkaddress.cache.refresh</code></dt>
+ *   <dd>
+ *     The percentage of its time to live after which a successful
+ *     resolution that is still being used is renewed in the
+ *     background, so that hot names never miss.  The default is 80;
+ *     0 disables renewal.
+ *   </dd>
+ * </dl>
+ * For both TTLs, a value of -1 indicates to cache forever and a
  * value of 0 indicates not to cache.
  *
+ * <p>The cache may be used by any number of threads at once.  When
+ * several threads miss the same name together only one of them asks
+ * the name service; the others wait for its answer.  Statistics are
+ * exported through JMX as {@link ResolverCacheMBean}.</p>
+ *
  * @author Gary Benson (gbenson@redhat.com)
  */
 class ResolverCache
+  implements ResolverCacheMBean
 {
   /**
    * The time in seconds for which successful lookups are cached.
    */
   private static final int POSITIVE_TTL =
-    getTTL("networkaddress.cache.ttl", -1);
+    getIntProperty("networkaddress.cache.ttl", -1);
 
   /**
    * The time in seconds for which unsuccessful lookups are cached.
    */
   private static final int NEGATIVE_TTL =
-    getTTL("networkaddress.cache.negative.ttl", 10);
+    getIntProperty("networkaddress.cache.negative.ttl", 10);
+
+  /**
+   * The maximum number of entries in the cache, or 0 for no limit.
+   */
+  private static final int MAX_ENTRIES =
+    Math.max(getIntProperty("gnu.java.net.networkaddress.cache.size", 4096),
+             0);
 
   /**
-   * Helper function to set the TTLs.
+   * The percentage of the positive TTL after which a hit renews the
+   * entry in the background, or 0 to never renew entries.
    */
-  private static int getTTL(String propName, int defaultValue)
+  private static final int REFRESH_PERCENT =
+    getIntProperty("gnu.java.net.networkaddress.cache.refresh", 80);
+
+  /**
+   * The number of insertions between sweeps for expired entries.
+   */
+  private static final int SWEEP_INTERVAL = 256;
+
+  /**
+   * The JMX name of the cache.
+   */
+  private static final String OBJECT_NAME = "gnu.java.net:type=ResolverCache";
+
+  /**
+   * Helper function to read the properties.
+   */
+  private static int getIntProperty(String propName, int defaultValue)
   {
     String propValue = Security.getProperty(propName);
     if (propValue == null)
@@ -94,15 +156,58 @@ class ResolverCache
     return Integer.parseInt(propValue);
   }
 
+  /**
+   * Singleton instance of the cache.
+   */
+  private static final ResolverCache instance = new ResolverCache();
+
   /**
    * The cache itself.
    */
-  private static HashMap<Object, Entry> cache = new HashMap<Object, Entry>();
+  private final ConcurrentHashMap<Object, Entry> cache =
+    new ConcurrentHashMap<Object, Entry>();
 
   /**
-   * List of entries which may expire.
+   * The number of entries in the cache.  Kept separately, as the size
+   * of a ConcurrentHashMap is expensive to compute.
    */
-  private static LinkedList<Entry> killqueue = new LinkedList<Entry>();
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * The resolutions in progress, by key.  A thread missing the cache
+   * waits for the lookup here, if there is one, rather than starting
+   * its own.
+   */
+  private final ConcurrentHashMap<Object, FutureTask<Object>> lookups =
+    new ConcurrentHashMap<Object, FutureTask<Object>>();
+
+  /**
+   * The number of insertions, to schedule sweeps.
+   */
+  private final AtomicInteger insertions = new AtomicInteger();
+
+  /**
+   * Set while a thread sweeps the cache.
+   */
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+
+  /**
+   * Set once the cache has been registered with JMX.
+   */
+  private final AtomicBoolean registered = new AtomicBoolean();
+
+  /**
+   * Runs the background renewals; created on first use.
+   */
+  private volatile ThreadPoolExecutor refresher;
+
+  // Statistics.
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong negativeHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
 
   /**
    * Return the hostname for the specified IP address.
@@ -115,26 +220,7 @@ class ResolverCache
    */
   public static String getHostByAddr(byte[] addr) throws UnknownHostException
   {
-    Object key = makeHashableAddress(addr);
-    Entry entry = get(key);
-    if (entry != null)
-      {
-        if (entry.value == null)
-          throw new UnknownHostException();
-        return (String) entry.value;
-      }
-
-    try
-      {
-        String hostname = VMInetAddress.getHostByAddr(addr);
-        put(new Entry(key, hostname));
-        return hostname;
-      }
-    catch (UnknownHostException e)
-      {
-        put(new Entry(key, null));
-        throw e;
-      }
+    return (String) instance.lookup(new Query(null, addr));
   }
 
   /**
@@ -149,86 +235,359 @@ class ResolverCache
   public static byte[][] getHostByName(String hostname)
     throws UnknownHostException
   {
-    Entry entry = get(hostname);
+    return (byte[][]) instance.lookup(new Query(hostname, null));
+  }
+
+  /**
+   * Convert an IP address expressed as a byte array into something
+   * we can use as a hashtable key.
+   */
+  private static Object makeHashableAddress(byte[] addr)
+  {
+    char[] chars = new char[addr.length];
+    for (int i = 0; i < addr.length; i++)
+      chars[i] = (char) addr[i];
+    return new String(chars);
+  }
+
+  /**
+   * Answers a query from the cache, or from the name service if the
+   * cache holds no live entry for it.
+   */
+  private Object lookup(Query query) throws UnknownHostException
+  {
+    Entry entry = cache.get(query.key);
     if (entry != null)
       {
-        if (entry.value == null)
-          throw new UnknownHostException();
-        return (byte[][]) entry.value;
+        long now = System.currentTimeMillis();
+        if (!entry.isExpired(now))
+          {
+            entry.used = true;
+            if (entry.value == null)
+              {
+                negativeHits.incrementAndGet();
+                throw new UnknownHostException();
+              }
+            hits.incrementAndGet();
+            if (now >= entry.refreshAt
+                && entry.refreshing.compareAndSet(false, true))
+              refresh(entry, query);
+            return entry.value;
+          }
+        remove(entry);
+      }
+
+    misses.incrementAndGet();
+    if (registered.compareAndSet(false, true))
+      register();
+
+    FutureTask<Object> task = new FutureTask<Object>(query);
+    FutureTask<Object> running = lookups.putIfAbsent(query.key, task);
+    if (running == null)
+      {
+        try
+          {
+            task.run();
+          }
+        finally
+          {
+            lookups.remove(query.key, task);
+          }
       }
+    else
+      {
+        coalesced.incrementAndGet();
+        task = running;
+      }
+    return await(task);
+  }
 
+  /**
+   * Renews an entry in the background, unless it is being resolved
+   * already.
+   */
+  private void refresh(Entry entry, Query query)
+  {
+    final Query renewal = new Query(query.hostname, query.addr);
+    renewal.refresh = true;
+    final FutureTask<Object> task = new FutureTask<Object>(renewal);
+    if (lookups.putIfAbsent(renewal.key, task) != null)
+      {
+        entry.refreshing.set(false);
+        return;
+      }
     try
       {
-        byte[][] addrs = VMInetAddress.getHostByName(hostname);
-        put(new Entry(hostname, addrs));
-        return addrs;
+        getRefresher().execute(new Runnable()
+          {
+            public void run()
+            {
+              try
+                {
+                  task.run();
+                }
+              finally
+                {
+                  lookups.remove(renewal.key, task);
+                }
+            }
+          });
+        refreshes.incrementAndGet();
       }
-    catch (UnknownHostException e)
+    catch (RejectedExecutionException e)
       {
-        put(new Entry(hostname, null));
-        throw e;
+        // All renewal threads are busy; a later hit will try again.
+        lookups.remove(renewal.key, task);
+        entry.refreshing.set(false);
       }
   }
 
   /**
-   * Convert an IP address expressed as a byte array into something
-   * we can use as a hashtable key.
+   * Returns the executor for background renewals, creating it if
+   * needed.
    */
-  private static Object makeHashableAddress(byte[] addr)
+  private ThreadPoolExecutor getRefresher()
   {
-    char[] chars = new char[addr.length];
-    for (int i = 0; i < addr.length; i++)
-      chars[i] = (char) addr[i];
-    return new String(chars);
+    ThreadPoolExecutor executor = refresher;
+    if (executor == null)
+      synchronized (this)
+        {
+          executor = refresher;
+          if (executor == null)
+            {
+              ThreadFactory factory = new ThreadFactory()
+                {
+                  public Thread newThread(Runnable r)
+                  {
+                    Thread t = new Thread(r, "Resolver cache refresh");
+                    t.setDaemon(true);
+                    return t;
+                  }
+                };
+              executor = new ThreadPoolExecutor(0, 2, 30, TimeUnit.SECONDS,
+                                                new SynchronousQueue<Runnable>(),
+                                                factory);
+              refresher = executor;
+            }
+        }
+    return executor;
   }
 
   /**
-   * Return the entry in the cache associated with the supplied key,
-   * or <code>null</code> if the cache does not contain an entry
-   * associated with this key.
+   * Waits for a lookup to finish and returns its result.
    */
-  private static synchronized Entry get(Object key)
+  private static Object await(FutureTask<Object> task)
+    throws UnknownHostException
   {
-    reap();
-    return (Entry) cache.get(key);
+    boolean interrupted = false;
+    try
+      {
+        while (true)
+          {
+            try
+              {
+                return task.get();
+              }
+            catch (InterruptedException e)
+              {
+                interrupted = true;
+              }
+            catch (ExecutionException e)
+              {
+                Throwable cause = e.getCause();
+                if (cause instanceof UnknownHostException)
+                  throw new UnknownHostException(cause.getMessage());
+                if (cause instanceof RuntimeException)
+                  throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                  throw (Error) cause;
+                throw (InternalError)
+                  new InternalError("name service lookup failed").initCause(cause);
+              }
+          }
+      }
+    finally
+      {
+        if (interrupted)
+          Thread.currentThread().interrupt();
+      }
   }
 
   /**
    * Insert the supplied entry into the cache.
    */
-  private static synchronized void put(Entry entry)
+  private void put(Entry entry)
   {
-    reap();
-    if (entry.expires != 0)
+    if (entry.expires == 0)
+      return;
+    Entry old = cache.put(entry.key, entry);
+    if (old == null)
+      size.incrementAndGet();
+    if ((MAX_ENTRIES > 0 && size.get() > MAX_ENTRIES)
+        || insertions.incrementAndGet() % SWEEP_INTERVAL == 0)
+      sweep();
+  }
+
+  /**
+   * Remove the supplied entry from the cache, if it is still there.
+   */
+  private void remove(Entry entry)
+  {
+    if (cache.remove(entry.key, entry))
       {
-        if (entry.expires != -1)
-          killqueue.add(entry);
-        cache.put(entry.key, entry);
+        size.decrementAndGet();
+        evictions.incrementAndGet();
       }
   }
 
   /**
-   * Clear expired entries.  This method is not synchronized, so
-   * it must only be called by methods that are.
+   * Clear expired entries and, if the cache is still too large, the
+   * entries not used since the last sweep.  Only one thread sweeps
+   * at a time; the others carry on.
    */
-  private static void reap()
+  private void sweep()
   {
-    if (!killqueue.isEmpty())
+    if (!sweeping.compareAndSet(false, true))
+      return;
+    try
       {
         long now = System.currentTimeMillis();
-
-        Iterator iter = killqueue.iterator();
-        while (iter.hasNext())
+        for (Iterator<Entry> i = cache.values().iterator(); i.hasNext(); )
           {
-            Entry entry = (Entry) iter.next();
-            if (entry.expires > now)
-              break;
-            cache.remove(entry.key);
-            iter.remove();
+            Entry entry = i.next();
+            if (entry.isExpired(now))
+              remove(entry);
           }
+
+        // Give each entry a second chance: the first pass only clears
+        // the used flags, so that recently used entries survive.
+        int target = MAX_ENTRIES - MAX_ENTRIES / 8;
+        for (int pass = 0; pass < 2 && MAX_ENTRIES > 0
+               && size.get() > target; pass++)
+          for (Iterator<Entry> i = cache.values().iterator();
+               i.hasNext() && size.get() > target; )
+            {
+              Entry entry = i.next();
+              if (entry.used)
+                entry.used = false;
+              else
+                remove(entry);
+            }
+      }
+    finally
+      {
+        sweeping.set(false);
       }
   }
 
+  /**
+   * Registers the cache with the platform MBean server.
+   */
+  private void register()
+  {
+    try
+      {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new StandardMBean(this, ResolverCacheMBean.class),
+                             new ObjectName(OBJECT_NAME));
+      }
+    catch (Exception e)
+      {
+        // The cache works just as well without monitoring.
+      }
+  }
+
+  public long getHitCount()
+  {
+    return hits.get();
+  }
+
+  public long getNegativeHitCount()
+  {
+    return negativeHits.get();
+  }
+
+  public long getMissCount()
+  {
+    return misses.get();
+  }
+
+  public long getCoalescedCount()
+  {
+    return coalesced.get();
+  }
+
+  public long getRefreshCount()
+  {
+    return refreshes.get();
+  }
+
+  public long getEvictionCount()
+  {
+    return evictions.get();
+  }
+
+  public int getSize()
+  {
+    return size.get();
+  }
+
+  /**
+   * A lookup of either a hostname or an address.  Running it asks the
+   * name service and caches the answer.
+   */
+  private static class Query
+    implements Callable<Object>
+  {
+    /**
+     * The hostname to resolve, or null for a reverse lookup.
+     */
+    final String hostname;
+
+    /**
+     * The address to look up, or null for a forward lookup.
+     */
+    final byte[] addr;
+
+    /**
+     * The cache key for this query.
+     */
+    final Object key;
+
+    /**
+     * Set when renewing an entry, in which case a failure leaves the
+     * old entry alone.
+     */
+    boolean refresh;
+
+    Query(String hostname, byte[] addr)
+    {
+      this.hostname = hostname;
+      this.addr = addr;
+      key = hostname != null ? hostname : makeHashableAddress(addr);
+    }
+
+    public Object call() throws UnknownHostException
+    {
+      Object value;
+      try
+        {
+          if (hostname != null)
+            value = VMInetAddress.getHostByName(hostname);
+          else
+            value = VMInetAddress.getHostByAddr(addr);
+        }
+      catch (UnknownHostException e)
+        {
+          if (!refresh)
+            instance.put(new Entry(key, null));
+          throw e;
+        }
+      instance.put(new Entry(key, value));
+      return value;
+    }
+  }
+
   /**
    * An entry in the cache.
    */
@@ -251,6 +610,22 @@ class ResolverCache
      */
     public final long expires;
 
+    /**
+     * The time after which a hit renews this entry, or
+     * <code>Long.MAX_VALUE</code> if it is never renewed.
+     */
+    public final long refreshAt;
+
+    /**
+     * Set when this entry has been used since the last sweep.
+     */
+    public volatile boolean used;
+
+    /**
+     * Set once a renewal of this entry has been started.
+     */
+    public final AtomicBoolean refreshing = new AtomicBoolean();
+
     /**
      * Constructor.
      */
@@ -260,10 +635,24 @@ class ResolverCache
       this.value = value;
 
       int ttl = value != null ? POSITIVE_TTL : NEGATIVE_TTL;
+      long now = System.currentTimeMillis();
       if (ttl < 1)
         expires = ttl;
       else
-        expires = System.currentTimeMillis() + ttl * 1000;
+        expires = now + ttl * 1000L;
+
+      if (value != null && ttl > 0 && REFRESH_PERCENT > 0)
+        refreshAt = now + ttl * 10L * REFRESH_PERCENT;
+      else
+        refreshAt = Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if this entry has expired at the given time.
+     */
+    public boolean isExpired(long now)
+    {
+      return expires != -1 && expires <= now;
     }
   }
 }
@@ -46,14 +46,12 @@ import gnu.java.net.loader.JarURLLoader;
 import gnu.java.net.loader.RemoteURLLoader;
 import gnu.java.net.loader.Resource;
 import gnu.java.net.loader.URLLoader;
+import gnu.java.net.loader.URLLoaderIndex;
 import gnu.java.net.loader.URLStreamHandlerCache;
 
-import java.io.ByteArrayOutputStream;
-import java.io.EOFException;
 import java.io.File;
 import java.io.FilePermission;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.security.AccessControlContext;
@@ -144,6 +142,12 @@ public class URLClassLoader extends SecureClassLoader
    */
   private static final String URL_LOADER_PREFIX = "gnu.java.net.loader.Load_";
 
+  static
+  {
+    // findClass() only locks the class name it is looking for.
+    registerAsParallelCapable();
+  }
+
   // Instance variables
 
   /** Locations to load classes from */
@@ -157,6 +161,11 @@ public class URLClassLoader extends SecureClassLoader
    */
   private final Vector<URLLoader> urlinfos = new Vector<URLLoader>();
 
+  /**
+   * The loaders in urlinfos that may hold a given package.
+   */
+  private final URLLoaderIndex index = new URLLoaderIndex(urlinfos);
+
   /** Factory used to get the protocol handlers of the URLs */
   private final URLStreamHandlerFactory factory;
 
@@ -398,6 +407,7 @@ public class URLClassLoader extends SecureClassLoader
         ArrayList<URLLoader> extra = loader.getClassPath();
         if (extra != null)
           urlinfos.addAll(extra);
+        index.clear();
       }
   }
 
@@ -513,14 +523,11 @@ public class URLClassLoader extends SecureClassLoader
   {
     // Just try to find the resource by the (almost) same name
     String resourceName = className.replace('.', '/') + ".class";
-    int max = urlinfos.size();
+    URLLoader[] loaders = index.getLoaders(resourceName);
     Resource resource = null;
-    for (int i = 0; i < max && resource == null; i++)
+    for (int i = 0; i < loaders.length && resource == null; i++)
       {
-        URLLoader loader = (URLLoader)urlinfos.elementAt(i);
-        if (loader == null)
-          continue;
-
+        URLLoader loader = loaders[i];
         Class k = loader.getClass(className);
         if (k != null)
           return k;
@@ -534,47 +541,7 @@ public class URLClassLoader extends SecureClassLoader
     // construct the class (and watch out for those nasty IOExceptions)
     try
       {
-        byte[] data;
-        InputStream in = resource.getInputStream();
-        try
-          {
-            int length = resource.getLength();
-            if (length != -1)
-              {
-                // We know the length of the data.
-                // Just try to read it in all at once
-                data = new byte[length];
-                int pos = 0;
-                while (length - pos > 0)
-                  {
-                    int len = in.read(data, pos, length - pos);
-                    if (len == -1)
-                      throw new EOFException("Not enough data reading from: "
-                                             + in);
-                    pos += len;
-                  }
-              }
-            else
-              {
-                // We don't know the data length.
-                // Have to read it in chunks.
-                ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
-                byte[] b = new byte[4096];
-                int l = 0;
-                while (l != -1)
-                  {
-                    l = in.read(b);
-                    if (l != -1)
-                      out.write(b, 0, l);
-                  }
-                data = out.toByteArray();
-              }
-          }
-        finally
-          {
-            in.close();
-          }
-        final byte[] classData = data;
+        final byte[] classData = resource.getBytes();
 
         // Now get the CodeSource
         final CodeSource source = resource.getCodeSource();
@@ -588,13 +555,23 @@ public class URLClassLoader extends SecureClassLoader
         if (packageName != null && getPackage(packageName) == null)
           {
             // define the package
-            Manifest manifest = resource.getLoader().getManifest();
-            if (manifest == null)
-              definePackage(packageName, null, null, null, null, null, null,
-                            null);
-            else
-              definePackage(packageName, manifest,
-                            resource.getLoader().getBaseURL());
+            try
+              {
+                Manifest manifest = resource.getLoader().getManifest();
+                if (manifest == null)
+                  definePackage(packageName, null, null, null, null, null,
+                                null, null);
+                else
+                  definePackage(packageName, manifest,
+                                resource.getLoader().getBaseURL());
+              }
+            catch (IllegalArgumentException iae)
+              {
+                // Another thread loading a class in the same package
+                // defined it first.
+                if (getPackage(packageName) == null)
+                  throw iae;
+              }
           }
 
         // And finally construct the class!
@@ -672,14 +649,10 @@ public class URLClassLoader extends SecureClassLoader
    */
   private Resource findURLResource(String resourceName)
   {
-    int max = urlinfos.size();
-    for (int i = 0; i < max; i++)
+    URLLoader[] loaders = index.getLoaders(resourceName);
+    for (int i = 0; i < loaders.length; i++)
       {
-        URLLoader loader = (URLLoader) urlinfos.elementAt(i);
-        if (loader == null)
-          continue;
-
-        Resource resource = loader.getResource(resourceName);
+        Resource resource = loaders[i].getResource(resourceName);
         if (resource != null)
           return resource;
       }
@@ -715,11 +688,10 @@ public class URLClassLoader extends SecureClassLoader
     throws IOException
   {
     Vector<URL> resources = new Vector<URL>();
-    int max = urlinfos.size();
-    for (int i = 0; i < max; i++)
+    URLLoader[] loaders = index.getLoaders(resourceName);
+    for (int i = 0; i < loaders.length; i++)
       {
-        URLLoader loader = (URLLoader) urlinfos.elementAt(i);
-        Resource resource = loader.getResource(resourceName);
+        Resource resource = loaders[i].getResource(resourceName);
         if (resource != null)
           resources.add(resource.getURL());
       }
@@ -54,6 +54,11 @@ public class SecureClassLoader extends ClassLoader
   private final HashMap<CodeSource,ProtectionDomain> protectionDomainCache
     = new HashMap<CodeSource, ProtectionDomain>();
 
+  static
+  {
+    registerAsParallelCapable();
+  }
+
   protected SecureClassLoader(ClassLoader parent)
   {
     super(parent);
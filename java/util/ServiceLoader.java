@@ -254,6 +254,8 @@ public final class ServiceLoader<S>
   public void reload()
   {
     cache.clear();
+    serviceIt = null;
+    ServiceFactory.clearCache(spi, loader);
   }
 
   /**
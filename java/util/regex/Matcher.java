@@ -42,6 +42,7 @@ import gnu.java.lang.CPStringBuilder;
 
 import gnu.java.util.regex.CharIndexed;
 import gnu.java.util.regex.RE;
+import gnu.java.util.regex.REAutomaton;
 import gnu.java.util.regex.REMatch;
 
 /**
@@ -184,7 +185,7 @@ public final class Matcher implements MatchResult
   {
     boolean first = (match == null);
     if (transparentBounds || (regionStart == 0 && regionEnd == input.length()))
-      match = pattern.getRE().getMatch(inputCharIndexed, position, anchoringBounds);
+      match = getMatch(position, anchoringBounds);
     else
       match = pattern.getRE().getMatch(input.subSequence(regionStart, regionEnd),
                                        position, anchoringBounds);
@@ -225,7 +226,7 @@ public final class Matcher implements MatchResult
   public boolean find (int start)
   {
     if (transparentBounds || (regionStart == 0 && regionEnd == input.length()))
-      match = pattern.getRE().getMatch(inputCharIndexed, start, anchoringBounds);
+      match = getMatch(start, anchoringBounds);
     else
       match = pattern.getRE().getMatch(input.subSequence(regionStart, regionEnd),
                                        start, anchoringBounds);
@@ -291,8 +292,8 @@ public final class Matcher implements MatchResult
   public boolean lookingAt ()
   {
     if (transparentBounds || (regionStart == 0 && regionEnd == input.length()))
-      match = pattern.getRE().getMatch(inputCharIndexed, regionStart,
-                                       anchoringBounds|RE.REG_FIX_STARTING_POSITION|RE.REG_ANCHORINDEX);
+      match = getMatch(regionStart,
+                       anchoringBounds|RE.REG_FIX_STARTING_POSITION|RE.REG_ANCHORINDEX);
     else
       match = pattern.getRE().getMatch(input.subSequence(regionStart, regionEnd), 0,
                                        anchoringBounds|RE.REG_FIX_STARTING_POSITION);
@@ -321,8 +322,8 @@ public final class Matcher implements MatchResult
   public boolean matches ()
   {
     if (transparentBounds || (regionStart == 0 && regionEnd == input.length()))
-      match = pattern.getRE().getMatch(inputCharIndexed, regionStart,
-                                       anchoringBounds|RE.REG_TRY_ENTIRE_MATCH|RE.REG_FIX_STARTING_POSITION|RE.REG_ANCHORINDEX);
+      match = getMatch(regionStart,
+                       anchoringBounds|RE.REG_TRY_ENTIRE_MATCH|RE.REG_FIX_STARTING_POSITION|RE.REG_ANCHORINDEX);
     else
       match = pattern.getRE().getMatch(input.subSequence(regionStart, regionEnd), 0,
                                        anchoringBounds|RE.REG_TRY_ENTIRE_MATCH|RE.REG_FIX_STARTING_POSITION);
@@ -442,6 +443,18 @@ public final class Matcher implements MatchResult
     return sb.toString();
   }
 
+  /**
+   * Looks for a match in the whole input, using the pattern's
+   * linear-time automaton if it has one.
+   */
+  private REMatch getMatch(int start, int eflags)
+  {
+    REAutomaton automaton = pattern.getAutomaton();
+    if (automaton != null && start >= 0 && start <= input.length())
+      return automaton.getMatch(input, inputCharIndexed, start, eflags);
+    return pattern.getRE().getMatch(inputCharIndexed, start, eflags);
+  }
+
   private void assertMatchOp()
   {
     if (match == null) throw new IllegalStateException();
@@ -41,6 +41,7 @@ package java.util.regex;
 import gnu.java.lang.CPStringBuilder;
 
 import gnu.java.util.regex.RE;
+import gnu.java.util.regex.REAutomaton;
 import gnu.java.util.regex.REException;
 import gnu.java.util.regex.RESyntax;
 
@@ -70,6 +71,9 @@ public final class Pattern implements Serializable
 
   private final RE re;
 
+  /** Linear-time matcher, or null if the pattern needs backtracking. */
+  private final transient REAutomaton automaton;
+
   private Pattern (String regex, int flags)
     throws PatternSyntaxException
   {
@@ -118,6 +122,11 @@ public final class Pattern implements Serializable
         pse.initCause(e);
         throw pse;
       }
+
+    REAutomaton a = REAutomaton.compile(regex, gnuFlags, syntax);
+    if (a != null && a.getNumSubs() != re.getNumSubs())
+      a = null;
+    this.automaton = a;
   }
 
   // package private accessor method
@@ -126,6 +135,12 @@ public final class Pattern implements Serializable
     return re;
   }
 
+  // package private accessor method
+  REAutomaton getAutomaton()
+  {
+    return automaton;
+  }
+
   /**
    * @param regex The regular expression
    *
@@ -37,6 +37,8 @@ exception statement from your version. */
 
 package java.util.zip;
 
+import java.nio.ByteBuffer;
+
 /*
  * Written using on-line Java Platform 1.2 API Specification, as well
  * as "The Java Class Libraries", 2nd edition (Addison-Wesley, 1998).
@@ -174,6 +176,27 @@ public class Adler32 implements Checksum
         if (n > len)
           n = len;
         len -= n;
+        // Unrolled to sixteen bytes per iteration.
+        for (; n >= 16; n -= 16)
+          {
+            s1 += buf[off] & 0xFF;       s2 += s1;
+            s1 += buf[off + 1] & 0xFF;   s2 += s1;
+            s1 += buf[off + 2] & 0xFF;   s2 += s1;
+            s1 += buf[off + 3] & 0xFF;   s2 += s1;
+            s1 += buf[off + 4] & 0xFF;   s2 += s1;
+            s1 += buf[off + 5] & 0xFF;   s2 += s1;
+            s1 += buf[off + 6] & 0xFF;   s2 += s1;
+            s1 += buf[off + 7] & 0xFF;   s2 += s1;
+            s1 += buf[off + 8] & 0xFF;   s2 += s1;
+            s1 += buf[off + 9] & 0xFF;   s2 += s1;
+            s1 += buf[off + 10] & 0xFF;  s2 += s1;
+            s1 += buf[off + 11] & 0xFF;  s2 += s1;
+            s1 += buf[off + 12] & 0xFF;  s2 += s1;
+            s1 += buf[off + 13] & 0xFF;  s2 += s1;
+            s1 += buf[off + 14] & 0xFF;  s2 += s1;
+            s1 += buf[off + 15] & 0xFF;  s2 += s1;
+            off += 16;
+          }
         while (--n >= 0)
           {
             s1 = s1 + (buf[off++] & 0xFF);
@@ -195,6 +218,41 @@ public class Adler32 implements Checksum
     checksum = (s2 << 16) | s1;
   }
 
+  /**
+   * Updates the checksum with the remaining bytes of the buffer.
+   * Upon return, the buffer's position is equal to its limit.
+   * Direct buffers are read in place, without copying them to an array.
+   *
+   * @param buffer the buffer which contains the data
+   * @since 1.8
+   */
+  public void update (ByteBuffer buffer)
+  {
+    int pos = buffer.position();
+    int limit = buffer.limit();
+    if (buffer.hasArray())
+      update(buffer.array(), buffer.arrayOffset() + pos, limit - pos);
+    else
+      {
+        int s1 = checksum & 0xffff;
+        int s2 = checksum >>> 16;
+        while (pos < limit)
+          {
+            // Same deferred modulo as in update(byte[], int, int).
+            int end = Math.min(limit, pos + 3800);
+            for (; pos < end; pos++)
+              {
+                s1 = s1 + (buffer.get(pos) & 0xFF);
+                s2 = s2 + s1;
+              }
+            s1 %= BASE;
+            s2 %= BASE;
+          }
+        checksum = (s2 << 16) | s1;
+      }
+    buffer.position(limit);
+  }
+
   /**
    * Returns the Adler32 data checksum computed so far.
    */
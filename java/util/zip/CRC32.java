@@ -37,6 +37,9 @@ exception statement from your version. */
 
 package java.util.zip;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /*
  * Written using on-line Java Platform 1.2 API Specification, as well
  * as "The Java Class Libraries", 2nd edition (Addison-Wesley, 1998).
@@ -62,13 +65,22 @@ public class CRC32 implements Checksum
   /** The crc data checksum so far. */
   private int crc = 0;
 
-  /** The fast CRC table. Computed once when the CRC32 class is loaded. */
-  private static int[] crc_table = make_crc_table();
+  /**
+   * The tables for the "slicing-by-8" CRC algorithm.  crc_tables[0] is
+   * the classic byte-wise table; crc_tables[k][n] is the CRC of the byte
+   * n followed by k zero bytes.  Computed once when the CRC32 class is
+   * loaded.
+   */
+  private static final int[][] crc_tables = make_crc_tables();
+
+  /** The fast CRC table. */
+  private static final int[] crc_table = crc_tables[0];
 
-  /** Make the table for a fast CRC. */
-  private static int[] make_crc_table ()
+  /** Make the tables for a fast CRC. */
+  private static int[][] make_crc_tables ()
   {
-    int[] crc_table = new int[256];
+    int[][] crc_tables = new int[8][256];
+    int[] crc_table = crc_tables[0];
     for (int n = 0; n < 256; n++)
       {
         int c = n;
@@ -81,7 +93,13 @@ public class CRC32 implements Checksum
           }
         crc_table[n] = c;
       }
-    return crc_table;
+    for (int k = 1; k < 8; k++)
+      for (int n = 0; n < 256; n++)
+        {
+          int c = crc_tables[k - 1][n];
+          crc_tables[k][n] = crc_table[c & 0xff] ^ (c >>> 8);
+        }
+    return crc_tables;
   }
 
   /**
@@ -119,12 +137,67 @@ public class CRC32 implements Checksum
    */
   public void update (byte[] buf, int off, int len)
   {
+    int[] t0 = crc_tables[0], t1 = crc_tables[1];
+    int[] t2 = crc_tables[2], t3 = crc_tables[3];
+    int[] t4 = crc_tables[4], t5 = crc_tables[5];
+    int[] t6 = crc_tables[6], t7 = crc_tables[7];
     int c = ~crc;
+    // Process eight bytes at a time (Intel's "slicing-by-8").
+    while (len >= 8)
+      {
+        c ^= (buf[off] & 0xff) | ((buf[off + 1] & 0xff) << 8)
+          | ((buf[off + 2] & 0xff) << 16) | (buf[off + 3] << 24);
+        c = t7[c & 0xff] ^ t6[(c >>> 8) & 0xff]
+          ^ t5[(c >>> 16) & 0xff] ^ t4[c >>> 24]
+          ^ t3[buf[off + 4] & 0xff] ^ t2[buf[off + 5] & 0xff]
+          ^ t1[buf[off + 6] & 0xff] ^ t0[buf[off + 7] & 0xff];
+        off += 8;
+        len -= 8;
+      }
     while (--len >= 0)
-      c = crc_table[(c ^ buf[off++]) & 0xff] ^ (c >>> 8);
+      c = t0[(c ^ buf[off++]) & 0xff] ^ (c >>> 8);
     crc = ~c;
   }
 
+  /**
+   * Adds the remaining bytes of the buffer to the data checksum.
+   * Upon return, the buffer's position is equal to its limit.
+   * Direct buffers are read in place, without copying them to an array.
+   *
+   * @param buffer the buffer which contains the data
+   * @since 1.8
+   */
+  public void update (ByteBuffer buffer)
+  {
+    int pos = buffer.position();
+    int limit = buffer.limit();
+    if (buffer.hasArray())
+      update(buffer.array(), buffer.arrayOffset() + pos, limit - pos);
+    else
+      {
+        int[] t0 = crc_tables[0], t1 = crc_tables[1];
+        int[] t2 = crc_tables[2], t3 = crc_tables[3];
+        int[] t4 = crc_tables[4], t5 = crc_tables[5];
+        int[] t6 = crc_tables[6], t7 = crc_tables[7];
+        ByteBuffer le = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int c = ~crc;
+        for (; limit - pos >= 8; pos += 8)
+          {
+            long v = le.getLong(pos);
+            int lo = c ^ (int) v;
+            int hi = (int) (v >>> 32);
+            c = t7[lo & 0xff] ^ t6[(lo >>> 8) & 0xff]
+              ^ t5[(lo >>> 16) & 0xff] ^ t4[lo >>> 24]
+              ^ t3[hi & 0xff] ^ t2[(hi >>> 8) & 0xff]
+              ^ t1[(hi >>> 16) & 0xff] ^ t0[hi >>> 24];
+          }
+        for (; pos < limit; pos++)
+          c = t0[(c ^ buffer.get(pos)) & 0xff] ^ (c >>> 8);
+        crc = ~c;
+      }
+    buffer.position(limit);
+  }
+
   /**
    * Adds the complete byte array to the data checksum.
    */
@@ -91,6 +91,30 @@ public class Deflater
    */
   public static final int DEFLATED = 8;
 
+  /**
+   * The flush mode of {@link #deflate(byte[],int,int,int)} that leaves
+   * it to the deflater to decide how much input to accumulate before
+   * producing output, as the other <code>deflate</code> methods do.
+   * @since 1.7
+   */
+  public static final int NO_FLUSH = 0;
+
+  /**
+   * The flush mode of {@link #deflate(byte[],int,int,int)} that
+   * compresses all input so far and ends the output on a byte
+   * boundary, so that an inflater can restore all of it.
+   * @since 1.7
+   */
+  public static final int SYNC_FLUSH = 2;
+
+  /**
+   * The flush mode of {@link #deflate(byte[],int,int,int)} that acts
+   * as <code>SYNC_FLUSH</code> and also forgets the input so far, so
+   * that decompression can restart at this point.
+   * @since 1.7
+   */
+  public static final int FULL_FLUSH = 3;
+
   /*
    * The Deflater can do the following state transitions:
    *
@@ -158,6 +182,15 @@ public class Deflater
   /** The deflater engine. */
   private DeflaterEngine engine;
 
+  /** The flush mode of the flush in progress, if it is an explicit one. */
+  private int flushMode;
+
+  /** The input bytes read when the last explicit flush was done. */
+  private long flushedIn;
+
+  /** Whether a dictionary was set, in a deflater without header. */
+  private boolean rawDictionary;
+
   /**
    * Creates a new deflater with default compression level.
    */
@@ -210,6 +243,9 @@ public class Deflater
   {
     state = (noHeader ? BUSY_STATE : INIT_STATE);
     totalOut = 0;
+    flushMode = NO_FLUSH;
+    flushedIn = 0;
+    rawDictionary = false;
     pending.reset();
     engine.reset();
   }
@@ -464,7 +500,21 @@ public class Deflater
               return origLength - length;
             else if (state == FLUSHING_STATE)
               {
-                if (level != NO_COMPRESSION)
+                if (flushMode != NO_FLUSH)
+                  {
+                    /* Write an empty stored block, which ends the output
+                     * on a byte boundary.
+                     */
+                    pending.writeBits(DeflaterConstants.STORED_BLOCK << 1, 3);
+                    pending.alignToByte();
+                    pending.writeShort(0);
+                    pending.writeShort(0xffff);
+                    if (flushMode == FULL_FLUSH)
+                      engine.clearHash();
+                    flushMode = NO_FLUSH;
+                    flushedIn = engine.getTotalIn();
+                  }
+                else if (level != NO_COMPRESSION)
                   {
                     /* We have to supply some lookahead.  8 bit lookahead
                      * are needed by the zlib inflater, and we must fill
@@ -500,6 +550,43 @@ public class Deflater
     return origLength - length;
   }
 
+  /**
+   * Deflates the current input block to the given array, using the
+   * given flush mode.  With <code>SYNC_FLUSH</code> or
+   * <code>FULL_FLUSH</code> the output is complete for all input
+   * given so far once this method returns less than
+   * <code>length</code>; otherwise it must be called again, with the
+   * same flush mode, to get the rest.
+   * @param output the buffer where to write the compressed data.
+   * @param offset the offset into the output array.
+   * @param length the maximum number of bytes that may be written.
+   * @param flush one of <code>NO_FLUSH</code>, <code>SYNC_FLUSH</code>
+   * or <code>FULL_FLUSH</code>.
+   * @exception IllegalStateException if end() was called.
+   * @exception IllegalArgumentException if the flush mode is invalid.
+   * @exception IndexOutOfBoundsException if offset and/or length
+   * don't match the array length.
+   * @since 1.7
+   */
+  public int deflate(byte[] output, int offset, int length, int flush)
+  {
+    if (flush != NO_FLUSH)
+      {
+        if (flush != SYNC_FLUSH && flush != FULL_FLUSH)
+          throw new IllegalArgumentException("flush: " + flush);
+        /* Start a flush unless one is under way or there is nothing
+         * new to flush.
+         */
+        if ((state & IS_FLUSHING) == 0
+            && (!engine.needsInput() || engine.getTotalIn() != flushedIn))
+          {
+            state |= IS_FLUSHING;
+            flushMode = flush;
+          }
+      }
+    return deflate(output, offset, length);
+  }
+
   /**
    * Sets the dictionary which should be used in the deflate process.
    * This call is equivalent to <code>setDictionary(dict, 0,
@@ -519,7 +606,8 @@ public class Deflater
    * likely to occur in the data which should be compressed.  The
    * dictionary is not stored in the compressed output, only a
    * checksum.  To decompress the output you need to supply the same
-   * dictionary again.
+   * dictionary again.  A deflater without header does not even write
+   * the checksum.
    * @param dict the dictionary.
    * @param offset an offset into the dictionary.
    * @param length the length of the dictionary.
@@ -528,10 +616,18 @@ public class Deflater
    */
   public void setDictionary(byte[] dict, int offset, int length)
   {
-    if (state != INIT_STATE)
-      throw new IllegalStateException();
-
-    state = SETDICT_STATE;
+    if (noHeader)
+      {
+        if (state != BUSY_STATE || rawDictionary || engine.getTotalIn() != 0)
+          throw new IllegalStateException();
+        rawDictionary = true;
+      }
+    else
+      {
+        if (state != INIT_STATE)
+          throw new IllegalStateException();
+        state = SETDICT_STATE;
+      }
     engine.setDictionary(dict, offset, length);
   }
 }
@@ -152,6 +152,16 @@ class DeflaterEngine implements DeflaterConstants
       prev[i] = 0;
   }
 
+  /**
+   * Forgets the strings seen so far, so that no later match refers
+   * back to them.
+   */
+  public final void clearHash()
+  {
+    for (int i = 0; i < HASH_SIZE; i++)
+      head[i] = 0;
+  }
+
   public final void resetAdler()
   {
     adler.reset();
@@ -433,6 +443,9 @@ class DeflaterEngine implements DeflaterConstants
     lookahead = 0;
 
     int storedLen = strstart - blockStart;
+    if (storedLen == 0 && flush && !finish)
+      /* Everything is flushed already */
+      return false;
 
     if ((storedLen >= DeflaterConstants.MAX_BLOCK_SIZE)
         /* Block is full */
@@ -440,7 +453,8 @@ class DeflaterEngine implements DeflaterConstants
         /* Block may move out of window */
         || flush)
       {
-        boolean lastBlock = finish;
+        /* Only the block holding the end of the input can be the last */
+        boolean lastBlock = finish && flush;
         if (storedLen > DeflaterConstants.MAX_BLOCK_SIZE)
           {
             storedLen = DeflaterConstants.MAX_BLOCK_SIZE;
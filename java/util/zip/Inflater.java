@@ -68,33 +68,13 @@ package java.util.zip;
  */
 public class Inflater
 {
-  /* Copy lengths for literal codes 257..285 */
-  private static final int CPLENS[] =
-  {
-    3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
-    35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258
-  };
-
-  /* Extra bits for literal codes 257..285 */
-  private static final int CPLEXT[] =
-  {
-    0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
-    3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
-  };
-
-  /* Copy offsets for distance codes 0..29 */
-  private static final int CPDIST[] = {
-    1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
-    257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145,
-    8193, 12289, 16385, 24577
-  };
-
-  /* Extra bits for distance codes */
-  private static final int CPDEXT[] = {
-    0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
-    7, 7, 8, 8, 9, 9, 10, 10, 11, 11,
-    12, 12, 13, 13
-  };
+  /* Fields of the Huffman table entries, see InflaterHuffmanTree */
+  private static final int KIND_MASK = InflaterHuffmanTree.KIND_MASK;
+  private static final int LITERAL = InflaterHuffmanTree.LITERAL;
+  private static final int BASE = InflaterHuffmanTree.BASE;
+  private static final int END_OF_BLOCK = InflaterHuffmanTree.END_OF_BLOCK;
+  private static final int LINK = InflaterHuffmanTree.LINK;
+  private static final int VALUE_SHIFT = InflaterHuffmanTree.VALUE_SHIFT;
 
   /* This are the state in which the inflater can be.  */
   private static final int DECODE_HEADER           = 0;
@@ -332,7 +312,13 @@ public class Inflater
             len -= more;
           }
         else
-          break;
+          {
+            /* The output buffer is full: put back the input we
+             * read ahead, see needsInput().
+             */
+            input.unreadBytes();
+            break;
+          }
       }
     return count;
   }
@@ -508,40 +494,29 @@ public class Inflater
     int free = outputWindow.getFreeSpace();
     while (free >= 258)
       {
-        int symbol;
+        int entry;
         switch (mode)
           {
           case DECODE_HUFFMAN:
             /* This is the inner loop so it is optimized a bit */
-            while (((symbol = litlenTree.getSymbol(input)) & ~0xff) == 0)
-              {
-                outputWindow.write(symbol);
-                if (--free < 258)
-                  return true;
-              }
-            if (symbol < 257)
-              {
-                if (symbol < 0)
-                  return false;
-                else
-                  {
-                    /* symbol == 256: end of block */
-                    distTree = null;
-                    litlenTree = null;
-                    mode = DECODE_BLOCKS;
-                    return true;
-                  }
-              }
+            free = decodeFast(free);
+            if (free < 258)
+              return true;
 
-            try
-              {
-                repLength = CPLENS[symbol - 257];
-                neededBits = CPLEXT[symbol - 257];
-              }
-            catch (ArrayIndexOutOfBoundsException ex)
+            /* Near the end of the input we go step by step. */
+            entry = litlenTree.getEntry(input);
+            if (entry < 0)
+              return false;
+            if ((entry & KIND_MASK) == LITERAL)
               {
-                throw new DataFormatException("Illegal rep length code");
+                outputWindow.write(entry >>> VALUE_SHIFT);
+                free--;
+                continue;
               }
+            if ((entry & KIND_MASK) != BASE)
+              return endHuffman(entry);
+            repLength = entry >>> VALUE_SHIFT;
+            neededBits = (entry >> 4) & 15;
             /* fall through */
           case DECODE_HUFFMAN_LENBITS:
             if (neededBits > 0)
@@ -556,18 +531,13 @@ public class Inflater
             mode = DECODE_HUFFMAN_DIST;
             /* fall through */
           case DECODE_HUFFMAN_DIST:
-            symbol = distTree.getSymbol(input);
-            if (symbol < 0)
+            entry = distTree.getEntry(input);
+            if (entry < 0)
               return false;
-            try
-              {
-                repDist = CPDIST[symbol];
-                neededBits = CPDEXT[symbol];
-              }
-            catch (ArrayIndexOutOfBoundsException ex)
-              {
-                throw new DataFormatException("Illegal rep dist code");
-              }
+            if ((entry & KIND_MASK) != BASE)
+              throw new DataFormatException("Illegal rep dist code");
+            repDist = entry >>> VALUE_SHIFT;
+            neededBits = (entry >> 4) & 15;
             /* fall through */
           case DECODE_HUFFMAN_DISTBITS:
             if (neededBits > 0)
@@ -590,6 +560,138 @@ public class Inflater
     return true;
   }
 
+  /**
+   * Decodes literal/length and distance codes as long as there is
+   * enough input left for a complete length/distance pair and room in
+   * the output window for the longest match.  This is the hot loop of
+   * the inflater, the equivalent of zlib's inflate_fast: it keeps the
+   * bit buffer and the output window position in local variables,
+   * refills the bit buffer four bytes at a time and needs no checks
+   * for the end of input.
+   * @param free the free space in the output window.
+   * @return the free space in the output window afterwards, or -1 if
+   * the end of the block was reached.
+   * @exception DataFormatException if deflated stream is invalid.
+   */
+  private int decodeFast (int free) throws DataFormatException
+  {
+    /* We read at most eight bytes per length/distance pair. */
+    byte[] in = input.window;
+    int inPos = input.window_start;
+    int inLimit = input.window_end - 8;
+    if (inPos > inLimit)
+      return free;
+    long buf = input.buffer;
+    int bits = input.bits_in_buffer;
+
+    byte[] window = outputWindow.window;
+    int out = outputWindow.window_end;
+    int filled = outputWindow.window_filled;
+    int outLimit = OutputWindow.WINDOW_SIZE - 258;
+
+    int[] litlen = litlenTree.table;
+    int litlenBits = litlenTree.rootBits;
+    int litlenMask = (1 << litlenBits) - 1;
+    int[] dist = distTree.table;
+    int distBits = distTree.rootBits;
+    int distMask = (1 << distBits) - 1;
+
+    int entry = 0;
+    boolean endOfBlock = false;
+    while (filled <= outLimit && inPos <= inLimit)
+      {
+        /* A literal/length code and its extra bits take at most 20
+         * bits, a distance code and its extra bits at most 28 bits.
+         */
+        if (bits < 32)
+          {
+            buf |= ((in[inPos] & 0xff) | (in[inPos + 1] & 0xff) << 8
+                    | (in[inPos + 2] & 0xff) << 16
+                    | (long) (in[inPos + 3] & 0xff) << 24) << bits;
+            inPos += 4;
+            bits += 32;
+          }
+        entry = litlen[(int) buf & litlenMask];
+        if ((entry & KIND_MASK) == LINK)
+          entry = litlen[(entry >>> VALUE_SHIFT)
+                         + ((int) (buf >>> litlenBits)
+                            & ((1 << (entry & 15)) - 1))];
+        buf >>>= entry & 15;
+        bits -= entry & 15;
+        if ((entry & KIND_MASK) == LITERAL)
+          {
+            window[out] = (byte) (entry >>> VALUE_SHIFT);
+            out = (out + 1) & OutputWindow.WINDOW_MASK;
+            filled++;
+            continue;
+          }
+        if ((entry & KIND_MASK) != BASE)
+          {
+            endOfBlock = true;
+            break;
+          }
+        int extra = (entry >> 4) & 15;
+        int length = (entry >>> VALUE_SHIFT)
+          + ((int) buf & ((1 << extra) - 1));
+        buf >>>= extra;
+        bits -= extra;
+
+        if (bits < 32)
+          {
+            buf |= ((in[inPos] & 0xff) | (in[inPos + 1] & 0xff) << 8
+                    | (in[inPos + 2] & 0xff) << 16
+                    | (long) (in[inPos + 3] & 0xff) << 24) << bits;
+            inPos += 4;
+            bits += 32;
+          }
+        entry = dist[(int) buf & distMask];
+        if ((entry & KIND_MASK) == LINK)
+          entry = dist[(entry >>> VALUE_SHIFT)
+                       + ((int) (buf >>> distBits)
+                          & ((1 << (entry & 15)) - 1))];
+        if ((entry & KIND_MASK) != BASE)
+          throw new DataFormatException("Illegal rep dist code");
+        buf >>>= entry & 15;
+        bits -= entry & 15;
+        extra = (entry >> 4) & 15;
+        int distance = (entry >>> VALUE_SHIFT)
+          + ((int) buf & ((1 << extra) - 1));
+        buf >>>= extra;
+        bits -= extra;
+
+        out = OutputWindow.repeat(window, out, length, distance);
+        filled += length;
+      }
+
+    input.window_start = inPos;
+    input.buffer = buf;
+    input.bits_in_buffer = bits;
+    outputWindow.window_end = out;
+    outputWindow.window_filled = filled;
+    if (endOfBlock)
+      {
+        endHuffman(entry);
+        return -1;
+      }
+    return OutputWindow.WINDOW_SIZE - filled;
+  }
+
+  /**
+   * Handles a literal/length table entry that is neither a literal nor
+   * a length, i.e. the end of block marker or an invalid code.
+   * @return true.
+   * @exception DataFormatException if the code is invalid.
+   */
+  private boolean endHuffman (int entry) throws DataFormatException
+  {
+    if ((entry & KIND_MASK) != END_OF_BLOCK)
+      throw new DataFormatException("Illegal rep length code");
+    distTree = null;
+    litlenTree = null;
+    mode = DECODE_BLOCKS;
+    return true;
+  }
+
   /**
    * Decodes the adler checksum after the deflate stream.
    * @return false if more input is needed.
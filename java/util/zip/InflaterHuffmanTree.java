@@ -37,16 +37,106 @@ exception statement from your version. */
 
 package java.util.zip;
 
+/**
+ * A Huffman decoding table for the Inflater.
+ *
+ * The table is indexed by the next bits of input (in the order they
+ * appear in the stream) and is split in two levels: the root table
+ * resolves every code that is not longer than the root width in a
+ * single probe; longer codes link to a second level table that is
+ * indexed by the remaining bits.
+ *
+ * Every entry already carries everything the inflater needs to know
+ * about the decoded symbol, packed into an int: bits 0-3 hold the
+ * code length (for links, the width of the second level table), bits
+ * 4-7 the number of extra bits following a length or distance code,
+ * bits 8-10 the kind of the entry and the remaining bits its value,
+ * which is the literal byte, the symbol or the base length or
+ * distance.
+ */
 class InflaterHuffmanTree
 {
   private static final int MAX_BITLEN = 15;
 
-  private short[] tree;
+  /* The kinds of table entries, already shifted into place. */
+  static final int LITERAL = 0 << 8;
+  static final int BASE = 1 << 8;
+  static final int END_OF_BLOCK = 2 << 8;
+  static final int LINK = 3 << 8;
+  static final int INVALID = 4 << 8;
+
+  static final int KIND_MASK = 7 << 8;
+  static final int VALUE_SHIFT = 11;
+
+  /* Root table widths for the different trees */
+  private static final int LITLEN_ROOT_BITS = 10;
+  private static final int DIST_ROOT_BITS = 8;
+  private static final int CODE_LENGTH_ROOT_BITS = 7;
+
+  /* Copy lengths for literal codes 257..285 */
+  private static final int CPLENS[] =
+  {
+    3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+    35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258
+  };
+
+  /* Extra bits for literal codes 257..285 */
+  private static final int CPLEXT[] =
+  {
+    0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+    3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+  };
+
+  /* Copy offsets for distance codes 0..29 */
+  private static final int CPDIST[] = {
+    1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+    257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145,
+    8193, 12289, 16385, 24577
+  };
+
+  /* Extra bits for distance codes */
+  private static final int CPDEXT[] = {
+    0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+    7, 7, 8, 8, 9, 9, 10, 10, 11, 11,
+    12, 12, 13, 13
+  };
+
+  /* The entries (without code length) for the literal/length and the
+   * distance alphabets.
+   */
+  private static final int[] LITLEN_SYMBOLS = new int[288];
+  private static final int[] DIST_SYMBOLS = new int[32];
+
+  /* An entry for a bit pattern no code starts with */
+  private static final int UNUSED = entry(0, INVALID, 0, 1);
+
+  /* These are accessed directly by Inflater.decodeFast(). */
+  int[] table;
+  int rootBits;
 
   static InflaterHuffmanTree defLitLenTree, defDistTree;
 
   static
   {
+    for (int i = 0; i < 288; i++)
+      {
+        if (i < 256)
+          LITLEN_SYMBOLS[i] = entry(i, LITERAL, 0, 0);
+        else if (i == 256)
+          LITLEN_SYMBOLS[i] = entry(0, END_OF_BLOCK, 0, 0);
+        else if (i - 257 < CPLENS.length)
+          LITLEN_SYMBOLS[i] = entry(CPLENS[i - 257], BASE, CPLEXT[i - 257], 0);
+        else
+          LITLEN_SYMBOLS[i] = entry(i, INVALID, 0, 0);
+      }
+    for (int i = 0; i < 32; i++)
+      {
+        if (i < CPDIST.length)
+          DIST_SYMBOLS[i] = entry(CPDIST[i], BASE, CPDEXT[i], 0);
+        else
+          DIST_SYMBOLS[i] = entry(i, INVALID, 0, 0);
+      }
+
     try
       {
         byte[] codeLengths = new byte[288];
@@ -59,13 +149,13 @@ class InflaterHuffmanTree
           codeLengths[i++] = 7;
         while (i < 288)
           codeLengths[i++] = 8;
-        defLitLenTree = new InflaterHuffmanTree(codeLengths);
+        defLitLenTree = litLenTree(codeLengths);
 
         codeLengths = new byte[32];
         i = 0;
         while (i < 32)
           codeLengths[i++] = 5;
-        defDistTree = new InflaterHuffmanTree(codeLengths);
+        defDistTree = distTree(codeLengths);
       }
     catch (DataFormatException ex)
       {
@@ -74,17 +164,53 @@ class InflaterHuffmanTree
       }
   }
 
+  private static int entry(int value, int kind, int extra, int bits)
+  {
+    return (value << VALUE_SHIFT) | kind | (extra << 4) | bits;
+  }
+
   /**
-   * Constructs a Huffman tree from the array of code lengths.
+   * Constructs a Huffman tree for the code length alphabet from the
+   * array of code lengths.  The value of each entry is its symbol.
    *
    * @param codeLengths the array of code lengths
    */
   InflaterHuffmanTree(byte[] codeLengths) throws DataFormatException
   {
-    buildTree(codeLengths);
+    buildTree(codeLengths, CODE_LENGTH_ROOT_BITS, null);
+  }
+
+  private InflaterHuffmanTree(byte[] codeLengths, int rootBits, int[] symbols)
+    throws DataFormatException
+  {
+    buildTree(codeLengths, rootBits, symbols);
+  }
+
+  /**
+   * Constructs a Huffman tree for the literal/length alphabet.
+   *
+   * @param codeLengths the array of code lengths
+   */
+  static InflaterHuffmanTree litLenTree(byte[] codeLengths)
+    throws DataFormatException
+  {
+    return new InflaterHuffmanTree(codeLengths, LITLEN_ROOT_BITS,
+                                   LITLEN_SYMBOLS);
+  }
+
+  /**
+   * Constructs a Huffman tree for the distance alphabet.
+   *
+   * @param codeLengths the array of code lengths
+   */
+  static InflaterHuffmanTree distTree(byte[] codeLengths)
+    throws DataFormatException
+  {
+    return new InflaterHuffmanTree(codeLengths, DIST_ROOT_BITS, DIST_SYMBOLS);
   }
 
-  private void buildTree(byte[] codeLengths) throws DataFormatException
+  private void buildTree(byte[] codeLengths, int maxRootBits, int[] symbols)
+    throws DataFormatException
   {
     int[] blCount = new int[MAX_BITLEN+1];
     int[] nextCode = new int[MAX_BITLEN+1];
@@ -97,40 +223,54 @@ class InflaterHuffmanTree
 
     int max = 0;
     int code = 0;
-    int treeSize = 512;
     for (int bits = 1; bits <= MAX_BITLEN; bits++)
       {
         nextCode[bits] = code;
         if (blCount[bits] > 0)
           max = bits;
         code += blCount[bits] << (16 - bits);
-        if (bits >= 10)
-          {
-            /* We need an extra table for bit lengths >= 10. */
-            int start = nextCode[bits] & 0x1ff80;
-            int end   = code & 0x1ff80;
-            treeSize += (end - start) >> (16 - bits);
-          }
       }
-    if (code != 65536 && max > 1)
+    if (code > 65536 || (code != 65536 && max > 1))
       throw new DataFormatException("incomplete dynamic bit lengths tree");
 
-    /* Now create and fill the extra tables from longest to shortest
-     * bit len.  This way the sub trees will be aligned.
+    int root = Math.max(1, Math.min(max, maxRootBits));
+    int rootMask = (1 << root) - 1;
+
+    /* Assign the codes, reversed so that they can be used as table
+     * index, and find out how wide the second level tables need to be.
      */
-    tree = new short[treeSize];
-    int treePtr = 512;
-    for (int bits = MAX_BITLEN; bits >= 10; bits--)
+    int[] codes = new int[codeLengths.length];
+    int[] subBits = max > root ? new int[1 << root] : null;
+    for (int i = 0; i < codeLengths.length; i++)
       {
-        int end   = code & 0x1ff80;
-        code -= blCount[bits] << (16 - bits);
-        int start = code & 0x1ff80;
-        for (int i = start; i < end; i += 1 << 7)
-          {
-            tree[DeflaterHuffman.bitReverse(i)]
-              = (short) ((-treePtr << 4) | bits);
-            treePtr += 1 << (bits-9);
-          }
+        int bits = codeLengths[i];
+        if (bits == 0)
+          continue;
+        codes[i] = DeflaterHuffman.bitReverse(nextCode[bits]);
+        nextCode[bits] += 1 << (16 - bits);
+        if (bits > root && subBits[codes[i] & rootMask] < bits - root)
+          subBits[codes[i] & rootMask] = bits - root;
+      }
+
+    int size = 1 << root;
+    if (subBits != null)
+      for (int i = 0; i <= rootMask; i++)
+        if (subBits[i] > 0)
+          size += 1 << subBits[i];
+    table = new int[size];
+    rootBits = root;
+    for (int i = 0; i < size; i++)
+      table[i] = UNUSED;
+
+    if (subBits != null)
+      {
+        int next = 1 << root;
+        for (int i = 0; i <= rootMask; i++)
+          if (subBits[i] > 0)
+            {
+              table[i] = entry(next, LINK, 0, subBits[i]);
+              next += 1 << subBits[i];
+            }
       }
 
     for (int i = 0; i < codeLengths.length; i++)
@@ -138,33 +278,66 @@ class InflaterHuffmanTree
         int bits = codeLengths[i];
         if (bits == 0)
           continue;
-        code = nextCode[bits];
-        int revcode = DeflaterHuffman.bitReverse(code);
-        if (bits <= 9)
+        int value;
+        if (symbols == null)
+          value = entry(i, LITERAL, 0, bits);
+        else if (i < symbols.length)
+          value = symbols[i] | bits;
+        else
+          value = entry(i, INVALID, 0, bits);
+
+        int revcode = codes[i];
+        if (bits <= root)
           {
             do
               {
-                tree[revcode] = (short) ((i << 4) | bits);
+                table[revcode] = value;
                 revcode += 1 << bits;
               }
-            while (revcode < 512);
+            while (revcode <= rootMask);
           }
         else
           {
-            int subTree = tree[revcode & 511];
-            int treeLen = 1 << (subTree & 15);
-            subTree = -(subTree >> 4);
+            int link = table[revcode & rootMask];
+            int base = link >>> VALUE_SHIFT;
+            int subLen = 1 << (link & 15);
+            revcode >>>= root;
             do
               {
-                tree[subTree | (revcode >> 9)] = (short) ((i << 4) | bits);
-                revcode += 1 << bits;
+                table[base + revcode] = value;
+                revcode += 1 << (bits - root);
               }
-            while (revcode < treeLen);
+            while (revcode < subLen);
           }
-        nextCode[bits] = code + (1 << (16 - bits));
       }
   }
 
+  /**
+   * Reads the next symbol from input and returns its table entry.
+   *
+   * @param input the input source.
+   * @return the table entry of the decoded symbol, or -1 if not enough
+   * input is available.
+   */
+  int getEntry(StreamManipulator input)
+  {
+    int bits = MAX_BITLEN;
+    int lookahead = input.peekBits(bits);
+    if (lookahead < 0)
+      {
+        bits = input.getAvailableBits();
+        lookahead = input.peekBits(bits);
+      }
+    int entry = table[lookahead & ((1 << rootBits) - 1)];
+    if ((entry & KIND_MASK) == LINK)
+      entry = table[(entry >>> VALUE_SHIFT)
+                    + ((lookahead >>> rootBits) & ((1 << (entry & 15)) - 1))];
+    if ((entry & 15) > bits)
+      return -1;
+    input.dropBits(entry & 15);
+    return entry;
+  }
+
   /**
    * Reads the next symbol from input.  The symbol is encoded using the
    * huffman tree.
@@ -173,48 +346,11 @@ class InflaterHuffmanTree
    */
   int getSymbol(StreamManipulator input) throws DataFormatException
   {
-    int lookahead, symbol;
-    if ((lookahead = input.peekBits(9)) >= 0)
-      {
-        if ((symbol = tree[lookahead]) >= 0)
-          {
-            input.dropBits(symbol & 15);
-            return symbol >> 4;
-          }
-        int subtree = -(symbol >> 4);
-        int bitlen = symbol & 15;
-        if ((lookahead = input.peekBits(bitlen)) >= 0)
-          {
-            symbol = tree[subtree | (lookahead >> 9)];
-            input.dropBits(symbol & 15);
-            return symbol >> 4;
-          }
-        else
-          {
-            int bits = input.getAvailableBits();
-            lookahead = input.peekBits(bits);
-            symbol = tree[subtree | (lookahead >> 9)];
-            if ((symbol & 15) <= bits)
-              {
-                input.dropBits(symbol & 15);
-                return symbol >> 4;
-              }
-            else
-              return -1;
-          }
-      }
-    else
-      {
-        int bits = input.getAvailableBits();
-        lookahead = input.peekBits(bits);
-        symbol = tree[lookahead];
-        if (symbol >= 0 && (symbol & 15) <= bits)
-          {
-            input.dropBits(symbol & 15);
-            return symbol >> 4;
-          }
-        else
-          return -1;
-      }
+    int entry = getEntry(input);
+    if (entry < 0)
+      return -1;
+    if ((entry & KIND_MASK) == INVALID)
+      throw new DataFormatException("invalid code");
+    return entry >>> VALUE_SHIFT;
   }
 }
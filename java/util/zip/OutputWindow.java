@@ -48,12 +48,13 @@ package java.util.zip;
  */
 class OutputWindow
 {
-  private static final int WINDOW_SIZE = 1 << 15;
-  private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+  static final int WINDOW_SIZE = 1 << 15;
+  static final int WINDOW_MASK = WINDOW_SIZE - 1;
 
-  private byte[] window = new byte[WINDOW_SIZE]; //The window is 2^15 bytes
-  private int window_end  = 0;
-  private int window_filled = 0;
+  /* These are accessed directly by Inflater.decodeFast(). */
+  byte[] window = new byte[WINDOW_SIZE]; //The window is 2^15 bytes
+  int window_end  = 0;
+  int window_filled = 0;
 
   public void write(int abyte)
   {
@@ -63,40 +64,50 @@ class OutputWindow
     window_end &= WINDOW_MASK;
   }
 
-  private void slowRepeat(int rep_start, int len, int dist)
-  {
-    while (len-- > 0)
-      {
-        window[window_end++] = window[rep_start++];
-        window_end &= WINDOW_MASK;
-        rep_start &= WINDOW_MASK;
-      }
-  }
-
   public void repeat(int len, int dist)
   {
     if ((window_filled += len) > WINDOW_SIZE)
       throw new IllegalStateException("Window full");
 
-    int rep_start = (window_end - dist) & WINDOW_MASK;
-    int border = WINDOW_SIZE - len;
-    if (rep_start <= border && window_end < border)
+    window_end = repeat(window, window_end, len, dist);
+  }
+
+  /**
+   * Copies len bytes starting dist bytes back to window[out] and
+   * returns the new end of the window.
+   */
+  static int repeat(byte[] window, int out, int len, int dist)
+  {
+    int rep_start = (out - dist) & WINDOW_MASK;
+    int end = out + len;
+    if (end <= WINDOW_SIZE && rep_start + len <= WINDOW_SIZE)
       {
         if (len <= dist)
-          {
-            System.arraycopy(window, rep_start, window, window_end, len);
-            window_end += len;
-          }
+          System.arraycopy(window, rep_start, window, out, len);
         else
           {
-            /* We have to copy manually, since the repeat pattern overlaps.
+            /* The repeat pattern overlaps, but everything from
+             * rep_start on repeats with period dist, so we can copy
+             * blocks that double in size each time.
              */
-            while (len-- > 0)
-              window[window_end++] = window[rep_start++];
+            while (out < end)
+              {
+                int n = Math.min(out - rep_start, end - out);
+                System.arraycopy(window, rep_start, window, out, n);
+                out += n;
+              }
           }
+        return end & WINDOW_MASK;
       }
-    else
-      slowRepeat(rep_start, len, dist);
+
+    /* Either the source or the destination wraps around. */
+    while (len-- > 0)
+      {
+        window[out++] = window[rep_start++];
+        out &= WINDOW_MASK;
+        rep_start &= WINDOW_MASK;
+      }
+    return out;
   }
 
   public int copyStored(StreamManipulator input, int len)
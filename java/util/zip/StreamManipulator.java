@@ -41,44 +41,62 @@ package java.util.zip;
  * This class allows us to retrieve a specified amount of bits from
  * the input buffer, as well as copy big byte blocks.
  *
- * It uses an int buffer to store up to 31 bits for direct
- * manipulation.  This guarantees that we can get at least 16 bits,
- * but we only need at most 15, so this is all safe.
+ * It uses a long buffer to store up to 64 bits for direct
+ * manipulation.  Whenever the buffer runs short it is refilled a
+ * byte at a time until it holds more than 56 bits.
  *
- * There are some optimizations in this class, for example, you must
- * never peek more then 8 bits more than needed, and you must first
- * peek bits before you may drop them.  This is not a general purpose
- * class but optimized for the behaviour of the Inflater.
+ * This is not a general purpose class but optimized for the
+ * behaviour of the Inflater: you must first peek bits before you
+ * may drop them, and you may never peek 32 bits or more at once.
  *
  * @author John Leuner, Jochen Hoenicke
  */
 
 class StreamManipulator
 {
-  private byte[] window;
-  private int window_start = 0;
-  private int window_end = 0;
+  /* These are accessed directly by Inflater.decodeFast(). */
+  byte[] window;
+  int window_start = 0;
+  int window_end = 0;
+  long buffer = 0;
+  int bits_in_buffer = 0;
 
-  private int buffer = 0;
-  private int bits_in_buffer = 0;
+  private int window_offset = 0;
+
+  /**
+   * Moves as many whole bytes from the input window into the bit
+   * buffer as fit.
+   */
+  private void refill()
+  {
+    int start = window_start;
+    int end = window_end;
+    int bits = bits_in_buffer;
+    long buf = buffer;
+    while (bits <= 56 && start < end)
+      {
+        buf |= (long) (window[start++] & 0xff) << bits;
+        bits += 8;
+      }
+    window_start = start;
+    buffer = buf;
+    bits_in_buffer = bits;
+  }
 
   /**
    * Get the next n bits but don't increase input pointer.  n must be
-   * less or equal 16 and if you if this call succeeds, you must drop
-   * at least n-8 bits in the next call.
+   * less than 32.
    *
    * @return the value of the bits, or -1 if not enough bits available.  */
   public final int peekBits(int n)
   {
     if (bits_in_buffer < n)
       {
-        if (window_start == window_end)
+        refill();
+        if (bits_in_buffer < n)
           return -1;
-        buffer |= (window[window_start++] & 0xff
-                   | (window[window_start++] & 0xff) << 8) << bits_in_buffer;
-        bits_in_buffer += 16;
       }
-    return buffer & ((1 << n) - 1);
+    return (int) buffer & ((1 << n) - 1);
   }
 
   /* Drops the next n bits from the input.  You should have called peekBits
@@ -127,10 +145,27 @@ class StreamManipulator
    */
   public void skipToByteBoundary()
   {
-    buffer >>= (bits_in_buffer & 7);
+    buffer >>>= (bits_in_buffer & 7);
     bits_in_buffer &= ~7;
   }
 
+  /**
+   * Puts the whole bytes in the bit buffer that were read from the
+   * current input back into the input window.  The bit buffer reads
+   * ahead, and this makes sure that needsInput() only returns true
+   * once the input was really consumed.
+   */
+  public final void unreadBytes()
+  {
+    int n = Math.min(bits_in_buffer >> 3, window_start - window_offset);
+    if (n > 0)
+      {
+        window_start -= n;
+        bits_in_buffer -= n << 3;
+        buffer &= (1L << bits_in_buffer) - 1;
+      }
+  }
+
   public final boolean needsInput() {
     return window_start == window_end;
   }
@@ -148,7 +183,6 @@ class StreamManipulator
     if (length < 0)
       throw new IllegalArgumentException("length negative");
     if ((bits_in_buffer & 7) != 0)
-      /* bits_in_buffer may only be 0 or 8 */
       throw new IllegalStateException("Bit buffer is not aligned!");
 
     int count = 0;
@@ -168,13 +202,6 @@ class StreamManipulator
       length = avail;
     System.arraycopy(window, window_start, output, offset, length);
     window_start += length;
-
-    if (((window_start - window_end) & 1) != 0)
-      {
-        /* We always want an even number of bytes in input, see peekBits */
-        buffer = (window[window_start++] & 0xff);
-        bits_in_buffer = 8;
-      }
     return count + length;
   }
 
@@ -184,7 +211,8 @@ class StreamManipulator
 
   public void reset()
   {
-    window_start = window_end = buffer = bits_in_buffer = 0;
+    window_offset = window_start = window_end = bits_in_buffer = 0;
+    buffer = 0;
   }
 
   public void setInput(byte[] buf, int off, int len)
@@ -201,14 +229,8 @@ class StreamManipulator
     if (0 > off || off > end || end > buf.length)
       throw new ArrayIndexOutOfBoundsException();
 
-    if ((len & 1) != 0)
-      {
-        /* We always want an even number of bytes in input, see peekBits */
-        buffer |= (buf[off++] & 0xff) << bits_in_buffer;
-        bits_in_buffer += 8;
-      }
-
     window = buf;
+    window_offset = off;
     window_start = off;
     window_end = end;
   }
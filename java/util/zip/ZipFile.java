@@ -39,6 +39,7 @@ exception statement from your version. */
 
 package java.util.zip;
 
+import gnu.classpath.SystemProperties;
 import gnu.java.util.EmptyEnumeration;
 
 import java.io.EOFException;
@@ -48,12 +49,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
 
 /**
  * This class represents a Zip archive.  You can ask for the contained
@@ -63,6 +68,15 @@ import java.util.LinkedHashMap;
  * This class is thread safe:  You can open input streams for arbitrary
  * entries in different threads.
  *
+ * If the system property <code>gnu.java.util.zip.mmap</code> is set
+ * to <code>true</code>, archives smaller than 2GB are mapped into
+ * memory.  The central directory is then indexed in place, entries are
+ * only created when asked for, and entry streams read the mapping
+ * without taking a lock shared with other streams.  As with unmapped
+ * archives, entry streams throw an IOException once the ZipFile is
+ * closed, although the mapping itself is only released when it is
+ * garbage collected.
+ *
  * @author Jochen Hoenicke
  * @author Artur Biesiadowski
  */
@@ -84,16 +98,26 @@ public class ZipFile implements ZipConstants
    */
   static final int ENDNRD =  4;
 
+  // Whether archives are mapped into memory.
+  private static final boolean USE_MMAP =
+    "true".equals(SystemProperties.getProperty("gnu.java.util.zip.mmap"));
+
   // Name of this zip file.
   private final String name;
 
   // File from which zip entries are read.
   private final RandomAccessFile raf;
 
+  // The contents of the file when it is mapped, otherwise null.
+  private final ByteBuffer mapped;
+
   // The entries of this zip file when initialized and not yet closed.
   private LinkedHashMap<String, ZipEntry> entries;
 
-  private boolean closed = false;
+  // The index of the mapped entries when initialized and not yet closed.
+  private volatile EntryIndex index;
+
+  private volatile boolean closed = false;
 
 
   /**
@@ -137,6 +161,7 @@ public class ZipFile implements ZipConstants
     this.raf = openFile(name,null);
     this.name = name;
     checkZipFile();
+    this.mapped = map(raf);
   }
 
   /**
@@ -150,6 +175,7 @@ public class ZipFile implements ZipConstants
     this.raf = openFile(null,file);
     this.name = file.getPath();
     checkZipFile();
+    this.mapped = map(raf);
   }
 
   /**
@@ -177,6 +203,7 @@ public class ZipFile implements ZipConstants
     this.raf = openFile(null,file);
     this.name = file.getPath();
     checkZipFile();
+    this.mapped = map(raf);
   }
 
   private void checkZipFile() throws ZipException
@@ -210,6 +237,30 @@ public class ZipFile implements ZipConstants
       }
   }
 
+  /**
+   * Maps a zip file into memory, unless mapping is disabled or fails.
+   *
+   * @return the contents of the file, or null if it is not mapped.
+   */
+  private static ByteBuffer map(RandomAccessFile raf)
+  {
+    if (!USE_MMAP)
+      return null;
+    try
+      {
+        long length = raf.length();
+        if (length > Integer.MAX_VALUE)
+          return null;
+        ByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                              0, length);
+        return buf.order(ByteOrder.LITTLE_ENDIAN);
+      }
+    catch (IOException _)
+      {
+        return null;
+      }
+  }
+
   /**
    * Checks if file is closed and throws an exception.
    */
@@ -315,6 +366,7 @@ public class ZipFile implements ZipConstants
       {
         closed = true;
         entries = null;
+        index = null;
         raf.close();
       }
   }
@@ -339,6 +391,8 @@ public class ZipFile implements ZipConstants
 
     try
       {
+        if (mapped != null)
+          return getIndex().entries();
         return new ZipEntryEnumeration(getEntries().values().iterator());
       }
     catch (IOException ioe)
@@ -366,6 +420,30 @@ public class ZipFile implements ZipConstants
       }
   }
 
+  /**
+   * Checks that the ZipFile is still open and indexes the mapped
+   * entries when necessary.
+   *
+   * @exception IllegalStateException when the ZipFile has already been closed.
+   * @exception IOException when the entries could not be read.
+   */
+  private EntryIndex getIndex() throws IOException
+  {
+    EntryIndex index = this.index;
+    if (index != null)
+      return index;
+
+    synchronized(raf)
+      {
+        checkClosed();
+
+        if (this.index == null)
+          this.index = new EntryIndex(mapped, name);
+
+        return this.index;
+      }
+  }
+
   /**
    * Searches for a zip entry in this archive with the given name.
    *
@@ -381,6 +459,16 @@ public class ZipFile implements ZipConstants
 
     try
       {
+        if (mapped != null)
+          {
+            EntryIndex index = getIndex();
+            int i = index.find(name);
+            // If we didn't find it, maybe it's a directory.
+            if (i < 0 && !name.endsWith("/"))
+              i = index.find(name + '/');
+            return i >= 0 ? index.getEntry(i, name) : null;
+          }
+
         LinkedHashMap<String, ZipEntry> entries = getEntries();
         ZipEntry entry = entries.get(name);
         // If we didn't find it, maybe it's a directory.
@@ -420,21 +508,40 @@ public class ZipFile implements ZipConstants
   {
     checkClosed();
 
-    LinkedHashMap<String, ZipEntry> entries = getEntries();
     String name = entry.getName();
-    ZipEntry zipEntry = entries.get(name);
-    if (zipEntry == null)
-      return null;
-
-    PartialInputStream inp = new PartialInputStream(raf, 1024);
-    inp.seek(zipEntry.offset);
+    int method;
+    long offset;
+    long csize;
+    PartialInputStream inp;
+    if (mapped != null)
+      {
+        EntryIndex index = getIndex();
+        int i = index.find(name);
+        if (i < 0)
+          return null;
+        method = index.getMethod(i);
+        offset = index.getOffset(i);
+        csize = index.getCompressedSize(i);
+        inp = new PartialInputStream(this, mapped, 1024);
+      }
+    else
+      {
+        ZipEntry zipEntry = getEntries().get(name);
+        if (zipEntry == null)
+          return null;
+        method = zipEntry.getMethod();
+        offset = zipEntry.offset;
+        csize = zipEntry.getCompressedSize();
+        inp = new PartialInputStream(raf, 1024);
+      }
+    inp.seek(offset);
 
     if (inp.readLeInt() != LOCSIG)
       throw new ZipException("Wrong Local header signature: " + name);
 
     inp.skip(4);
 
-    if (zipEntry.getMethod() != inp.readLeShort())
+    if (method != inp.readLeShort())
       throw new ZipException("Compression method mismatch: " + name);
 
     inp.skip(16);
@@ -443,9 +550,8 @@ public class ZipFile implements ZipConstants
     int extraLen = inp.readLeShort();
     inp.skip(nameLen + extraLen);
 
-    inp.setLength(zipEntry.getCompressedSize());
+    inp.setLength(csize);
 
-    int method = zipEntry.getMethod();
     switch (method)
       {
       case ZipOutputStream.STORED:
@@ -489,6 +595,8 @@ public class ZipFile implements ZipConstants
 
     try
       {
+        if (mapped != null)
+          return getIndex().size();
         return getEntries().size();
       }
     catch (IOException ioe)
@@ -520,6 +628,285 @@ public class ZipFile implements ZipConstants
     }
   }
 
+  /**
+   * The central directory of a mapped zip file.  Entries are kept as
+   * the offsets of their directory records, in an open-addressed hash
+   * table keyed by the hash of the encoded name; a ZipEntry is only
+   * created when one is asked for.  The index is never changed once
+   * built, so lookups take no lock.
+   */
+  private static final class EntryIndex
+  {
+    private final ByteBuffer buf;
+
+    // Offsets of the directory records, in directory order.
+    private final int[] records;
+
+    // The number of distinct entries in records.
+    private final int size;
+
+    // Pairs of name hash and record number plus one; 0 marks a free slot.
+    private final int[] table;
+    private final int mask;
+
+    /**
+     * Reads the central directory of a mapped zip file.
+     *
+     * @exception ZipException if the central directory is malformed
+     */
+    EntryIndex(ByteBuffer buf, String zipName) throws ZipException
+    {
+      this.buf = buf;
+      try
+        {
+          int pos = buf.limit() - ENDHDR;
+          int top = Math.max(0, pos - 65536);
+          while (true)
+            {
+              if (pos < top)
+                throw new ZipException
+                  ("central directory not found, probably not a zip file: "
+                   + zipName);
+              if (buf.getInt(pos) == ENDSIG)
+                break;
+              pos--;
+            }
+
+          int count = buf.getShort(pos + ENDTOT) & 0xffff;
+          int cen = buf.getInt(pos + ENDOFF);
+
+          int capacity = 1;
+          while (capacity < 2 * count)
+            capacity <<= 1;
+          mask = capacity - 1;
+          table = new int[2 * capacity];
+          records = new int[count];
+
+          int n = 0;
+          for (int i = 0; i < count; i++)
+            {
+              if (buf.getInt(cen) != CENSIG)
+                throw new ZipException("Wrong Central Directory signature: "
+                                       + zipName);
+              if ((buf.getShort(cen + CENFLG) & 1) != 0)
+                throw new ZipException("invalid CEN header (encrypted entry)");
+              int nameLen = buf.getShort(cen + CENNAM) & 0xffff;
+              int extraLen = buf.getShort(cen + CENEXT) & 0xffff;
+              int commentLen = buf.getShort(cen + CENCOM) & 0xffff;
+
+              int h = 0;
+              for (int j = 0; j < nameLen; j++)
+                h = 31 * h + (buf.get(cen + CENHDR + j) & 0xff);
+              int slot = h & mask;
+              while (true)
+                {
+                  int r = table[2 * slot + 1];
+                  if (r == 0)
+                    {
+                      records[n++] = cen;
+                      table[2 * slot] = h;
+                      table[2 * slot + 1] = n;
+                      break;
+                    }
+                  if (table[2 * slot] == h && sameName(records[r - 1], cen))
+                    {
+                      // A later entry of the same name replaces the first.
+                      records[r - 1] = cen;
+                      break;
+                    }
+                  slot = (slot + 1) & mask;
+                }
+
+              cen += CENHDR + nameLen + extraLen + commentLen;
+            }
+          size = n;
+        }
+      catch (IndexOutOfBoundsException e)
+        {
+          ZipException ze = new ZipException("invalid CEN header: " + zipName);
+          ze.initCause(e);
+          throw ze;
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    int size()
+    {
+      return size;
+    }
+
+    /**
+     * Returns the number of the entry with the given name, or -1 if
+     * there is none.
+     */
+    int find(String name)
+    {
+      int len = name.length();
+      byte[] bytes = null;
+      int h = 0;
+      for (int i = 0; i < len; i++)
+        {
+          char c = name.charAt(i);
+          if (c >= 0x80)
+            {
+              try
+                {
+                  bytes = name.getBytes("UTF-8");
+                }
+              catch (UnsupportedEncodingException uee)
+                {
+                  throw new AssertionError(uee);
+                }
+              len = bytes.length;
+              h = 0;
+              for (int j = 0; j < len; j++)
+                h = 31 * h + (bytes[j] & 0xff);
+              break;
+            }
+          h = 31 * h + c;
+        }
+
+      for (int slot = h & mask; ; slot = (slot + 1) & mask)
+        {
+          int r = table[2 * slot + 1];
+          if (r == 0)
+            return -1;
+          if (table[2 * slot] == h)
+            {
+              int cen = records[r - 1];
+              if ((buf.getShort(cen + CENNAM) & 0xffff) == len)
+                {
+                  int i = 0;
+                  if (bytes == null)
+                    while (i < len
+                           && buf.get(cen + CENHDR + i) == (byte) name.charAt(i))
+                      i++;
+                  else
+                    while (i < len && buf.get(cen + CENHDR + i) == bytes[i])
+                      i++;
+                  if (i == len)
+                    return r - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if two directory records have the same name.
+     */
+    private boolean sameName(int a, int b)
+    {
+      int len = buf.getShort(a + CENNAM) & 0xffff;
+      if ((buf.getShort(b + CENNAM) & 0xffff) != len)
+        return false;
+      for (int i = 0; i < len; i++)
+        if (buf.get(a + CENHDR + i) != buf.get(b + CENHDR + i))
+          return false;
+      return true;
+    }
+
+    int getMethod(int i)
+    {
+      return buf.getShort(records[i] + CENHOW) & 0xffff;
+    }
+
+    int getOffset(int i)
+    {
+      return buf.getInt(records[i] + CENOFF);
+    }
+
+    long getCompressedSize(int i)
+    {
+      return buf.getInt(records[i] + CENSIZ) & 0xffffffffL;
+    }
+
+    /**
+     * Creates the ZipEntry for an entry.
+     *
+     * @param i the number of the entry.
+     * @param name the name to give the entry, or null for its own.
+     */
+    ZipEntry getEntry(int i, String name)
+    {
+      int cen = records[i];
+      int nameLen = buf.getShort(cen + CENNAM) & 0xffff;
+      int extraLen = buf.getShort(cen + CENEXT) & 0xffff;
+      int commentLen = buf.getShort(cen + CENCOM) & 0xffff;
+      int pos = cen + CENHDR;
+      if (name == null)
+        name = readString(pos, nameLen);
+      pos += nameLen;
+
+      ZipEntry entry = new ZipEntry(name);
+      entry.setMethod(buf.getShort(cen + CENHOW) & 0xffff);
+      entry.setCrc(buf.getInt(cen + CENCRC) & 0xffffffffL);
+      entry.setSize(buf.getInt(cen + CENLEN) & 0xffffffffL);
+      entry.setCompressedSize(buf.getInt(cen + CENSIZ) & 0xffffffffL);
+      entry.setDOSTime(buf.getInt(cen + CENTIM));
+      if (extraLen > 0)
+        {
+          byte[] extra = new byte[extraLen];
+          for (int j = 0; j < extraLen; j++)
+            extra[j] = buf.get(pos + j);
+          entry.setExtra(extra);
+        }
+      pos += extraLen;
+      if (commentLen > 0)
+        entry.setComment(readString(pos, commentLen));
+      entry.offset = buf.getInt(cen + CENOFF);
+      return entry;
+    }
+
+    /**
+     * Decodes a UTF-8 string, avoiding the decoder for plain ASCII.
+     */
+    private String readString(int pos, int length)
+    {
+      byte[] b = new byte[length];
+      boolean ascii = true;
+      for (int j = 0; j < length; j++)
+        {
+          b[j] = buf.get(pos + j);
+          ascii &= b[j] >= 0;
+        }
+      if (ascii)
+        return new String(b, 0, 0, length);
+      try
+        {
+          return new String(b, "UTF-8");
+        }
+      catch (UnsupportedEncodingException uee)
+        {
+          throw new AssertionError(uee);
+        }
+    }
+
+    /**
+     * Returns an enumeration creating the entries as it goes.
+     */
+    Enumeration<ZipEntry> entries()
+    {
+      return new Enumeration<ZipEntry>()
+      {
+        private int next;
+
+        public boolean hasMoreElements()
+        {
+          return next < size;
+        }
+
+        public ZipEntry nextElement()
+        {
+          if (next >= size)
+            throw new NoSuchElementException();
+          return getEntry(next++, null);
+        }
+      };
+    }
+  }
+
   private static final class PartialInputStream extends InputStream
   {
     /**
@@ -533,6 +920,10 @@ public class ZipFile implements ZipConstants
     private CharsetDecoder utf8Decoder;
 
     private final RandomAccessFile raf;
+    // The zip file whose mapping we read, or null when reading raf.
+    private final ZipFile zip;
+    // Our own view of a mapped file, or null when reading raf.
+    private final ByteBuffer mapped;
     private final byte[] buffer;
     private long bufferOffset;
     private int pos;
@@ -547,12 +938,25 @@ public class ZipFile implements ZipConstants
       throws IOException
     {
       this.raf = raf;
+      this.zip = null;
+      this.mapped = null;
       buffer = new byte[bufferSize];
       bufferOffset = -buffer.length;
       pos = buffer.length;
       end = raf.length();
     }
 
+    public PartialInputStream(ZipFile zip, ByteBuffer mapped, int bufferSize)
+    {
+      this.raf = null;
+      this.zip = zip;
+      this.mapped = mapped.duplicate();
+      buffer = new byte[bufferSize];
+      bufferOffset = -buffer.length;
+      pos = buffer.length;
+      end = mapped.limit();
+    }
+
     void setLength(long length)
     {
       end = bufferOffset + pos + length;
@@ -560,15 +964,35 @@ public class ZipFile implements ZipConstants
 
     private void fillBuffer() throws IOException
     {
-      synchronized (raf)
+      long len = end - bufferOffset;
+      if (len == 0 && dummyByteCount > 0)
         {
-          long len = end - bufferOffset;
-          if (len == 0 && dummyByteCount > 0)
+          buffer[0] = 0;
+          dummyByteCount = 0;
+        }
+      else if (mapped != null)
+        {
+          // The mapping outlives close(), so fail as raf would.
+          if (zip.closed)
+            throw new IOException("ZipFile has closed: " + zip.name);
+          // The view is ours alone, so no lock is needed.
+          try
             {
-              buffer[0] = 0;
-              dummyByteCount = 0;
+              mapped.position((int) bufferOffset);
+              mapped.get(buffer, 0, (int) Math.min(buffer.length, len));
             }
-          else
+          catch (IllegalArgumentException e)
+            {
+              throw new EOFException();
+            }
+          catch (BufferUnderflowException e)
+            {
+              throw new EOFException();
+            }
+        }
+      else
+        {
+          synchronized (raf)
             {
               raf.seek(bufferOffset);
               raf.readFully(buffer, 0, (int) Math.min(buffer.length, len));
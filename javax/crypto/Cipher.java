@@ -1120,6 +1120,81 @@ public class Cipher
     return cipherSpi.engineUpdate (input, output);
   }
 
+  /**
+   * Continue a multi-part transformation by supplying additional
+   * authenticated data (AAD) from an entire byte array. The data is
+   * authenticated but not encrypted, and must be supplied before any of
+   * the input is transformed.
+   *
+   * @param src The additional authenticated data.
+   * @throws IllegalArgumentException If <i>src</i> is null.
+   * @throws IllegalStateException If this cipher was not initialized for
+   *  encrypting or decrypting, if its mode does not accept AAD, or if
+   *  input was already transformed.
+   * @throws UnsupportedOperationException If the underlying provider
+   *  does not support AAD.
+   * @since 1.7
+   */
+  public final void updateAAD(byte[] src)
+  {
+    if (src == null)
+      throw new IllegalArgumentException("null AAD");
+    updateAAD(src, 0, src.length);
+  }
+
+  /**
+   * Continue a multi-part transformation by supplying additional
+   * authenticated data (AAD) from part of a byte array.
+   *
+   * @param src    The additional authenticated data.
+   * @param offset The index in <i>src</i> to start.
+   * @param len    The number of bytes to use.
+   * @throws IllegalArgumentException If <i>src</i> is null, or the
+   *  range is outside of <i>src</i>.
+   * @throws IllegalStateException If this cipher was not initialized for
+   *  encrypting or decrypting, if its mode does not accept AAD, or if
+   *  input was already transformed.
+   * @throws UnsupportedOperationException If the underlying provider
+   *  does not support AAD.
+   * @since 1.7
+   */
+  public final void updateAAD(byte[] src, int offset, int len)
+  {
+    if (src == null || offset < 0 || len < 0 || offset > src.length - len)
+      throw new IllegalArgumentException("invalid AAD range");
+    if (state != ENCRYPT_MODE && state != DECRYPT_MODE)
+      throw new IllegalStateException
+        ("not initialized for encryption or decryption");
+    if (cipherSpi == null || len == 0)
+      return;
+    cipherSpi.engineUpdateAAD(src, offset, len);
+  }
+
+  /**
+   * Continue a multi-part transformation by supplying the remaining
+   * bytes of a buffer as additional authenticated data (AAD).
+   *
+   * @param src The additional authenticated data.
+   * @throws IllegalArgumentException If <i>src</i> is null.
+   * @throws IllegalStateException If this cipher was not initialized for
+   *  encrypting or decrypting, if its mode does not accept AAD, or if
+   *  input was already transformed.
+   * @throws UnsupportedOperationException If the underlying provider
+   *  does not support AAD.
+   * @since 1.7
+   */
+  public final void updateAAD(ByteBuffer src)
+  {
+    if (src == null)
+      throw new IllegalArgumentException("null AAD");
+    if (state != ENCRYPT_MODE && state != DECRYPT_MODE)
+      throw new IllegalStateException
+        ("not initialized for encryption or decryption");
+    if (cipherSpi == null || ! src.hasRemaining())
+      return;
+    cipherSpi.engineUpdateAAD(src);
+  }
+
   /**
    * Wrap a key.
    *
@@ -426,6 +426,56 @@ public abstract class CipherSpi
     return total;
   }
 
+  /**
+   * <p>Continue a multi-part transformation by supplying additional
+   * authenticated data (AAD).</p>
+   *
+   * <p>For compatibility this method is not declared
+   * <code>abstract</code>, and the default implementation will throw an
+   * {@link java.lang.UnsupportedOperationException}. Concrete
+   * subclasses using authenticated encryption modes should override
+   * this method.</p>
+   *
+   * @param src    The additional authenticated data.
+   * @param offset The index in <i>src</i> to start.
+   * @param len    The number of bytes to use.
+   * @throws IllegalStateException If the mode does not accept AAD, or
+   *         if input was already transformed.
+   * @since 1.7
+   */
+  protected void engineUpdateAAD(byte[] src, int offset, int len)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * <p>Continue a multi-part transformation by supplying the remaining
+   * bytes of a buffer as additional authenticated data (AAD).</p>
+   *
+   * <p>The default implementation copies the bytes and passes them to
+   * {@link #engineUpdateAAD(byte[],int,int)}.</p>
+   *
+   * @param src The additional authenticated data.
+   * @throws IllegalStateException If the mode does not accept AAD, or
+   *         if input was already transformed.
+   * @since 1.7
+   */
+  protected void engineUpdateAAD(ByteBuffer src)
+  {
+    if (src.hasArray())
+      {
+        int len = src.remaining();
+        engineUpdateAAD(src.array(), src.arrayOffset() + src.position(), len);
+        src.position(src.position() + len);
+      }
+    else
+      {
+        byte[] buf = new byte[src.remaining()];
+        src.get(buf);
+        engineUpdateAAD(buf, 0, buf.length);
+      }
+  }
+
   /**
    * <p>Wrap a key.</p>
    *
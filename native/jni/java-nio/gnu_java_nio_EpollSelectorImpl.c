@@ -44,12 +44,19 @@ exception statement from your version.  */
 #include <sys/epoll.h>
 #endif /* HAVE_SYS_EPOLL_H */
 
+#ifdef HAVE_SYS_EVENTFD_H
+#include <sys/eventfd.h>
+#endif /* HAVE_SYS_EVENTFD_H */
+
 #include <config-int.h>
 
 #include <gnu_java_nio_EpollSelectorImpl.h>
 #include <jcl.h>
 #include <errno.h>
+#include <fcntl.h>
+#include <stddef.h>
 #include <string.h>
+#include <unistd.h>
 
 #define IO_EXCEPTION "java/io/IOException"
 
@@ -74,22 +81,34 @@ Java_gnu_java_nio_EpollSelectorImpl_epoll_1supported (JNIEnv *e __attribute__((u
 
 /*
  * Class:     gnu_java_nio_EpollSelectorImpl
- * Method:    sizeof_struct
- * Signature: ()I
+ * Method:    epoll_layout
+ * Signature: ([I)V
  */
-JNIEXPORT jint JNICALL
-Java_gnu_java_nio_EpollSelectorImpl_sizeof_1struct (JNIEnv *env,
-                                                    jclass c __attribute__((unused)))
+JNIEXPORT void JNICALL
+Java_gnu_java_nio_EpollSelectorImpl_epoll_1layout (JNIEnv *env,
+                                                   jclass c __attribute__((unused)),
+                                                   jintArray layout)
 {
 #ifdef HAVE_EPOLL_CREATE
-  (void) env;
+  jint values[8];
+
+  values[0] = sizeof (struct epoll_event);
+  values[1] = offsetof (struct epoll_event, events);
+  values[2] = offsetof (struct epoll_event, data);
+  values[3] = EPOLLIN;
+  values[4] = EPOLLOUT;
+  values[5] = EPOLLERR;
+  values[6] = EPOLLHUP;
+  values[7] = (jint) EPOLLET;
+
 #ifdef TRACE_EPOLL
-  fprintf (stderr, "%s: sizeof is %d\n", __FUNCTION__, sizeof (struct epoll_event));
+  fprintf (stderr, "%s: sizeof is %d\n", __FUNCTION__, values[0]);
 #endif /* TRACE_EPOLL */
-  return sizeof (struct epoll_event);
+
+  (*env)->SetIntArrayRegion (env, layout, 0, 8, values);
 #else
+  (void) layout;
   JCL_ThrowException (env, "java/lang/InternalError", "epoll support not available");
-  return -1;
 #endif /* HAVE_EPOLL_CREATE */
 }
 
@@ -126,144 +145,92 @@ Java_gnu_java_nio_EpollSelectorImpl_epoll_1create (JNIEnv *env,
 #endif /* HAVE_EPOLL_CREATE */
 }
 
-/*
- * Class:     gnu_java_nio_EpollSelectorImpl
- * Method:    epoll_add
- * Signature: (III)V
- */
-JNIEXPORT void JNICALL
-Java_gnu_java_nio_EpollSelectorImpl_epoll_1add (JNIEnv *env,
-                                                jclass c __attribute__((unused)),
-                                                jint efd, jint fd, jint ops)
-{
-#ifdef HAVE_EPOLL_CREATE
-  struct epoll_event event;
-
-  memset (&event, 0, sizeof (struct epoll_event));
-
-  if ((ops & gnu_java_nio_EpollSelectorImpl_OP_ACCEPT) != 0
-      || (ops & gnu_java_nio_EpollSelectorImpl_OP_READ) != 0)
-    event.events = EPOLLIN;
-
-  if ((ops & gnu_java_nio_EpollSelectorImpl_OP_CONNECT) != 0
-      || (ops & gnu_java_nio_EpollSelectorImpl_OP_WRITE) != 0)
-    event.events |= EPOLLOUT;
-
-  event.data.fd = fd;
-
-#ifdef TRACE_EPOLL
-  fprintf (stderr, "%s: adding struct epoll_event { events: %o; data.fd: %d } to %d\n",
-           __FUNCTION__, event.events, event.data.fd, efd);
-#endif /* TRACE_EPOLL */
-
-  if (epoll_ctl (efd, EPOLL_CTL_ADD, fd, &event) == -1)
-    {
-      if (ENOSYS == errno)
-        JCL_ThrowException (env, "java/lang/InternalError",
-                            strerror (errno));
-      else
-        JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
-    }
-#else
-  (void) efd;
-  (void) fd;
-  (void) ops;
-  JCL_ThrowException (env, "java/lang/InternalError", "epoll support not available");
-#endif /* HAVE_EPOLL_CREATE */
-}
-
 
 /*
  * Class:     gnu_java_nio_EpollSelectorImpl
- * Method:    epoll_modify
- * Signature: (III)V
+ * Method:    epoll_update
+ * Signature: (I[II)V
  */
 JNIEXPORT void JNICALL
-Java_gnu_java_nio_EpollSelectorImpl_epoll_1modify (JNIEnv *env,
+Java_gnu_java_nio_EpollSelectorImpl_epoll_1update (JNIEnv *env,
                                                    jclass c __attribute__((unused)),
-                                                   jint efd, jint fd, jint ops)
+                                                   jint efd, jintArray changes,
+                                                   jint n)
 {
 #ifdef HAVE_EPOLL_CREATE
   struct epoll_event event;
+  jint *change;
+  int error = 0;
+  int i;
 
-  memset (&event, 0, sizeof (struct epoll_event));
+  change = (*env)->GetIntArrayElements (env, changes, NULL);
+  if (change == NULL)
+    return;
 
-  if ((ops & gnu_java_nio_EpollSelectorImpl_OP_ACCEPT) != 0
-      || (ops & gnu_java_nio_EpollSelectorImpl_OP_READ) != 0)
-    event.events = EPOLLIN;
-
-  if ((ops & gnu_java_nio_EpollSelectorImpl_OP_CONNECT) != 0
-      || (ops & gnu_java_nio_EpollSelectorImpl_OP_WRITE) != 0)
-    event.events |= EPOLLOUT;
-
-  event.data.fd = fd;
+  for (i = 0; i < n; i++, change += 3)
+    {
+      int op;
+      int ret;
+
+      switch (change[0])
+        {
+        case gnu_java_nio_EpollSelectorImpl_CTL_ADD:
+          op = EPOLL_CTL_ADD;
+          break;
+        case gnu_java_nio_EpollSelectorImpl_CTL_MOD:
+          op = EPOLL_CTL_MOD;
+          break;
+        default:
+          op = EPOLL_CTL_DEL;
+          break;
+        }
+
+      /* Older kernel versions require a non-null `event' parameter,
+       * even for EPOLL_CTL_DEL.
+       */
+      memset (&event, 0, sizeof (struct epoll_event));
+      event.events = (unsigned int) change[2];
+      event.data.fd = change[1];
 
 #ifdef TRACE_EPOLL
-  fprintf (stderr, "%s: modding struct epoll_event { events: %o; data.fd: %d } on %d\n",
-           __FUNCTION__, event.events, event.data.fd, efd);
+      fprintf (stderr, "%s: op %d struct epoll_event { events: %o; data.fd: %d } on %d\n",
+               __FUNCTION__, op, event.events, event.data.fd, efd);
 #endif /* TRACE_EPOLL */
 
-  if (epoll_ctl (efd, EPOLL_CTL_MOD, fd, &event) == -1)
-    {
-      if (ENOSYS == errno)
-        JCL_ThrowException (env, "java/lang/InternalError",
-                            strerror (errno));
-      else
-        JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
-    }
-#else
-  (void) efd;
-  (void) fd;
-  (void) ops;
-  JCL_ThrowException (env, "java/lang/InternalError", "epoll support not available");
-#endif /* HAVE_EPOLL_CREATE */
-}
+      ret = epoll_ctl (efd, op, change[1], &event);
 
+      /* A descriptor closed and reused before its key was cancelled
+         may still be in the set, or already gone from it. */
+      if (ret == -1 && op == EPOLL_CTL_ADD && errno == EEXIST)
+        ret = epoll_ctl (efd, EPOLL_CTL_MOD, change[1], &event);
+      else if (ret == -1 && op == EPOLL_CTL_MOD && errno == ENOENT)
+        ret = epoll_ctl (efd, EPOLL_CTL_ADD, change[1], &event);
 
-/*
- * Class:     gnu_java_nio_EpollSelectorImpl
- * Method:    epoll_delete
- * Signature: (II)V
- */
-JNIEXPORT void JNICALL
-Java_gnu_java_nio_EpollSelectorImpl_epoll_1delete (JNIEnv *env,
-                                                   jclass c __attribute__((unused)),
-                                                   jint efd, jint fd)
-{
-#ifdef HAVE_EPOLL_CREATE
-  struct epoll_event event;
-
-  memset (&event, 0, sizeof (struct epoll_event));
-  event.data.fd = fd;
+      /* EBADF or ENOENT: the fd is closed, so it's already removed. */
+      if (ret == -1 && errno != EBADF && errno != ENOENT && error == 0)
+        error = errno;
+    }
 
-#ifdef TRACE_EPOLL
-  fprintf (stderr, "%s: delete events on fd %d for %d\n", __FUNCTION__, fd, efd);
-#endif /* TRACE_EPOLL */
+  (*env)->ReleaseIntArrayElements (env, changes, change - 3 * n, JNI_ABORT);
 
-  /* Older kernel versions require a non-null `event' parameter,
-   * even though it is ignored by this call.
-   */
-  if (epoll_ctl (efd, EPOLL_CTL_DEL, fd, &event) == -1)
+  if (error != 0)
     {
-      if (ENOSYS == errno)
+      if (ENOSYS == error)
         JCL_ThrowException (env, "java/lang/InternalError",
-                            strerror (errno));
-      /* XXX the docs here seem a little strange. If `fd' is closed,
-         epoll_ctl returns EBADF; but the docs say that this happens
-         only when efd is invalid. Go figure.
-       */
-      else if (ENOENT == errno || EBADF == errno)
-        return; /* fd is closed; it's already removed. */
+                            strerror (error));
       else
-        JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+        JCL_ThrowException (env, IO_EXCEPTION, strerror (error));
     }
 #else
   (void) efd;
-  (void) fd;
+  (void) changes;
+  (void) n;
   JCL_ThrowException (env, "java/lang/InternalError", "epoll support not available");
 #endif /* HAVE_EPOLL_CREATE */
 }
 
+
+
 /*
  * Class:     gnu_java_nio_EpollSelectorImpl
  * Method:    epoll_wait
@@ -332,85 +299,95 @@ Java_gnu_java_nio_EpollSelectorImpl_epoll_1wait (JNIEnv *env,
 
 /*
  * Class:     gnu_java_nio_EpollSelectorImpl
- * Method:    selected_fd
- * Signature: (Ljava/nio/ByteBuffer;)I
+ * Method:    wakeup_open
+ * Signature: ([I)V
  */
-JNIEXPORT jint JNICALL
-Java_gnu_java_nio_EpollSelectorImpl_selected_1fd (JNIEnv *env,
+JNIEXPORT void JNICALL
+Java_gnu_java_nio_EpollSelectorImpl_wakeup_1open (JNIEnv *env,
                                                   jclass c __attribute__((unused)),
-                                                  jobject value)
+                                                  jintArray fds)
 {
-#ifdef HAVE_EPOLL_CREATE
-  void *p = (*env)->GetDirectBufferAddress (env, value);
-  struct epoll_event *event = (struct epoll_event *) p;
-
-#ifdef TRACE_EPOLL
-  fprintf (stderr, "%s: event: %p\n", __FUNCTION__, p);
-#endif /* TRACE_EPOLL */
+  jint values[2];
 
-  if (p == NULL)
+#if defined(HAVE_EVENTFD) && defined(EFD_NONBLOCK) && defined(EFD_CLOEXEC)
+  values[0] = eventfd (0, EFD_NONBLOCK | EFD_CLOEXEC);
+  if (values[0] != -1)
     {
-      if (!(*env)->ExceptionCheck (env))
-        JCL_ThrowException (env, "java/lang/InternalError",
-                            "getting native state failed");
-      return -1;
+      values[1] = values[0];
+      (*env)->SetIntArrayRegion (env, fds, 0, 2, values);
+      return;
+    }
+  if (errno != ENOSYS && errno != EINVAL)
+    {
+      JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+      return;
     }
+#endif /* HAVE_EVENTFD */
 
-#ifdef TRACE_EPOLL
-  fprintf (stderr, "  data.fd: %d\n", event->data.fd);
-  fflush (stderr);
-#endif /* TRACE_EPOLL */
+  {
+    int p[2];
+    int i;
 
-  return event->data.fd;
-#else
-  (void) value;
-  JCL_ThrowException (env, "java/lang/InternalError", "epoll support not available");
-  return -1;
-#endif /* HAVE_EPOLL_CREATE */
+    if (pipe (p) == -1)
+      {
+        JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+        return;
+      }
+    for (i = 0; i < 2; i++)
+      {
+        int flags = fcntl (p[i], F_GETFL, 0);
+        if (flags == -1 || fcntl (p[i], F_SETFL, flags | O_NONBLOCK) == -1
+            || fcntl (p[i], F_SETFD, FD_CLOEXEC) == -1)
+          {
+            JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+            close (p[0]);
+            close (p[1]);
+            return;
+          }
+      }
+    values[0] = p[0];
+    values[1] = p[1];
+    (*env)->SetIntArrayRegion (env, fds, 0, 2, values);
+  }
 }
 
-
 /*
  * Class:     gnu_java_nio_EpollSelectorImpl
- * Method:    selected_ops
- * Signature: (Ljava/nio/ByteBuffer;)I
+ * Method:    wakeup_signal
+ * Signature: (I)V
  */
-JNIEXPORT jint JNICALL
-Java_gnu_java_nio_EpollSelectorImpl_selected_1ops (JNIEnv *env,
-                                                   jclass c __attribute__((unused)),
-                                                   jobject value)
+JNIEXPORT void JNICALL
+Java_gnu_java_nio_EpollSelectorImpl_wakeup_1signal (JNIEnv *env,
+                                                    jclass c __attribute__((unused)),
+                                                    jint fd)
 {
-#ifdef HAVE_EPOLL_CREATE
-  void *p = (*env)->GetDirectBufferAddress (env, value);
-  struct epoll_event *event = (struct epoll_event *) p;
-  int ret = 0;
-
-#ifdef TRACE_EPOLL
-  fprintf (stderr, "%s: event: %p\n", __FUNCTION__, p);
-#endif /* TRACE_EPOLL */
+  /* An eventfd needs exactly eight bytes; a pipe takes anything. */
+  unsigned long long one = 1;
+  ssize_t ret;
 
-  if (p == NULL)
-    {
-      if (!(*env)->ExceptionCheck (env))
-        JCL_ThrowException (env, "java/lang/InternalError",
-                            "getting native state failed");
-      return -1;
-    }
+  do
+    ret = write (fd, &one, sizeof (one));
+  while (ret == -1 && errno == EINTR);
 
-  if ((event->events & EPOLLIN) != 0)
-    ret |= gnu_java_nio_EpollSelectorImpl_OP_ACCEPT | gnu_java_nio_EpollSelectorImpl_OP_READ;
-  if ((event->events & EPOLLOUT) != 0)
-    ret |= gnu_java_nio_EpollSelectorImpl_OP_CONNECT | gnu_java_nio_EpollSelectorImpl_OP_WRITE;
+  /* EAGAIN means there is a wakeup pending already. */
+  if (ret == -1 && errno != EAGAIN)
+    JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+}
 
-#ifdef TRACE_EPOLL
-  fprintf (stderr, "  events: %o\n", event->events);
-  fflush (stderr);
-#endif /* TRACE_EPOLL */
+/*
+ * Class:     gnu_java_nio_EpollSelectorImpl
+ * Method:    wakeup_drain
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL
+Java_gnu_java_nio_EpollSelectorImpl_wakeup_1drain (JNIEnv *env __attribute__((unused)),
+                                                   jclass c __attribute__((unused)),
+                                                   jint fd)
+{
+  char buf[64];
+  ssize_t ret;
 
-  return ret;
-#else
-  (void) value;
-  JCL_ThrowException (env, "java/lang/InternalError", "epoll support not available");
-  return -1;
-#endif /* HAVE_EPOLL_CREATE */
+  do
+    ret = read (fd, buf, sizeof (buf));
+  while (ret > 0 || (ret == -1 && errno == EINTR));
 }
@@ -36,6 +36,11 @@ obligated to do so.  If you do not wish to do so, delete this
 exception statement from your version. */
 
 
+/* For splice and copy_file_range. */
+#ifndef _GNU_SOURCE
+#define _GNU_SOURCE
+#endif
+
 #ifdef HAVE_CONFIG_H
 #include <config.h>
 #endif
@@ -93,6 +98,12 @@ exception statement from your version. */
  */
 #define JCL_IOV_MAX 16
 
+/*
+ * The largest number of bytes moved by one sendfile, splice or
+ * copy_file_range call.
+ */
+#define JCL_TRANSFER_MAX 0x40000000
+
 #ifdef __cplusplus
 extern "C"
 {
@@ -2031,6 +2042,264 @@ Java_gnu_java_nio_VMChannel_flush (JNIEnv *env,
 }
 
 
+#if defined(HAVE_SENDFILE) || defined(HAVE_SPLICE) \
+  || defined(HAVE_COPY_FILE_RANGE)
+/*
+ * Returns true if ERR means that the kernel cannot move data directly
+ * between the two descriptors at hand, in which case the caller
+ * should copy it through user space instead.
+ */
+static int
+transfer_unsupported (int err)
+{
+  return (err == EINVAL || err == ENOSYS || err == EXDEV || err == EBADF
+#ifdef EOPNOTSUPP
+          || err == EOPNOTSUPP
+#endif
+          );
+}
+#endif
+
+#ifdef HAVE_SPLICE
+/*
+ * Moves up to COUNT bytes from SRC_FD to the file FD at position POS
+ * by splicing them through a pipe.
+ */
+static jlong
+splice_to_file (JNIEnv *env, jint src_fd, jint fd, jlong pos, jlong count)
+{
+  int pipe_fd[2];
+  int flags;
+  jlong total = 0;
+  ssize_t in;
+  ssize_t out;
+  loff_t off;
+
+  /* Whatever went into the pipe cannot be put back, so make sure
+     that it can be written out before reading anything. */
+  flags = cpnio_fcntl (fd, F_GETFL, 0);
+  if (flags == -1 || (flags & O_APPEND) != 0)
+    return -1;
+
+  if (pipe (pipe_fd) == -1)
+    {
+      JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+      return -1;
+    }
+
+  while (total < count)
+    {
+      size_t len = (size_t) (count - total > JCL_TRANSFER_MAX
+                             ? JCL_TRANSFER_MAX : count - total);
+
+      in = cpnio_splice (src_fd, NULL, pipe_fd[1], NULL, len, SPLICE_F_MOVE);
+      if (in == -1)
+        {
+          if (errno == EINTR && ! JCL_thread_interrupted (env))
+            continue;
+          if (total > 0)
+            break;
+          if (errno == EAGAIN)
+            {
+              if (! is_non_blocking_fd (src_fd))
+                {
+                  JCL_ThrowException (env, SOCKET_TIMEOUT_EXCEPTION,
+                                      "read timed out");
+                  total = -1;
+                }
+            }
+          else if (errno == EINTR)
+            {
+              JCL_ThrowException (env, INTERRUPTED_IO_EXCEPTION,
+                                  strerror (errno));
+              total = -1;
+            }
+          else if (transfer_unsupported (errno))
+            total = -1;
+          else
+            {
+              JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+              total = -1;
+            }
+          break;
+        }
+      if (in == 0)
+        break;
+
+      /* Drain the pipe completely, even if we get interrupted. */
+      while (in > 0)
+        {
+          off = (loff_t) (pos + total);
+          out = cpnio_splice (pipe_fd[0], NULL, fd, &off, in, SPLICE_F_MOVE);
+          if (out == -1)
+            {
+              if (errno == EINTR)
+                continue;
+              JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+              total = -1;
+              goto done;
+            }
+          in -= out;
+          total += out;
+        }
+    }
+
+ done:
+  close (pipe_fd[0]);
+  close (pipe_fd[1]);
+  return total;
+}
+#endif /* HAVE_SPLICE */
+
+/*
+ * Class:     gnu_java_nio_VMChannel
+ * Method:    transferTo
+ * Signature: (IJJIZ)J
+ */
+JNIEXPORT jlong JNICALL
+Java_gnu_java_nio_VMChannel_transferTo (JNIEnv *env,
+                                        jclass c __attribute__((unused)),
+                                        jint fd, jlong pos, jlong count,
+                                        jint dst_fd, jboolean dst_file)
+{
+#if defined(HAVE_SENDFILE) || defined(HAVE_COPY_FILE_RANGE)
+  jlong total = 0;
+  ssize_t ret;
+  int use_copy_file_range = dst_file;
+
+  while (total < count)
+    {
+      size_t len = (size_t) (count - total > JCL_TRANSFER_MAX
+                             ? JCL_TRANSFER_MAX : count - total);
+
+      if (use_copy_file_range)
+        {
+#ifdef HAVE_COPY_FILE_RANGE
+          loff_t off = (loff_t) (pos + total);
+          ret = cpnio_copy_file_range (fd, &off, dst_fd, NULL, len, 0);
+#else
+          ret = -1;
+          errno = ENOSYS;
+#endif /* HAVE_COPY_FILE_RANGE */
+          if (ret == -1 && transfer_unsupported (errno))
+            {
+              /* sendfile also works between files, e.g. on older
+                 kernels that cannot copy across file systems. */
+              use_copy_file_range = 0;
+              continue;
+            }
+        }
+      else
+        {
+#ifdef HAVE_SENDFILE
+          off_t off = (off_t) (pos + total);
+          ret = cpnio_sendfile (dst_fd, fd, &off, len);
+#else
+          ret = -1;
+          errno = ENOSYS;
+#endif /* HAVE_SENDFILE */
+        }
+
+      if (ret == -1)
+        {
+          if (errno == EINTR && ! JCL_thread_interrupted (env))
+            continue;
+          if (total > 0 || errno == EAGAIN) /* Non-blocking */
+            break;
+          if (transfer_unsupported (errno))
+            return -1;
+          if (errno == EINTR)
+            JCL_ThrowException (env, INTERRUPTED_IO_EXCEPTION,
+                                strerror (errno));
+          else
+            JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+          return -1;
+        }
+      if (ret == 0) /* End of file */
+        break;
+      total += ret;
+    }
+
+  return total;
+#else
+  (void) env;
+  (void) fd;
+  (void) pos;
+  (void) count;
+  (void) dst_fd;
+  (void) dst_file;
+  return -1;
+#endif /* HAVE_SENDFILE || HAVE_COPY_FILE_RANGE */
+}
+
+/*
+ * Class:     gnu_java_nio_VMChannel
+ * Method:    transferFrom
+ * Signature: (IZIJJ)J
+ */
+JNIEXPORT jlong JNICALL
+Java_gnu_java_nio_VMChannel_transferFrom (JNIEnv *env,
+                                          jclass c __attribute__((unused)),
+                                          jint src_fd, jboolean src_file,
+                                          jint fd, jlong pos, jlong count)
+{
+#ifdef HAVE_COPY_FILE_RANGE
+  if (src_file)
+    {
+      jlong total = 0;
+      ssize_t ret;
+      loff_t off;
+
+      while (total < count)
+        {
+          size_t len = (size_t) (count - total > JCL_TRANSFER_MAX
+                                 ? JCL_TRANSFER_MAX : count - total);
+
+          off = (loff_t) (pos + total);
+          ret = cpnio_copy_file_range (src_fd, NULL, fd, &off, len, 0);
+          if (ret == -1)
+            {
+              if (errno == EINTR && ! JCL_thread_interrupted (env))
+                continue;
+              if (total > 0)
+                break;
+              if (transfer_unsupported (errno))
+                {
+                  /* Try splicing instead. */
+                  total = -1;
+                  break;
+                }
+              if (errno == EINTR)
+                JCL_ThrowException (env, INTERRUPTED_IO_EXCEPTION,
+                                    strerror (errno));
+              else
+                JCL_ThrowException (env, IO_EXCEPTION, strerror (errno));
+              return -1;
+            }
+          if (ret == 0) /* End of file */
+            break;
+          total += ret;
+        }
+      if (total >= 0)
+        return total;
+    }
+#else
+  (void) src_file;
+#endif /* HAVE_COPY_FILE_RANGE */
+
+#ifdef HAVE_SPLICE
+  return splice_to_file (env, src_fd, fd, pos, count);
+#else
+  (void) env;
+  (void) src_fd;
+  (void) fd;
+  (void) pos;
+  (void) count;
+  return -1;
+#endif /* HAVE_SPLICE */
+}
+
+
 #ifdef __cplusplus
 }
 #endif
@@ -49,6 +49,9 @@ exception statement from your version.  */
 #include <sys/select.h>
 #endif
 #include <sys/uio.h>
+#ifdef HAVE_SYS_SENDFILE_H
+#include <sys/sendfile.h>
+#endif
 
 CPNIO_EXPORT ssize_t
 cpnio_read (int fd, void *buf, size_t nbytes)
@@ -142,3 +145,29 @@ cpnio_select (int nfds, fd_set *readfds, fd_set *writefds,
 {
   return select (nfds, readfds, writefds, excepfds, timeo);
 }
+
+#ifdef HAVE_SENDFILE
+CPNIO_EXPORT ssize_t
+cpnio_sendfile (int out_fd, int in_fd, off_t *offset, size_t count)
+{
+  return sendfile (out_fd, in_fd, offset, count);
+}
+#endif /* HAVE_SENDFILE */
+
+#ifdef HAVE_SPLICE
+CPNIO_EXPORT ssize_t
+cpnio_splice (int fd_in, loff_t *off_in, int fd_out, loff_t *off_out,
+              size_t len, unsigned int flags)
+{
+  return splice (fd_in, off_in, fd_out, off_out, len, flags);
+}
+#endif /* HAVE_SPLICE */
+
+#ifdef HAVE_COPY_FILE_RANGE
+CPNIO_EXPORT ssize_t
+cpnio_copy_file_range (int fd_in, loff_t *off_in, int fd_out, loff_t *off_out,
+                       size_t len, unsigned int flags)
+{
+  return copy_file_range (fd_in, off_in, fd_out, off_out, len, flags);
+}
+#endif /* HAVE_COPY_FILE_RANGE */
@@ -321,6 +321,89 @@ CPNIO_EXPORT int cpnio_fcntl (int fd, int cmd, long arg);
 CPNIO_EXPORT int cpnio_select (int nfds, fd_set *readfds, fd_set *writefds,
                                fd_set *exceptfds, struct timeval *tm);
 
+#ifdef HAVE_SENDFILE
+/**
+ * Copy bytes from a file to another file descriptor without passing
+ * them through user space.
+ *
+ * \param out_fd The file descriptor to write to.
+ * \param in_fd  The file to read from.
+ * \param offset The file position to read from; it is updated to
+ *               point past the last byte read. The file position of
+ *               IN_FD is not changed.
+ * \param count  The maximum number of bytes to copy.
+ * \return The number of bytes copied, zero at the end of the file,
+ *  or -1 on error (and with ERRNO set).
+ * \see sendfile(2)
+ *
+ * Allowed ERRNO values include those mentioned in cpnio_write, as well
+ * as:
+ *  [EINVAL]  If IN_FD cannot be mapped, or OUT_FD cannot be written to
+ *            this way.
+ *  [ENOSYS]  If the operation is not supported.
+ */
+CPNIO_EXPORT ssize_t cpnio_sendfile (int out_fd, int in_fd, off_t *offset,
+                                     size_t count);
+#endif /* HAVE_SENDFILE */
+
+#ifdef HAVE_SPLICE
+/**
+ * Move bytes between two file descriptors, one of which must be a
+ * pipe, without passing them through user space.
+ *
+ * \param fd_in   The file descriptor to read from.
+ * \param off_in  The file position to read from, or NULL to read from
+ *                the current position of FD_IN; must be NULL for pipes.
+ * \param fd_out  The file descriptor to write to.
+ * \param off_out The file position to write to, or NULL to write at
+ *                the current position of FD_OUT; must be NULL for pipes.
+ * \param len     The maximum number of bytes to move.
+ * \param flags   A combination of the SPLICE_F_* flags.
+ * \return The number of bytes moved, zero at the end of the input, or
+ *  -1 on error (and with ERRNO set).
+ * \see splice(2)
+ *
+ * Allowed ERRNO values include those mentioned in cpnio_read and
+ * cpnio_write, as well as:
+ *  [EINVAL]  If one of the descriptors does not support splicing, or
+ *            FD_OUT was opened in append mode.
+ *  [ENOSYS]  If the operation is not supported.
+ */
+CPNIO_EXPORT ssize_t cpnio_splice (int fd_in, loff_t *off_in, int fd_out,
+                                   loff_t *off_out, size_t len,
+                                   unsigned int flags);
+#endif /* HAVE_SPLICE */
+
+#ifdef HAVE_COPY_FILE_RANGE
+/**
+ * Copy a range of bytes from one file to another inside the kernel,
+ * possibly sharing the underlying storage.
+ *
+ * \param fd_in   The file to read from.
+ * \param off_in  The file position to read from, or NULL to read from
+ *                (and advance) the current position of FD_IN.
+ * \param fd_out  The file to write to.
+ * \param off_out The file position to write to, or NULL to write at
+ *                (and advance) the current position of FD_OUT.
+ * \param len     The maximum number of bytes to copy.
+ * \param flags   Must be zero.
+ * \return The number of bytes copied, zero at the end of FD_IN, or -1
+ *  on error (and with ERRNO set).
+ * \see copy_file_range(2)
+ *
+ * Allowed ERRNO values include those mentioned in cpnio_write, as well
+ * as:
+ *  [EXDEV]   If the files are on different file systems and the kernel
+ *            cannot copy between them.
+ *  [EINVAL]  If either descriptor is not a regular file.
+ *  [EBADF]   If FD_OUT was opened in append mode.
+ *  [ENOSYS]  If the operation is not supported.
+ */
+CPNIO_EXPORT ssize_t cpnio_copy_file_range (int fd_in, loff_t *off_in,
+                                            int fd_out, loff_t *off_out,
+                                            size_t len, unsigned int flags);
+#endif /* HAVE_COPY_FILE_RANGE */
+
 /*
  * We include the implementation file here, because our reference
  * implementation is trivial, and the functions are declared extern
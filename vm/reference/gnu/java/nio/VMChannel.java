@@ -611,6 +611,60 @@ public final class VMChannel
 
   private static native boolean flush(int fd, boolean metadata) throws IOException;
 
+  // Direct transfers.
+
+  /**
+   * Transfer up to COUNT bytes, starting at file position POSITION of
+   * this channel, directly to the channel DST, without copying them
+   * through the Java heap. The file position of this channel is not
+   * changed; the bytes are written at the current position of DST.
+   *
+   * @param position The file position to start at.
+   * @param count The maximum number of bytes to transfer.
+   * @param dst The channel to write to.
+   * @return The number of bytes transferred, possibly zero if DST is
+   *  non-blocking; or -1 if the bytes cannot be transferred directly
+   *  between these two channels, in which case the caller should copy
+   *  them itself.
+   * @throws IOException If an IO error occurs.
+   */
+  public long transferTo(long position, long count, VMChannel dst)
+    throws IOException
+  {
+    return transferTo(nfd.getNativeFD(), position, count,
+                      dst.nfd.getNativeFD(), dst.kind == Kind.FILE);
+  }
+
+  private static native long transferTo(int fd, long position, long count,
+                                        int dst_fd, boolean dst_file)
+    throws IOException;
+
+  /**
+   * Transfer up to COUNT bytes from the channel SRC directly to this
+   * file, starting at file position POSITION, without copying them
+   * through the Java heap. The file position of this channel is not
+   * changed; the bytes are read from the current position of SRC.
+   *
+   * @param src The channel to read from.
+   * @param position The file position to start at.
+   * @param count The maximum number of bytes to transfer.
+   * @return The number of bytes transferred, possibly zero if SRC is
+   *  non-blocking or at its end; or -1 if the bytes cannot be
+   *  transferred directly between these two channels, in which case
+   *  the caller should copy them itself.
+   * @throws IOException If an IO error occurs.
+   */
+  public long transferFrom(VMChannel src, long position, long count)
+    throws IOException
+  {
+    return transferFrom(src.nfd.getNativeFD(), src.kind == Kind.FILE,
+                        nfd.getNativeFD(), position, count);
+  }
+
+  private static native long transferFrom(int src_fd, boolean src_file,
+                                          int fd, long position, long count)
+    throws IOException;
+
   // Close.
 
   /**
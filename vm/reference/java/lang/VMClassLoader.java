@@ -127,6 +127,11 @@ final class VMClassLoader
    * private copy of the array, or arranging to only read any given
    * byte a single time.
    *
+   * For a parallel capable class loader this is called without
+   * holding the class loader's lock, possibly by several threads at
+   * once.  A second definition of a name must throw a
+   * <code>LinkageError</code>.
+   *
    * @param name the name to give the class, or null if unknown
    * @param data the data representing the classfile, in classfile format
    * @param offset the offset into the data where the classfile starts
@@ -382,7 +387,8 @@ final class VMClassLoader
   /**
    * Find the class if this class loader previously defined this class
    * or if this class loader has been recorded as the initiating class loader
-   * for this class.
+   * for this class.  Like defineClass(), this is called without holding
+   * the lock of a parallel capable class loader.
    */
   static native Class findLoadedClass(ClassLoader cl, String name);
 
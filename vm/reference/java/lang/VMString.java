@@ -37,8 +37,8 @@ exception statement from your version. */
 
 package java.lang;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
 
 /*
  * This class is a reference version, mainly for compiling a class library
@@ -53,12 +53,29 @@ import java.util.WeakHashMap;
 final class VMString
 {
 
+  /**
+   * The number of segments of the intern table; a power of two.
+   */
+  private static final int SEGMENTS = 32;
+
+  /**
+   * Shift that turns a hash code into a segment index.
+   */
+  private static final int SEGMENT_SHIFT = 32 - 5;
+
   /**
    * Holds the references for each intern()'d String. If all references to
    * the string disappear, and the VM properly supports weak references,
-   * the String will be GC'd.
+   * the String will be GC'd.  The table is split into segments by hash
+   * code, each with a lock of its own; see {@link Segment}.
    */
-  private static final WeakHashMap internTable = new WeakHashMap();
+  private static final Segment[] internTable = new Segment[SEGMENTS];
+
+  static
+  {
+    for (int i = 0; i < SEGMENTS; i++)
+      internTable[i] = new Segment();
+  }
 
   private VMString() {} // Prohibits instantiation.
 
@@ -74,20 +91,188 @@ final class VMString
    */
   static String intern(String str)
   {
-    synchronized (internTable)
-      {
-        WeakReference ref = (WeakReference) internTable.get(str);
-        if (ref != null)
-          {
-            String s = (String) ref.get();
-            // If s is null, then no strong references exist to the String;
-            // the weak hash map will soon delete the key.
-            if (s != null)
-              return s;
-          }
-        internTable.put(str, new WeakReference(str));
-      }
-    return str;
+    // Spread the bits of the hash code, since both the segment and the
+    // slot are taken from it.
+    int hash = str.hashCode() * 0x9e3779b9;
+    hash ^= hash >>> 16;
+    Segment segment = internTable[hash >>> SEGMENT_SHIFT];
+    String s = segment.get(str, hash);
+    if (s != null)
+      return s;
+    return segment.put(str, hash);
+  }
+
+  /**
+   * A weak reference to an interned String.
+   */
+  private static final class Entry extends WeakReference<String>
+  {
+    final int hash;
+
+    Entry(String str, int hash, ReferenceQueue<String> queue)
+    {
+      super(str, queue);
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * One segment of the intern table: an open-addressed hash table with
+   * linear probing.  Lookups that find the String take no lock.  They
+   * read the slots without synchronization, which may miss an entry
+   * that is being added; put() looks again under the lock.  Slots only
+   * ever change from empty to an entry, from an entry to a tombstone,
+   * or from a tombstone or cleared entry to an entry, and a resized
+   * table is filled before it is published, so an unlocked lookup
+   * always finds an empty slot to stop at.
+   *
+   * Entries whose Strings were collected are tombstoned a few at a time
+   * by every put(), and all at once when the table is rebuilt.
+   */
+  private static final class Segment
+  {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The most cleared entries one put() takes off the queue.
+     */
+    private static final int PURGE_BATCH = 16;
+
+    /**
+     * Marks a slot whose entry was removed.
+     */
+    private static final Entry TOMBSTONE = new Entry(null, 0, null);
+
+    private final ReferenceQueue<String> queue = new ReferenceQueue<String>();
+
+    private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+
+    /**
+     * The number of slots that are not empty, tombstones included.
+     */
+    private int used;
+
+    String get(String str, int hash)
+    {
+      Entry[] tab = table;
+      int mask = tab.length - 1;
+      for (int i = hash & mask; ; i = (i + 1) & mask)
+        {
+          Entry e = tab[i];
+          if (e == null)
+            return null;
+          if (e.hash == hash && e != TOMBSTONE)
+            {
+              String s = e.get();
+              if (s != null && s.equals(str))
+                return s;
+            }
+        }
+    }
+
+    synchronized String put(String str, int hash)
+    {
+      purge(PURGE_BATCH);
+
+      Entry[] tab = table;
+      int mask = tab.length - 1;
+      int free = -1;
+      int i;
+      for (i = hash & mask; tab[i] != null; i = (i + 1) & mask)
+        {
+          Entry e = tab[i];
+          if (e == TOMBSTONE)
+            {
+              if (free < 0)
+                free = i;
+              continue;
+            }
+          String s = e.get();
+          if (s == null)
+            {
+              // Reuse the slot of a collected String.  Its entry is on
+              // the queue, but purge() will not find it any more.
+              if (free < 0)
+                free = i;
+            }
+          else if (e.hash == hash && s.equals(str))
+            return s;
+        }
+
+      Entry entry = new Entry(str, hash, queue);
+      if (free < 0)
+        {
+          tab[i] = entry;
+          used++;
+        }
+      else
+        tab[free] = entry;
+      if (used > tab.length - (tab.length >>> 2))
+        rebuild();
+      return str;
+    }
+
+    /**
+     * Tombstones up to max entries whose Strings have been collected.
+     */
+    private void purge(int max)
+    {
+      for (int n = 0; n < max; n++)
+        {
+          Entry e = (Entry) queue.poll();
+          if (e == null)
+            return;
+          Entry[] tab = table;
+          int mask = tab.length - 1;
+          for (int i = e.hash & mask; tab[i] != null; i = (i + 1) & mask)
+            if (tab[i] == e)
+              {
+                tab[i] = TOMBSTONE;
+                break;
+              }
+        }
+    }
+
+    /**
+     * Copies the live entries into a new table, dropping tombstones and
+     * cleared entries.  The table doubles if it is still at least half
+     * full after that, and halves if it is mostly empty.
+     */
+    private void rebuild()
+    {
+      while (queue.poll() != null)
+        ;
+
+      Entry[] tab = table;
+      int live = 0;
+      for (int i = 0; i < tab.length; i++)
+        {
+          Entry e = tab[i];
+          if (e != null && e != TOMBSTONE && e.get() != null)
+            live++;
+        }
+
+      int capacity = tab.length;
+      if (live >= capacity >>> 1)
+        capacity <<= 1;
+      else if (live < capacity >>> 3 && capacity > INITIAL_CAPACITY)
+        capacity >>>= 1;
+
+      Entry[] newTab = new Entry[capacity];
+      int mask = capacity - 1;
+      for (int j = 0; j < tab.length; j++)
+        {
+          Entry e = tab[j];
+          if (e == null || e == TOMBSTONE || e.get() == null)
+            continue;
+          int i = e.hash & mask;
+          while (newTab[i] != null)
+            i = (i + 1) & mask;
+          newTab[i] = e;
+        }
+      used = live;
+      table = newTab;
+    }
   }
 
 } // class VMString
@@ -43,6 +43,7 @@ import java.lang.annotation.Annotation;
 import java.util.Arrays;
 
 final class VMConstructor
+  implements Cloneable
 {
   Class clazz;
   int slot;
@@ -59,6 +60,24 @@ final class VMConstructor
     this.slot = slot;
   }
 
+  /**
+   * Return a copy of this object for a new Constructor.  The copy refers to
+   * the same member; the caller sets <code>cons</code> to the new instance.
+   *
+   * @return a copy of this object
+   */
+  VMConstructor copy()
+  {
+    try
+      {
+        return (VMConstructor) clone();
+      }
+    catch (CloneNotSupportedException e)
+      {
+        throw (InternalError) new InternalError().initCause(e);
+      }
+  }
+
   public Class getDeclaringClass()
   {
     return clazz;
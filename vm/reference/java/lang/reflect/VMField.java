@@ -41,6 +41,7 @@ package java.lang.reflect;
 import java.lang.annotation.Annotation;
 
 final class VMField
+  implements Cloneable
 {
   Class clazz;
   String name;
@@ -59,6 +60,24 @@ final class VMField
     this.slot = slot;
   }
 
+  /**
+   * Return a copy of this object for a new Field.  The copy refers to
+   * the same member; the caller sets <code>f</code> to the new instance.
+   *
+   * @return a copy of this object
+   */
+  VMField copy()
+  {
+    try
+      {
+        return (VMField) clone();
+      }
+    catch (CloneNotSupportedException e)
+      {
+        throw (InternalError) new InternalError().initCause(e);
+      }
+  }
+
   public Class getDeclaringClass()
   {
     return clazz;
@@ -43,6 +43,7 @@ import java.lang.annotation.Annotation;
 import java.util.Arrays;
 
 final class VMMethod
+  implements Cloneable
 {
   Class clazz;
   String name;
@@ -54,6 +55,24 @@ final class VMMethod
    */
   Method m;
 
+  /**
+   * Return a copy of this object for a new Method.  The copy refers to
+   * the same member; the caller sets <code>m</code> to the new instance.
+   *
+   * @return a copy of this object
+   */
+  VMMethod copy()
+  {
+    try
+      {
+        return (VMMethod) clone();
+      }
+    catch (CloneNotSupportedException e)
+      {
+        throw (InternalError) new InternalError().initCause(e);
+      }
+  }
+
   public Class getDeclaringClass()
   {
     return clazz;